@@ -15,6 +15,13 @@ inline fun ConnectivityManager.networks(networkRequest: NetworkRequest)
         : Observable<Network>
         = RxConnectivity.networks(this, networkRequest)
 
+@RequiresApi(api = Build.VERSION_CODES.LOLLIPOP)
+inline fun ConnectivityManager.networkEvents(networkRequest: NetworkRequest)
+        : Observable<NetworkEvent>
+        = RxConnectivity.networkEvents(this, networkRequest)
+
+@Suppress("DEPRECATION")
+@Deprecated("Leaves the process bound after disposal, use RxConnectivity.bindTo()")
 @RequiresApi(api = Build.VERSION_CODES.LOLLIPOP)
 inline fun ConnectivityManager.defaultNetwork(networkRequest: NetworkRequest)
         : Maybe<Network>
@@ -0,0 +1,67 @@
+/*
+ * Copyright (C) 2017, Andrew Chen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package rx.connectivity.android;
+
+import java.io.Closeable;
+import java.net.InetSocketAddress;
+import java.nio.channels.SocketChannel;
+
+import io.reactivex.annotations.NonNull;
+import io.reactivex.annotations.Nullable;
+
+/**
+ * An established connection from {@link ProbeEngine#open}, owned by the caller from then on.
+ *
+ * The channel is still non-blocking, {@code channel.configureBlocking(true)} to use its streams.
+ */
+public class Connection implements Closeable {
+    @NonNull
+    public final SocketChannel channel;
+    @NonNull
+    public final InetSocketAddress address;
+    public final long rttNanos;
+    /**
+     * Network the channel is bound to, null for the default one
+     */
+    @Nullable
+    public final NetworkRoute route;
+
+    Connection(@NonNull final SocketChannel channel,
+               @NonNull final InetSocketAddress address,
+               final long rttNanos,
+               @Nullable final NetworkRoute route) {
+        this.channel = channel;
+        this.address = address;
+        this.rttNanos = rttNanos;
+        this.route = route;
+    }
+
+    @NonNull
+    ProbeResult result() {
+        return new ProbeResult(address, rttNanos, route);
+    }
+
+    @Override
+    public void close() {
+        ProbeEngine.closeQuietly(channel);
+    }
+
+    @Override
+    public String toString() {
+        return "Connection{" + address + (route != null ? " via " + route.name : "")
+                + ", rtt=" + rttNanos / 1000 + "us}";
+    }
+}
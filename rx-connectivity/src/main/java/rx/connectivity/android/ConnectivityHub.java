@@ -0,0 +1,171 @@
+/*
+ * Copyright (C) 2017, Andrew Chen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package rx.connectivity.android;
+
+import android.annotation.SuppressLint;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.net.ConnectivityManager;
+import android.support.annotation.RequiresPermission;
+import android.support.annotation.VisibleForTesting;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.reactivex.Observable;
+import io.reactivex.ObservableSource;
+import io.reactivex.annotations.NonNull;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.functions.Action;
+import io.reactivex.functions.Consumer;
+import io.reactivex.functions.Function;
+import rx2.receiver.android.RxReceiver;
+
+import static android.Manifest.permission.ACCESS_NETWORK_STATE;
+
+/**
+ * Process-wide {@link ConnectivityManager#CONNECTIVITY_ACTION} receiver.
+ *
+ * A single BroadcastReceiver is registered when the first subscriber arrives and
+ * unregistered when the last one leaves. The latest broadcast is replayed to late subscribers.
+ */
+public class ConnectivityHub {
+    private static volatile ConnectivityHub sInstance;
+
+    @NonNull
+    private final Context context;
+    @NonNull
+    private final Observable<Intent> connectivity;
+    @NonNull
+    private final Observable<ConnectivityState> connectivityStates;
+    private final AtomicInteger subscribers = new AtomicInteger();
+    private final AtomicInteger registrations = new AtomicInteger();
+    private final AtomicInteger registered = new AtomicInteger();
+
+    @VisibleForTesting
+    ConnectivityHub(@NonNull final Context context) {
+        this.context = context;
+        this.connectivity = RxReceiver.receives(context,
+                new IntentFilter(ConnectivityManager.CONNECTIVITY_ACTION))
+                .doOnSubscribe(new Consumer<Disposable>() {
+                    @Override
+                    public void accept(Disposable disposable) throws Exception {
+                        registrations.incrementAndGet();
+                        registered.incrementAndGet();
+                    }
+                })
+                .doOnDispose(new Action() {
+                    @Override
+                    public void run() throws Exception {
+                        registered.decrementAndGet();
+                    }
+                })
+                .replay(1)
+                .refCount()
+                .doOnSubscribe(new Consumer<Disposable>() {
+                    @Override
+                    public void accept(Disposable disposable) throws Exception {
+                        subscribers.incrementAndGet();
+                    }
+                })
+                .doFinally(new Action() {
+                    @Override
+                    public void run() throws Exception {
+                        subscribers.decrementAndGet();
+                    }
+                });
+        this.connectivityStates = Observable.defer(new Callable<ObservableSource<Intent>>() {
+                    @Override
+                    public ObservableSource<Intent> call() throws Exception {
+                        return connectivity.observeOn(RxConnectivity.binderScheduler());
+                    }
+                })
+                .map(new Function<Intent, ConnectivityState>() {
+                    @Override
+                    @SuppressLint("MissingPermission")
+                    public ConnectivityState apply(@NonNull Intent intent) throws Exception {
+                        return ConnectivityState.of((ConnectivityManager)
+                                context.getSystemService(Context.CONNECTIVITY_SERVICE), intent);
+                    }
+                })
+                .distinctUntilChanged()
+                .replay(1)
+                .refCount();
+    }
+
+    /**
+     * @param context
+     * @return the hub bound to the application context
+     */
+    @NonNull
+    public static ConnectivityHub get(@NonNull final Context context) {
+        final Context applicationContext = context.getApplicationContext() != null
+                ? context.getApplicationContext() : context;
+        ConnectivityHub hub = sInstance;
+        if (hub == null || hub.context != applicationContext) {
+            synchronized (ConnectivityHub.class) {
+                hub = sInstance;
+                if (hub == null || hub.context != applicationContext) {
+                    hub = new ConnectivityHub(applicationContext);
+                    sInstance = hub;
+                }
+            }
+        }
+        return hub;
+    }
+
+    /**
+     * @return shared connectivity broadcasts, replaying the latest one
+     */
+    @NonNull
+    @RequiresPermission(ACCESS_NETWORK_STATE)
+    public Observable<Intent> connectivity() {
+        return connectivity;
+    }
+
+    /**
+     * Each broadcast is parsed once for all subscribers, on {@link RxConnectivity#binderScheduler()}.
+     *
+     * @return shared connectivity states without consecutive duplicates, replaying the latest one
+     */
+    @NonNull
+    @RequiresPermission(ACCESS_NETWORK_STATE)
+    public Observable<ConnectivityState> connectivityStates() {
+        return connectivityStates;
+    }
+
+    /**
+     * @return number of active subscribers
+     */
+    public int subscriberCount() {
+        return subscribers.get();
+    }
+
+    /**
+     * @return number of receivers currently registered, either 0 or 1
+     */
+    public int registeredCount() {
+        return registered.get();
+    }
+
+    /**
+     * @return total number of receiver registrations since the hub was created
+     */
+    public int registrationCount() {
+        return registrations.get();
+    }
+}
@@ -0,0 +1,214 @@
+/*
+ * Copyright (C) 2017, Andrew Chen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package rx.connectivity.android;
+
+import android.annotation.SuppressLint;
+import android.annotation.TargetApi;
+import android.content.Intent;
+import android.net.ConnectivityManager;
+import android.net.Network;
+import android.net.NetworkInfo;
+import android.os.Build;
+import android.support.annotation.RequiresPermission;
+import android.support.annotation.WorkerThread;
+
+import io.reactivex.annotations.NonNull;
+import io.reactivex.annotations.Nullable;
+
+import static android.Manifest.permission.ACCESS_NETWORK_STATE;
+
+/**
+ * Immutable state of the active network, parsed once per connectivity change.
+ */
+public class ConnectivityState {
+    public static final int TYPE_NONE = -1;
+    public static final long NO_NETWORK_ID = -1L;
+    public static final ConnectivityState DISCONNECTED =
+            new ConnectivityState(false, TYPE_NONE, false, false, NO_NETWORK_ID);
+
+    public final boolean connected;
+    /**
+     * {@link ConnectivityManager#TYPE_WIFI}, {@link ConnectivityManager#TYPE_MOBILE}... or {@link #TYPE_NONE}
+     */
+    public final int type;
+    public final boolean metered;
+    public final boolean roaming;
+    /**
+     * Identifies the active network across changes, {@link #NO_NETWORK_ID} without one.
+     *
+     * The {@link Network} handle on M+, derived from the type and extra info (SSID, APN) before.
+     */
+    public final long networkId;
+
+    ConnectivityState(final boolean connected,
+                      final int type,
+                      final boolean metered,
+                      final boolean roaming,
+                      final long networkId) {
+        this.connected = connected;
+        this.type = type;
+        this.metered = metered;
+        this.roaming = roaming;
+        this.networkId = networkId;
+    }
+
+    /**
+     * @param connectivityManager
+     * @return the state of the active network, asking the binder 2 or 3 times
+     */
+    @NonNull
+    @WorkerThread
+    @RequiresPermission(ACCESS_NETWORK_STATE)
+    public static ConnectivityState of(@NonNull final ConnectivityManager connectivityManager) {
+        final NetworkInfo networkInfo = connectivityManager.getActiveNetworkInfo();
+        if (networkInfo == null) return DISCONNECTED;
+
+        return of(networkInfo, isActiveNetworkMetered(connectivityManager), networkId(connectivityManager, networkInfo));
+    }
+
+    /**
+     * @param connectivityManager
+     * @param intent {@link ConnectivityManager#CONNECTIVITY_ACTION} broadcast
+     * @return the state of the active network, parsed from the network info of the broadcast when
+     * it describes the active network, so that the binder is only asked for its type, whether it is
+     * metered, and its handle on M+
+     */
+    @NonNull
+    @WorkerThread
+    @SuppressLint("MissingPermission")
+    @RequiresPermission(ACCESS_NETWORK_STATE)
+    public static ConnectivityState of(@NonNull final ConnectivityManager connectivityManager,
+                                       @NonNull final Intent intent) {
+        if (intent.getBooleanExtra(ConnectivityManager.EXTRA_NO_CONNECTIVITY, false)) return DISCONNECTED;
+
+        // Deprecated in P in favor of NetworkCallback, still sent with every CONNECTIVITY_ACTION
+        @SuppressWarnings("deprecation")
+        final NetworkInfo networkInfo = intent.getParcelableExtra(ConnectivityManager.EXTRA_NETWORK_INFO);
+        // Another network going down or failing over, the active one is unknown to the broadcast
+        if (networkInfo == null || !networkInfo.isConnected()
+                || intent.getBooleanExtra(ConnectivityManager.EXTRA_IS_FAILOVER, false)
+                || intent.hasExtra(ConnectivityManager.EXTRA_OTHER_NETWORK_INFO)) {
+            return of(connectivityManager);
+        }
+
+        final NetworkInfo activeNetworkInfo = connectivityManager.getActiveNetworkInfo();
+        if (activeNetworkInfo == null) return DISCONNECTED;
+        // A network coming up in the background, e.g. mobile while wifi stays the default
+        final NetworkInfo active = activeNetworkInfo.getType() == networkInfo.getType() ? networkInfo : activeNetworkInfo;
+
+        return of(active, isActiveNetworkMetered(connectivityManager), networkId(connectivityManager, active));
+    }
+
+    /**
+     * @param connectivityManager
+     * @return the {@link #networkId} of the active network, with a single binder call
+     */
+    @WorkerThread
+    @SuppressLint("MissingPermission")
+    @RequiresPermission(ACCESS_NETWORK_STATE)
+    public static long activeNetworkId(@NonNull final ConnectivityManager connectivityManager) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+            return networkId(connectivityManager.getActiveNetwork());
+        }
+        final NetworkInfo networkInfo = connectivityManager.getActiveNetworkInfo();
+        return networkInfo != null ? networkId(connectivityManager, networkInfo) : NO_NETWORK_ID;
+    }
+
+    @NonNull
+    static ConnectivityState of(@NonNull final NetworkInfo networkInfo,
+                                final boolean metered,
+                                final long networkId) {
+        return new ConnectivityState(networkInfo.isConnected(),
+                networkInfo.getType(),
+                metered,
+                networkInfo.isRoaming(),
+                networkId);
+    }
+
+    @SuppressLint("MissingPermission")
+    private static boolean isActiveNetworkMetered(@NonNull final ConnectivityManager connectivityManager) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            return connectivityManager.isActiveNetworkMetered();
+        }
+        return false;
+    }
+
+    /**
+     * @param connectivityManager
+     * @param networkInfo of the active network
+     * @return the {@link #networkId} of the active network, derived from its type and extra info
+     * before M
+     */
+    @SuppressLint("MissingPermission")
+    static long networkId(@NonNull final ConnectivityManager connectivityManager,
+                          @NonNull final NetworkInfo networkInfo) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+            final long handle = networkId(connectivityManager.getActiveNetwork());
+            if (handle != NO_NETWORK_ID) return handle;
+        }
+        if (!networkInfo.isConnected()) return NO_NETWORK_ID;
+
+        final String extraInfo = networkInfo.getExtraInfo();
+        return ((long) networkInfo.getType() << 32) | ((extraInfo != null ? extraInfo.hashCode() : 0) & 0xffffffffL);
+    }
+
+    /**
+     * @param network
+     * @return the {@link #networkId} of the network on M+, {@link #NO_NETWORK_ID} before
+     */
+    static long networkId(@Nullable final Network network) {
+        if (network == null || Build.VERSION.SDK_INT < Build.VERSION_CODES.M) return NO_NETWORK_ID;
+
+        return networkHandle(network);
+    }
+
+    @TargetApi(Build.VERSION_CODES.M)
+    private static long networkHandle(@NonNull final Network network) {
+        return network.getNetworkHandle();
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) return true;
+        if (!(o instanceof ConnectivityState)) return false;
+
+        final ConnectivityState that = (ConnectivityState) o;
+        return connected == that.connected
+                && type == that.type
+                && metered == that.metered
+                && roaming == that.roaming
+                && networkId == that.networkId;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = connected ? 1 : 0;
+        result = 31 * result + type;
+        result = 31 * result + (metered ? 1 : 0);
+        result = 31 * result + (roaming ? 1 : 0);
+        result = 31 * result + (int) (networkId ^ (networkId >>> 32));
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "ConnectivityState{" + (connected ? "connected" : "disconnected")
+                + ", type=" + type
+                + (metered ? ", metered" : "")
+                + (roaming ? ", roaming" : "")
+                + ", networkId=" + networkId + "}";
+    }
+}
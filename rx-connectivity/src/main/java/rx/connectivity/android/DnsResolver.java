@@ -0,0 +1,344 @@
+/*
+ * Copyright (C) 2017, Andrew Chen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package rx.connectivity.android;
+
+import android.annotation.SuppressLint;
+import android.content.Context;
+import android.support.annotation.RequiresPermission;
+import android.support.annotation.VisibleForTesting;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.reactivex.Observable;
+import io.reactivex.ObservableSource;
+import io.reactivex.Scheduler;
+import io.reactivex.Single;
+import io.reactivex.SingleSource;
+import io.reactivex.annotations.CheckReturnValue;
+import io.reactivex.annotations.NonNull;
+import io.reactivex.annotations.Nullable;
+import io.reactivex.functions.BiConsumer;
+import io.reactivex.functions.Function;
+import io.reactivex.functions.Predicate;
+import io.reactivex.schedulers.Schedulers;
+
+import static android.Manifest.permission.ACCESS_NETWORK_STATE;
+import static android.Manifest.permission.INTERNET;
+
+/**
+ * Asynchronous DNS resolver of RxConnectivity probes, on a few dedicated threads.
+ *
+ * Answers are cached per network for a TTL, unknown hosts too for a shorter one, and only one
+ * lookup per host and network runs at a time. Hosts resolved through a {@link NetworkRoute} use
+ * the DNS servers of its network, as split-horizon and captive DNS answer differently per
+ * network. While {@link #watch(Context)} is subscribed, the cache is cleared whenever the default
+ * network changes and the {@link #setPrefetchHosts prefetch hosts} are resolved right away.
+ */
+public class DnsResolver {
+    public static final int DEFAULT_THREADS = 4;
+    public static final long DEFAULT_TTL_MILLIS = TimeUnit.MINUTES.toMillis(1);
+    public static final long DEFAULT_NEGATIVE_TTL_MILLIS = TimeUnit.SECONDS.toMillis(10);
+
+    private static volatile DnsResolver sInstance;
+
+    @NonNull
+    private final Function<String, InetAddress[]> lookup;
+    @NonNull
+    private final Scheduler scheduler;
+    private final long ttlMillis;
+    private final long negativeTtlMillis;
+    @NonNull
+    private final Map<Key, Entry> entries = new HashMap<Key, Entry>();
+    @NonNull
+    private final Map<Key, Lookup> lookups = new HashMap<Key, Lookup>();
+    @NonNull
+    private volatile List<String> prefetchHosts = Collections.emptyList();
+    private int lookupCount;
+
+    private static class Key {
+        final long networkId;
+        @NonNull
+        final String host;
+
+        Key(final long networkId, @NonNull final String host) {
+            this.networkId = networkId;
+            this.host = host;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            final Key key = (Key) o;
+            return networkId == key.networkId && host.equals(key.host);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (int) (networkId ^ (networkId >>> 32)) + host.hashCode();
+        }
+    }
+
+    private static class Entry {
+        /**
+         * null if unknown
+         */
+        @Nullable
+        final List<InetAddress> addresses;
+        final long expiresAt;
+
+        Entry(@Nullable final List<InetAddress> addresses, final long expiresAt) {
+            this.addresses = addresses;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private static class Lookup {
+        Single<List<InetAddress>> addresses;
+    }
+
+    /**
+     * @param lookup blocking lookup
+     * @param scheduler scheduler lookups run on, also the clock of the TTLs
+     * @param ttlMillis
+     * @param negativeTtlMillis
+     */
+    @VisibleForTesting
+    DnsResolver(@NonNull final Function<String, InetAddress[]> lookup,
+                @NonNull final Scheduler scheduler,
+                final long ttlMillis,
+                final long negativeTtlMillis) {
+        this.lookup = lookup;
+        this.scheduler = scheduler;
+        this.ttlMillis = ttlMillis;
+        this.negativeTtlMillis = negativeTtlMillis;
+    }
+
+    /**
+     * @return the resolver shared by the whole process, looking up with {@link InetAddress#getAllByName}
+     */
+    @NonNull
+    public static DnsResolver get() {
+        DnsResolver resolver = sInstance;
+        if (resolver == null) {
+            synchronized (DnsResolver.class) {
+                resolver = sInstance;
+                if (resolver == null) {
+                    resolver = new DnsResolver(new Function<String, InetAddress[]>() {
+                        @Override
+                        public InetAddress[] apply(@NonNull String host) throws Exception {
+                            return InetAddress.getAllByName(host);
+                        }
+                    }, Schedulers.from(Executors.newFixedThreadPool(DEFAULT_THREADS, new ThreadFactory() {
+                        private final AtomicInteger threads = new AtomicInteger();
+
+                        @Override
+                        public Thread newThread(@NonNull Runnable runnable) {
+                            final Thread thread = new Thread(runnable, "rx-connectivity-dns-" + threads.incrementAndGet());
+                            thread.setDaemon(true);
+                            return thread;
+                        }
+                    })), DEFAULT_TTL_MILLIS, DEFAULT_NEGATIVE_TTL_MILLIS);
+                    sInstance = resolver;
+                }
+            }
+        }
+        return resolver;
+    }
+
+    /**
+     * @param host
+     * @return the addresses of the host on the default network, or {@link UnknownHostException}
+     */
+    @NonNull
+    @CheckReturnValue
+    @RequiresPermission(INTERNET)
+    public Single<List<InetAddress>> resolve(@NonNull final String host) {
+        return resolve(host, null);
+    }
+
+    /**
+     * @param host
+     * @param route null for the default network
+     * @return the addresses of the host resolved by {@link NetworkRoute#resolve} on the network,
+     * or {@link UnknownHostException}
+     */
+    @NonNull
+    @CheckReturnValue
+    @RequiresPermission(INTERNET)
+    public Single<List<InetAddress>> resolve(@NonNull final String host, @Nullable final NetworkRoute route) {
+        final Key key = new Key(route != null ? route.networkId : ConnectivityState.NO_NETWORK_ID, host);
+        return Single.defer(new Callable<SingleSource<List<InetAddress>>>() {
+            @Override
+            public SingleSource<List<InetAddress>> call() throws Exception {
+                synchronized (DnsResolver.this) {
+                    final Entry entry = entries.get(key);
+                    if (entry != null && now() < entry.expiresAt) {
+                        return entry.addresses != null
+                                ? Single.just(entry.addresses)
+                                : Single.<List<InetAddress>>error(new UnknownHostException(host));
+                    }
+
+                    Lookup running = lookups.get(key);
+                    if (running == null) {
+                        running = lookup(key, route);
+                        lookups.put(key, running);
+                    }
+                    return running.addresses;
+                }
+            }
+        });
+    }
+
+    /**
+     * @param hosts resolved as soon as {@link #watch(Context)} reports a new default network
+     */
+    public void setPrefetchHosts(@NonNull final Collection<String> hosts) {
+        prefetchHosts = Collections.unmodifiableList(new ArrayList<String>(hosts));
+    }
+
+    /**
+     * @param hosts resolved as soon as {@link #watch(Context)} reports a new default network
+     */
+    public void setPrefetchHosts(@NonNull final String... hosts) {
+        setPrefetchHosts(Arrays.asList(hosts));
+    }
+
+    /**
+     * Clears the cache on every change of the default network, see
+     * {@link RxConnectivity#connectivityStates}, as lookups without a route are cached for the
+     * default network whichever it is, then prefetches.
+     *
+     * @param context
+     * @return the prefetched hosts
+     */
+    @NonNull
+    @CheckReturnValue
+    @RequiresPermission(allOf = {INTERNET, ACCESS_NETWORK_STATE})
+    public Observable<String> watch(@NonNull final Context context) {
+        return watch(RxConnectivity.connectivityStates(context)
+                .filter(new Predicate<ConnectivityState>() {
+                    @Override
+                    public boolean test(@NonNull ConnectivityState state) throws Exception {
+                        return state.connected;
+                    }
+                })
+                .map(new Function<ConnectivityState, Long>() {
+                    @Override
+                    public Long apply(@NonNull ConnectivityState state) throws Exception {
+                        return state.networkId;
+                    }
+                })
+                .distinctUntilChanged());
+    }
+
+    /**
+     * @param networks ids of the default network, on every change
+     * @return the prefetched hosts
+     */
+    @NonNull
+    @VisibleForTesting
+    @SuppressLint("MissingPermission")
+    Observable<String> watch(@NonNull final Observable<Long> networks) {
+        return networks.switchMap(new Function<Long, ObservableSource<String>>() {
+            @Override
+            public ObservableSource<String> apply(@NonNull Long networkId) throws Exception {
+                clear();
+                return Observable.fromIterable(prefetchHosts)
+                        .flatMap(new Function<String, ObservableSource<String>>() {
+                            @Override
+                            public ObservableSource<String> apply(@NonNull final String host) throws Exception {
+                                return resolve(host)
+                                        .map(new Function<List<InetAddress>, String>() {
+                                            @Override
+                                            public String apply(@NonNull List<InetAddress> addresses) throws Exception {
+                                                return host;
+                                            }
+                                        })
+                                        .toObservable()
+                                        .onErrorResumeNext(Observable.<String>empty());
+                            }
+                        });
+            }
+        });
+    }
+
+    /**
+     * Drops every answer and forgets the running lookups.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        lookups.clear();
+    }
+
+    /**
+     * @return number of lookups started since the resolver was created
+     */
+    public synchronized int lookupCount() {
+        return lookupCount;
+    }
+
+    @NonNull
+    private Lookup lookup(@NonNull final Key key, @Nullable final NetworkRoute route) {
+        final String host = key.host;
+        lookupCount++;
+        final Lookup running = new Lookup();
+        running.addresses = Single.fromCallable(new Callable<List<InetAddress>>() {
+                    @Override
+                    public List<InetAddress> call() throws Exception {
+                        final InetAddress[] addresses = route != null ? route.resolve(host) : lookup.apply(host);
+                        if (addresses == null || addresses.length == 0) throw new UnknownHostException(host);
+                        return Collections.unmodifiableList(Arrays.asList(addresses));
+                    }
+                })
+                .subscribeOn(scheduler)
+                .doOnEvent(new BiConsumer<List<InetAddress>, Throwable>() {
+                    @Override
+                    public void accept(@Nullable List<InetAddress> addresses, @Nullable Throwable e) throws Exception {
+                        synchronized (DnsResolver.this) {
+                            // Cleared meanwhile
+                            if (lookups.get(key) != running) return;
+
+                            lookups.remove(key);
+                            if (addresses != null) {
+                                entries.put(key, new Entry(addresses, now() + ttlMillis));
+                            } else if (e instanceof UnknownHostException) {
+                                entries.put(key, new Entry(null, now() + negativeTtlMillis));
+                            }
+                        }
+                    }
+                })
+                .cache();
+        return running;
+    }
+
+    private long now() {
+        return scheduler.now(TimeUnit.MILLISECONDS);
+    }
+}
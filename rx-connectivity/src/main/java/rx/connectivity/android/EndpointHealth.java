@@ -0,0 +1,67 @@
+/*
+ * Copyright (C) 2017, Andrew Chen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package rx.connectivity.android;
+
+import java.net.InetSocketAddress;
+
+import io.reactivex.annotations.NonNull;
+import io.reactivex.annotations.Nullable;
+
+/**
+ * Result of the latest probe of an endpoint.
+ */
+public class EndpointHealth {
+    @NonNull
+    public final InetSocketAddress endpoint;
+    public final boolean up;
+    /**
+     * Handshake time of the latest probe, -1 if down
+     */
+    public final long rttNanos;
+    /**
+     * Failed probes in a row, 0 if up
+     */
+    public final int consecutiveFailures;
+    /**
+     * Scheduler time in milliseconds of the latest probe
+     */
+    public final long checkedAt;
+    /**
+     * Why the latest probe failed
+     */
+    @Nullable
+    public final Throwable error;
+
+    EndpointHealth(@NonNull final InetSocketAddress endpoint,
+                   final boolean up,
+                   final long rttNanos,
+                   final int consecutiveFailures,
+                   final long checkedAt,
+                   @Nullable final Throwable error) {
+        this.endpoint = endpoint;
+        this.up = up;
+        this.rttNanos = rttNanos;
+        this.consecutiveFailures = consecutiveFailures;
+        this.checkedAt = checkedAt;
+        this.error = error;
+    }
+
+    @Override
+    public String toString() {
+        return "EndpointHealth{" + endpoint + (up ? ", up, rtt=" + rttNanos / 1000 + "us"
+                : ", down x" + consecutiveFailures + ", " + error) + "}";
+    }
+}
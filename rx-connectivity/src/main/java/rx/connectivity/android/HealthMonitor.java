@@ -0,0 +1,244 @@
+/*
+ * Copyright (C) 2017, Andrew Chen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package rx.connectivity.android;
+
+import android.annotation.SuppressLint;
+import android.support.annotation.RequiresPermission;
+import android.support.annotation.VisibleForTesting;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.reactivex.Observable;
+import io.reactivex.ObservableSource;
+import io.reactivex.Scheduler;
+import io.reactivex.Single;
+import io.reactivex.annotations.CheckReturnValue;
+import io.reactivex.annotations.NonNull;
+import io.reactivex.functions.Action;
+import io.reactivex.functions.Consumer;
+import io.reactivex.functions.Function;
+import io.reactivex.functions.Predicate;
+import io.reactivex.schedulers.Schedulers;
+
+import static android.Manifest.permission.INTERNET;
+
+/**
+ * Probes many endpoints periodically with {@link ProbeEngine} connects, so the probes only take
+ * the selector thread, and never more than {@code maxInFlight} connections at once.
+ *
+ * Endpoints are started spread over their interval. A tick is skipped while the previous probe
+ * of the endpoint is still queued or running, so a slow round cannot pile up probes, and queued
+ * probes run in tick order.
+ */
+public class HealthMonitor {
+    public static final int DEFAULT_MAX_IN_FLIGHT = 32;
+
+    @NonNull
+    private final ProbeEngine engine;
+    @NonNull
+    private final Scheduler scheduler;
+    private final int maxInFlight;
+    private final long timeoutMillis;
+    @NonNull
+    private final Map<InetSocketAddress, EndpointHealth> snapshot =
+            new ConcurrentHashMap<InetSocketAddress, EndpointHealth>();
+    private int peakInFlight;
+
+    public HealthMonitor() {
+        this(DEFAULT_MAX_IN_FLIGHT, ProbeEngine.DEFAULT_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @param maxInFlight
+     * @param timeout of each probe
+     * @param unit
+     */
+    public HealthMonitor(final int maxInFlight, final long timeout, @NonNull final TimeUnit unit) {
+        this(ProbeEngine.get(), Schedulers.computation(), maxInFlight, unit.toMillis(timeout));
+    }
+
+    @VisibleForTesting
+    HealthMonitor(@NonNull final ProbeEngine engine,
+                  @NonNull final Scheduler scheduler,
+                  final int maxInFlight,
+                  final long timeoutMillis) {
+        if (maxInFlight < 1) throw new IllegalArgumentException("maxInFlight must be > 0");
+        this.engine = engine;
+        this.scheduler = scheduler;
+        this.maxInFlight = maxInFlight;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * Probes while subscribed, the first probe of each endpoint counts as a transition. Each
+     * subscription tracks its own probes, only {@link #snapshot()} is shared.
+     *
+     * @param intervals probe interval in milliseconds of each endpoint
+     * @return up/down transitions
+     */
+    @NonNull
+    @CheckReturnValue
+    @RequiresPermission(INTERNET)
+    public Observable<EndpointHealth> monitor(@NonNull final Map<InetSocketAddress, Long> intervals) {
+        final List<Observable<InetSocketAddress>> ticks =
+                new ArrayList<Observable<InetSocketAddress>>(intervals.size());
+        int i = 0;
+        for (final Map.Entry<InetSocketAddress, Long> entry : intervals.entrySet()) {
+            final long interval = entry.getValue();
+            final long initialDelay = interval * i++ / intervals.size();
+            ticks.add(Observable.interval(initialDelay, interval, TimeUnit.MILLISECONDS, scheduler)
+                    .map(new Function<Long, InetSocketAddress>() {
+                        @Override
+                        public InetSocketAddress apply(@NonNull Long tick) throws Exception {
+                            return entry.getKey();
+                        }
+                    }));
+        }
+
+        return Observable.defer(new Callable<ObservableSource<EndpointHealth>>() {
+            @Override
+            public ObservableSource<EndpointHealth> call() throws Exception {
+                final Monitoring monitoring = new Monitoring();
+                return Observable.merge(ticks)
+                        .filter(new Predicate<InetSocketAddress>() {
+                            @Override
+                            public boolean test(@NonNull InetSocketAddress endpoint) throws Exception {
+                                return monitoring.busy.add(endpoint);
+                            }
+                        })
+                        .flatMap(new Function<InetSocketAddress, ObservableSource<EndpointHealth>>() {
+                            @Override
+                            public ObservableSource<EndpointHealth> apply(@NonNull InetSocketAddress endpoint) throws Exception {
+                                return probe(monitoring, endpoint);
+                            }
+                        }, maxInFlight)
+                        .filter(new Predicate<EndpointHealth>() {
+                            @Override
+                            public boolean test(@NonNull EndpointHealth health) throws Exception {
+                                snapshot.put(health.endpoint, health);
+                                final EndpointHealth previous = monitoring.latest.put(health.endpoint, health);
+                                return previous == null || previous.up != health.up;
+                            }
+                        });
+            }
+        });
+    }
+
+    /**
+     * @return the latest health of every probed endpoint
+     */
+    @NonNull
+    public Map<InetSocketAddress, EndpointHealth> snapshot() {
+        return Collections.unmodifiableMap(new HashMap<InetSocketAddress, EndpointHealth>(snapshot));
+    }
+
+    /**
+     * @return highest number of probes in flight at once so far, in one subscription
+     */
+    @VisibleForTesting
+    synchronized int peakInFlight() {
+        return peakInFlight;
+    }
+
+    /**
+     * State of one subscription.
+     */
+    private static class Monitoring {
+        /** Endpoints whose probe is queued or running */
+        @NonNull
+        final Set<InetSocketAddress> busy =
+                Collections.newSetFromMap(new ConcurrentHashMap<InetSocketAddress, Boolean>());
+        @NonNull
+        final Map<InetSocketAddress, EndpointHealth> latest =
+                new ConcurrentHashMap<InetSocketAddress, EndpointHealth>();
+        @NonNull
+        final AtomicInteger inFlight = new AtomicInteger();
+    }
+
+    /**
+     * flatMap() subscribes to the probe once a slot is free, only then it is in flight.
+     */
+    @NonNull
+    private Observable<EndpointHealth> probe(@NonNull final Monitoring monitoring,
+                                             @NonNull final InetSocketAddress endpoint) {
+        return Observable.defer(new Callable<ObservableSource<EndpointHealth>>() {
+            @Override
+            public ObservableSource<EndpointHealth> call() throws Exception {
+                final int inFlight = monitoring.inFlight.incrementAndGet();
+                synchronized (HealthMonitor.this) {
+                    peakInFlight = Math.max(peakInFlight, inFlight);
+                }
+                final AtomicBoolean done = new AtomicBoolean();
+                final Action release = new Action() {
+                    @Override
+                    public void run() throws Exception {
+                        if (done.compareAndSet(false, true)) {
+                            monitoring.inFlight.decrementAndGet();
+                            monitoring.busy.remove(endpoint);
+                        }
+                    }
+                };
+                // Released before the result is emitted, flatMap() starts the next probe right then
+                return connect(monitoring, endpoint)
+                        .doOnSuccess(new Consumer<EndpointHealth>() {
+                            @Override
+                            public void accept(@NonNull EndpointHealth health) throws Exception {
+                                release.run();
+                            }
+                        })
+                        .doOnDispose(release)
+                        .toObservable();
+            }
+        });
+    }
+
+    @NonNull
+    @SuppressLint("MissingPermission")
+    private Single<EndpointHealth> connect(@NonNull final Monitoring monitoring,
+                                           @NonNull final InetSocketAddress endpoint) {
+        return engine.connect(endpoint)
+                .timeout(timeoutMillis, TimeUnit.MILLISECONDS, scheduler)
+                .map(new Function<ProbeResult, EndpointHealth>() {
+                    @Override
+                    public EndpointHealth apply(@NonNull ProbeResult result) throws Exception {
+                        return new EndpointHealth(endpoint, true, result.rttNanos, 0, now(), null);
+                    }
+                })
+                .onErrorReturn(new Function<Throwable, EndpointHealth>() {
+                    @Override
+                    public EndpointHealth apply(@NonNull Throwable e) throws Exception {
+                        final EndpointHealth previous = monitoring.latest.get(endpoint);
+                        final int failures = previous != null ? previous.consecutiveFailures + 1 : 1;
+                        return new EndpointHealth(endpoint, false, -1L, failures, now(), e);
+                    }
+                });
+    }
+
+    private long now() {
+        return scheduler.now(TimeUnit.MILLISECONDS);
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright (C) 2017, Andrew Chen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package rx.connectivity.android;
+
+import io.reactivex.annotations.NonNull;
+
+/**
+ * Fixed-size log-linear histogram of latencies, in the spirit of HdrHistogram.
+ *
+ * Values are counted in microseconds, each power of two is split into {@link #SUB_BUCKETS}
+ * linear buckets, so any percentile is off by at most 1/{@link #SUB_BUCKETS} (12.5%). Recording
+ * never allocates; the histogram is not thread-safe.
+ */
+public class LatencyHistogram {
+    static final int SUB_BUCKET_BITS = 3;
+    public static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    /**
+     * Values up to 2^36us, i.e. about 19 hours, larger ones go to the last bucket
+     */
+    static final int MAX_EXPONENT = 36;
+    static final int BUCKETS = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+
+    @NonNull
+    final long[] counts = new long[BUCKETS];
+    long count;
+
+    /**
+     * @param nanos
+     */
+    public void record(final long nanos) {
+        counts[index(nanos / 1000)]++;
+        count++;
+    }
+
+    public long count() {
+        return count;
+    }
+
+    public void clear() {
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = 0;
+        }
+        count = 0;
+    }
+
+    /**
+     * @param percentile 0..100
+     * @return the latency in nanoseconds under which the percentile of samples fall, -1 if empty
+     */
+    public long percentile(final double percentile) {
+        return percentile(counts, count, percentile);
+    }
+
+    static long percentile(@NonNull final long[] counts, final long count, final double percentile) {
+        if (count == 0) return -1L;
+
+        final long rank = Math.max(1L, (long) Math.ceil(count * Math.min(100.0, Math.max(0.0, percentile)) / 100.0));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) return highestValue(i) * 1000;
+        }
+        return highestValue(counts.length - 1) * 1000;
+    }
+
+    static int index(final long micros) {
+        if (micros < SUB_BUCKETS) return micros < 0 ? 0 : (int) micros;
+
+        final int exponent = 63 - Long.numberOfLeadingZeros(micros);
+        if (exponent > MAX_EXPONENT) return BUCKETS - 1;
+
+        final int shift = exponent - SUB_BUCKET_BITS;
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + (int) ((micros >>> shift) & (SUB_BUCKETS - 1));
+    }
+
+    /**
+     * @param index
+     * @return the highest value in microseconds counted in the bucket
+     */
+    static long highestValue(final int index) {
+        if (index < SUB_BUCKETS) return index;
+
+        final int exponent = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        final int shift = exponent - SUB_BUCKET_BITS;
+        final long lowest = ((long) (SUB_BUCKETS + index % SUB_BUCKETS)) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright (C) 2017, Andrew Chen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package rx.connectivity.android;
+
+/**
+ * Latency percentiles in nanoseconds, -1 without samples.
+ */
+public class LatencyPercentiles {
+    public final long count;
+    public final long p50Nanos;
+    public final long p90Nanos;
+    public final long p99Nanos;
+
+    LatencyPercentiles(final long count, final long p50Nanos, final long p90Nanos, final long p99Nanos) {
+        this.count = count;
+        this.p50Nanos = p50Nanos;
+        this.p90Nanos = p90Nanos;
+        this.p99Nanos = p99Nanos;
+    }
+
+    @Override
+    public String toString() {
+        return "LatencyPercentiles{count=" + count
+                + ", p50=" + p50Nanos / 1000 + "us"
+                + ", p90=" + p90Nanos / 1000 + "us"
+                + ", p99=" + p99Nanos / 1000 + "us}";
+    }
+}
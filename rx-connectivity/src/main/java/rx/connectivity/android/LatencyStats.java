@@ -0,0 +1,148 @@
+/*
+ * Copyright (C) 2017, Andrew Chen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package rx.connectivity.android;
+
+import android.support.annotation.VisibleForTesting;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.Observable;
+import io.reactivex.Scheduler;
+import io.reactivex.annotations.CheckReturnValue;
+import io.reactivex.annotations.NonNull;
+import io.reactivex.annotations.Nullable;
+import io.reactivex.schedulers.Schedulers;
+
+/**
+ * {@link SlidingLatencyHistogram}s of the process, one per network.
+ */
+public class LatencyStats implements NetworkScoped {
+    public static final long DEFAULT_WINDOW_MILLIS = TimeUnit.MINUTES.toMillis(5);
+    public static final int DEFAULT_SLICES = 10;
+
+    private static final LatencyStats sInstance =
+            new LatencyStats(Schedulers.computation(), DEFAULT_WINDOW_MILLIS, DEFAULT_SLICES);
+
+    @NonNull
+    private final Scheduler scheduler;
+    private final long windowMillis;
+    private final int slices;
+    @NonNull
+    private final ConcurrentHashMap<Long, SlidingLatencyHistogram> histograms =
+            new ConcurrentHashMap<Long, SlidingLatencyHistogram>();
+    /**
+     * Histogram of the network recorded last, so recording on the same network does not box its id
+     */
+    @Nullable
+    private volatile Last last;
+
+    private static class Last {
+        final long networkId;
+        @NonNull
+        final SlidingLatencyHistogram histogram;
+
+        Last(final long networkId, @NonNull final SlidingLatencyHistogram histogram) {
+            this.networkId = networkId;
+            this.histogram = histogram;
+        }
+    }
+
+    @VisibleForTesting
+    LatencyStats(@NonNull final Scheduler scheduler, final long windowMillis, final int slices) {
+        this.scheduler = scheduler;
+        this.windowMillis = windowMillis;
+        this.slices = slices;
+    }
+
+    @NonNull
+    public static LatencyStats get() {
+        return sInstance;
+    }
+
+    /**
+     * @param networkId {@link ConnectivityState#networkId}
+     * @param nanos
+     */
+    public void record(final long networkId, final long nanos) {
+        histogram(networkId).record(now(), nanos);
+    }
+
+    /**
+     * @param networkId {@link ConnectivityState#networkId}
+     * @return p50, p90 and p99 of the network over the sliding window
+     */
+    @NonNull
+    public LatencyPercentiles percentiles(final long networkId) {
+        return histogram(networkId).percentiles(now());
+    }
+
+    /**
+     * @param networkId {@link ConnectivityState#networkId}
+     * @param percentile 0..100
+     * @return the percentile in nanoseconds over the sliding window, -1 without samples
+     */
+    public long percentile(final long networkId, final double percentile) {
+        return histogram(networkId).percentile(now(), percentile);
+    }
+
+    /**
+     * Forgets a network, e.g. once it is lost.
+     *
+     * @param networkId
+     */
+    @Override
+    public void clear(final long networkId) {
+        histograms.remove(networkId);
+        final Last last = this.last;
+        if (last != null && last.networkId == networkId) this.last = null;
+    }
+
+    @Override
+    public void clear() {
+        histograms.clear();
+        last = null;
+    }
+
+    /**
+     * @param networkEvents
+     * @return the lost networks, their histograms forgotten, see {@link NetworkScoped}
+     */
+    @NonNull
+    @CheckReturnValue
+    public Observable<NetworkEvent> clearOnLost(@NonNull final Observable<NetworkEvent> networkEvents) {
+        return NetworkEvent.clearOnLost(networkEvents, this);
+    }
+
+    @NonNull
+    private SlidingLatencyHistogram histogram(final long networkId) {
+        final Last last = this.last;
+        if (last != null && last.networkId == networkId) return last.histogram;
+
+        SlidingLatencyHistogram histogram = histograms.get(networkId);
+        if (histogram == null) {
+            final SlidingLatencyHistogram created = new SlidingLatencyHistogram(windowMillis, slices);
+            histogram = histograms.putIfAbsent(networkId, created);
+            if (histogram == null) histogram = created;
+        }
+        this.last = new Last(networkId, histogram);
+        return histogram;
+    }
+
+    private long now() {
+        return scheduler.now(TimeUnit.MILLISECONDS);
+    }
+}
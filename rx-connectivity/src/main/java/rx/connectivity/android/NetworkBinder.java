@@ -0,0 +1,273 @@
+/*
+ * Copyright (C) 2017, Andrew Chen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package rx.connectivity.android;
+
+import android.annotation.SuppressLint;
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.net.Network;
+import android.net.NetworkRequest;
+import android.os.Build;
+import android.support.annotation.RequiresApi;
+import android.support.annotation.RequiresPermission;
+import android.support.annotation.VisibleForTesting;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+import io.reactivex.Observable;
+import io.reactivex.ObservableEmitter;
+import io.reactivex.ObservableOnSubscribe;
+import io.reactivex.ObservableSource;
+import io.reactivex.annotations.CheckReturnValue;
+import io.reactivex.annotations.NonNull;
+import io.reactivex.annotations.Nullable;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.functions.Action;
+import io.reactivex.functions.Cancellable;
+import io.reactivex.functions.Consumer;
+import io.reactivex.functions.Function;
+
+import static android.Manifest.permission.ACCESS_NETWORK_STATE;
+
+/**
+ * Binds the process to networks only while subscribed.
+ *
+ * Subscribers of the same {@link NetworkRequest} share one binding. When bindings of different
+ * requests overlap, the latest one wins; once it ends the process goes back to the one before,
+ * and once all ended to whatever it was bound to before the first one.
+ */
+@RequiresApi(api = Build.VERSION_CODES.LOLLIPOP)
+public class NetworkBinder {
+    private static volatile NetworkBinder sInstance;
+
+    /**
+     * The process binding, {@link ConnectivityManager#bindProcessToNetwork} and friends.
+     */
+    interface ProcessBinding {
+        @Nullable
+        Network bound();
+
+        void bind(@Nullable Network network);
+    }
+
+    @Nullable
+    private final ConnectivityManager connectivityManager;
+    @NonNull
+    private final ProcessBinding processBinding;
+    @NonNull
+    private final Function<NetworkRequest, Observable<NetworkEvent>> networkEvents;
+    @NonNull
+    private final Map<NetworkRequest, Observable<Network>> shared = new HashMap<NetworkRequest, Observable<Network>>();
+    /**
+     * Network of each binding, null until available, in subscription order
+     */
+    @NonNull
+    private final LinkedHashMap<Object, Network> bindings = new LinkedHashMap<Object, Network>();
+    /**
+     * Network the process was bound to before the first binding
+     */
+    @Nullable
+    private Network original;
+    /**
+     * Network the process is bound to while bindings are active
+     */
+    @Nullable
+    private Network current;
+
+    @VisibleForTesting
+    NetworkBinder(@Nullable final ConnectivityManager connectivityManager,
+                  @NonNull final ProcessBinding processBinding,
+                  @NonNull final Function<NetworkRequest, Observable<NetworkEvent>> networkEvents) {
+        this.connectivityManager = connectivityManager;
+        this.processBinding = processBinding;
+        this.networkEvents = networkEvents;
+    }
+
+    /**
+     * @param context
+     * @return the binder of the process
+     */
+    @NonNull
+    public static NetworkBinder get(@NonNull final Context context) {
+        final ConnectivityManager connectivityManager = (ConnectivityManager)
+                context.getApplicationContext().getSystemService(Context.CONNECTIVITY_SERVICE);
+        NetworkBinder binder = sInstance;
+        if (binder == null || binder.connectivityManager != connectivityManager) {
+            synchronized (NetworkBinder.class) {
+                binder = sInstance;
+                if (binder == null || binder.connectivityManager != connectivityManager) {
+                    binder = new NetworkBinder(connectivityManager, new ProcessBinding() {
+                        @Nullable
+                        @Override
+                        @SuppressWarnings("deprecation")
+                        public Network bound() {
+                            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+                                return connectivityManager.getBoundNetworkForProcess();
+                            }
+                            return ConnectivityManager.getProcessDefaultNetwork();
+                        }
+
+                        @Override
+                        @SuppressLint("MissingPermission")
+                        public void bind(@Nullable final Network network) {
+                            RxConnectivity.defaultNetwork(connectivityManager, network);
+                        }
+                    }, new Function<NetworkRequest, Observable<NetworkEvent>>() {
+                        @Override
+                        @SuppressLint("MissingPermission")
+                        public Observable<NetworkEvent> apply(@NonNull NetworkRequest networkRequest) throws Exception {
+                            return RxConnectivity.networkEvents(connectivityManager, networkRequest);
+                        }
+                    });
+                    sInstance = binder;
+                }
+            }
+        }
+        return binder;
+    }
+
+    /**
+     * @param networkRequest
+     * @return the networks the process is bound to while subscribed
+     */
+    @NonNull
+    @CheckReturnValue
+    @RequiresPermission(ACCESS_NETWORK_STATE)
+    public Observable<Network> bindTo(@NonNull final NetworkRequest networkRequest) {
+        return Observable.defer(new Callable<ObservableSource<Network>>() {
+            @Override
+            public ObservableSource<Network> call() throws Exception {
+                synchronized (NetworkBinder.this) {
+                    Observable<Network> binding = shared.get(networkRequest);
+                    if (binding == null) {
+                        binding = binding(networkRequest);
+                        shared.put(networkRequest, binding);
+                    }
+                    return binding;
+                }
+            }
+        });
+    }
+
+    /**
+     * @return the network the process is bound to, null if no binding is active or available
+     */
+    @Nullable
+    public synchronized Network boundNetwork() {
+        return bindings.isEmpty() ? null : current;
+    }
+
+    @NonNull
+    private Observable<Network> binding(@NonNull final NetworkRequest networkRequest) throws Exception {
+        final Observable<NetworkEvent> events = networkEvents.apply(networkRequest);
+        return Observable.create(new ObservableOnSubscribe<Network>() {
+            @Override
+            public void subscribe(final ObservableEmitter<Network> emitter) throws Exception {
+                final Object token = new Object();
+                synchronized (NetworkBinder.this) {
+                    if (bindings.isEmpty()) {
+                        original = processBinding.bound();
+                        current = original;
+                    }
+                    bindings.put(token, null);
+                }
+                final Disposable disposable = events.subscribe(new Consumer<NetworkEvent>() {
+                    @Override
+                    public void accept(@NonNull NetworkEvent event) throws Exception {
+                        if (event.type == NetworkEvent.AVAILABLE) {
+                            update(token, event.network, null);
+                            emitter.onNext(event.network);
+                        } else if (event.type == NetworkEvent.LOST) {
+                            update(token, null, event.network);
+                        }
+                    }
+                }, new Consumer<Throwable>() {
+                    @Override
+                    public void accept(@NonNull Throwable e) throws Exception {
+                        emitter.onError(e);
+                    }
+                });
+                emitter.setCancellable(new Cancellable() {
+                    @Override
+                    public void cancel() throws Exception {
+                        disposable.dispose();
+                        release(token);
+                    }
+                });
+            }
+        })
+        .doFinally(new Action() {
+            @Override
+            public void run() throws Exception {
+                synchronized (NetworkBinder.this) {
+                    shared.remove(networkRequest);
+                }
+            }
+        })
+        .replay(1)
+        .refCount();
+    }
+
+    /**
+     * @param token
+     * @param available network that became available, or null
+     * @param lost network that was lost, or null
+     */
+    private synchronized void update(@NonNull final Object token,
+                                     @Nullable final Network available,
+                                     @Nullable final Network lost) {
+        if (!bindings.containsKey(token)) return;
+
+        if (available != null) {
+            bindings.put(token, available);
+        } else if (lost != null && lost.equals(bindings.get(token))) {
+            bindings.put(token, null);
+        }
+        apply();
+    }
+
+    private synchronized void release(@NonNull final Object token) {
+        bindings.remove(token);
+        apply();
+        if (bindings.isEmpty()) {
+            original = null;
+            current = null;
+        }
+    }
+
+    /**
+     * Binds the process to the latest available binding, or back to the original network.
+     */
+    private void apply() {
+        Network target = original;
+        final List<Network> networks = new ArrayList<Network>(bindings.values());
+        for (int i = networks.size() - 1; i >= 0; i--) {
+            if (networks.get(i) != null) {
+                target = networks.get(i);
+                break;
+            }
+        }
+        if (target == null ? current == null : target.equals(current)) return;
+
+        processBinding.bind(target);
+        current = target;
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright (C) 2017, Andrew Chen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package rx.connectivity.android;
+
+import android.net.LinkProperties;
+import android.net.Network;
+import android.net.NetworkCapabilities;
+import android.os.Build;
+import android.support.annotation.RequiresApi;
+
+import io.reactivex.Observable;
+import io.reactivex.annotations.NonNull;
+import io.reactivex.annotations.Nullable;
+import io.reactivex.functions.Consumer;
+import io.reactivex.functions.Predicate;
+
+/**
+ * One {@link android.net.ConnectivityManager.NetworkCallback} callback.
+ */
+@RequiresApi(api = Build.VERSION_CODES.LOLLIPOP)
+public class NetworkEvent {
+    public static final int AVAILABLE = 0;
+    public static final int LOSING = 1;
+    public static final int LOST = 2;
+    /**
+     * Only for requested networks, API 26+.
+     */
+    public static final int UNAVAILABLE = 3;
+    public static final int CAPABILITIES_CHANGED = 4;
+    public static final int LINK_PROPERTIES_CHANGED = 5;
+
+    @NetworkEventType
+    public final int type;
+    /**
+     * null for {@link #UNAVAILABLE}
+     */
+    @Nullable
+    public final Network network;
+    /**
+     * Only for {@link #CAPABILITIES_CHANGED}
+     */
+    @Nullable
+    public final NetworkCapabilities capabilities;
+    /**
+     * Only for {@link #LINK_PROPERTIES_CHANGED}
+     */
+    @Nullable
+    public final LinkProperties linkProperties;
+    /**
+     * Only for {@link #LOSING}
+     */
+    public final int maxMsToLive;
+
+    NetworkEvent(@NetworkEventType final int type,
+                 @Nullable final Network network,
+                 @Nullable final NetworkCapabilities capabilities,
+                 @Nullable final LinkProperties linkProperties,
+                 final int maxMsToLive) {
+        this.type = type;
+        this.network = network;
+        this.capabilities = capabilities;
+        this.linkProperties = linkProperties;
+        this.maxMsToLive = maxMsToLive;
+    }
+
+    @NonNull
+    static NetworkEvent available(@NonNull final Network network) {
+        return new NetworkEvent(AVAILABLE, network, null, null, 0);
+    }
+
+    @NonNull
+    static NetworkEvent losing(@NonNull final Network network, final int maxMsToLive) {
+        return new NetworkEvent(LOSING, network, null, null, maxMsToLive);
+    }
+
+    @NonNull
+    static NetworkEvent lost(@NonNull final Network network) {
+        return new NetworkEvent(LOST, network, null, null, 0);
+    }
+
+    @NonNull
+    static NetworkEvent unavailable() {
+        return new NetworkEvent(UNAVAILABLE, null, null, null, 0);
+    }
+
+    @NonNull
+    static NetworkEvent capabilitiesChanged(@NonNull final Network network,
+                                            @NonNull final NetworkCapabilities capabilities) {
+        return new NetworkEvent(CAPABILITIES_CHANGED, network, capabilities, null, 0);
+    }
+
+    @NonNull
+    static NetworkEvent linkPropertiesChanged(@NonNull final Network network,
+                                              @NonNull final LinkProperties linkProperties) {
+        return new NetworkEvent(LINK_PROPERTIES_CHANGED, network, null, linkProperties, 0);
+    }
+
+    /**
+     * @param networkEvents
+     * @param scoped
+     * @return the lost networks, forgotten by scoped, see {@link NetworkScoped}
+     */
+    @NonNull
+    static Observable<NetworkEvent> clearOnLost(@NonNull final Observable<NetworkEvent> networkEvents,
+                                                @NonNull final NetworkScoped scoped) {
+        return networkEvents
+                .filter(new Predicate<NetworkEvent>() {
+                    @Override
+                    public boolean test(@NonNull NetworkEvent event) throws Exception {
+                        return event.type == LOST;
+                    }
+                })
+                .doOnNext(new Consumer<NetworkEvent>() {
+                    @Override
+                    public void accept(@NonNull NetworkEvent event) throws Exception {
+                        final long networkId = ConnectivityState.networkId(event.network);
+                        if (networkId == ConnectivityState.NO_NETWORK_ID) {
+                            scoped.clear();
+                        } else {
+                            scoped.clear(networkId);
+                        }
+                    }
+                });
+    }
+
+    @Override
+    public String toString() {
+        final String name;
+        switch (type) {
+            case AVAILABLE: name = "AVAILABLE"; break;
+            case LOSING: name = "LOSING"; break;
+            case LOST: name = "LOST"; break;
+            case UNAVAILABLE: name = "UNAVAILABLE"; break;
+            case CAPABILITIES_CHANGED: name = "CAPABILITIES_CHANGED"; break;
+            case LINK_PROPERTIES_CHANGED: name = "LINK_PROPERTIES_CHANGED"; break;
+            default: name = String.valueOf(type); break;
+        }
+        return "NetworkEvent{" + name + ", network=" + network + "}";
+    }
+}
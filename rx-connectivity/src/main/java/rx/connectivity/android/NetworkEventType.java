@@ -0,0 +1,36 @@
+/*
+ * Copyright (C) 2017, Andrew Chen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package rx.connectivity.android;
+
+import android.support.annotation.IntDef;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+
+/**
+ * {@link android.net.ConnectivityManager.NetworkCallback} callbacks
+ */
+@IntDef(value = {
+        NetworkEvent.AVAILABLE,
+        NetworkEvent.LOSING,
+        NetworkEvent.LOST,
+        NetworkEvent.UNAVAILABLE,
+        NetworkEvent.CAPABILITIES_CHANGED,
+        NetworkEvent.LINK_PROPERTIES_CHANGED,
+})
+@Retention(RetentionPolicy.SOURCE)
+public @interface NetworkEventType {
+}
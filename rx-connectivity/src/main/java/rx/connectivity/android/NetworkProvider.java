@@ -0,0 +1,31 @@
+/*
+ * Copyright (C) 2017, Andrew Chen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package rx.connectivity.android;
+
+import java.util.List;
+
+import io.reactivex.annotations.NonNull;
+
+/**
+ * Networks to connect over, {@link SystemNetworkProvider} for the system ones.
+ */
+public interface NetworkProvider {
+    /**
+     * @return the usable networks, in order of preference
+     */
+    @NonNull
+    List<NetworkRoute> routes();
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright (C) 2017, Andrew Chen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package rx.connectivity.android;
+
+import android.net.Network;
+import android.os.Build;
+import android.support.annotation.RequiresApi;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.channels.SocketChannel;
+
+import javax.net.SocketFactory;
+
+import io.reactivex.annotations.NonNull;
+import io.reactivex.annotations.Nullable;
+
+/**
+ * A network sockets can be bound to, so connections go through it whatever the default network is.
+ *
+ * {@link #of(Network)} for system networks, subclass to fake one.
+ */
+public abstract class NetworkRoute {
+    /**
+     * {@link ConnectivityState#networkId} of the network
+     */
+    public final long networkId;
+    @NonNull
+    public final String name;
+
+    protected NetworkRoute(final long networkId, @NonNull final String name) {
+        this.networkId = networkId;
+        this.name = name;
+    }
+
+    /**
+     * @param network
+     * @return a route over the system network, with {@link Network#bindSocket}
+     */
+    @NonNull
+    @RequiresApi(api = Build.VERSION_CODES.M)
+    public static NetworkRoute of(@NonNull final Network network) {
+        return of(network, "network" + network.getNetworkHandle());
+    }
+
+    /**
+     * @param network
+     * @param name
+     * @return a route over the system network, with {@link Network#bindSocket}
+     */
+    @NonNull
+    @RequiresApi(api = Build.VERSION_CODES.M)
+    public static NetworkRoute of(@NonNull final Network network, @NonNull final String name) {
+        return new NetworkRoute(network.getNetworkHandle(), name) {
+            @Override
+            public void bind(@NonNull SocketChannel channel) throws IOException {
+                network.bindSocket(channel.socket());
+            }
+
+            @NonNull
+            @Override
+            public InetAddress[] resolve(@NonNull String host) throws UnknownHostException {
+                return network.getAllByName(host);
+            }
+
+            @NonNull
+            @Override
+            public SocketFactory socketFactory() {
+                return network.getSocketFactory();
+            }
+
+            @Nullable
+            @Override
+            public Network network() {
+                return network;
+            }
+        };
+    }
+
+    /**
+     * Binds the channel before it connects.
+     *
+     * @param channel unconnected
+     * @throws IOException if the network is gone
+     */
+    public abstract void bind(@NonNull SocketChannel channel) throws IOException;
+
+    /**
+     * Blocking lookup with the DNS servers of the network, see {@link DnsResolver}.
+     *
+     * @param host
+     * @return the addresses of the host
+     * @throws UnknownHostException if the network does not resolve the host
+     */
+    @NonNull
+    public InetAddress[] resolve(@NonNull final String host) throws UnknownHostException {
+        return InetAddress.getAllByName(host);
+    }
+
+    /**
+     * @return factory of blocking sockets bound to the network, for HTTP clients
+     */
+    @NonNull
+    public SocketFactory socketFactory() {
+        return SocketFactory.getDefault();
+    }
+
+    /**
+     * @return the system network, null for a fake one
+     */
+    @Nullable
+    public Network network() {
+        return null;
+    }
+
+    @Override
+    public String toString() {
+        return "NetworkRoute{" + name + "}";
+    }
+}
@@ -0,0 +1,37 @@
+/*
+ * Copyright (C) 2017, Andrew Chen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package rx.connectivity.android;
+
+/**
+ * State of the process kept per network, like {@link RttRegistry} and {@link LatencyStats}.
+ *
+ * A network is forgotten on {@link NetworkEvent#LOST} while {@link NetworkEvent#clearOnLost} is
+ * subscribed, as {@link RxConnectivity#latency} does; before M, when networks have no id, any lost
+ * network forgets them all.
+ */
+public interface NetworkScoped {
+    /**
+     * Forgets a network, e.g. once it is lost.
+     *
+     * @param networkId {@link ConnectivityState#networkId}
+     */
+    void clear(long networkId);
+
+    /**
+     * Forgets every network.
+     */
+    void clear();
+}
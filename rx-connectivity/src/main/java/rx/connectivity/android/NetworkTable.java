@@ -0,0 +1,232 @@
+/*
+ * Copyright (C) 2017, Andrew Chen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package rx.connectivity.android;
+
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.net.LinkProperties;
+import android.net.Network;
+import android.net.NetworkCapabilities;
+import android.net.NetworkRequest;
+import android.os.Build;
+import android.support.annotation.RequiresApi;
+import android.support.annotation.RequiresPermission;
+import android.support.annotation.VisibleForTesting;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import io.reactivex.Observable;
+import io.reactivex.annotations.CheckReturnValue;
+import io.reactivex.annotations.NonNull;
+import io.reactivex.annotations.Nullable;
+import io.reactivex.functions.Action;
+import io.reactivex.functions.Function;
+import io.reactivex.functions.Predicate;
+
+import static android.Manifest.permission.ACCESS_NETWORK_STATE;
+
+/**
+ * Live table of the current networks with their capabilities and link properties.
+ *
+ * The table is an immutable map swapped on every change, so {@link #snapshot()} is a cheap
+ * volatile read from any thread, no binder call involved. It is only maintained while someone
+ * subscribes to {@link #changes()}.
+ */
+@RequiresApi(api = Build.VERSION_CODES.LOLLIPOP)
+public class NetworkTable {
+    private static volatile NetworkTable sInstance;
+
+    @Nullable
+    private final ConnectivityManager connectivityManager;
+    @NonNull
+    private final Observable<Map<Network, Entry>> changes;
+    @NonNull
+    private volatile Map<Network, Entry> snapshot = Collections.emptyMap();
+
+    /**
+     * Immutable state of one network.
+     */
+    public static class Entry {
+        @NonNull
+        public final Network network;
+        /**
+         * null until the first {@link NetworkEvent#CAPABILITIES_CHANGED}
+         */
+        @Nullable
+        public final NetworkCapabilities capabilities;
+        /**
+         * null until the first {@link NetworkEvent#LINK_PROPERTIES_CHANGED}
+         */
+        @Nullable
+        public final LinkProperties linkProperties;
+        public final boolean losing;
+
+        Entry(@NonNull final Network network,
+              @Nullable final NetworkCapabilities capabilities,
+              @Nullable final LinkProperties linkProperties,
+              final boolean losing) {
+            this.network = network;
+            this.capabilities = capabilities;
+            this.linkProperties = linkProperties;
+            this.losing = losing;
+        }
+
+        @Override
+        public String toString() {
+            return "Entry{" + network + (losing ? ", losing" : "") + ", " + capabilities + "}";
+        }
+    }
+
+    @VisibleForTesting
+    NetworkTable(@Nullable final ConnectivityManager connectivityManager,
+                 @NonNull final Observable<NetworkEvent> events) {
+        this.connectivityManager = connectivityManager;
+        this.changes = events
+                .map(new Function<NetworkEvent, Boolean>() {
+                    @Override
+                    public Boolean apply(@NonNull final NetworkEvent event) throws Exception {
+                        return update(event);
+                    }
+                })
+                .filter(new Predicate<Boolean>() {
+                    @Override
+                    public boolean test(@NonNull final Boolean changed) throws Exception {
+                        return changed;
+                    }
+                })
+                .map(new Function<Boolean, Map<Network, Entry>>() {
+                    @Override
+                    public Map<Network, Entry> apply(@NonNull final Boolean changed) throws Exception {
+                        return snapshot;
+                    }
+                })
+                .doFinally(new Action() {
+                    @Override
+                    public void run() throws Exception {
+                        snapshot = Collections.emptyMap();
+                    }
+                })
+                .replay(1)
+                .refCount();
+    }
+
+    /**
+     * @param context
+     * @return the table of every network, whether it provides internet or not
+     */
+    @NonNull
+    @RequiresPermission(ACCESS_NETWORK_STATE)
+    public static NetworkTable get(@NonNull final Context context) {
+        final ConnectivityManager connectivityManager = (ConnectivityManager)
+                context.getApplicationContext().getSystemService(Context.CONNECTIVITY_SERVICE);
+        NetworkTable table = sInstance;
+        if (table == null || table.connectivityManager != connectivityManager) {
+            synchronized (NetworkTable.class) {
+                table = sInstance;
+                if (table == null || table.connectivityManager != connectivityManager) {
+                    table = new NetworkTable(connectivityManager,
+                            RxConnectivity.networkEvents(connectivityManager, allNetworks()));
+                    sInstance = table;
+                }
+            }
+        }
+        return table;
+    }
+
+    @NonNull
+    static NetworkRequest allNetworks() {
+        return new NetworkRequest.Builder()
+                .removeCapability(NetworkCapabilities.NET_CAPABILITY_INTERNET)
+                .build();
+    }
+
+    /**
+     * @return the table after each change, replaying the latest one
+     */
+    @NonNull
+    @CheckReturnValue
+    @RequiresPermission(ACCESS_NETWORK_STATE)
+    public Observable<Map<Network, Entry>> changes() {
+        return changes;
+    }
+
+    /**
+     * @return the current networks, empty if nobody subscribes to {@link #changes()}
+     */
+    @NonNull
+    public Map<Network, Entry> snapshot() {
+        return snapshot;
+    }
+
+    /**
+     * @param network
+     * @return
+     */
+    @Nullable
+    public Entry get(@NonNull final Network network) {
+        return snapshot.get(network);
+    }
+
+    /**
+     * @return true if the table changed
+     */
+    private synchronized boolean update(@NonNull final NetworkEvent event) {
+        if (event.network == null) return false;
+
+        final Entry entry = snapshot.get(event.network);
+        final Entry updated;
+        switch (event.type) {
+            case NetworkEvent.AVAILABLE:
+                updated = entry != null
+                        ? new Entry(event.network, entry.capabilities, entry.linkProperties, false)
+                        : new Entry(event.network, null, null, false);
+                break;
+            case NetworkEvent.LOSING:
+                updated = entry != null
+                        ? new Entry(event.network, entry.capabilities, entry.linkProperties, true)
+                        : new Entry(event.network, null, null, true);
+                break;
+            case NetworkEvent.CAPABILITIES_CHANGED:
+                updated = new Entry(event.network, event.capabilities,
+                        entry != null ? entry.linkProperties : null,
+                        entry != null && entry.losing);
+                break;
+            case NetworkEvent.LINK_PROPERTIES_CHANGED:
+                updated = new Entry(event.network,
+                        entry != null ? entry.capabilities : null,
+                        event.linkProperties,
+                        entry != null && entry.losing);
+                break;
+            case NetworkEvent.LOST:
+                if (entry == null) return false;
+                updated = null;
+                break;
+            default:
+                return false;
+        }
+
+        final Map<Network, Entry> table = new HashMap<Network, Entry>(snapshot);
+        if (updated != null) {
+            table.put(event.network, updated);
+        } else {
+            table.remove(event.network);
+        }
+        snapshot = Collections.unmodifiableMap(table);
+        return true;
+    }
+}
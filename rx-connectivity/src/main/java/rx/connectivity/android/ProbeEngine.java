@@ -0,0 +1,690 @@
+/*
+ * Copyright (C) 2017, Andrew Chen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package rx.connectivity.android;
+
+import android.annotation.SuppressLint;
+import android.support.annotation.RequiresPermission;
+import android.support.annotation.VisibleForTesting;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.NoRouteToHostException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import io.reactivex.Scheduler;
+import io.reactivex.Single;
+import io.reactivex.SingleEmitter;
+import io.reactivex.SingleOnSubscribe;
+import io.reactivex.SingleSource;
+import io.reactivex.annotations.CheckReturnValue;
+import io.reactivex.annotations.NonNull;
+import io.reactivex.annotations.Nullable;
+import io.reactivex.disposables.CompositeDisposable;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.functions.Cancellable;
+import io.reactivex.functions.Consumer;
+import io.reactivex.functions.Function;
+import io.reactivex.schedulers.Schedulers;
+
+import static android.Manifest.permission.INTERNET;
+
+/**
+ * Non-blocking TCP connect probes, all driven by a single {@link Selector} thread.
+ *
+ * {@link #race} connects to several endpoints happy-eyeballs style (RFC 8305): attempts start
+ * one {@code attemptDelay} apart, or right away when the previous one fails, the first
+ * established connection wins and every other attempt is closed at once.
+ *
+ * Connections can be bound to a {@link NetworkRoute}, and {@link #raceNetworks} races the same
+ * connection over several networks.
+ */
+public class ProbeEngine {
+    public static final long DEFAULT_ATTEMPT_DELAY_MILLIS = 250L;
+    public static final long DEFAULT_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(5);
+
+    private static volatile ProbeEngine sInstance;
+
+    private static final Consumer<Connection> CLOSE = new Consumer<Connection>() {
+        @Override
+        public void accept(@NonNull Connection connection) throws Exception {
+            connection.close();
+        }
+    };
+
+    @NonNull
+    private final Scheduler scheduler;
+    @NonNull
+    private final DnsResolver resolver;
+    @NonNull
+    private final ConcurrentLinkedQueue<Runnable> tasks = new ConcurrentLinkedQueue<Runnable>();
+    @Nullable
+    private Selector selector;
+    @Nullable
+    private Thread thread;
+
+    @VisibleForTesting
+    ProbeEngine(@NonNull final Scheduler scheduler, @NonNull final DnsResolver resolver) {
+        this.scheduler = scheduler;
+        this.resolver = resolver;
+    }
+
+    /**
+     * @return the engine shared by the whole process, its thread starts with the first probe
+     */
+    @NonNull
+    public static ProbeEngine get() {
+        ProbeEngine engine = sInstance;
+        if (engine == null) {
+            synchronized (ProbeEngine.class) {
+                engine = sInstance;
+                if (engine == null) {
+                    engine = new ProbeEngine(Schedulers.computation(), DnsResolver.get());
+                    sInstance = engine;
+                }
+            }
+        }
+        return engine;
+    }
+
+    /**
+     * Resolves the host with {@link DnsResolver}, then races its addresses alternating address families.
+     *
+     * @param host
+     * @param port
+     * @param timeout
+     * @param unit
+     * @return
+     */
+    @NonNull
+    @CheckReturnValue
+    @RequiresPermission(INTERNET)
+    public Single<ProbeResult> race(@NonNull final String host,
+                                    final int port,
+                                    final long timeout,
+                                    @NonNull final TimeUnit unit) {
+        return race(host, port, null, timeout, unit);
+    }
+
+    /**
+     * Same as {@link #race(String, int, long, TimeUnit)}, through the given network, resolving the
+     * host with its DNS servers.
+     *
+     * @param host
+     * @param port
+     * @param route null for the default network
+     * @param timeout
+     * @param unit
+     * @return
+     */
+    @NonNull
+    @CheckReturnValue
+    @RequiresPermission(INTERNET)
+    public Single<ProbeResult> race(@NonNull final String host,
+                                    final int port,
+                                    @Nullable final NetworkRoute route,
+                                    final long timeout,
+                                    @NonNull final TimeUnit unit) {
+        return resolver.resolve(host, route)
+                .flatMap(new Function<List<InetAddress>, SingleSource<ProbeResult>>() {
+                    @Override
+                    public SingleSource<ProbeResult> apply(@NonNull List<InetAddress> addresses) throws Exception {
+                        return race(endpoints(interleave(addresses), port), route,
+                                DEFAULT_ATTEMPT_DELAY_MILLIS, TimeUnit.MILLISECONDS)
+                                .timeout(timeout, unit, scheduler);
+                    }
+                });
+    }
+
+    /**
+     * @param endpoints in order of preference
+     * @param attemptDelay delay before starting the next attempt while the previous one is pending
+     * @param unit
+     * @return the first endpoint that accepted a connection, or the error of the last attempt.
+     * Attempts do not time out on their own, apply {@link Single#timeout} to the race.
+     */
+    @NonNull
+    @CheckReturnValue
+    @RequiresPermission(INTERNET)
+    public Single<ProbeResult> race(@NonNull final List<InetSocketAddress> endpoints,
+                                    final long attemptDelay,
+                                    @NonNull final TimeUnit unit) {
+        return race(endpoints, null, attemptDelay, unit);
+    }
+
+    /**
+     * Same as {@link #race(List, long, TimeUnit)}, through the given network.
+     *
+     * @param endpoints in order of preference
+     * @param route null for the default network
+     * @param attemptDelay
+     * @param unit
+     * @return
+     */
+    @NonNull
+    @CheckReturnValue
+    @RequiresPermission(INTERNET)
+    public Single<ProbeResult> race(@NonNull final List<InetSocketAddress> endpoints,
+                                    @Nullable final NetworkRoute route,
+                                    final long attemptDelay,
+                                    @NonNull final TimeUnit unit) {
+        if (endpoints.isEmpty()) {
+            return Single.error(new IllegalArgumentException("no endpoints"));
+        }
+        final List<Single<ProbeResult>> attempts = new ArrayList<Single<ProbeResult>>(endpoints.size());
+        for (InetSocketAddress endpoint : endpoints) {
+            attempts.add(connect(endpoint, route));
+        }
+        return race(attempts, attemptDelay, unit, null);
+    }
+
+    /**
+     * Opens the same connection on every network at once, each one racing the addresses the network
+     * resolves the host to as {@link #race(String, int, NetworkRoute, long, TimeUnit)}. The first
+     * established connection wins, every other one is closed.
+     *
+     * @param routes
+     * @param host
+     * @param port
+     * @param timeout
+     * @param unit
+     * @return the fastest connection, or the error of the last network
+     */
+    @NonNull
+    @CheckReturnValue
+    @RequiresPermission(INTERNET)
+    public Single<Connection> raceNetworks(@NonNull final List<NetworkRoute> routes,
+                                           @NonNull final String host,
+                                           final int port,
+                                           final long timeout,
+                                           @NonNull final TimeUnit unit) {
+        if (routes.isEmpty()) {
+            return Single.error(new NoRouteToHostException("no networks"));
+        }
+        final List<Single<Connection>> networks = new ArrayList<Single<Connection>>(routes.size());
+        for (NetworkRoute route : routes) {
+            networks.add(resolveAndOpen(host, port, route));
+        }
+        return race(networks, 0L, TimeUnit.MILLISECONDS, CLOSE)
+                .timeout(timeout, unit, scheduler);
+    }
+
+    /**
+     * Same as {@link #race(String, int, NetworkRoute, long, TimeUnit)}, keeping the connection.
+     *
+     * @param host
+     * @param port
+     * @param route null for the default network
+     * @param timeout
+     * @param unit
+     * @return the first established connection, every other one is closed
+     */
+    @NonNull
+    @CheckReturnValue
+    @RequiresPermission(INTERNET)
+    public Single<Connection> open(@NonNull final String host,
+                                   final int port,
+                                   @Nullable final NetworkRoute route,
+                                   final long timeout,
+                                   @NonNull final TimeUnit unit) {
+        return resolveAndOpen(host, port, route).timeout(timeout, unit, scheduler);
+    }
+
+    @NonNull
+    @RequiresPermission(INTERNET)
+    private Single<Connection> resolveAndOpen(@NonNull final String host,
+                                              final int port,
+                                              @Nullable final NetworkRoute route) {
+        return resolver.resolve(host, route)
+                .flatMap(new Function<List<InetAddress>, SingleSource<Connection>>() {
+                    @Override
+                    @SuppressLint("MissingPermission")
+                    public SingleSource<Connection> apply(@NonNull List<InetAddress> addresses) throws Exception {
+                        return open(endpoints(interleave(addresses), port), route);
+                    }
+                });
+    }
+
+    /**
+     * @param endpoint
+     * @return the endpoint once it accepted a connection, which is closed right away
+     */
+    @NonNull
+    @CheckReturnValue
+    @RequiresPermission(INTERNET)
+    public Single<ProbeResult> connect(@NonNull final InetSocketAddress endpoint) {
+        return connect(endpoint, null);
+    }
+
+    /**
+     * @param endpoint
+     * @param route null for the default network
+     * @return the endpoint once it accepted a connection through the network, which is closed right away
+     */
+    @NonNull
+    @CheckReturnValue
+    @RequiresPermission(INTERNET)
+    public Single<ProbeResult> connect(@NonNull final InetSocketAddress endpoint,
+                                       @Nullable final NetworkRoute route) {
+        return open(endpoint, route).map(new Function<Connection, ProbeResult>() {
+            @Override
+            public ProbeResult apply(@NonNull Connection connection) throws Exception {
+                connection.close();
+                return connection.result();
+            }
+        });
+    }
+
+    /**
+     * @param endpoint
+     * @param route null for the default network
+     * @return the connection once established, closed if disposed before
+     */
+    @NonNull
+    @CheckReturnValue
+    @RequiresPermission(INTERNET)
+    public Single<Connection> open(@NonNull final InetSocketAddress endpoint,
+                                   @Nullable final NetworkRoute route) {
+        return Single.create(new SingleOnSubscribe<Connection>() {
+            @Override
+            public void subscribe(final SingleEmitter<Connection> emitter) throws Exception {
+                final SocketChannel channel = SocketChannel.open();
+                final Attempt attempt = new Attempt(emitter, channel, endpoint, route);
+                emitter.setCancellable(attempt);
+                channel.configureBlocking(false);
+
+                if (endpoint.isUnresolved()) {
+                    throw new ConnectException("Unresolved " + endpoint);
+                }
+                if (route != null) {
+                    route.bind(channel);
+                }
+                if (channel.connect(endpoint)) {
+                    attempt.succeed(System.nanoTime() - attempt.start);
+                    return;
+                }
+                execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (emitter.isDisposed()) return;
+                        try {
+                            channel.register(selector(), SelectionKey.OP_CONNECT, attempt);
+                        } catch (IOException e) {
+                            attempt.fail(e);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    @NonNull
+    @RequiresPermission(INTERNET)
+    private Single<Connection> open(@NonNull final List<InetSocketAddress> endpoints,
+                                    @Nullable final NetworkRoute route) {
+        final List<Single<Connection>> attempts = new ArrayList<Single<Connection>>(endpoints.size());
+        for (InetSocketAddress endpoint : endpoints) {
+            attempts.add(open(endpoint, route));
+        }
+        return race(attempts, DEFAULT_ATTEMPT_DELAY_MILLIS, TimeUnit.MILLISECONDS, CLOSE);
+    }
+
+    /**
+     * @param attempts in order of preference
+     * @param attemptDelay 0 to start all at once
+     * @param unit
+     * @param discard of winners that lost to an earlier one
+     * @return
+     */
+    @NonNull
+    private <T> Single<T> race(@NonNull final List<Single<T>> attempts,
+                               final long attemptDelay,
+                               @NonNull final TimeUnit unit,
+                               @Nullable final Consumer<? super T> discard) {
+        return Single.create(new SingleOnSubscribe<T>() {
+            @Override
+            public void subscribe(final SingleEmitter<T> emitter) throws Exception {
+                final Race<T> race = new Race<T>(attempts, attemptDelay, unit, discard, emitter);
+                emitter.setDisposable(race);
+                race.start();
+            }
+        });
+    }
+
+    /**
+     * Orders addresses alternating address families, starting with the family of the first one.
+     *
+     * @param addresses
+     * @return
+     */
+    @NonNull
+    static List<InetAddress> interleave(@NonNull final List<InetAddress> addresses) {
+        if (addresses.size() < 2) return addresses;
+
+        final List<InetAddress> first = new ArrayList<InetAddress>();
+        final List<InetAddress> second = new ArrayList<InetAddress>();
+        final boolean firstIs6 = addresses.get(0) instanceof Inet6Address;
+        for (InetAddress address : addresses) {
+            if ((address instanceof Inet6Address) == firstIs6) {
+                first.add(address);
+            } else {
+                second.add(address);
+            }
+        }
+
+        final List<InetAddress> interleaved = new ArrayList<InetAddress>(addresses.size());
+        for (int i = 0; i < Math.max(first.size(), second.size()); i++) {
+            if (i < first.size()) interleaved.add(first.get(i));
+            if (i < second.size()) interleaved.add(second.get(i));
+        }
+        return interleaved;
+    }
+
+    @NonNull
+    static List<InetSocketAddress> endpoints(@NonNull final List<InetAddress> addresses, final int port) {
+        final List<InetSocketAddress> endpoints = new ArrayList<InetSocketAddress>(addresses.size());
+        for (InetAddress address : addresses) {
+            endpoints.add(new InetSocketAddress(address, port));
+        }
+        return endpoints;
+    }
+
+    static void closeQuietly(@Nullable final Closeable closeable) {
+        if (closeable == null) return;
+        try {
+            closeable.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    /**
+     * Runs the task on the selector thread, starting it if needed.
+     */
+    private void execute(@NonNull final Runnable task) throws IOException {
+        tasks.add(task);
+        selector().wakeup();
+    }
+
+    @NonNull
+    private synchronized Selector selector() throws IOException {
+        if (selector == null) {
+            selector = Selector.open();
+            thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    loop();
+                }
+            }, "rx-connectivity-probe");
+            thread.setDaemon(true);
+            thread.start();
+        }
+        return selector;
+    }
+
+    private void loop() {
+        final Selector selector;
+        synchronized (this) {
+            selector = this.selector;
+        }
+        if (selector == null) return;
+
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                selector.select();
+            } catch (IOException e) {
+                // A broken selector fails every select() at once, spinning the thread
+                abandon(selector, e);
+                return;
+            }
+
+            Runnable task;
+            while ((task = tasks.poll()) != null) {
+                task.run();
+            }
+
+            final Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+            while (keys.hasNext()) {
+                final SelectionKey key = keys.next();
+                keys.remove();
+                if (key.isValid() && key.isConnectable()) {
+                    ((Attempt) key.attachment()).finishConnect(key);
+                }
+            }
+        }
+    }
+
+    /**
+     * Fails the attempts registered with the broken selector, the next probe opens a new one.
+     *
+     * On the selector thread, which exits right after.
+     */
+    private void abandon(@NonNull final Selector selector, @NonNull final IOException e) {
+        synchronized (this) {
+            if (this.selector == selector) {
+                this.selector = null;
+                thread = null;
+            }
+        }
+        for (SelectionKey key : selector.keys()) {
+            ((Attempt) key.attachment()).fail(e);
+        }
+        closeQuietly(selector);
+
+        // Tasks queued meanwhile would wait for the next probe
+        if (tasks.isEmpty()) return;
+        try {
+            selector().wakeup();
+        } catch (IOException reopen) {
+            // Registrations fail on their own without a selector
+            Runnable task;
+            while ((task = tasks.poll()) != null) {
+                task.run();
+            }
+        }
+    }
+
+    /**
+     * One connect, the channel goes to whoever settles it first: the subscriber or the cancellation.
+     */
+    private class Attempt implements Cancellable {
+        @NonNull
+        final SingleEmitter<Connection> emitter;
+        @NonNull
+        final SocketChannel channel;
+        @NonNull
+        final InetSocketAddress endpoint;
+        @Nullable
+        final NetworkRoute route;
+        final long start = System.nanoTime();
+        @NonNull
+        final AtomicBoolean settled = new AtomicBoolean();
+
+        Attempt(@NonNull final SingleEmitter<Connection> emitter,
+                @NonNull final SocketChannel channel,
+                @NonNull final InetSocketAddress endpoint,
+                @Nullable final NetworkRoute route) {
+            this.emitter = emitter;
+            this.channel = channel;
+            this.endpoint = endpoint;
+            this.route = route;
+        }
+
+        /**
+         * On the selector thread.
+         */
+        void finishConnect(@NonNull final SelectionKey key) {
+            try {
+                if (!channel.finishConnect()) return;
+            } catch (IOException e) {
+                key.cancel();
+                fail(e);
+                return;
+            }
+            final long rttNanos = System.nanoTime() - start;
+            key.cancel();
+            // The key is only deregistered by the next select(), the channel cannot go blocking before
+            tasks.add(new Runnable() {
+                @Override
+                public void run() {
+                    succeed(rttNanos);
+                }
+            });
+            key.selector().wakeup();
+        }
+
+        void succeed(final long rttNanos) {
+            if (settled.compareAndSet(false, true)) {
+                emitter.onSuccess(new Connection(channel, endpoint, rttNanos, route));
+            }
+        }
+
+        void fail(@NonNull final IOException e) {
+            if (settled.compareAndSet(false, true)) {
+                closeQuietly(channel);
+                emitter.onError(e);
+            }
+        }
+
+        @Override
+        public void cancel() throws Exception {
+            if (settled.compareAndSet(false, true)) {
+                closeQuietly(channel);
+            }
+        }
+    }
+
+    /**
+     * One happy-eyeballs race, all state guarded by itself.
+     */
+    private class Race<T> implements Disposable {
+        @NonNull
+        final List<Single<T>> attempts;
+        final long attemptDelay;
+        @NonNull
+        final TimeUnit unit;
+        @Nullable
+        final Consumer<? super T> discard;
+        @NonNull
+        final SingleEmitter<T> emitter;
+        @NonNull
+        final CompositeDisposable running = new CompositeDisposable();
+        @Nullable
+        Disposable timer;
+        int started;
+        int failed;
+        boolean done;
+
+        Race(@NonNull final List<Single<T>> attempts,
+             final long attemptDelay,
+             @NonNull final TimeUnit unit,
+             @Nullable final Consumer<? super T> discard,
+             @NonNull final SingleEmitter<T> emitter) {
+            this.attempts = Collections.unmodifiableList(new ArrayList<Single<T>>(attempts));
+            this.attemptDelay = attemptDelay;
+            this.unit = unit;
+            this.discard = discard;
+            this.emitter = emitter;
+        }
+
+        void start() {
+            if (attempts.isEmpty()) {
+                emitter.onError(new IllegalArgumentException("no attempts"));
+            } else if (attemptDelay <= 0) {
+                for (int i = 0; i < attempts.size(); i++) next();
+            } else {
+                next();
+            }
+        }
+
+        /**
+         * Starts the next attempt, and schedules the one after.
+         */
+        void next() {
+            final Single<T> attempt;
+            synchronized (this) {
+                if (done || started >= attempts.size()) return;
+                attempt = attempts.get(started++);
+                if (timer != null) timer.dispose();
+                timer = attemptDelay > 0 && started < attempts.size() ? scheduler.scheduleDirect(new Runnable() {
+                    @Override
+                    public void run() {
+                        next();
+                    }
+                }, attemptDelay, unit) : null;
+            }
+
+            running.add(attempt.subscribe(new Consumer<T>() {
+                @Override
+                public void accept(T result) throws Exception {
+                    final boolean late;
+                    synchronized (Race.this) {
+                        late = done;
+                        done = true;
+                    }
+                    if (late) {
+                        if (discard != null) discard.accept(result);
+                        return;
+                    }
+                    dispose();
+                    emitter.onSuccess(result);
+                }
+            }, new Consumer<Throwable>() {
+                @Override
+                public void accept(Throwable e) throws Exception {
+                    final boolean last;
+                    synchronized (Race.this) {
+                        if (done) return;
+                        failed++;
+                        last = failed == attempts.size();
+                        if (last) done = true;
+                    }
+                    if (last) {
+                        dispose();
+                        emitter.onError(e);
+                    } else {
+                        next();
+                    }
+                }
+            }));
+        }
+
+        @Override
+        public void dispose() {
+            synchronized (this) {
+                done = true;
+                if (timer != null) timer.dispose();
+            }
+            running.dispose();
+        }
+
+        @Override
+        public boolean isDisposed() {
+            return running.isDisposed();
+        }
+    }
+}
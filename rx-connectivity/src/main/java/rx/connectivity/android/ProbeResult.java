@@ -0,0 +1,53 @@
+/*
+ * Copyright (C) 2017, Andrew Chen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package rx.connectivity.android;
+
+import java.net.InetSocketAddress;
+
+import io.reactivex.annotations.NonNull;
+import io.reactivex.annotations.Nullable;
+
+/**
+ * Endpoint that accepted the connection first, and how long the TCP handshake took.
+ */
+public class ProbeResult {
+    @NonNull
+    public final InetSocketAddress address;
+    public final long rttNanos;
+    /**
+     * Network the probe went through, null for the default one
+     */
+    @Nullable
+    public final NetworkRoute route;
+
+    ProbeResult(@NonNull final InetSocketAddress address, final long rttNanos) {
+        this(address, rttNanos, null);
+    }
+
+    ProbeResult(@NonNull final InetSocketAddress address,
+                final long rttNanos,
+                @Nullable final NetworkRoute route) {
+        this.address = address;
+        this.rttNanos = rttNanos;
+        this.route = route;
+    }
+
+    @Override
+    public String toString() {
+        return "ProbeResult{" + address + (route != null ? " via " + route.name : "")
+                + ", rtt=" + rttNanos / 1000 + "us}";
+    }
+}
@@ -0,0 +1,248 @@
+/*
+ * Copyright (C) 2017, Andrew Chen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package rx.connectivity.android;
+
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.os.Build;
+import android.support.annotation.RequiresApi;
+import android.support.annotation.RequiresPermission;
+import android.support.annotation.VisibleForTesting;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.Observable;
+import io.reactivex.Scheduler;
+import io.reactivex.Single;
+import io.reactivex.SingleSource;
+import io.reactivex.annotations.CheckReturnValue;
+import io.reactivex.annotations.NonNull;
+import io.reactivex.annotations.Nullable;
+import io.reactivex.functions.BiConsumer;
+import io.reactivex.functions.Consumer;
+import io.reactivex.functions.Predicate;
+import io.reactivex.schedulers.Schedulers;
+
+import static android.Manifest.permission.ACCESS_NETWORK_STATE;
+import static android.Manifest.permission.INTERNET;
+
+/**
+ * Caches internet reachability per network id for a TTL.
+ *
+ * Only one probe per network runs at a time, concurrent callers share its result. Entries of a
+ * network are dropped on {@link NetworkEvent#LOST} and {@link NetworkEvent#CAPABILITIES_CHANGED}
+ * while {@link #invalidations()} is subscribed; before M, when networks have no id, any such
+ * event drops every entry.
+ */
+public class ReachabilityCache {
+    public static final long DEFAULT_TTL_MILLIS = TimeUnit.SECONDS.toMillis(30);
+    public static final String DEFAULT_PROBE_HOST = "connectivitycheck.android.com";
+    public static final int DEFAULT_PROBE_PORT = 80;
+
+    private static volatile ReachabilityCache sInstance;
+
+    @NonNull
+    private final Callable<Boolean> probe;
+    @NonNull
+    private final Scheduler scheduler;
+    private final long ttlMillis;
+    @NonNull
+    private final Map<Long, Entry> entries = new HashMap<Long, Entry>();
+    @NonNull
+    private final Map<Long, Probe> probes = new HashMap<Long, Probe>();
+    @Nullable
+    private final Observable<NetworkEvent> invalidations;
+    private int probeCount;
+
+    private static class Entry {
+        final boolean reachable;
+        final long expiresAt;
+
+        Entry(final boolean reachable, final long expiresAt) {
+            this.reachable = reachable;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private static class Probe {
+        Single<Boolean> reachable;
+    }
+
+    /**
+     * @param probe blocking reachability check
+     * @param scheduler scheduler the probe runs on, also the clock of the TTL
+     * @param ttlMillis
+     * @param networkEvents events to invalidate on, null for none
+     */
+    @VisibleForTesting
+    ReachabilityCache(@NonNull final Callable<Boolean> probe,
+                      @NonNull final Scheduler scheduler,
+                      final long ttlMillis,
+                      @Nullable final Observable<NetworkEvent> networkEvents) {
+        this.probe = probe;
+        this.scheduler = scheduler;
+        this.ttlMillis = ttlMillis;
+        this.invalidations = networkEvents == null ? null : networkEvents
+                .filter(new Predicate<NetworkEvent>() {
+                    @Override
+                    public boolean test(@NonNull NetworkEvent event) throws Exception {
+                        return event.type == NetworkEvent.LOST
+                                || event.type == NetworkEvent.CAPABILITIES_CHANGED;
+                    }
+                })
+                .doOnNext(new Consumer<NetworkEvent>() {
+                    @Override
+                    public void accept(@NonNull NetworkEvent event) throws Exception {
+                        invalidate(ConnectivityState.networkId(event.network));
+                    }
+                })
+                .share();
+    }
+
+    /**
+     * @param context
+     * @return the cache shared by the whole process, connecting to port 80 of
+     * connectivitycheck.android.com through {@link ProbeEngine}. A resolvable host alone proves
+     * nothing, the answer may come from the cache of {@link DnsResolver}.
+     */
+    @NonNull
+    @RequiresPermission(ACCESS_NETWORK_STATE)
+    public static ReachabilityCache get(@NonNull final Context context) {
+        ReachabilityCache cache = sInstance;
+        if (cache == null) {
+            synchronized (ReachabilityCache.class) {
+                cache = sInstance;
+                if (cache == null) {
+                    final ConnectivityManager connectivityManager = (ConnectivityManager)
+                            context.getApplicationContext().getSystemService(Context.CONNECTIVITY_SERVICE);
+                    cache = new ReachabilityCache(new Callable<Boolean>() {
+                        @Override
+                        public Boolean call() throws Exception {
+                            return RxConnectivity.isConnectable(DEFAULT_PROBE_HOST, DEFAULT_PROBE_PORT,
+                                    (int) ProbeEngine.DEFAULT_TIMEOUT_MILLIS);
+                        }
+                    }, Schedulers.io(), DEFAULT_TTL_MILLIS,
+                            Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP
+                                    ? networkEvents(connectivityManager) : null);
+                    sInstance = cache;
+                }
+            }
+        }
+        return cache;
+    }
+
+    @NonNull
+    @RequiresApi(api = Build.VERSION_CODES.LOLLIPOP)
+    @RequiresPermission(ACCESS_NETWORK_STATE)
+    private static Observable<NetworkEvent> networkEvents(@NonNull final ConnectivityManager connectivityManager) {
+        return RxConnectivity.networkEvents(connectivityManager, NetworkTable.allNetworks());
+    }
+
+    /**
+     * @param networkId {@link ConnectivityState#networkId}
+     * @return the cached reachability, or the result of the probe running for the network
+     */
+    @NonNull
+    @CheckReturnValue
+    @RequiresPermission(INTERNET)
+    public Single<Boolean> isReachable(final long networkId) {
+        return Single.defer(new Callable<SingleSource<Boolean>>() {
+            @Override
+            public SingleSource<Boolean> call() throws Exception {
+                synchronized (ReachabilityCache.this) {
+                    final Entry entry = entries.get(networkId);
+                    if (entry != null && now() < entry.expiresAt) return Single.just(entry.reachable);
+
+                    Probe running = probes.get(networkId);
+                    if (running == null) {
+                        running = probe(networkId);
+                        probes.put(networkId, running);
+                    }
+                    return running.reachable;
+                }
+            }
+        });
+    }
+
+    /**
+     * Keep subscribed to drop the entries of lost or changed networks.
+     *
+     * @return the invalidating events, empty before Lollipop
+     */
+    @NonNull
+    @CheckReturnValue
+    @RequiresPermission(ACCESS_NETWORK_STATE)
+    public Observable<NetworkEvent> invalidations() {
+        return invalidations != null ? invalidations : Observable.<NetworkEvent>empty();
+    }
+
+    /**
+     * Drops the entry and forgets the running probe of the network, so the next call probes again.
+     *
+     * @param networkId {@link ConnectivityState#NO_NETWORK_ID} to drop everything
+     */
+    public synchronized void invalidate(final long networkId) {
+        if (networkId == ConnectivityState.NO_NETWORK_ID) {
+            invalidateAll();
+            return;
+        }
+        entries.remove(networkId);
+        probes.remove(networkId);
+    }
+
+    public synchronized void invalidateAll() {
+        entries.clear();
+        probes.clear();
+    }
+
+    /**
+     * @return number of probes started since the cache was created
+     */
+    public synchronized int probeCount() {
+        return probeCount;
+    }
+
+    @NonNull
+    private Probe probe(final long networkId) {
+        probeCount++;
+        final Probe running = new Probe();
+        running.reachable = Single.fromCallable(probe)
+                .subscribeOn(scheduler)
+                .doOnEvent(new BiConsumer<Boolean, Throwable>() {
+                    @Override
+                    public void accept(@Nullable Boolean reachable, @Nullable Throwable e) throws Exception {
+                        synchronized (ReachabilityCache.this) {
+                            // Invalidated meanwhile
+                            if (probes.get(networkId) != running) return;
+
+                            probes.remove(networkId);
+                            if (reachable != null) {
+                                entries.put(networkId, new Entry(reachable, now() + ttlMillis));
+                            }
+                        }
+                    }
+                })
+                .cache();
+        return running;
+    }
+
+    private long now() {
+        return scheduler.now(TimeUnit.MILLISECONDS);
+    }
+}
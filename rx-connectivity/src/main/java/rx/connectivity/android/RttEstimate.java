@@ -0,0 +1,96 @@
+/*
+ * Copyright (C) 2017, Andrew Chen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package rx.connectivity.android;
+
+import io.reactivex.annotations.NonNull;
+
+/**
+ * Snapshot of an {@link RttEstimator}: the timeout the next probe gets, and why.
+ */
+public class RttEstimate {
+    /**
+     * No sample yet, {@link RttEstimator#INITIAL_TIMEOUT_MILLIS}
+     */
+    public static final int INITIAL = 0;
+    /**
+     * SRTT + 4 * RTTVAR
+     */
+    public static final int ESTIMATED = 1;
+    /**
+     * Doubled after timeouts until the next sample
+     */
+    public static final int BACKED_OFF = 2;
+    /**
+     * Raised to the minimum timeout
+     */
+    public static final int MIN = 3;
+    /**
+     * Capped to the maximum timeout
+     */
+    public static final int MAX = 4;
+
+    /**
+     * Smoothed RTT, -1 without samples
+     */
+    public final long srttMillis;
+    /**
+     * RTT variance, -1 without samples
+     */
+    public final long rttvarMillis;
+    public final long timeoutMillis;
+    @TimeoutReason
+    public final int reason;
+    public final int samples;
+    /**
+     * Timeouts in a row since the latest sample
+     */
+    public final int timeouts;
+
+    RttEstimate(final long srttMillis,
+                final long rttvarMillis,
+                final long timeoutMillis,
+                @TimeoutReason final int reason,
+                final int samples,
+                final int timeouts) {
+        this.srttMillis = srttMillis;
+        this.rttvarMillis = rttvarMillis;
+        this.timeoutMillis = timeoutMillis;
+        this.reason = reason;
+        this.samples = samples;
+        this.timeouts = timeouts;
+    }
+
+    @NonNull
+    private static String reason(@TimeoutReason final int reason) {
+        switch (reason) {
+            case INITIAL: return "initial";
+            case ESTIMATED: return "estimated";
+            case BACKED_OFF: return "backed off";
+            case MIN: return "min";
+            case MAX: return "max";
+            default: return String.valueOf(reason);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "RttEstimate{timeout=" + timeoutMillis + "ms (" + reason(reason) + ")"
+                + ", srtt=" + srttMillis + "ms"
+                + ", rttvar=" + rttvarMillis + "ms"
+                + ", samples=" + samples
+                + ", timeouts=" + timeouts + "}";
+    }
+}
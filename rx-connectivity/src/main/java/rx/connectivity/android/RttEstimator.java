@@ -0,0 +1,129 @@
+/*
+ * Copyright (C) 2017, Andrew Chen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package rx.connectivity.android;
+
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.annotations.NonNull;
+
+/**
+ * Smoothed RTT and RTT variance of one host over one network, and the probe timeout derived from
+ * them as TCP does (RFC 6298, Jacobson/Karels):
+ *
+ * <pre>
+ * RTTVAR = 3/4 * RTTVAR + 1/4 * |SRTT - R|
+ * SRTT   = 7/8 * SRTT   + 1/8 * R
+ * RTO    = SRTT + 4 * RTTVAR
+ * </pre>
+ *
+ * Per Karn's algorithm timed out probes give no sample, they double the timeout instead until
+ * the next sample arrives.
+ */
+public class RttEstimator {
+    public static final long INITIAL_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(1);
+    public static final long DEFAULT_MIN_TIMEOUT_MILLIS = 200L;
+    public static final long DEFAULT_MAX_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(10);
+
+    private final long minTimeoutNanos;
+    private final long maxTimeoutNanos;
+    private long srttNanos = -1L;
+    private long rttvarNanos = -1L;
+    private int samples;
+    private int timeouts;
+
+    public RttEstimator() {
+        this(DEFAULT_MIN_TIMEOUT_MILLIS, DEFAULT_MAX_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @param minTimeout
+     * @param maxTimeout
+     * @param unit
+     */
+    public RttEstimator(final long minTimeout, final long maxTimeout, @NonNull final TimeUnit unit) {
+        if (minTimeout <= 0 || maxTimeout < minTimeout) {
+            throw new IllegalArgumentException("0 < minTimeout <= maxTimeout");
+        }
+        this.minTimeoutNanos = unit.toNanos(minTimeout);
+        this.maxTimeoutNanos = unit.toNanos(maxTimeout);
+    }
+
+    /**
+     * @param rttNanos round trip time of a probe that did not time out
+     */
+    public synchronized void onSample(final long rttNanos) {
+        final long rtt = Math.max(0L, rttNanos);
+        if (samples == 0) {
+            srttNanos = rtt;
+            rttvarNanos = rtt / 2;
+        } else {
+            rttvarNanos += (Math.abs(srttNanos - rtt) - rttvarNanos) / 4;
+            srttNanos += (rtt - srttNanos) / 8;
+        }
+        samples++;
+        timeouts = 0;
+    }
+
+    /**
+     * Backs the timeout off, without touching SRTT and RTTVAR.
+     */
+    public synchronized void onTimeout() {
+        timeouts++;
+    }
+
+    /**
+     * @return the timeout of the next probe
+     */
+    public long timeoutMillis() {
+        return estimate().timeoutMillis;
+    }
+
+    /**
+     * @return the current state and the timeout of the next probe
+     */
+    @NonNull
+    public synchronized RttEstimate estimate() {
+        long timeoutNanos;
+        int reason;
+        if (samples == 0) {
+            timeoutNanos = TimeUnit.MILLISECONDS.toNanos(INITIAL_TIMEOUT_MILLIS);
+            reason = RttEstimate.INITIAL;
+        } else {
+            timeoutNanos = srttNanos + 4 * rttvarNanos;
+            reason = RttEstimate.ESTIMATED;
+        }
+        if (timeoutNanos < minTimeoutNanos) {
+            timeoutNanos = minTimeoutNanos;
+            reason = RttEstimate.MIN;
+        }
+        if (timeouts > 0) {
+            // Shift by at most 30 to not overflow, the cap applies long before anyway
+            timeoutNanos = timeoutNanos << Math.min(timeouts, 30);
+            reason = RttEstimate.BACKED_OFF;
+        }
+        if (timeoutNanos > maxTimeoutNanos || timeoutNanos < 0) {
+            timeoutNanos = maxTimeoutNanos;
+            reason = RttEstimate.MAX;
+        }
+        return new RttEstimate(
+                samples == 0 ? -1L : TimeUnit.NANOSECONDS.toMillis(srttNanos),
+                samples == 0 ? -1L : TimeUnit.NANOSECONDS.toMillis(rttvarNanos),
+                TimeUnit.NANOSECONDS.toMillis(timeoutNanos),
+                reason,
+                samples,
+                timeouts);
+    }
+}
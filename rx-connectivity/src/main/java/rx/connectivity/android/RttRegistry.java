@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2017, Andrew Chen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package rx.connectivity.android;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import io.reactivex.Observable;
+import io.reactivex.annotations.CheckReturnValue;
+import io.reactivex.annotations.NonNull;
+
+/**
+ * {@link RttEstimator}s of the process, one per host and network.
+ */
+public class RttRegistry implements NetworkScoped {
+    private static final RttRegistry sInstance = new RttRegistry();
+
+    @NonNull
+    private final ConcurrentHashMap<Key, RttEstimator> estimators = new ConcurrentHashMap<Key, RttEstimator>();
+
+    private static class Key {
+        final long networkId;
+        @NonNull
+        final String host;
+
+        Key(final long networkId, @NonNull final String host) {
+            this.networkId = networkId;
+            this.host = host;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+
+            final Key key = (Key) o;
+            return networkId == key.networkId && host.equals(key.host);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (int) (networkId ^ (networkId >>> 32)) + host.hashCode();
+        }
+    }
+
+    RttRegistry() {
+    }
+
+    @NonNull
+    public static RttRegistry get() {
+        return sInstance;
+    }
+
+    /**
+     * @param networkId {@link ConnectivityState#networkId}
+     * @param host
+     * @return the estimator of the host over the network, created on first use
+     */
+    @NonNull
+    public RttEstimator estimator(final long networkId, @NonNull final String host) {
+        final Key key = new Key(networkId, host);
+        RttEstimator estimator = estimators.get(key);
+        if (estimator == null) {
+            final RttEstimator created = new RttEstimator();
+            estimator = estimators.putIfAbsent(key, created);
+            if (estimator == null) estimator = created;
+        }
+        return estimator;
+    }
+
+    /**
+     * @param networkId
+     * @param host
+     * @return the timeout the next probe of the host over the network gets, and why
+     */
+    @NonNull
+    public RttEstimate estimate(final long networkId, @NonNull final String host) {
+        return estimator(networkId, host).estimate();
+    }
+
+    /**
+     * Forgets the estimators of a network, e.g. once it is lost.
+     *
+     * @param networkId
+     */
+    @Override
+    public void clear(final long networkId) {
+        final Iterator<Map.Entry<Key, RttEstimator>> entries = estimators.entrySet().iterator();
+        while (entries.hasNext()) {
+            if (entries.next().getKey().networkId == networkId) entries.remove();
+        }
+    }
+
+    @Override
+    public void clear() {
+        estimators.clear();
+    }
+
+    /**
+     * @param networkEvents
+     * @return the lost networks, their estimators forgotten, see {@link NetworkScoped}
+     */
+    @NonNull
+    @CheckReturnValue
+    public Observable<NetworkEvent> clearOnLost(@NonNull final Observable<NetworkEvent> networkEvents) {
+        return NetworkEvent.clearOnLost(networkEvents, this);
+    }
+}
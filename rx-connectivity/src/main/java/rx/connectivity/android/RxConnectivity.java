@@ -15,11 +15,13 @@
  */
 package rx.connectivity.android;
 
+import android.annotation.SuppressLint;
 import android.content.Context;
 import android.content.Intent;
-import android.content.IntentFilter;
 import android.net.ConnectivityManager;
+import android.net.LinkProperties;
 import android.net.Network;
+import android.net.NetworkCapabilities;
 import android.net.NetworkInfo;
 import android.net.NetworkRequest;
 import android.os.Build;
@@ -29,25 +31,57 @@ import android.support.annotation.WorkerThread;
 
 import java.io.IOException;
 import java.net.InetAddress;
-import java.net.InetSocketAddress;
-import java.net.Socket;
 import java.net.UnknownHostException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
+import io.reactivex.Flowable;
 import io.reactivex.Maybe;
+import io.reactivex.MaybeSource;
 import io.reactivex.Observable;
 import io.reactivex.ObservableEmitter;
 import io.reactivex.ObservableOnSubscribe;
+import io.reactivex.ObservableSource;
+import io.reactivex.Scheduler;
+import io.reactivex.Single;
+import io.reactivex.SingleSource;
 import io.reactivex.annotations.CheckReturnValue;
 import io.reactivex.annotations.NonNull;
+import io.reactivex.annotations.Nullable;
 import io.reactivex.functions.Cancellable;
 import io.reactivex.functions.Consumer;
 import io.reactivex.functions.Function;
-import rx2.receiver.android.RxReceiver;
+import io.reactivex.functions.Predicate;
+import io.reactivex.schedulers.Schedulers;
+import rx.overflow.Overflow;
 
 import static android.Manifest.permission.ACCESS_NETWORK_STATE;
 import static android.Manifest.permission.INTERNET;
 
 public class RxConnectivity {
+    @NonNull
+    private static volatile Scheduler sBinderScheduler = Schedulers.trampoline();
+
+    /**
+     * Sets the scheduler binder calls ({@link ConnectivityManager#getActiveNetworkInfo()}...) are
+     * made on, e.g. {@code Schedulers.io()} to keep them off the main thread.
+     *
+     * Defaults to {@link Schedulers#trampoline()}, i.e. the thread the event arrived on.
+     *
+     * @param scheduler null to restore the default
+     */
+    public static void setBinderScheduler(@Nullable final Scheduler scheduler) {
+        sBinderScheduler = scheduler != null ? scheduler : Schedulers.trampoline();
+    }
+
+    /**
+     * @return the scheduler binder calls are made on
+     */
+    @NonNull
+    public static Scheduler binderScheduler() {
+        return sBinderScheduler;
+    }
 
     /**
      * @return available network
@@ -70,9 +104,14 @@ public class RxConnectivity {
     @RequiresPermission(ACCESS_NETWORK_STATE)
     public static Observable<Network> networks(@NonNull final Context context,
                                         @NonNull final NetworkRequest networkRequest) {
-        return networks(
-                (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE),
-                networkRequest);
+        return Observable.defer(new Callable<ObservableSource<Network>>() {
+            @Override
+            public ObservableSource<Network> call() throws Exception {
+                return networks(
+                        (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE),
+                        networkRequest);
+            }
+        });
     }
 
     /**
@@ -87,14 +126,107 @@ public class RxConnectivity {
     public static Observable<Network> networks(
             @NonNull final ConnectivityManager connectivityManager,
             @NonNull final NetworkRequest networkRequest) {
-        return Observable.create(new ObservableOnSubscribe<Network>() {
+        return networkEvents(connectivityManager, networkRequest)
+                .filter(new Predicate<NetworkEvent>() {
+                    @Override
+                    public boolean test(@NonNull NetworkEvent event) throws Exception {
+                        return event.type == NetworkEvent.AVAILABLE;
+                    }
+                })
+                .map(new Function<NetworkEvent, Network>() {
+                    @Override
+                    public Network apply(@NonNull NetworkEvent event) throws Exception {
+                        return event.network;
+                    }
+                });
+    }
+
+    /**
+     * @param context
+     * @param networkRequest
+     * @param overflow what to do with networks the subscriber is not ready for
+     * @return
+     * @see #networks(Context, NetworkRequest)
+     */
+    @CheckReturnValue
+    @NonNull
+    @RequiresApi(api = Build.VERSION_CODES.LOLLIPOP)
+    @RequiresPermission(ACCESS_NETWORK_STATE)
+    public static Flowable<Network> networks(@NonNull final Context context,
+                                             @NonNull final NetworkRequest networkRequest,
+                                             @NonNull final Overflow overflow) {
+        return overflow.apply(networks(context, networkRequest));
+    }
+
+    /**
+     * @param context
+     * @param networkRequest
+     * @return every {@link ConnectivityManager.NetworkCallback} callback of the request
+     * @see NetworkTable
+     */
+    @CheckReturnValue
+    @NonNull
+    @RequiresApi(api = Build.VERSION_CODES.LOLLIPOP)
+    @RequiresPermission(ACCESS_NETWORK_STATE)
+    public static Observable<NetworkEvent> networkEvents(@NonNull final Context context,
+                                                         @NonNull final NetworkRequest networkRequest) {
+        return Observable.defer(new Callable<ObservableSource<NetworkEvent>>() {
             @Override
-            public void subscribe(final ObservableEmitter<Network> emit) throws Exception {
+            public ObservableSource<NetworkEvent> call() throws Exception {
+                return networkEvents(
+                        (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE),
+                        networkRequest);
+            }
+        });
+    }
+
+    /**
+     * @param connectivityManager
+     * @param networkRequest
+     * @return every {@link ConnectivityManager.NetworkCallback} callback of the request
+     */
+    @CheckReturnValue
+    @NonNull
+    @RequiresApi(api = Build.VERSION_CODES.LOLLIPOP)
+    @RequiresPermission(ACCESS_NETWORK_STATE)
+    public static Observable<NetworkEvent> networkEvents(
+            @NonNull final ConnectivityManager connectivityManager,
+            @NonNull final NetworkRequest networkRequest) {
+        return Observable.create(new ObservableOnSubscribe<NetworkEvent>() {
+            @Override
+            public void subscribe(final ObservableEmitter<NetworkEvent> emit) throws Exception {
                 final ConnectivityManager.NetworkCallback networkCallback =
                         new ConnectivityManager.NetworkCallback() {
                             @Override
                             public void onAvailable(Network network) {
-                                emit.onNext(network);
+                                emit.onNext(NetworkEvent.available(network));
+                            }
+
+                            @Override
+                            public void onLosing(Network network, int maxMsToLive) {
+                                emit.onNext(NetworkEvent.losing(network, maxMsToLive));
+                            }
+
+                            @Override
+                            public void onLost(Network network) {
+                                emit.onNext(NetworkEvent.lost(network));
+                            }
+
+                            // API 26+
+                            public void onUnavailable() {
+                                emit.onNext(NetworkEvent.unavailable());
+                            }
+
+                            @Override
+                            public void onCapabilitiesChanged(Network network,
+                                                              NetworkCapabilities networkCapabilities) {
+                                emit.onNext(NetworkEvent.capabilitiesChanged(network, networkCapabilities));
+                            }
+
+                            @Override
+                            public void onLinkPropertiesChanged(Network network,
+                                                                LinkProperties linkProperties) {
+                                emit.onNext(NetworkEvent.linkPropertiesChanged(network, linkProperties));
                             }
                         };
                 emit.setCancellable(new Cancellable() {
@@ -112,7 +244,10 @@ public class RxConnectivity {
      * @param connectivityManager
      * @param networkRequest
      * @return
+     * @deprecated binds the process as a side effect and leaves it bound after disposal, use
+     * {@link #bindTo(Context, NetworkRequest)}
      */
+    @Deprecated
     @CheckReturnValue
     @NonNull
     @RequiresApi(api = Build.VERSION_CODES.LOLLIPOP)
@@ -133,29 +268,39 @@ public class RxConnectivity {
      * @param context
      * @param networkRequest
      * @return
+     * @deprecated binds the process as a side effect and leaves it bound after disposal, use
+     * {@link #bindTo(Context, NetworkRequest)}
      */
+    @Deprecated
     @NonNull
     @RequiresApi(api = Build.VERSION_CODES.LOLLIPOP)
     @RequiresPermission(ACCESS_NETWORK_STATE)
     public static Maybe<Network> defaultNetwork(
             @NonNull final Context context,
             @NonNull final NetworkRequest networkRequest) {
-        return defaultNetwork((ConnectivityManager)
-                context.getSystemService(Context.CONNECTIVITY_SERVICE),
-                networkRequest);
+        return Maybe.defer(new Callable<MaybeSource<Network>>() {
+            @Override
+            public MaybeSource<Network> call() throws Exception {
+                return defaultNetwork((ConnectivityManager)
+                        context.getSystemService(Context.CONNECTIVITY_SERVICE),
+                        networkRequest);
+            }
+        });
     }
 
     /**
+     * Binds the process until told otherwise, see {@link #bindTo(Context, NetworkRequest)} for
+     * a binding scoped to a subscription.
+     *
      * @param connectivityManager
-     * @param network
+     * @param network null to unbind
      */
     @SuppressWarnings("deprecation")
-    @NonNull
     @RequiresApi(api = Build.VERSION_CODES.LOLLIPOP)
     @RequiresPermission(ACCESS_NETWORK_STATE)
     public static void defaultNetwork(
             @NonNull final ConnectivityManager connectivityManager,
-            @NonNull final Network network) {
+            @Nullable final Network network) {
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP
                 && Build.VERSION.SDK_INT < Build.VERSION_CODES.M) {
             ConnectivityManager.setProcessDefaultNetwork(network);
@@ -164,12 +309,74 @@ public class RxConnectivity {
         }
     }
 
+    /**
+     * Binds the process to the networks of the request while subscribed, and restores the
+     * previous binding on dispose. Subscribers of the same request share the binding.
+     *
+     * @param context
+     * @param networkRequest
+     * @return the networks the process is bound to
+     * @see NetworkBinder
+     */
+    @CheckReturnValue
+    @NonNull
+    @RequiresApi(api = Build.VERSION_CODES.LOLLIPOP)
+    @RequiresPermission(ACCESS_NETWORK_STATE)
+    public static Observable<Network> bindTo(@NonNull final Context context,
+                                             @NonNull final NetworkRequest networkRequest) {
+        return NetworkBinder.get(context).bindTo(networkRequest);
+    }
+
+    /**
+     * @param context
+     * @return connectivity broadcasts, shared by all subscribers in the process
+     * @see ConnectivityHub
+     */
     @NonNull
     @RequiresPermission(ACCESS_NETWORK_STATE)
     public static Observable<Intent> connectivity(
             @NonNull final Context context) {
-        return RxReceiver.receives(context,
-                new IntentFilter(ConnectivityManager.CONNECTIVITY_ACTION));
+        return ConnectivityHub.get(context).connectivity();
+    }
+
+    /**
+     * @param context
+     * @param overflow what to do with broadcasts the subscriber is not ready for
+     * @return
+     * @see #connectivity(Context)
+     */
+    @NonNull
+    @RequiresPermission(ACCESS_NETWORK_STATE)
+    public static Flowable<Intent> connectivity(
+            @NonNull final Context context,
+            @NonNull final Overflow overflow) {
+        return overflow.apply(connectivity(context));
+    }
+
+    /**
+     * @param context
+     * @return the active network state, parsed once per broadcast and shared by all subscribers
+     * @see ConnectivityHub#connectivityStates()
+     */
+    @NonNull
+    @RequiresPermission(ACCESS_NETWORK_STATE)
+    public static Observable<ConnectivityState> connectivityStates(
+            @NonNull final Context context) {
+        return ConnectivityHub.get(context).connectivityStates();
+    }
+
+    /**
+     * @param context
+     * @param settleWindow
+     * @return the active network state once it has settled
+     * @see SettleWindow
+     */
+    @NonNull
+    @RequiresPermission(ACCESS_NETWORK_STATE)
+    public static Observable<ConnectivityState> connectivityStates(
+            @NonNull final Context context,
+            @NonNull final SettleWindow settleWindow) {
+        return connectivityStates(context).compose(settleWindow);
     }
 
     @RequiresPermission(ACCESS_NETWORK_STATE)
@@ -184,17 +391,29 @@ public class RxConnectivity {
         return activeNetwork != null && activeNetwork.isConnectedOrConnecting();
     }
 
+    /**
+     * Checks once per settled connectivity state, see {@link SettleWindow#DEFAULT}, through the
+     * {@link ReachabilityCache} of the process. A check still running when the state changes
+     * again is dropped.
+     *
+     * @param context
+     * @return
+     */
     @NonNull
     @RequiresPermission(allOf = {INTERNET, ACCESS_NETWORK_STATE})
-    @WorkerThread
     public static Observable<Boolean> internectivity(
             @NonNull final Context context) {
-        return connectivity(context).map(new Function<Intent, Boolean>() {
+        final ReachabilityCache cache = ReachabilityCache.get(context);
+        return connectivityStates(context, SettleWindow.DEFAULT)
+                .switchMap(new Function<ConnectivityState, ObservableSource<Boolean>>() {
                     @Override
-                    public Boolean apply(@NonNull Intent intent) throws Exception {
-                        return isResolvable();
+                    public ObservableSource<Boolean> apply(@NonNull ConnectivityState state) throws Exception {
+                        if (!state.connected) return Observable.just(false);
+
+                        return cache.isReachable(state.networkId).toObservable();
                     }
-                });
+                })
+                .mergeWith(cache.invalidations().ignoreElements().<Boolean>toObservable());
     }
 
     @RequiresPermission(INTERNET)
@@ -203,17 +422,183 @@ public class RxConnectivity {
         return isResolvable("connectivitycheck.android.com");
     }
 
+    /**
+     * @param host
+     * @return true if {@link DnsResolver} resolves the host, possibly from its cache
+     */
     @RequiresPermission(INTERNET)
     @WorkerThread
     public static boolean isResolvable(@NonNull final String host) {
         try {
-            InetAddress.getByName(host);
+            resolve(host);
             return true;
         } catch (UnknownHostException e) {
             return false;
         }
     }
 
+    /**
+     * ICMP/TCP echo with a timeout derived from the {@link RttEstimator} of the host on the active
+     * network.
+     *
+     * @param context
+     * @param host
+     * @return
+     * @see #rttEstimate(Context, String)
+     */
+    @RequiresPermission(allOf = {INTERNET, ACCESS_NETWORK_STATE})
+    @WorkerThread
+    public static boolean isReachable(@NonNull final Context context,
+                                      @NonNull final String host) {
+        final RttEstimator estimator = estimator(context, host);
+        final long timeoutMillis = estimator.timeoutMillis();
+        final long start = System.nanoTime();
+        try {
+            if (resolve(host).isReachable((int) timeoutMillis)) {
+                estimator.onSample(System.nanoTime() - start);
+                return true;
+            }
+        } catch (UnknownHostException e) {
+            return false;
+        } catch (IOException e) {
+            return false;
+        }
+        // false also means unreachable at once, only waiting the whole timeout is a timeout
+        if (System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(timeoutMillis)) {
+            estimator.onTimeout();
+        }
+        return false;
+    }
+
+    /**
+     * Connects with a timeout derived from the {@link RttEstimator} of the host on the active
+     * network.
+     *
+     * @param context
+     * @param host
+     * @param port
+     * @return
+     * @see #rttEstimate(Context, String)
+     */
+    @RequiresPermission(allOf = {INTERNET, ACCESS_NETWORK_STATE})
+    @WorkerThread
+    public static boolean isConnectable(@NonNull final Context context,
+                                        @NonNull final String host,
+                                        final int port) {
+        try {
+            connect(context, host, port).blockingGet();
+            return true;
+        } catch (RuntimeException e) {
+            return false;
+        }
+    }
+
+    /**
+     * TCP connect RTT samples of the host, one probe per interval, with adaptive timeouts as
+     * {@link #isConnectable(Context, String, int)}. Failed probes give no sample.
+     *
+     * Samples are also recorded in the {@link LatencyStats} of the active network, to read
+     * percentiles on the device. While subscribed, the {@link RttRegistry} estimators and
+     * {@link LatencyStats} histograms of lost networks are forgotten.
+     *
+     * @param context
+     * @param host
+     * @param port
+     * @param interval
+     * @param unit
+     * @return
+     */
+    @NonNull
+    @CheckReturnValue
+    @RequiresPermission(allOf = {INTERNET, ACCESS_NETWORK_STATE})
+    public static Observable<ProbeResult> latency(@NonNull final Context context,
+                                                  @NonNull final String host,
+                                                  final int port,
+                                                  final long interval,
+                                                  @NonNull final TimeUnit unit) {
+        return Observable.interval(0, interval, unit)
+                .concatMap(new Function<Long, ObservableSource<ProbeResult>>() {
+                    @Override
+                    public ObservableSource<ProbeResult> apply(@NonNull Long tick) throws Exception {
+                        return connect(context, host, port)
+                                .toObservable()
+                                .onErrorResumeNext(Observable.<ProbeResult>empty());
+                    }
+                })
+                .mergeWith(LatencyStats.get().clearOnLost(RttRegistry.get().clearOnLost(lostNetworks(context)))
+                        .ignoreElements()
+                        .<ProbeResult>toObservable());
+    }
+
+    /**
+     * @param context
+     * @return every network event from Lollipop, none before
+     */
+    @NonNull
+    @SuppressLint("NewApi")
+    @RequiresPermission(ACCESS_NETWORK_STATE)
+    private static Observable<NetworkEvent> lostNetworks(@NonNull final Context context) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.LOLLIPOP) return Observable.empty();
+
+        return networkEvents(context, NetworkTable.allNetworks());
+    }
+
+    /**
+     * Connects with the adaptive timeout, feeding the estimator and the latency stats.
+     */
+    @NonNull
+    @RequiresPermission(allOf = {INTERNET, ACCESS_NETWORK_STATE})
+    private static Single<ProbeResult> connect(@NonNull final Context context,
+                                               @NonNull final String host,
+                                               final int port) {
+        return Single.defer(new Callable<SingleSource<ProbeResult>>() {
+            @Override
+            @SuppressLint("MissingPermission")
+            public SingleSource<ProbeResult> call() throws Exception {
+                final long networkId = ConnectivityState.activeNetworkId((ConnectivityManager)
+                        context.getSystemService(Context.CONNECTIVITY_SERVICE));
+                final RttEstimator estimator = RttRegistry.get().estimator(networkId, host);
+                return ProbeEngine.get()
+                        .race(host, port, estimator.timeoutMillis(), TimeUnit.MILLISECONDS)
+                        .doOnSuccess(new Consumer<ProbeResult>() {
+                            @Override
+                            public void accept(@NonNull ProbeResult result) throws Exception {
+                                estimator.onSample(result.rttNanos);
+                                LatencyStats.get().record(networkId, result.rttNanos);
+                            }
+                        })
+                        .doOnError(new Consumer<Throwable>() {
+                            @Override
+                            public void accept(@NonNull Throwable e) throws Exception {
+                                if (e instanceof TimeoutException) estimator.onTimeout();
+                            }
+                        });
+            }
+        });
+    }
+
+    /**
+     * @param context
+     * @param host
+     * @return the timeout the next adaptive probe of the host on the active network gets, and why
+     */
+    @NonNull
+    @RequiresPermission(ACCESS_NETWORK_STATE)
+    @WorkerThread
+    public static RttEstimate rttEstimate(@NonNull final Context context,
+                                          @NonNull final String host) {
+        return estimator(context, host).estimate();
+    }
+
+    @NonNull
+    @RequiresPermission(ACCESS_NETWORK_STATE)
+    private static RttEstimator estimator(@NonNull final Context context,
+                                          @NonNull final String host) {
+        final long networkId = ConnectivityState.activeNetworkId((ConnectivityManager)
+                context.getSystemService(Context.CONNECTIVITY_SERVICE));
+        return RttRegistry.get().estimator(networkId, host);
+    }
+
     @RequiresPermission(INTERNET)
     @WorkerThread
     public static boolean isReachable() {
@@ -231,7 +616,7 @@ public class RxConnectivity {
     public static boolean isReachable(@NonNull final String host,
                                       int timeout) {
         try {
-            return InetAddress.getByName(host).isReachable(timeout);
+            return resolve(host).isReachable(timeout);
         } catch (UnknownHostException e) {
             return false;
         } catch (IOException e) {
@@ -239,25 +624,117 @@ public class RxConnectivity {
         }
     }
 
+    /**
+     * Races the addresses of the host through {@link ProbeEngine}, alternating address families.
+     *
+     * @param host
+     * @param port
+     * @param timeout in milliseconds
+     * @return
+     */
     @RequiresPermission(INTERNET)
     @WorkerThread
     public static boolean isConnectable(@NonNull final String host,
                                         int port, int timeout) {
-        final Socket socket = new Socket();
-
         try {
-            socket.connect(new InetSocketAddress(host, port), timeout);
+            ProbeEngine.get().race(host, port, timeout, TimeUnit.MILLISECONDS).blockingGet();
             return true;
-        } catch (UnknownHostException e) {
+        } catch (RuntimeException e) {
             return false;
-        } catch (IOException e) {
+        }
+    }
+
+    /**
+     * Same as {@link #isConnectable(String, int, int)}, through the given network whatever the
+     * default one is, the host resolved by its DNS servers.
+     *
+     * @param network
+     * @param host
+     * @param port
+     * @param timeout in milliseconds
+     * @return
+     */
+    @RequiresApi(api = Build.VERSION_CODES.M)
+    @RequiresPermission(INTERNET)
+    @WorkerThread
+    public static boolean isConnectable(@NonNull final Network network,
+                                        @NonNull final String host,
+                                        int port, int timeout) {
+        try {
+            ProbeEngine.get().race(host, port, NetworkRoute.of(network), timeout, TimeUnit.MILLISECONDS)
+                    .blockingGet();
+            return true;
+        } catch (RuntimeException e) {
             return false;
-        } finally {
-            try {
-                socket.close();
-            } catch (IOException e) {
-                e.printStackTrace();
+        }
+    }
+
+    /**
+     * Connects to the host on every validated network at once, keeping the fastest connection. Each
+     * network resolves the host with its own DNS servers.
+     *
+     * @param context
+     * @param host
+     * @param port
+     * @param timeout
+     * @param unit
+     * @return the connection, bound to its network, for the caller to close
+     * @see ProbeEngine#raceNetworks
+     */
+    @NonNull
+    @CheckReturnValue
+    @RequiresApi(api = Build.VERSION_CODES.M)
+    @RequiresPermission(allOf = {INTERNET, ACCESS_NETWORK_STATE})
+    public static Single<Connection> connectFastest(@NonNull final Context context,
+                                                    @NonNull final String host,
+                                                    final int port,
+                                                    final long timeout,
+                                                    @NonNull final TimeUnit unit) {
+        return connectFastest(SystemNetworkProvider.get(context), host, port, timeout, unit)
+                .subscribeOn(binderScheduler());
+    }
+
+    /**
+     * @param networkProvider
+     * @param host
+     * @param port
+     * @param timeout
+     * @param unit
+     * @return the fastest connection over the networks of the provider
+     */
+    @NonNull
+    @CheckReturnValue
+    @RequiresPermission(INTERNET)
+    public static Single<Connection> connectFastest(@NonNull final NetworkProvider networkProvider,
+                                                    @NonNull final String host,
+                                                    final int port,
+                                                    final long timeout,
+                                                    @NonNull final TimeUnit unit) {
+        return Single.defer(new Callable<SingleSource<Connection>>() {
+            @Override
+            @SuppressLint("MissingPermission")
+            public SingleSource<Connection> call() throws Exception {
+                return ProbeEngine.get().raceNetworks(networkProvider.routes(), host, port, timeout, unit);
             }
+        });
+    }
+
+    /**
+     * @param host
+     * @return the first address of the host from {@link DnsResolver}
+     * @throws UnknownHostException
+     */
+    @NonNull
+    @RequiresPermission(INTERNET)
+    @WorkerThread
+    private static InetAddress resolve(@NonNull final String host) throws UnknownHostException {
+        try {
+            return DnsResolver.get().resolve(host).blockingGet().get(0);
+        } catch (RuntimeException e) {
+            if (e.getCause() instanceof UnknownHostException) throw (UnknownHostException) e.getCause();
+            final UnknownHostException unknownHost = new UnknownHostException(host);
+            unknownHost.initCause(e);
+            throw unknownHost;
         }
     }
 }
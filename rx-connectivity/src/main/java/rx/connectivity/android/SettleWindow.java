@@ -0,0 +1,105 @@
+/*
+ * Copyright (C) 2017, Andrew Chen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package rx.connectivity.android;
+
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.Observable;
+import io.reactivex.ObservableSource;
+import io.reactivex.ObservableTransformer;
+import io.reactivex.Scheduler;
+import io.reactivex.annotations.NonNull;
+import io.reactivex.functions.Function;
+import io.reactivex.schedulers.Schedulers;
+
+/**
+ * Holds connectivity states until they have been stable for a quiet period, so a handover burst
+ * of broadcasts settles into a single emission.
+ *
+ * The quiet period depends on the pending state: connected states settle after
+ * {@code onlineQuiet}, disconnected ones after the usually longer {@code offlineQuiet}. Going
+ * online is reported fast, while a short drop between two networks is not reported at all.
+ *
+ * <pre>
+ * RxConnectivity.connectivityStates(context).compose(SettleWindow.of(300, 2000, TimeUnit.MILLISECONDS))
+ * </pre>
+ */
+public class SettleWindow implements ObservableTransformer<ConnectivityState, ConnectivityState> {
+    public static final long DEFAULT_ONLINE_QUIET_MILLIS = 300L;
+    public static final long DEFAULT_OFFLINE_QUIET_MILLIS = 2000L;
+    public static final SettleWindow DEFAULT = of(DEFAULT_ONLINE_QUIET_MILLIS,
+            DEFAULT_OFFLINE_QUIET_MILLIS, TimeUnit.MILLISECONDS);
+
+    private final long onlineQuiet;
+    private final long offlineQuiet;
+    @NonNull
+    private final TimeUnit unit;
+    @NonNull
+    private final Scheduler scheduler;
+
+    SettleWindow(final long onlineQuiet,
+                 final long offlineQuiet,
+                 @NonNull final TimeUnit unit,
+                 @NonNull final Scheduler scheduler) {
+        if (onlineQuiet < 0 || offlineQuiet < 0) {
+            throw new IllegalArgumentException("quiet periods must be >= 0");
+        }
+        this.onlineQuiet = onlineQuiet;
+        this.offlineQuiet = offlineQuiet;
+        this.unit = unit;
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * @param onlineQuiet quiet period before reporting a connected state
+     * @param offlineQuiet quiet period before reporting a disconnected state
+     * @param unit
+     * @return a window timed on {@link Schedulers#computation()}
+     */
+    @NonNull
+    public static SettleWindow of(final long onlineQuiet,
+                                  final long offlineQuiet,
+                                  @NonNull final TimeUnit unit) {
+        return of(onlineQuiet, offlineQuiet, unit, Schedulers.computation());
+    }
+
+    /**
+     * @param onlineQuiet quiet period before reporting a connected state
+     * @param offlineQuiet quiet period before reporting a disconnected state
+     * @param unit
+     * @param scheduler
+     * @return
+     */
+    @NonNull
+    public static SettleWindow of(final long onlineQuiet,
+                                  final long offlineQuiet,
+                                  @NonNull final TimeUnit unit,
+                                  @NonNull final Scheduler scheduler) {
+        return new SettleWindow(onlineQuiet, offlineQuiet, unit, scheduler);
+    }
+
+    @Override
+    public ObservableSource<ConnectivityState> apply(@NonNull final Observable<ConnectivityState> states) {
+        return states
+                .debounce(new Function<ConnectivityState, ObservableSource<Long>>() {
+                    @Override
+                    public ObservableSource<Long> apply(@NonNull ConnectivityState state) throws Exception {
+                        return Observable.timer(state.connected ? onlineQuiet : offlineQuiet, unit, scheduler);
+                    }
+                })
+                .distinctUntilChanged();
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright (C) 2017, Andrew Chen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package rx.connectivity.android;
+
+import io.reactivex.annotations.NonNull;
+
+/**
+ * {@link LatencyHistogram} over a sliding window, as a ring of histograms each covering a slice of
+ * the window. Slices are reused as the window slides, so recording never allocates.
+ */
+public class SlidingLatencyHistogram {
+    @NonNull
+    private final LatencyHistogram[] slices;
+    private final long sliceMillis;
+    /**
+     * Start time of the slice at {@link #head}
+     */
+    private long headStart = Long.MIN_VALUE;
+    private int head;
+
+    /**
+     * @param windowMillis
+     * @param slices the window moves by windowMillis / slices at a time
+     */
+    public SlidingLatencyHistogram(final long windowMillis, final int slices) {
+        if (slices < 1 || windowMillis < slices) throw new IllegalArgumentException("windowMillis >= slices > 0");
+        this.slices = new LatencyHistogram[slices];
+        for (int i = 0; i < slices; i++) {
+            this.slices[i] = new LatencyHistogram();
+        }
+        this.sliceMillis = windowMillis / slices;
+    }
+
+    /**
+     * @param nowMillis
+     * @param nanos
+     */
+    public synchronized void record(final long nowMillis, final long nanos) {
+        advance(nowMillis);
+        slices[head].record(nanos);
+    }
+
+    /**
+     * @param nowMillis
+     * @return samples within the window
+     */
+    public synchronized long count(final long nowMillis) {
+        advance(nowMillis);
+        long count = 0;
+        for (LatencyHistogram slice : slices) {
+            count += slice.count;
+        }
+        return count;
+    }
+
+    /**
+     * @param nowMillis
+     * @param percentile 0..100
+     * @return the percentile in nanoseconds within the window, -1 if empty
+     */
+    public synchronized long percentile(final long nowMillis, final double percentile) {
+        final long count = count(nowMillis);
+        if (count == 0) return -1L;
+
+        final long rank = Math.max(1L, (long) Math.ceil(count * Math.min(100.0, Math.max(0.0, percentile)) / 100.0));
+        long seen = 0;
+        for (int i = 0; i < LatencyHistogram.BUCKETS; i++) {
+            for (LatencyHistogram slice : slices) {
+                seen += slice.counts[i];
+            }
+            if (seen >= rank) return LatencyHistogram.highestValue(i) * 1000;
+        }
+        return LatencyHistogram.highestValue(LatencyHistogram.BUCKETS - 1) * 1000;
+    }
+
+    /**
+     * @param nowMillis
+     * @return p50, p90 and p99 within the window
+     */
+    @NonNull
+    public synchronized LatencyPercentiles percentiles(final long nowMillis) {
+        return new LatencyPercentiles(count(nowMillis),
+                percentile(nowMillis, 50),
+                percentile(nowMillis, 90),
+                percentile(nowMillis, 99));
+    }
+
+    /**
+     * Clears the slices that fell out of the window.
+     */
+    private void advance(final long nowMillis) {
+        if (headStart == Long.MIN_VALUE) {
+            headStart = nowMillis - nowMillis % sliceMillis;
+            return;
+        }
+        final long elapsed = (nowMillis - headStart) / sliceMillis;
+        if (elapsed <= 0) return;
+
+        final long steps = Math.min(elapsed, slices.length);
+        for (int i = 0; i < steps; i++) {
+            head = (head + 1) % slices.length;
+            slices[head].clear();
+        }
+        headStart += elapsed * sliceMillis;
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) 2017, Andrew Chen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package rx.connectivity.android;
+
+import android.annotation.SuppressLint;
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.net.Network;
+import android.net.NetworkCapabilities;
+import android.os.Build;
+import android.support.annotation.RequiresApi;
+import android.support.annotation.RequiresPermission;
+import android.support.annotation.WorkerThread;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import io.reactivex.annotations.NonNull;
+
+import static android.Manifest.permission.ACCESS_NETWORK_STATE;
+
+/**
+ * The validated internet networks of the system, the active one first.
+ */
+@RequiresApi(api = Build.VERSION_CODES.M)
+public class SystemNetworkProvider implements NetworkProvider {
+    @NonNull
+    private final ConnectivityManager connectivityManager;
+
+    public SystemNetworkProvider(@NonNull final ConnectivityManager connectivityManager) {
+        this.connectivityManager = connectivityManager;
+    }
+
+    @NonNull
+    public static SystemNetworkProvider get(@NonNull final Context context) {
+        return new SystemNetworkProvider((ConnectivityManager)
+                context.getApplicationContext().getSystemService(Context.CONNECTIVITY_SERVICE));
+    }
+
+    /**
+     * Asks the binder once per network.
+     */
+    @NonNull
+    @Override
+    @WorkerThread
+    @SuppressLint("MissingPermission")
+    @RequiresPermission(ACCESS_NETWORK_STATE)
+    public List<NetworkRoute> routes() {
+        final Network active = connectivityManager.getActiveNetwork();
+        final List<NetworkRoute> routes = new ArrayList<NetworkRoute>();
+        for (Network network : connectivityManager.getAllNetworks()) {
+            final NetworkCapabilities capabilities = connectivityManager.getNetworkCapabilities(network);
+            if (capabilities == null
+                    || !capabilities.hasCapability(NetworkCapabilities.NET_CAPABILITY_INTERNET)
+                    || !capabilities.hasCapability(NetworkCapabilities.NET_CAPABILITY_VALIDATED)) {
+                continue;
+            }
+            final NetworkRoute route = NetworkRoute.of(network, name(network, capabilities));
+            if (network.equals(active)) {
+                routes.add(0, route);
+            } else {
+                routes.add(route);
+            }
+        }
+        return routes;
+    }
+
+    @NonNull
+    private static String name(@NonNull final Network network,
+                               @NonNull final NetworkCapabilities capabilities) {
+        if (capabilities.hasTransport(NetworkCapabilities.TRANSPORT_VPN)) return "vpn";
+        if (capabilities.hasTransport(NetworkCapabilities.TRANSPORT_WIFI)) return "wifi";
+        if (capabilities.hasTransport(NetworkCapabilities.TRANSPORT_CELLULAR)) return "cellular";
+        if (capabilities.hasTransport(NetworkCapabilities.TRANSPORT_ETHERNET)) return "ethernet";
+        return "network" + network.getNetworkHandle();
+    }
+}
@@ -0,0 +1,457 @@
+/*
+ * Copyright (C) 2017, Andrew Chen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package rx.connectivity.android;
+
+import android.annotation.SuppressLint;
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.net.Network;
+import android.net.NetworkCapabilities;
+import android.net.NetworkInfo;
+import android.net.NetworkRequest;
+import android.os.Build;
+import android.support.annotation.RequiresApi;
+import android.support.annotation.RequiresPermission;
+import android.support.annotation.VisibleForTesting;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.Observable;
+import io.reactivex.ObservableSource;
+import io.reactivex.Scheduler;
+import io.reactivex.annotations.CheckReturnValue;
+import io.reactivex.annotations.NonNull;
+import io.reactivex.annotations.Nullable;
+import io.reactivex.functions.Action;
+import io.reactivex.functions.Consumer;
+import io.reactivex.functions.Function;
+import io.reactivex.schedulers.Schedulers;
+
+import static android.Manifest.permission.ACCESS_NETWORK_STATE;
+import static android.Manifest.permission.INTERNET;
+
+/**
+ * Connections established ahead of time, so the first request on a new network skips DNS and the
+ * TCP handshake.
+ *
+ * While {@link #watch(Context)} is subscribed, every new network gets one connection to each of
+ * the {@link #setHosts hosts}, resolved with {@link DnsResolver} and bound to the network. Pooled
+ * connections are closed once idle for too long or their network is lost. {@link #borrow} hands
+ * one out, {@link #stats()} tells how many were actually used.
+ *
+ * Before M sockets cannot be bound, so only the default network is warmed up, its connections
+ * keyed by the {@link ConnectivityState#networkId} derived from its {@link NetworkInfo}.
+ */
+public class WarmupPool {
+    public static final long DEFAULT_IDLE_MILLIS = TimeUnit.SECONDS.toMillis(30);
+    public static final int DEFAULT_MAX_PER_HOST = 2;
+
+    private static volatile WarmupPool sInstance;
+
+    @NonNull
+    private final ProbeEngine engine;
+    @NonNull
+    private final Scheduler scheduler;
+    private final long idleMillis;
+    private final int maxPerHost;
+    /**
+     * Newest first
+     */
+    @NonNull
+    private final Map<InetSocketAddress, Deque<Entry>> pool = new HashMap<InetSocketAddress, Deque<Entry>>();
+    /**
+     * Route of every warmed up network, remembered as its id cannot be derived once lost before M
+     */
+    @NonNull
+    private final Map<Network, NetworkRoute> routes = new HashMap<Network, NetworkRoute>();
+    @NonNull
+    private volatile List<InetSocketAddress> hosts = Collections.emptyList();
+    private int warmed;
+    private int hits;
+    private int misses;
+    private int evicted;
+    private int dropped;
+
+    private static class Entry {
+        @NonNull
+        final Connection connection;
+        final long networkId;
+        final long idleSince;
+
+        Entry(@NonNull final Connection connection, final long networkId, final long idleSince) {
+            this.connection = connection;
+            this.networkId = networkId;
+            this.idleSince = idleSince;
+        }
+    }
+
+    /**
+     * @param engine
+     * @param scheduler clock of the idle timeout, and the eviction timer
+     * @param idleMillis
+     * @param maxPerHost
+     */
+    @VisibleForTesting
+    WarmupPool(@NonNull final ProbeEngine engine,
+               @NonNull final Scheduler scheduler,
+               final long idleMillis,
+               final int maxPerHost) {
+        if (maxPerHost < 1) throw new IllegalArgumentException("maxPerHost must be > 0");
+        this.engine = engine;
+        this.scheduler = scheduler;
+        this.idleMillis = idleMillis;
+        this.maxPerHost = maxPerHost;
+    }
+
+    /**
+     * @return the pool shared by the whole process
+     */
+    @NonNull
+    public static WarmupPool get() {
+        WarmupPool warmupPool = sInstance;
+        if (warmupPool == null) {
+            synchronized (WarmupPool.class) {
+                warmupPool = sInstance;
+                if (warmupPool == null) {
+                    warmupPool = new WarmupPool(ProbeEngine.get(), Schedulers.computation(),
+                            DEFAULT_IDLE_MILLIS, DEFAULT_MAX_PER_HOST);
+                    sInstance = warmupPool;
+                }
+            }
+        }
+        return warmupPool;
+    }
+
+    /**
+     * @param hosts connected to as soon as {@link #watch(Context)} reports a new network, unresolved
+     * ones with {@link InetSocketAddress#createUnresolved} are resolved by {@link DnsResolver}
+     */
+    public void setHosts(@NonNull final Collection<InetSocketAddress> hosts) {
+        final List<InetSocketAddress> unresolved = new ArrayList<InetSocketAddress>(hosts.size());
+        for (InetSocketAddress host : hosts) {
+            unresolved.add(key(host.isUnresolved() ? host.getHostName() : host.getAddress().getHostAddress(),
+                    host.getPort()));
+        }
+        this.hosts = Collections.unmodifiableList(unresolved);
+    }
+
+    /**
+     * @param hosts connected to as soon as {@link #watch(Context)} reports a new network
+     */
+    public void setHosts(@NonNull final InetSocketAddress... hosts) {
+        setHosts(Arrays.asList(hosts));
+    }
+
+    /**
+     * Warms up every new internet network, see {@link RxConnectivity#networkEvents}, and closes
+     * the whole pool once disposed.
+     *
+     * @param context
+     * @return the hosts connected to
+     */
+    @NonNull
+    @CheckReturnValue
+    @RequiresApi(api = Build.VERSION_CODES.LOLLIPOP)
+    @RequiresPermission(allOf = {INTERNET, ACCESS_NETWORK_STATE})
+    public Observable<InetSocketAddress> watch(@NonNull final Context context) {
+        final ConnectivityManager connectivityManager = (ConnectivityManager)
+                context.getApplicationContext().getSystemService(Context.CONNECTIVITY_SERVICE);
+        return watch(RxConnectivity.networkEvents(context, new NetworkRequest.Builder()
+                        .addCapability(NetworkCapabilities.NET_CAPABILITY_INTERNET)
+                        .build()),
+                new Function<Network, NetworkRoute>() {
+                    @Override
+                    @SuppressLint({"NewApi", "MissingPermission"})
+                    public NetworkRoute apply(@NonNull Network network) throws Exception {
+                        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+                            return NetworkRoute.of(network);
+                        }
+                        return defaultRoute(connectivityManager, network);
+                    }
+                });
+    }
+
+    /**
+     * Connections go through the default network before M, whatever network they are meant for.
+     *
+     * @param connectivityManager
+     * @param network
+     * @return a route over the network if it is the default one, null otherwise
+     */
+    @Nullable
+    @RequiresApi(api = Build.VERSION_CODES.LOLLIPOP)
+    @RequiresPermission(ACCESS_NETWORK_STATE)
+    private static NetworkRoute defaultRoute(@NonNull final ConnectivityManager connectivityManager,
+                                             @NonNull final Network network) {
+        final NetworkInfo networkInfo = connectivityManager.getNetworkInfo(network);
+        final NetworkInfo active = connectivityManager.getActiveNetworkInfo();
+        if (networkInfo == null || active == null || networkInfo.getType() != active.getType()) return null;
+
+        return new NetworkRoute(ConnectivityState.networkId(connectivityManager, active), active.getTypeName()) {
+            @Override
+            public void bind(@NonNull SocketChannel channel) throws IOException {
+            }
+        };
+    }
+
+    /**
+     * @param events
+     * @param routes route of each new network, null to skip it. Asked once per network, lost
+     *               networks are dropped with the route they were warmed up with.
+     * @return the hosts connected to
+     */
+    @NonNull
+    @VisibleForTesting
+    @SuppressLint("MissingPermission")
+    @RequiresApi(api = Build.VERSION_CODES.LOLLIPOP)
+    Observable<InetSocketAddress> watch(@NonNull final Observable<NetworkEvent> events,
+                                        @NonNull final Function<Network, NetworkRoute> routes) {
+        final long period = Math.max(1L, idleMillis / 2);
+        return events
+                .flatMap(new Function<NetworkEvent, ObservableSource<InetSocketAddress>>() {
+                    @Override
+                    public ObservableSource<InetSocketAddress> apply(@NonNull NetworkEvent event) throws Exception {
+                        if (event.network == null) return Observable.empty();
+
+                        switch (event.type) {
+                            case NetworkEvent.AVAILABLE:
+                                final NetworkRoute route = routes.apply(event.network);
+                                if (route == null) return Observable.empty();
+
+                                synchronized (WarmupPool.this) {
+                                    WarmupPool.this.routes.put(event.network, route);
+                                }
+                                return warm(route);
+                            case NetworkEvent.LOST:
+                                drop(event.network);
+                                return Observable.empty();
+                            default:
+                                return Observable.empty();
+                        }
+                    }
+                })
+                .mergeWith(Observable.interval(period, period, TimeUnit.MILLISECONDS, scheduler)
+                        .doOnNext(new Consumer<Long>() {
+                            @Override
+                            public void accept(@NonNull Long tick) throws Exception {
+                                evictIdle();
+                            }
+                        })
+                        .ignoreElements()
+                        .<InetSocketAddress>toObservable())
+                .doFinally(new Action() {
+                    @Override
+                    public void run() throws Exception {
+                        clear();
+                    }
+                });
+    }
+
+    /**
+     * @param host
+     * @param port
+     * @return an established connection on any network for the caller to use and close, null if
+     * none is ready. The channel is non-blocking, {@code channel.configureBlocking(true)} to use
+     * its streams.
+     */
+    @Nullable
+    public Connection borrow(@NonNull final String host, final int port) {
+        return borrow(host, port, ConnectivityState.NO_NETWORK_ID);
+    }
+
+    /**
+     * Same as {@link #borrow(String, int)}, for a request bound to the given network.
+     *
+     * @param host
+     * @param port
+     * @param networkId {@link ConnectivityState#networkId} of the network, {@link ConnectivityState#NO_NETWORK_ID} for any
+     * @return an established connection through the network, null if none is ready
+     */
+    @Nullable
+    public synchronized Connection borrow(@NonNull final String host, final int port, final long networkId) {
+        final Deque<Entry> entries = pool.get(key(host, port));
+        if (entries != null) {
+            final long now = now();
+            final Iterator<Entry> it = entries.iterator();
+            while (it.hasNext()) {
+                final Entry entry = it.next();
+                if (networkId != ConnectivityState.NO_NETWORK_ID && entry.networkId != networkId) continue;
+
+                it.remove();
+                if (now - entry.idleSince < idleMillis && isAlive(entry.connection.channel)) {
+                    hits++;
+                    return entry.connection;
+                }
+                entry.connection.close();
+                evicted++;
+            }
+        }
+        misses++;
+        return null;
+    }
+
+    /**
+     * Closes every pooled connection.
+     */
+    public synchronized void clear() {
+        for (Deque<Entry> entries : pool.values()) {
+            for (Entry entry : entries) {
+                entry.connection.close();
+            }
+        }
+        pool.clear();
+        routes.clear();
+    }
+
+    /**
+     * @return number of pooled connections
+     */
+    public synchronized int size() {
+        int size = 0;
+        for (Deque<Entry> entries : pool.values()) {
+            size += entries.size();
+        }
+        return size;
+    }
+
+    @NonNull
+    public synchronized WarmupStats stats() {
+        return new WarmupStats(warmed, hits, misses, evicted, dropped);
+    }
+
+    @NonNull
+    @RequiresPermission(INTERNET)
+    private Observable<InetSocketAddress> warm(@NonNull final NetworkRoute route) {
+        return Observable.fromIterable(hosts)
+                .flatMap(new Function<InetSocketAddress, ObservableSource<InetSocketAddress>>() {
+                    @Override
+                    @SuppressLint("MissingPermission")
+                    public ObservableSource<InetSocketAddress> apply(@NonNull final InetSocketAddress host) throws Exception {
+                        return engine.open(host.getHostName(), host.getPort(), route,
+                                ProbeEngine.DEFAULT_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)
+                                .map(new Function<Connection, InetSocketAddress>() {
+                                    @Override
+                                    public InetSocketAddress apply(@NonNull Connection connection) throws Exception {
+                                        offer(host, route.networkId, connection);
+                                        return host;
+                                    }
+                                })
+                                .toObservable()
+                                .onErrorResumeNext(Observable.<InetSocketAddress>empty());
+                    }
+                });
+    }
+
+    private synchronized void offer(@NonNull final InetSocketAddress host,
+                                    final long networkId,
+                                    @NonNull final Connection connection) {
+        // Lost meanwhile
+        if (!isWarm(networkId)) {
+            connection.close();
+            dropped++;
+            return;
+        }
+        Deque<Entry> entries = pool.get(host);
+        if (entries == null) {
+            entries = new ArrayDeque<Entry>(maxPerHost + 1);
+            pool.put(host, entries);
+        }
+        entries.addFirst(new Entry(connection, networkId, now()));
+        warmed++;
+        while (entries.size() > maxPerHost) {
+            entries.pollLast().connection.close();
+            evicted++;
+        }
+    }
+
+    private synchronized void drop(@NonNull final Network network) {
+        final NetworkRoute route = routes.remove(network);
+        if (route == null || isWarm(route.networkId)) return;
+
+        final long networkId = route.networkId;
+        for (Deque<Entry> entries : pool.values()) {
+            final Iterator<Entry> it = entries.iterator();
+            while (it.hasNext()) {
+                final Entry entry = it.next();
+                if (entry.networkId == networkId) {
+                    it.remove();
+                    entry.connection.close();
+                    dropped++;
+                }
+            }
+        }
+    }
+
+    /**
+     * Guarded by the pool
+     */
+    private boolean isWarm(final long networkId) {
+        for (NetworkRoute route : routes.values()) {
+            if (route.networkId == networkId) return true;
+        }
+        return false;
+    }
+
+    private synchronized void evictIdle() {
+        final long now = now();
+        for (Deque<Entry> entries : pool.values()) {
+            final Iterator<Entry> it = entries.iterator();
+            while (it.hasNext()) {
+                final Entry entry = it.next();
+                if (now - entry.idleSince >= idleMillis) {
+                    it.remove();
+                    entry.connection.close();
+                    evicted++;
+                }
+            }
+        }
+    }
+
+    /**
+     * Nothing is sent before the request, so any read but "nothing yet" means the peer is done.
+     */
+    private static boolean isAlive(@NonNull final SocketChannel channel) {
+        if (!channel.isOpen() || !channel.isConnected() || channel.isBlocking()) return false;
+        try {
+            return channel.read(ByteBuffer.allocate(1)) == 0;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    @NonNull
+    private static InetSocketAddress key(@NonNull final String host, final int port) {
+        return InetSocketAddress.createUnresolved(host, port);
+    }
+
+    private long now() {
+        return scheduler.now(TimeUnit.MILLISECONDS);
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright (C) 2017, Andrew Chen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package rx.connectivity.android;
+
+/**
+ * Counters of a {@link WarmupPool} since it was created.
+ */
+public class WarmupStats {
+    /**
+     * Connections established ahead of time
+     */
+    public final int warmed;
+    /**
+     * Borrows served with a warm connection
+     */
+    public final int hits;
+    /**
+     * Borrows that found no usable connection
+     */
+    public final int misses;
+    /**
+     * Connections closed unused: idle for too long, closed by the peer, or over the pool size
+     */
+    public final int evicted;
+    /**
+     * Connections closed unused because their network was lost
+     */
+    public final int dropped;
+
+    WarmupStats(final int warmed, final int hits, final int misses, final int evicted, final int dropped) {
+        this.warmed = warmed;
+        this.hits = hits;
+        this.misses = misses;
+        this.evicted = evicted;
+        this.dropped = dropped;
+    }
+
+    /**
+     * @return share of borrows served warm, 0 without borrows
+     */
+    public float hitRate() {
+        return hits + misses > 0 ? (float) hits / (hits + misses) : 0f;
+    }
+
+    /**
+     * @return share of warmed connections that were borrowed, 0 if none was warmed
+     */
+    public float usage() {
+        return warmed > 0 ? (float) hits / warmed : 0f;
+    }
+
+    @Override
+    public String toString() {
+        return "WarmupStats{warmed=" + warmed + ", hits=" + hits + ", misses=" + misses
+                + ", evicted=" + evicted + ", dropped=" + dropped + "}";
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright (C) 2017, Andrew Chen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package rx.connectivity.android;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.channels.SocketChannel;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.reactivex.functions.Function;
+import io.reactivex.observers.TestObserver;
+import io.reactivex.schedulers.TestScheduler;
+import io.reactivex.subjects.PublishSubject;
+import rx.connectivity.BuildConfig;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class)
+public class DnsResolverTest {
+    private TestScheduler scheduler;
+    private AtomicInteger lookups;
+    private DnsResolver resolver;
+
+    @Before
+    public void setUp() {
+        scheduler = new TestScheduler();
+        lookups = new AtomicInteger();
+        resolver = new DnsResolver(new Function<String, InetAddress[]>() {
+            @Override
+            public InetAddress[] apply(String host) throws Exception {
+                lookups.incrementAndGet();
+                if (host.endsWith(".invalid")) throw new UnknownHostException(host);
+                return new InetAddress[]{InetAddress.getByAddress(host, new byte[]{10, 0, 0, 1})};
+            }
+        }, scheduler, 60000L, 10000L);
+    }
+
+    @Test
+    public void inFlight() {
+        TestObserver<List<InetAddress>> foo = resolver.resolve("example.com").test();
+        TestObserver<List<InetAddress>> bar = resolver.resolve("example.com").test();
+        foo.assertNoValues();
+        scheduler.triggerActions();
+
+        foo.assertValueCount(1);
+        bar.assertValueCount(1);
+        assertThat(foo.values().get(0).get(0).getHostName()).isEqualTo("example.com");
+        assertThat(lookups.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void ttl() {
+        resolver.resolve("example.com").test();
+        scheduler.triggerActions();
+
+        scheduler.advanceTimeBy(59, TimeUnit.SECONDS);
+        resolver.resolve("example.com").test().assertValueCount(1);
+        assertThat(lookups.get()).isEqualTo(1);
+
+        scheduler.advanceTimeBy(1, TimeUnit.SECONDS);
+        resolver.resolve("example.com").test();
+        scheduler.triggerActions();
+        assertThat(lookups.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void negativeTtl() {
+        TestObserver<List<InetAddress>> unknown = resolver.resolve("example.invalid").test();
+        scheduler.triggerActions();
+        unknown.assertError(UnknownHostException.class);
+
+        resolver.resolve("example.invalid").test().assertError(UnknownHostException.class);
+        assertThat(lookups.get()).isEqualTo(1);
+
+        scheduler.advanceTimeBy(10, TimeUnit.SECONDS);
+        resolver.resolve("example.invalid").test();
+        scheduler.triggerActions();
+        assertThat(lookups.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void perNetwork() throws Exception {
+        final NetworkRoute wifi = route(1L, (byte) 2);
+        final NetworkRoute cellular = route(2L, (byte) 3);
+
+        TestObserver<List<InetAddress>> onDefault = resolver.resolve("example.com").test();
+        TestObserver<List<InetAddress>> onWifi = resolver.resolve("example.com", wifi).test();
+        TestObserver<List<InetAddress>> onCellular = resolver.resolve("example.com", cellular).test();
+        scheduler.triggerActions();
+
+        assertThat(onDefault.values().get(0).get(0).getAddress()[3]).isEqualTo((byte) 1);
+        assertThat(onWifi.values().get(0).get(0).getAddress()[3]).isEqualTo((byte) 2);
+        assertThat(onCellular.values().get(0).get(0).getAddress()[3]).isEqualTo((byte) 3);
+        assertThat(resolver.lookupCount()).isEqualTo(3);
+
+        resolver.resolve("example.com", wifi).test().assertValue(onWifi.values().get(0));
+        assertThat(resolver.lookupCount()).isEqualTo(3);
+    }
+
+    private static NetworkRoute route(final long networkId, final byte address) {
+        return new NetworkRoute(networkId, "network" + networkId) {
+            @Override
+            public InetAddress[] resolve(String host) throws UnknownHostException {
+                return new InetAddress[]{InetAddress.getByAddress(host, new byte[]{10, 0, 0, address})};
+            }
+
+            @Override
+            public void bind(SocketChannel channel) throws IOException {
+            }
+        };
+    }
+
+    @Test
+    public void watch() {
+        final PublishSubject<Long> networks = PublishSubject.create();
+        resolver.setPrefetchHosts("example.com", "example.org", "example.invalid");
+        resolver.resolve("example.net").test();
+        scheduler.triggerActions();
+
+        TestObserver<String> prefetched = resolver.watch(networks).test();
+        networks.onNext(100L);
+        scheduler.triggerActions();
+        prefetched.assertValueCount(2);
+        assertThat(lookups.get()).isEqualTo(4);
+
+        // Served from the prefetch
+        resolver.resolve("example.com").test().assertValueCount(1);
+        assertThat(lookups.get()).isEqualTo(4);
+
+        // Cleared by the new network
+        networks.onNext(101L);
+        scheduler.triggerActions();
+        resolver.resolve("example.net").test();
+        scheduler.triggerActions();
+        assertThat(lookups.get()).isEqualTo(8);
+        assertThat(resolver.lookupCount()).isEqualTo(8);
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright (C) 2017, Andrew Chen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package rx.connectivity.android;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.observers.TestObserver;
+import io.reactivex.schedulers.Schedulers;
+import rx.connectivity.BuildConfig;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class)
+public class HealthMonitorTest {
+    private static final int ENDPOINTS = 1000;
+    private static final int MAX_IN_FLIGHT = 16;
+
+    private final List<ServerSocketChannel> servers = new ArrayList<ServerSocketChannel>();
+    private final Map<InetSocketAddress, Long> intervals = new LinkedHashMap<InetSocketAddress, Long>();
+    private final Set<InetSocketAddress> dead = new HashSet<InetSocketAddress>();
+
+    @Before
+    public void setUp() throws Exception {
+        final InetAddress loopback = InetAddress.getByName("127.0.0.1");
+        for (int i = 0; i < ENDPOINTS; i++) {
+            final ServerSocketChannel server = ServerSocketChannel.open();
+            server.socket().bind(new InetSocketAddress(loopback, 0));
+            final InetSocketAddress address = (InetSocketAddress) server.socket().getLocalSocketAddress();
+            intervals.put(address, TimeUnit.SECONDS.toMillis(1));
+            servers.add(server);
+        }
+        // Only close once all are bound, so the ports are not reused
+        final List<InetSocketAddress> addresses = new ArrayList<InetSocketAddress>(intervals.keySet());
+        for (int i = 0; i < ENDPOINTS; i += 10) {
+            servers.get(i).close();
+            dead.add(addresses.get(i));
+        }
+    }
+
+    @After
+    public void tearDown() {
+        for (ServerSocketChannel server : servers) {
+            ProbeEngine.closeQuietly(server);
+        }
+    }
+
+    @Test
+    public void monitor() throws Exception {
+        final HealthMonitor monitor = new HealthMonitor(new ProbeEngine(Schedulers.computation(), DnsResolver.get()),
+                Schedulers.computation(), MAX_IN_FLIGHT, TimeUnit.SECONDS.toMillis(5));
+
+        TestObserver<EndpointHealth> transitions = monitor.monitor(intervals).test();
+        final long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(20);
+        while (monitor.snapshot().size() < ENDPOINTS && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        transitions.dispose();
+
+        final Map<InetSocketAddress, EndpointHealth> snapshot = monitor.snapshot();
+        assertThat(snapshot).hasSize(ENDPOINTS);
+        for (EndpointHealth health : snapshot.values()) {
+            assertThat(health.up).as(health.toString()).isEqualTo(!dead.contains(health.endpoint));
+        }
+        // Every endpoint stays up or down, so only the first probes are transitions
+        assertThat(transitions.valueCount()).isEqualTo(ENDPOINTS);
+        assertThat(monitor.peakInFlight()).isLessThanOrEqualTo(MAX_IN_FLIGHT);
+    }
+
+    @Test
+    public void resubscribe() throws Exception {
+        final HealthMonitor monitor = new HealthMonitor(new ProbeEngine(Schedulers.computation(), DnsResolver.get()),
+                Schedulers.computation(), MAX_IN_FLIGHT, TimeUnit.SECONDS.toMillis(5));
+        final List<InetSocketAddress> addresses = new ArrayList<InetSocketAddress>(intervals.keySet());
+        final Map<InetSocketAddress, Long> two = new LinkedHashMap<InetSocketAddress, Long>();
+        two.put(addresses.get(0), TimeUnit.SECONDS.toMillis(1));
+        two.put(addresses.get(1), TimeUnit.SECONDS.toMillis(1));
+
+        TestObserver<EndpointHealth> first = monitor.monitor(two).test();
+        awaitCount(first, 2);
+        first.dispose();
+
+        // A new subscription reports its first probes, whatever the earlier one saw
+        TestObserver<EndpointHealth> second = monitor.monitor(two).test();
+        awaitCount(second, 2);
+        second.dispose();
+        assertThat(second.values().get(0).up).isFalse();
+        assertThat(second.values().get(0).consecutiveFailures).isEqualTo(1);
+        assertThat(second.values().get(1).up).isTrue();
+    }
+
+    private static void awaitCount(final TestObserver<?> observer, final int count) throws InterruptedException {
+        for (int i = 0; i < 500 && observer.valueCount() < count; i++) {
+            Thread.sleep(10);
+        }
+        assertThat(observer.valueCount()).isEqualTo(count);
+    }
+}
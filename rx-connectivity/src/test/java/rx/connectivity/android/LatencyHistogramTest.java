@@ -0,0 +1,123 @@
+/*
+ * Copyright (C) 2017, Andrew Chen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package rx.connectivity.android;
+
+import android.net.Network;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.observers.TestObserver;
+import io.reactivex.schedulers.TestScheduler;
+import io.reactivex.subjects.PublishSubject;
+import rx.connectivity.BuildConfig;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import static org.mockito.Mockito.mock;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class)
+public class LatencyHistogramTest {
+    private static long ms(long millis) {
+        return TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+
+    @Test
+    public void buckets() {
+        long previous = -1;
+        for (int i = 0; i < LatencyHistogram.BUCKETS; i++) {
+            final long highest = LatencyHistogram.highestValue(i);
+            assertThat(highest).isGreaterThan(previous);
+            assertThat(LatencyHistogram.index(highest)).isEqualTo(i);
+            assertThat(LatencyHistogram.index(previous + 1)).isEqualTo(i);
+            previous = highest;
+        }
+        assertThat(LatencyHistogram.index(Long.MAX_VALUE)).isEqualTo(LatencyHistogram.BUCKETS - 1);
+    }
+
+    @Test
+    public void percentiles() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        assertThat(histogram.percentile(50)).isEqualTo(-1L);
+
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(ms(i));
+        }
+        assertThat(histogram.count()).isEqualTo(1000);
+        assertThat((double) histogram.percentile(50)).isCloseTo(ms(500), within(ms(500) / 8.0));
+        assertThat((double) histogram.percentile(90)).isCloseTo(ms(900), within(ms(900) / 8.0));
+        assertThat((double) histogram.percentile(99)).isCloseTo(ms(990), within(ms(990) / 8.0));
+        assertThat(histogram.percentile(100)).isGreaterThanOrEqualTo(ms(1000));
+
+        histogram.clear();
+        assertThat(histogram.count()).isEqualTo(0);
+    }
+
+    @Test
+    public void slidingWindow() {
+        final TestScheduler scheduler = new TestScheduler();
+        final LatencyStats stats = new LatencyStats(scheduler, TimeUnit.SECONDS.toMillis(10), 10);
+
+        for (int i = 0; i < 100; i++) {
+            stats.record(1L, ms(10));
+        }
+        stats.record(2L, ms(500));
+        scheduler.advanceTimeBy(5, TimeUnit.SECONDS);
+        for (int i = 0; i < 100; i++) {
+            stats.record(1L, ms(100));
+        }
+
+        LatencyPercentiles percentiles = stats.percentiles(1L);
+        assertThat(percentiles.count).isEqualTo(200);
+        assertThat(percentiles.p50Nanos).isLessThan(ms(12));
+        assertThat(percentiles.p90Nanos).isGreaterThan(ms(90));
+        assertThat(stats.percentiles(2L).count).isEqualTo(1);
+
+        // The first samples slide out of the window
+        scheduler.advanceTimeBy(6, TimeUnit.SECONDS);
+        percentiles = stats.percentiles(1L);
+        assertThat(percentiles.count).isEqualTo(100);
+        assertThat(percentiles.p50Nanos).isGreaterThan(ms(90));
+
+        scheduler.advanceTimeBy(1, TimeUnit.HOURS);
+        assertThat(stats.percentiles(1L).count).isEqualTo(0);
+        assertThat(stats.percentile(1L, 50)).isEqualTo(-1L);
+    }
+
+    @Test
+    public void clearOnLost() {
+        final LatencyStats stats = new LatencyStats(new TestScheduler(), TimeUnit.SECONDS.toMillis(10), 10);
+        final PublishSubject<NetworkEvent> networkEvents = PublishSubject.create();
+        final Network network = mock(Network.class);
+        final long networkId = 0L; // handle of the mock
+        stats.record(networkId, ms(10));
+        stats.record(1L, ms(10));
+
+        TestObserver<NetworkEvent> lost = stats.clearOnLost(networkEvents).test();
+        networkEvents.onNext(NetworkEvent.available(network));
+        assertThat(stats.percentiles(networkId).count).isEqualTo(1);
+
+        networkEvents.onNext(NetworkEvent.lost(network));
+        lost.assertValueCount(1);
+        assertThat(stats.percentiles(networkId).count).isEqualTo(0);
+        assertThat(stats.percentiles(1L).count).isEqualTo(1);
+    }
+}
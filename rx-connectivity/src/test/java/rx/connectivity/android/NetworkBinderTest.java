@@ -0,0 +1,127 @@
+/*
+ * Copyright (C) 2017, Andrew Chen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package rx.connectivity.android;
+
+import android.net.Network;
+import android.net.NetworkRequest;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import io.reactivex.Observable;
+import io.reactivex.annotations.NonNull;
+import io.reactivex.annotations.Nullable;
+import io.reactivex.functions.Function;
+import io.reactivex.observers.TestObserver;
+import io.reactivex.subjects.PublishSubject;
+import rx.connectivity.BuildConfig;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class)
+public class NetworkBinderTest {
+    private final Network original = mock(Network.class);
+    private final Network wifi = mock(Network.class);
+    private final Network cellular = mock(Network.class);
+    private final NetworkRequest wifiRequest = mock(NetworkRequest.class);
+    private final NetworkRequest cellularRequest = mock(NetworkRequest.class);
+    private final Map<NetworkRequest, PublishSubject<NetworkEvent>> events =
+            new HashMap<NetworkRequest, PublishSubject<NetworkEvent>>();
+    private final List<Network> binds = new ArrayList<Network>();
+    private NetworkBinder binder;
+
+    @Before
+    public void setUp() {
+        events.put(wifiRequest, PublishSubject.<NetworkEvent>create());
+        events.put(cellularRequest, PublishSubject.<NetworkEvent>create());
+        binder = new NetworkBinder(null, new NetworkBinder.ProcessBinding() {
+            @Nullable
+            @Override
+            public Network bound() {
+                return original;
+            }
+
+            @Override
+            public void bind(@Nullable Network network) {
+                binds.add(network);
+            }
+        }, new Function<NetworkRequest, Observable<NetworkEvent>>() {
+            @Override
+            public Observable<NetworkEvent> apply(@NonNull NetworkRequest networkRequest) throws Exception {
+                return events.get(networkRequest);
+            }
+        });
+    }
+
+    @Test
+    public void refCounted() {
+        TestObserver<Network> foo = binder.bindTo(wifiRequest).test();
+        TestObserver<Network> bar = binder.bindTo(wifiRequest).test();
+        events.get(wifiRequest).onNext(NetworkEvent.available(wifi));
+        foo.assertValue(wifi);
+        bar.assertValue(wifi);
+        assertThat(binds).containsExactly(wifi);
+        assertThat(binder.boundNetwork()).isEqualTo(wifi);
+
+        foo.dispose();
+        assertThat(binds).containsExactly(wifi);
+        assertThat(events.get(wifiRequest).hasObservers()).isTrue();
+
+        bar.dispose();
+        assertThat(binds).containsExactly(wifi, original);
+        assertThat(events.get(wifiRequest).hasObservers()).isFalse();
+        assertThat(binder.boundNetwork()).isNull();
+    }
+
+    @Test
+    public void overlapping() {
+        TestObserver<Network> wifiBinding = binder.bindTo(wifiRequest).test();
+        events.get(wifiRequest).onNext(NetworkEvent.available(wifi));
+        TestObserver<Network> cellularBinding = binder.bindTo(cellularRequest).test();
+        events.get(cellularRequest).onNext(NetworkEvent.available(cellular));
+        assertThat(binds).containsExactly(wifi, cellular);
+
+        // Back to the earlier binding, then to the original one
+        cellularBinding.dispose();
+        assertThat(binds).containsExactly(wifi, cellular, wifi);
+        wifiBinding.dispose();
+        assertThat(binds).containsExactly(wifi, cellular, wifi, original);
+    }
+
+    @Test
+    public void lost() {
+        TestObserver<Network> wifiBinding = binder.bindTo(wifiRequest).test();
+        events.get(wifiRequest).onNext(NetworkEvent.available(wifi));
+        events.get(wifiRequest).onNext(NetworkEvent.lost(wifi));
+        assertThat(binds).containsExactly(wifi, original);
+
+        events.get(wifiRequest).onNext(NetworkEvent.available(wifi));
+        assertThat(binds).containsExactly(wifi, original, wifi);
+
+        wifiBinding.dispose();
+        assertThat(binds).containsExactly(wifi, original, wifi, original);
+    }
+}
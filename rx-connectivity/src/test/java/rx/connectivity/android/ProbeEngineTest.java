@@ -0,0 +1,308 @@
+/*
+ * Copyright (C) 2017, Andrew Chen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package rx.connectivity.android;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.NoRouteToHostException;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.observers.TestObserver;
+import io.reactivex.schedulers.Schedulers;
+import rx.connectivity.BuildConfig;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class)
+public class ProbeEngineTest {
+    private ProbeEngine engine;
+    private List<ServerSocketChannel> servers;
+
+    @Before
+    public void setUp() {
+        engine = new ProbeEngine(Schedulers.computation(), DnsResolver.get());
+        servers = new ArrayList<ServerSocketChannel>();
+    }
+
+    @After
+    public void tearDown() {
+        for (ServerSocketChannel server : servers) {
+            ProbeEngine.closeQuietly(server);
+        }
+    }
+
+    @Test
+    public void connect() throws Exception {
+        final InetSocketAddress live = listen();
+
+        TestObserver<ProbeResult> probe = engine.connect(live).test();
+        probe.awaitTerminalEvent(5, TimeUnit.SECONDS);
+        probe.assertNoErrors();
+        assertThat(probe.values().get(0).address).isEqualTo(live);
+        assertThat(probe.values().get(0).rttNanos).isPositive();
+    }
+
+    @Test
+    public void failoverWithoutWaiting() throws Exception {
+        final InetSocketAddress dead = dead();
+        final InetSocketAddress live = listen();
+
+        // The delay would time the race out, the refused attempt must start the next one at once
+        TestObserver<ProbeResult> race = engine.race(Arrays.asList(dead, live), 1, TimeUnit.MINUTES)
+                .timeout(5, TimeUnit.SECONDS)
+                .test();
+        race.awaitTerminalEvent(10, TimeUnit.SECONDS);
+        race.assertNoErrors();
+        assertThat(race.values().get(0).address).isEqualTo(live);
+    }
+
+    @Test
+    public void firstWins() throws Exception {
+        final InetSocketAddress first = listen();
+        final InetSocketAddress second = listen();
+
+        TestObserver<ProbeResult> race = engine.race(Arrays.asList(first, second), 1, TimeUnit.MINUTES).test();
+        race.awaitTerminalEvent(5, TimeUnit.SECONDS);
+        assertThat(race.values().get(0).address).isEqualTo(first);
+
+        // The second attempt was never started
+        servers.get(1).configureBlocking(false);
+        assertThat(servers.get(1).accept()).isNull();
+    }
+
+    @Test
+    public void allFail() throws Exception {
+        TestObserver<ProbeResult> race = engine.race(Arrays.asList(dead(), dead(), dead()),
+                10, TimeUnit.MILLISECONDS).test();
+        race.awaitTerminalEvent(5, TimeUnit.SECONDS);
+        race.assertError(ConnectException.class);
+    }
+
+    @Test
+    public void open() throws Exception {
+        final InetSocketAddress live = listen();
+
+        TestObserver<Connection> open = engine.open(live, null).test();
+        open.awaitTerminalEvent(5, TimeUnit.SECONDS);
+        open.assertNoErrors();
+        final Connection connection = open.values().get(0);
+        try {
+            // Deregistered from the selector, so it can go blocking
+            connection.channel.configureBlocking(true);
+            connection.channel.write(ByteBuffer.wrap(new byte[]{42}));
+
+            final SocketChannel accepted = servers.get(0).accept();
+            final ByteBuffer buffer = ByteBuffer.allocate(1);
+            accepted.read(buffer);
+            assertThat(buffer.get(0)).isEqualTo((byte) 42);
+            accepted.close();
+        } finally {
+            connection.close();
+        }
+    }
+
+    @Test
+    public void connectThroughRoute() throws Exception {
+        final InetSocketAddress live = listen();
+        final FakeRoute route = new FakeRoute(1L, "wifi", false);
+
+        TestObserver<ProbeResult> probe = engine.connect(live, route).test();
+        probe.awaitTerminalEvent(5, TimeUnit.SECONDS);
+        probe.assertNoErrors();
+        assertThat(probe.values().get(0).route).isSameAs(route);
+        assertThat(route.bound).isEqualTo(1);
+    }
+
+    @Test
+    public void resolveThroughRoute() throws Exception {
+        final InetSocketAddress live = listen();
+        final FakeRoute route = new FakeRoute(42L, "wifi", false) {
+            @Override
+            public InetAddress[] resolve(String host) throws UnknownHostException {
+                resolved++;
+                if (!host.equals("intranet.invalid")) throw new UnknownHostException(host);
+                return new InetAddress[]{live.getAddress()};
+            }
+        };
+
+        // Only the DNS servers of the network know the host
+        TestObserver<ProbeResult> probe = engine.race("intranet.invalid", live.getPort(), route,
+                5, TimeUnit.SECONDS).test();
+        probe.awaitTerminalEvent(5, TimeUnit.SECONDS);
+        probe.assertNoErrors();
+        assertThat(probe.values().get(0).route).isSameAs(route);
+        assertThat(route.resolved).isEqualTo(1);
+        assertThat(route.bound).isEqualTo(1);
+
+        TestObserver<Connection> connection = engine.raceNetworks(Arrays.<NetworkRoute>asList(route),
+                "intranet.invalid", live.getPort(), 5, TimeUnit.SECONDS).test();
+        connection.awaitTerminalEvent(5, TimeUnit.SECONDS);
+        connection.assertNoErrors();
+        connection.values().get(0).close();
+        // Cached for the network
+        assertThat(route.resolved).isEqualTo(1);
+    }
+
+    @Test
+    public void raceNetworks() throws Exception {
+        final InetSocketAddress live = listen();
+        final FakeRoute broken = new FakeRoute(1L, "broken", true);
+        final FakeRoute wifi = new FakeRoute(2L, "wifi", false);
+        final FakeRoute cellular = new FakeRoute(3L, "cellular", false);
+        final NetworkProvider provider = new NetworkProvider() {
+            @Override
+            public List<NetworkRoute> routes() {
+                return Arrays.<NetworkRoute>asList(broken, wifi, cellular);
+            }
+        };
+
+        TestObserver<Connection> race = RxConnectivity.connectFastest(provider,
+                live.getAddress().getHostAddress(), live.getPort(), 5, TimeUnit.SECONDS).test();
+        race.awaitTerminalEvent(5, TimeUnit.SECONDS);
+        race.assertNoErrors();
+        final Connection connection = race.values().get(0);
+        assertThat(connection.route).isIn(wifi, cellular);
+        assertThat(broken.bound).isEqualTo(1);
+
+        // Any loser is closed, the winner kept open
+        final int winnerPort = connection.channel.socket().getLocalPort();
+        final List<SocketChannel> accepted = acceptAll(servers.get(0), 500L);
+        assertThat(accepted).isNotEmpty();
+        for (SocketChannel channel : accepted) {
+            channel.configureBlocking(true);
+            channel.socket().setSoTimeout(200);
+            if (channel.socket().getPort() == winnerPort) {
+                try {
+                    channel.socket().getInputStream().read();
+                    fail("winner closed");
+                } catch (SocketTimeoutException expected) {
+                }
+            } else {
+                assertThat(readClosed(channel.socket())).isTrue();
+            }
+            channel.close();
+        }
+        connection.close();
+    }
+
+    @Test
+    public void raceNetworksFails() throws Exception {
+        final InetSocketAddress live = listen();
+        final String host = live.getAddress().getHostAddress();
+
+        TestObserver<Connection> none = engine.raceNetworks(Collections.<NetworkRoute>emptyList(),
+                host, live.getPort(), 5, TimeUnit.SECONDS).test();
+        none.awaitTerminalEvent(5, TimeUnit.SECONDS);
+        none.assertError(NoRouteToHostException.class);
+
+        TestObserver<Connection> broken = engine.raceNetworks(Arrays.<NetworkRoute>asList(
+                new FakeRoute(1L, "a", true), new FakeRoute(2L, "b", true)),
+                host, live.getPort(), 5, TimeUnit.SECONDS).test();
+        broken.awaitTerminalEvent(5, TimeUnit.SECONDS);
+        broken.assertError(IOException.class);
+    }
+
+    @Test
+    public void interleave() throws Exception {
+        final InetAddress v6a = InetAddress.getByName("::1");
+        final InetAddress v6b = InetAddress.getByName("::2");
+        final InetAddress v4a = InetAddress.getByName("127.0.0.1");
+        final InetAddress v4b = InetAddress.getByName("127.0.0.2");
+        final InetAddress v4c = InetAddress.getByName("127.0.0.3");
+
+        assertThat(ProbeEngine.interleave(Arrays.asList(v6a, v6b, v4a, v4b, v4c)))
+                .containsExactly(v6a, v4a, v6b, v4b, v4c);
+        assertThat(ProbeEngine.interleave(Arrays.asList(v4a, v4b, v6a)))
+                .containsExactly(v4a, v6a, v4b);
+    }
+
+    private InetSocketAddress listen() throws IOException {
+        final ServerSocketChannel server = ServerSocketChannel.open();
+        server.socket().bind(new InetSocketAddress(InetAddress.getByName("127.0.0.1"), 0));
+        servers.add(server);
+        return (InetSocketAddress) server.socket().getLocalSocketAddress();
+    }
+
+    private InetSocketAddress dead() throws IOException {
+        final ServerSocketChannel server = ServerSocketChannel.open();
+        server.socket().bind(new InetSocketAddress(InetAddress.getByName("127.0.0.1"), 0));
+        final InetSocketAddress address = (InetSocketAddress) server.socket().getLocalSocketAddress();
+        server.close();
+        return address;
+    }
+
+    private static List<SocketChannel> acceptAll(final ServerSocketChannel server, final long millis)
+            throws Exception {
+        server.configureBlocking(false);
+        final List<SocketChannel> accepted = new ArrayList<SocketChannel>();
+        final long deadline = System.currentTimeMillis() + millis;
+        while (System.currentTimeMillis() < deadline) {
+            final SocketChannel channel = server.accept();
+            if (channel != null) {
+                accepted.add(channel);
+            } else {
+                Thread.sleep(10);
+            }
+        }
+        return accepted;
+    }
+
+    private static boolean readClosed(final Socket socket) {
+        try {
+            return socket.getInputStream().read() == -1;
+        } catch (IOException reset) {
+            return !(reset instanceof SocketTimeoutException);
+        }
+    }
+
+    private static class FakeRoute extends NetworkRoute {
+        final boolean broken;
+        volatile int bound;
+        volatile int resolved;
+
+        FakeRoute(final long networkId, final String name, final boolean broken) {
+            super(networkId, name);
+            this.broken = broken;
+        }
+
+        @Override
+        public void bind(SocketChannel channel) throws IOException {
+            bound++;
+            if (broken) throw new NoRouteToHostException(name + " is gone");
+        }
+    }
+}
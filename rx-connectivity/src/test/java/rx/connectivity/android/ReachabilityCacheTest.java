@@ -0,0 +1,124 @@
+/*
+ * Copyright (C) 2017, Andrew Chen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package rx.connectivity.android;
+
+import android.net.Network;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.reactivex.observers.TestObserver;
+import io.reactivex.schedulers.TestScheduler;
+import io.reactivex.subjects.PublishSubject;
+import rx.connectivity.BuildConfig;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class)
+public class ReachabilityCacheTest {
+    private TestScheduler scheduler;
+    private AtomicInteger probes;
+    private PublishSubject<NetworkEvent> networkEvents;
+    private ReachabilityCache cache;
+
+    @Before
+    public void setUp() {
+        scheduler = new TestScheduler();
+        probes = new AtomicInteger();
+        networkEvents = PublishSubject.create();
+        cache = new ReachabilityCache(new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws Exception {
+                probes.incrementAndGet();
+                return true;
+            }
+        }, scheduler, 1000L, networkEvents);
+    }
+
+    @Test
+    public void inFlight() {
+        TestObserver<Boolean> foo = cache.isReachable(100L).test();
+        TestObserver<Boolean> bar = cache.isReachable(100L).test();
+        TestObserver<Boolean> other = cache.isReachable(101L).test();
+        scheduler.triggerActions();
+
+        foo.assertValue(true);
+        bar.assertValue(true);
+        other.assertValue(true);
+        assertThat(probes.get()).isEqualTo(2);
+        assertThat(cache.probeCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void ttl() {
+        cache.isReachable(100L).test();
+        scheduler.triggerActions();
+
+        scheduler.advanceTimeBy(999, TimeUnit.MILLISECONDS);
+        cache.isReachable(100L).test().assertValue(true);
+        assertThat(probes.get()).isEqualTo(1);
+
+        scheduler.advanceTimeBy(1, TimeUnit.MILLISECONDS);
+        TestObserver<Boolean> expired = cache.isReachable(100L).test();
+        scheduler.triggerActions();
+        expired.assertValue(true);
+        assertThat(probes.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void invalidate() {
+        cache.isReachable(100L).test();
+        TestObserver<Boolean> running = cache.isReachable(101L).test();
+        scheduler.triggerActions();
+        TestObserver<Boolean> invalidated = cache.isReachable(102L).test();
+        cache.invalidate(102L);
+        cache.invalidate(100L);
+
+        cache.isReachable(101L).test().assertValue(true);
+        cache.isReachable(100L).test();
+        cache.isReachable(102L).test();
+        scheduler.triggerActions();
+        running.assertValue(true);
+        invalidated.assertValue(true);
+        assertThat(probes.get()).isEqualTo(5);
+    }
+
+    @Test
+    public void invalidations() {
+        final Network network = mock(Network.class);
+        final long networkId = 0L; // handle of the mock
+        cache.isReachable(networkId).test();
+        scheduler.triggerActions();
+
+        TestObserver<NetworkEvent> invalidations = cache.invalidations().test();
+        networkEvents.onNext(NetworkEvent.available(network));
+        networkEvents.onNext(NetworkEvent.lost(network));
+        invalidations.assertValueCount(1);
+
+        cache.isReachable(networkId).test();
+        scheduler.triggerActions();
+        assertThat(probes.get()).isEqualTo(2);
+    }
+}
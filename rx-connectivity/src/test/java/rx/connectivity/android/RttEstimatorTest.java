@@ -0,0 +1,141 @@
+/*
+ * Copyright (C) 2017, Andrew Chen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package rx.connectivity.android;
+
+import android.net.Network;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.observers.TestObserver;
+import io.reactivex.subjects.PublishSubject;
+import rx.connectivity.BuildConfig;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class)
+public class RttEstimatorTest {
+    private static long ms(long millis) {
+        return TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+
+    @Test
+    public void initial() {
+        final RttEstimate estimate = new RttEstimator().estimate();
+        assertThat(estimate.reason).isEqualTo(RttEstimate.INITIAL);
+        assertThat(estimate.timeoutMillis).isEqualTo(RttEstimator.INITIAL_TIMEOUT_MILLIS);
+        assertThat(estimate.srttMillis).isEqualTo(-1L);
+    }
+
+    @Test
+    public void jacobsonKarels() {
+        final RttEstimator estimator = new RttEstimator(1, 60000, TimeUnit.MILLISECONDS);
+        estimator.onSample(ms(400));
+        // SRTT = 400, RTTVAR = 200
+        assertThat(estimator.estimate().srttMillis).isEqualTo(400);
+        assertThat(estimator.estimate().rttvarMillis).isEqualTo(200);
+        assertThat(estimator.timeoutMillis()).isEqualTo(1200);
+
+        estimator.onSample(ms(800));
+        // RTTVAR = 3/4 * 200 + 1/4 * 400 = 250, SRTT = 7/8 * 400 + 1/8 * 800 = 450
+        assertThat(estimator.estimate().rttvarMillis).isEqualTo(250);
+        assertThat(estimator.estimate().srttMillis).isEqualTo(450);
+        assertThat(estimator.timeoutMillis()).isEqualTo(1450);
+        assertThat(estimator.estimate().reason).isEqualTo(RttEstimate.ESTIMATED);
+    }
+
+    @Test
+    public void converges() {
+        final RttEstimator estimator = new RttEstimator(1, 60000, TimeUnit.MILLISECONDS);
+        for (int i = 0; i < 100; i++) {
+            estimator.onSample(ms(20));
+        }
+        assertThat(estimator.estimate().srttMillis).isEqualTo(20);
+        assertThat(estimator.timeoutMillis()).isBetween(20L, 25L);
+    }
+
+    @Test
+    public void clamped() {
+        final RttEstimator estimator = new RttEstimator(200, 10000, TimeUnit.MILLISECONDS);
+        estimator.onSample(ms(2));
+        assertThat(estimator.estimate().reason).isEqualTo(RttEstimate.MIN);
+        assertThat(estimator.timeoutMillis()).isEqualTo(200);
+
+        estimator.onSample(ms(60000));
+        assertThat(estimator.estimate().reason).isEqualTo(RttEstimate.MAX);
+        assertThat(estimator.timeoutMillis()).isEqualTo(10000);
+    }
+
+    @Test
+    public void karn() {
+        final RttEstimator estimator = new RttEstimator(1, 10000, TimeUnit.MILLISECONDS);
+        estimator.onSample(ms(100));
+        final long timeout = estimator.timeoutMillis();
+
+        estimator.onTimeout();
+        assertThat(estimator.timeoutMillis()).isEqualTo(2 * timeout);
+        assertThat(estimator.estimate().reason).isEqualTo(RttEstimate.BACKED_OFF);
+        estimator.onTimeout();
+        assertThat(estimator.timeoutMillis()).isEqualTo(4 * timeout);
+        assertThat(estimator.estimate().srttMillis).isEqualTo(100);
+
+        for (int i = 0; i < 100; i++) {
+            estimator.onTimeout();
+        }
+        assertThat(estimator.timeoutMillis()).isEqualTo(10000);
+
+        estimator.onSample(ms(100));
+        assertThat(estimator.estimate().timeouts).isEqualTo(0);
+        assertThat(estimator.timeoutMillis()).isLessThan(timeout);
+    }
+
+    @Test
+    public void registry() {
+        final RttRegistry registry = new RttRegistry();
+        assertThat(registry.estimator(1L, "example.com")).isSameAs(registry.estimator(1L, "example.com"));
+        assertThat(registry.estimator(1L, "example.com")).isNotSameAs(registry.estimator(2L, "example.com"));
+
+        registry.estimator(1L, "example.com").onSample(ms(100));
+        assertThat(registry.estimate(1L, "example.com").samples).isEqualTo(1);
+        registry.clear(1L);
+        assertThat(registry.estimate(1L, "example.com").samples).isEqualTo(0);
+    }
+
+    @Test
+    public void clearOnLost() {
+        final RttRegistry registry = new RttRegistry();
+        final PublishSubject<NetworkEvent> networkEvents = PublishSubject.create();
+        final Network network = mock(Network.class);
+        final long networkId = 0L; // handle of the mock
+        registry.estimator(networkId, "example.com").onSample(ms(100));
+        registry.estimator(1L, "example.com").onSample(ms(100));
+
+        TestObserver<NetworkEvent> lost = registry.clearOnLost(networkEvents).test();
+        networkEvents.onNext(NetworkEvent.available(network));
+        assertThat(registry.estimate(networkId, "example.com").samples).isEqualTo(1);
+
+        networkEvents.onNext(NetworkEvent.lost(network));
+        lost.assertValueCount(1);
+        assertThat(registry.estimate(networkId, "example.com").samples).isEqualTo(0);
+        assertThat(registry.estimate(1L, "example.com").samples).isEqualTo(1);
+    }
+}
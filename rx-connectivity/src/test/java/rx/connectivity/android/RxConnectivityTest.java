@@ -16,8 +16,12 @@
 package rx.connectivity.android;
 
 import android.content.Context;
+import android.content.Intent;
 import android.net.ConnectivityManager;
 import android.net.Network;
+import android.net.NetworkInfo;
+
+import java.util.Map;
 
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -26,8 +30,15 @@ import org.robolectric.RuntimeEnvironment;
 import org.robolectric.annotation.Config;
 import org.robolectric.shadows.ShadowConnectivityManager;
 
+import io.reactivex.observers.TestObserver;
+import io.reactivex.subjects.PublishSubject;
 import rx.connectivity.BuildConfig;
 
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
 import static org.robolectric.Shadows.shadowOf;
 
 @RunWith(RobolectricTestRunner.class)
@@ -44,5 +55,147 @@ public class RxConnectivityTest {
         // verify(ConnectivityManager.bindProcessToNetwork())
     }
 
+    @Test
+    public void connectivityHub() {
+        final Context context = RuntimeEnvironment.application;
+        final ConnectivityHub hub = new ConnectivityHub(context);
+
+        TestObserver<Intent> foo = hub.connectivity().test();
+        TestObserver<Intent> bar = hub.connectivity().test();
+        assertThat(hub.subscriberCount()).isEqualTo(2);
+        assertThat(hub.registeredCount()).isEqualTo(1);
+
+        Intent intent = new Intent(ConnectivityManager.CONNECTIVITY_ACTION);
+        context.sendBroadcast(intent);
+        foo.assertValueCount(1);
+        bar.assertValueCount(1);
+
+        TestObserver<Intent> late = hub.connectivity().test();
+        late.assertValueCount(1);
+        assertThat(hub.registrationCount()).isEqualTo(1);
+
+        foo.dispose();
+        bar.dispose();
+        late.dispose();
+        assertThat(hub.subscriberCount()).isEqualTo(0);
+        assertThat(hub.registeredCount()).isEqualTo(0);
+
+        hub.connectivity().test().dispose();
+        assertThat(hub.registrationCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void networkTable() {
+        final PublishSubject<NetworkEvent> events = PublishSubject.create();
+        final NetworkTable table = new NetworkTable(null, events);
+        final Network wifi = mock(Network.class);
+        final Network cellular = mock(Network.class);
+
+        TestObserver<Map<Network, NetworkTable.Entry>> changes = table.changes().test();
+        events.onNext(NetworkEvent.available(wifi));
+        events.onNext(NetworkEvent.available(cellular));
+        assertThat(table.snapshot()).containsOnlyKeys(wifi, cellular);
+
+        events.onNext(NetworkEvent.losing(wifi, 1000));
+        assertThat(table.get(wifi).losing).isTrue();
+        assertThat(table.get(cellular).losing).isFalse();
+
+        events.onNext(NetworkEvent.lost(wifi));
+        events.onNext(NetworkEvent.lost(wifi));
+        events.onNext(NetworkEvent.unavailable());
+        assertThat(table.snapshot()).containsOnlyKeys(cellular);
+        changes.assertValueCount(4);
+
+        changes.dispose();
+        assertThat(events.hasObservers()).isFalse();
+        assertThat(table.snapshot()).isEmpty();
+    }
+
+    @Test
+    public void connectivityStates() {
+        final Context context = RuntimeEnvironment.application;
+        final ConnectivityManager connectivityManager =
+                (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+        final ConnectivityHub hub = new ConnectivityHub(context);
+
+        TestObserver<ConnectivityState> states = hub.connectivityStates().test();
+        context.sendBroadcast(new Intent(ConnectivityManager.CONNECTIVITY_ACTION));
+        context.sendBroadcast(new Intent(ConnectivityManager.CONNECTIVITY_ACTION));
+        states.assertValueCount(1);
+        assertThat(states.values().get(0).connected).isTrue();
+
+        shadowOf(connectivityManager).setActiveNetworkInfo(null);
+        context.sendBroadcast(new Intent(ConnectivityManager.CONNECTIVITY_ACTION));
+        states.assertValueCount(2);
+        assertThat(states.values().get(1)).isEqualTo(ConnectivityState.DISCONNECTED);
+
+        TestObserver<ConnectivityState> late = hub.connectivityStates().test();
+        late.assertValue(ConnectivityState.DISCONNECTED);
+        assertThat(hub.registeredCount()).isEqualTo(1);
+        states.dispose();
+        late.dispose();
+        assertThat(hub.registeredCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void connectivityState() {
+        final NetworkInfo networkInfo = mock(NetworkInfo.class);
+        when(networkInfo.isConnected()).thenReturn(true);
+        when(networkInfo.getType()).thenReturn(ConnectivityManager.TYPE_WIFI);
+
+        final ConnectivityState state = ConnectivityState.of(networkInfo, false, 100L);
+        assertThat(state).isEqualTo(ConnectivityState.of(networkInfo, false, 100L));
+        assertThat(state).isNotEqualTo(ConnectivityState.of(networkInfo, true, 100L));
+        assertThat(state).isNotEqualTo(ConnectivityState.of(networkInfo, false, 101L));
+
+        when(networkInfo.isRoaming()).thenReturn(true);
+        assertThat(ConnectivityState.of(networkInfo, false, 100L).roaming).isTrue();
+    }
 
+    @Test
+    public void connectivityStateOfIntent() {
+        final ConnectivityManager connectivityManager = mock(ConnectivityManager.class);
+        final Intent lost = new Intent(ConnectivityManager.CONNECTIVITY_ACTION)
+                .putExtra(ConnectivityManager.EXTRA_NO_CONNECTIVITY, true);
+        assertThat(ConnectivityState.of(connectivityManager, lost)).isSameAs(ConnectivityState.DISCONNECTED);
+        verifyZeroInteractions(connectivityManager);
+
+        final NetworkInfo networkInfo = mock(NetworkInfo.class);
+        when(networkInfo.isConnected()).thenReturn(true);
+        when(networkInfo.getType()).thenReturn(ConnectivityManager.TYPE_WIFI);
+        when(connectivityManager.getActiveNetworkInfo()).thenReturn(networkInfo);
+        final Intent connected = new Intent(ConnectivityManager.CONNECTIVITY_ACTION)
+                .putExtra(ConnectivityManager.EXTRA_NETWORK_INFO, networkInfo);
+        final ConnectivityState state = ConnectivityState.of(connectivityManager, connected);
+        assertThat(state.connected).isTrue();
+        assertThat(state.type).isEqualTo(ConnectivityManager.TYPE_WIFI);
+
+        // The broadcast of another network going down tells nothing about the active one
+        final NetworkInfo mobile = mock(NetworkInfo.class);
+        when(mobile.getType()).thenReturn(ConnectivityManager.TYPE_MOBILE);
+        final Intent failover = new Intent(ConnectivityManager.CONNECTIVITY_ACTION)
+                .putExtra(ConnectivityManager.EXTRA_NETWORK_INFO, mobile);
+        assertThat(ConnectivityState.of(connectivityManager, failover).type).isEqualTo(ConnectivityManager.TYPE_WIFI);
+    }
+
+    @Test
+    public void connectivityStateOfBackgroundNetwork() {
+        final ConnectivityManager connectivityManager = mock(ConnectivityManager.class);
+        final NetworkInfo wifi = mock(NetworkInfo.class);
+        when(wifi.isConnected()).thenReturn(true);
+        when(wifi.getType()).thenReturn(ConnectivityManager.TYPE_WIFI);
+        when(connectivityManager.getActiveNetworkInfo()).thenReturn(wifi);
+
+        // Mobile coming up while wifi stays the default
+        final NetworkInfo mobile = mock(NetworkInfo.class);
+        when(mobile.isConnected()).thenReturn(true);
+        when(mobile.isRoaming()).thenReturn(true);
+        when(mobile.getType()).thenReturn(ConnectivityManager.TYPE_MOBILE);
+        final Intent background = new Intent(ConnectivityManager.CONNECTIVITY_ACTION)
+                .putExtra(ConnectivityManager.EXTRA_NETWORK_INFO, mobile);
+        final ConnectivityState state = ConnectivityState.of(connectivityManager, background);
+        assertThat(state.type).isEqualTo(ConnectivityManager.TYPE_WIFI);
+        assertThat(state.roaming).isFalse();
+        assertThat(state).isEqualTo(ConnectivityState.of(connectivityManager));
+    }
 }
@@ -0,0 +1,102 @@
+/*
+ * Copyright (C) 2017, Andrew Chen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package rx.connectivity.android;
+
+import android.net.ConnectivityManager;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.observers.TestObserver;
+import io.reactivex.schedulers.TestScheduler;
+import io.reactivex.subjects.PublishSubject;
+import rx.connectivity.BuildConfig;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class)
+public class SettleWindowTest {
+    private static final ConnectivityState WIFI =
+            new ConnectivityState(true, ConnectivityManager.TYPE_WIFI, false, false, 100L);
+    private static final ConnectivityState MOBILE =
+            new ConnectivityState(true, ConnectivityManager.TYPE_MOBILE, true, false, 101L);
+
+    private TestScheduler scheduler;
+    private PublishSubject<ConnectivityState> states;
+    private TestObserver<ConnectivityState> settled;
+
+    @Before
+    public void setUp() {
+        scheduler = new TestScheduler();
+        states = PublishSubject.create();
+        settled = states.compose(SettleWindow.of(300, 2000, TimeUnit.MILLISECONDS, scheduler)).test();
+    }
+
+    @Test
+    public void handoverBurst() {
+        states.onNext(WIFI);
+        scheduler.advanceTimeBy(300, TimeUnit.MILLISECONDS);
+        settled.assertValues(WIFI);
+
+        // wifi -> cellular handover
+        states.onNext(ConnectivityState.DISCONNECTED);
+        scheduler.advanceTimeBy(100, TimeUnit.MILLISECONDS);
+        states.onNext(MOBILE);
+        scheduler.advanceTimeBy(50, TimeUnit.MILLISECONDS);
+        states.onNext(ConnectivityState.DISCONNECTED);
+        scheduler.advanceTimeBy(100, TimeUnit.MILLISECONDS);
+        states.onNext(MOBILE);
+        scheduler.advanceTimeBy(299, TimeUnit.MILLISECONDS);
+        settled.assertValues(WIFI);
+
+        scheduler.advanceTimeBy(1, TimeUnit.MILLISECONDS);
+        settled.assertValues(WIFI, MOBILE);
+    }
+
+    @Test
+    public void offlineSlowly() {
+        states.onNext(ConnectivityState.DISCONNECTED);
+        scheduler.advanceTimeBy(1999, TimeUnit.MILLISECONDS);
+        settled.assertNoValues();
+
+        scheduler.advanceTimeBy(1, TimeUnit.MILLISECONDS);
+        settled.assertValues(ConnectivityState.DISCONNECTED);
+    }
+
+    @Test
+    public void onlineFast() {
+        states.onNext(ConnectivityState.DISCONNECTED);
+        scheduler.advanceTimeBy(1000, TimeUnit.MILLISECONDS);
+        states.onNext(WIFI);
+        scheduler.advanceTimeBy(300, TimeUnit.MILLISECONDS);
+        settled.assertValues(WIFI);
+    }
+
+    @Test
+    public void distinct() {
+        states.onNext(WIFI);
+        scheduler.advanceTimeBy(1, TimeUnit.SECONDS);
+        states.onNext(ConnectivityState.DISCONNECTED);
+        scheduler.advanceTimeBy(500, TimeUnit.MILLISECONDS);
+        states.onNext(WIFI);
+        scheduler.advanceTimeBy(1, TimeUnit.SECONDS);
+        settled.assertValues(WIFI);
+    }
+}
@@ -0,0 +1,240 @@
+/*
+ * Copyright (C) 2017, Andrew Chen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package rx.connectivity.android;
+
+import android.net.Network;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.functions.Function;
+import io.reactivex.observers.TestObserver;
+import io.reactivex.schedulers.Schedulers;
+import io.reactivex.schedulers.TestScheduler;
+import io.reactivex.subjects.PublishSubject;
+import rx.connectivity.BuildConfig;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class)
+public class WarmupPoolTest {
+    private static final long IDLE_MILLIS = 10000L;
+
+    private final Network wifi = mock(Network.class);
+    private final Network cellular = mock(Network.class);
+    private final PublishSubject<NetworkEvent> events = PublishSubject.create();
+    private final TestScheduler scheduler = new TestScheduler();
+    private WarmupPool warmupPool;
+    private List<ServerSocketChannel> servers;
+
+    @Before
+    public void setUp() {
+        warmupPool = new WarmupPool(new ProbeEngine(Schedulers.computation(), DnsResolver.get()),
+                scheduler, IDLE_MILLIS, 2);
+        servers = new ArrayList<ServerSocketChannel>();
+    }
+
+    @After
+    public void tearDown() {
+        warmupPool.clear();
+        for (ServerSocketChannel server : servers) {
+            ProbeEngine.closeQuietly(server);
+        }
+    }
+
+    @Test
+    public void borrow() throws Exception {
+        final InetSocketAddress foo = listen();
+        final InetSocketAddress bar = listen();
+        warmupPool.setHosts(foo, bar);
+        final TestObserver<InetSocketAddress> warmed = watch();
+
+        events.onNext(NetworkEvent.available(wifi));
+        awaitCount(warmed, 2);
+        assertThat(warmupPool.size()).isEqualTo(2);
+
+        final Connection connection = warmupPool.borrow("127.0.0.1", foo.getPort());
+        assertThat(connection).isNotNull();
+        assertThat(connection.channel.isConnected()).isTrue();
+        assertThat(connection.route.networkId).isEqualTo(1L);
+        connection.close();
+        assertThat(warmupPool.borrow("127.0.0.1", foo.getPort())).isNull();
+
+        final WarmupStats stats = warmupPool.stats();
+        assertThat(stats.warmed).isEqualTo(2);
+        assertThat(stats.hits).isEqualTo(1);
+        assertThat(stats.misses).isEqualTo(1);
+        assertThat(stats.hitRate()).isEqualTo(0.5f);
+        assertThat(stats.usage()).isEqualTo(0.5f);
+    }
+
+    @Test
+    public void dropOnLost() throws Exception {
+        final InetSocketAddress foo = listen();
+        warmupPool.setHosts(foo);
+        final TestObserver<InetSocketAddress> warmed = watch();
+
+        events.onNext(NetworkEvent.available(wifi));
+        events.onNext(NetworkEvent.available(cellular));
+        awaitCount(warmed, 2);
+        assertThat(warmupPool.size()).isEqualTo(2);
+
+        events.onNext(NetworkEvent.lost(wifi));
+        assertThat(warmupPool.size()).isEqualTo(1);
+        assertThat(warmupPool.stats().dropped).isEqualTo(1);
+
+        final Connection connection = warmupPool.borrow("127.0.0.1", foo.getPort());
+        assertThat(connection.route.networkId).isEqualTo(2L);
+        connection.close();
+    }
+
+    @Test
+    public void borrowOnNetwork() throws Exception {
+        final InetSocketAddress foo = listen();
+        warmupPool.setHosts(foo);
+        final TestObserver<InetSocketAddress> warmed = watch();
+
+        events.onNext(NetworkEvent.available(wifi));
+        awaitCount(warmed, 1);
+
+        assertThat(warmupPool.borrow("127.0.0.1", foo.getPort(), 2L)).isNull();
+        assertThat(warmupPool.size()).isEqualTo(1);
+        final Connection connection = warmupPool.borrow("127.0.0.1", foo.getPort(), 1L);
+        assertThat(connection.route.networkId).isEqualTo(1L);
+        connection.close();
+        assertThat(warmupPool.stats().misses).isEqualTo(1);
+    }
+
+    @Test
+    public void dropWithWarmedRoute() throws Exception {
+        final InetSocketAddress foo = listen();
+        warmupPool.setHosts(foo);
+        final NetworkRoute route = new NetworkRoute(1L, "wifi") {
+            @Override
+            public void bind(SocketChannel channel) throws IOException {
+            }
+        };
+        // As before M, only the default network has a route, and none once lost
+        final TestObserver<InetSocketAddress> warmed = warmupPool.watch(events, new Function<Network, NetworkRoute>() {
+            private boolean asked;
+
+            @Override
+            public NetworkRoute apply(Network network) throws Exception {
+                if (network != wifi || asked) return null;
+                asked = true;
+                return route;
+            }
+        }).test();
+
+        events.onNext(NetworkEvent.available(wifi));
+        events.onNext(NetworkEvent.available(cellular));
+        awaitCount(warmed, 1);
+
+        // Unknown to the pool, keeps the connections of the default network
+        events.onNext(NetworkEvent.lost(cellular));
+        assertThat(warmupPool.size()).isEqualTo(1);
+
+        events.onNext(NetworkEvent.lost(wifi));
+        assertThat(warmupPool.size()).isEqualTo(0);
+        assertThat(warmupPool.stats().dropped).isEqualTo(1);
+    }
+
+    @Test
+    public void evictIdle() throws Exception {
+        final InetSocketAddress foo = listen();
+        warmupPool.setHosts(foo);
+        final TestObserver<InetSocketAddress> warmed = watch();
+
+        events.onNext(NetworkEvent.available(wifi));
+        awaitCount(warmed, 1);
+
+        scheduler.advanceTimeBy(IDLE_MILLIS, TimeUnit.MILLISECONDS);
+        assertThat(warmupPool.size()).isEqualTo(0);
+        assertThat(warmupPool.stats().evicted).isEqualTo(1);
+        assertThat(warmupPool.borrow("127.0.0.1", foo.getPort())).isNull();
+    }
+
+    @Test
+    public void evictClosedByPeer() throws Exception {
+        final InetSocketAddress foo = listen();
+        warmupPool.setHosts(foo);
+        final TestObserver<InetSocketAddress> warmed = watch();
+
+        events.onNext(NetworkEvent.available(wifi));
+        awaitCount(warmed, 1);
+        final SocketChannel accepted = servers.get(0).accept();
+        accepted.close();
+        Thread.sleep(100);
+
+        assertThat(warmupPool.borrow("127.0.0.1", foo.getPort())).isNull();
+        assertThat(warmupPool.stats().evicted).isEqualTo(1);
+        assertThat(warmupPool.stats().misses).isEqualTo(1);
+    }
+
+    @Test
+    public void closeOnDispose() throws Exception {
+        warmupPool.setHosts(listen());
+        final TestObserver<InetSocketAddress> warmed = watch();
+
+        events.onNext(NetworkEvent.available(wifi));
+        awaitCount(warmed, 1);
+
+        warmed.dispose();
+        assertThat(warmupPool.size()).isEqualTo(0);
+    }
+
+    private TestObserver<InetSocketAddress> watch() {
+        return warmupPool.watch(events, new Function<Network, NetworkRoute>() {
+            @Override
+            public NetworkRoute apply(Network network) throws Exception {
+                return new NetworkRoute(network == wifi ? 1L : 2L, network == wifi ? "wifi" : "cellular") {
+                    @Override
+                    public void bind(SocketChannel channel) throws IOException {
+                    }
+                };
+            }
+        }).test();
+    }
+
+    private static void awaitCount(final TestObserver<?> observer, final int count) throws InterruptedException {
+        for (int i = 0; i < 500 && observer.valueCount() < count; i++) {
+            Thread.sleep(10);
+        }
+        assertThat(observer.valueCount()).isEqualTo(count);
+    }
+
+    private InetSocketAddress listen() throws IOException {
+        final ServerSocketChannel server = ServerSocketChannel.open();
+        server.socket().bind(new InetSocketAddress(InetAddress.getByName("127.0.0.1"), 0));
+        servers.add(server);
+        return InetSocketAddress.createUnresolved("127.0.0.1", server.socket().getLocalPort());
+    }
+}
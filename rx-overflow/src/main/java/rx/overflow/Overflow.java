@@ -0,0 +1,119 @@
+/*
+ * Copyright (C) 2017, Andrew Chen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package rx.overflow;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.reactivex.BackpressureOverflowStrategy;
+import io.reactivex.BackpressureStrategy;
+import io.reactivex.Flowable;
+import io.reactivex.Observable;
+import io.reactivex.annotations.NonNull;
+import io.reactivex.functions.Action;
+import io.reactivex.functions.Consumer;
+
+/**
+ * How a Flowable variant of a broadcast stream treats events its consumer is not ready for,
+ * instead of buffering them without bound, e.g. for a database writer behind a burst of
+ * connectivity changes. Shared by the Flowable variants of RxConnectivity and RxWifi, kept in
+ * its own module so that neither library pulls in the permissions of the other.
+ *
+ * Counts the events it drops, so use one instance per stream to read {@link #dropped()}.
+ *
+ * <pre>
+ * Overflow overflow = Overflow.buffer(64);
+ * RxConnectivity.connectivity(context, overflow).observeOn(Schedulers.io(), false, 1).subscribe(writer);
+ * RxWifi.scan(context, Overflow.latest()).subscribe(scanner);
+ * </pre>
+ */
+public class Overflow {
+    static final int LATEST = 0;
+    static final int DROP = 1;
+    static final int BUFFER = 2;
+
+    private final int strategy;
+    private final int capacity;
+    @NonNull
+    private final AtomicLong dropped = new AtomicLong();
+
+    Overflow(final int strategy, final int capacity) {
+        if (capacity < 1) throw new IllegalArgumentException("capacity must be > 0");
+        this.strategy = strategy;
+        this.capacity = capacity;
+    }
+
+    /**
+     * @return keeps only the latest event, dropping older ones
+     */
+    @NonNull
+    public static Overflow latest() {
+        return new Overflow(LATEST, 1);
+    }
+
+    /**
+     * @return drops events while the consumer is not ready
+     */
+    @NonNull
+    public static Overflow drop() {
+        return new Overflow(DROP, 1);
+    }
+
+    /**
+     * @param capacity
+     * @return buffers up to capacity events, dropping the oldest ones once full
+     */
+    @NonNull
+    public static Overflow buffer(final int capacity) {
+        return new Overflow(BUFFER, capacity);
+    }
+
+    /**
+     * @return events dropped so far by every stream using this overflow
+     */
+    public long dropped() {
+        return dropped.get();
+    }
+
+    /**
+     * @param source
+     * @param <T>
+     * @return the source with this overflow strategy
+     */
+    @NonNull
+    public <T> Flowable<T> apply(@NonNull final Observable<T> source) {
+        final Flowable<T> flowable = source.toFlowable(BackpressureStrategy.MISSING);
+        if (strategy == DROP) {
+            return flowable.onBackpressureDrop(new Consumer<T>() {
+                @Override
+                public void accept(T t) throws Exception {
+                    dropped.incrementAndGet();
+                }
+            });
+        }
+        return flowable.onBackpressureBuffer(capacity, new Action() {
+            @Override
+            public void run() throws Exception {
+                dropped.incrementAndGet();
+            }
+        }, BackpressureOverflowStrategy.DROP_OLDEST);
+    }
+
+    @Override
+    public String toString() {
+        return "Overflow{" + (strategy == LATEST ? "latest" : strategy == DROP ? "drop" : "buffer(" + capacity + ")")
+                + ", dropped=" + dropped + "}";
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) 2017, Andrew Chen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package rx.overflow;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import io.reactivex.subjects.PublishSubject;
+import io.reactivex.subscribers.TestSubscriber;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class)
+public class OverflowTest {
+    private final PublishSubject<Integer> events = PublishSubject.create();
+
+    @Test
+    public void latest() throws Exception {
+        final Overflow overflow = Overflow.latest();
+        final TestSubscriber<Integer> subscriber = overflow.apply(events).test(0L);
+        emit(1, 2, 3, 4);
+
+        subscriber.request(1L);
+        subscriber.assertValues(4);
+        assertThat(overflow.dropped()).isEqualTo(3L);
+    }
+
+    @Test
+    public void drop() throws Exception {
+        final Overflow overflow = Overflow.drop();
+        final TestSubscriber<Integer> subscriber = overflow.apply(events).test(1L);
+        emit(1, 2, 3);
+
+        subscriber.request(1L);
+        emit(4);
+        subscriber.assertValues(1, 4);
+        assertThat(overflow.dropped()).isEqualTo(2L);
+    }
+
+    @Test
+    public void buffer() throws Exception {
+        final Overflow overflow = Overflow.buffer(2);
+        final TestSubscriber<Integer> subscriber = overflow.apply(events).test(0L);
+        emit(1, 2, 3, 4, 5);
+
+        subscriber.request(Long.MAX_VALUE);
+        subscriber.assertValues(4, 5);
+        subscriber.assertNoErrors();
+        assertThat(overflow.dropped()).isEqualTo(3L);
+    }
+
+    @Test
+    public void bounded() throws Exception {
+        final Overflow overflow = Overflow.buffer(16);
+        final TestSubscriber<Integer> subscriber = overflow.apply(events).test(0L);
+        for (int i = 0; i < 100000; i++) {
+            events.onNext(i);
+        }
+
+        subscriber.request(Long.MAX_VALUE);
+        subscriber.assertValueCount(16);
+        assertThat(overflow.dropped()).isEqualTo(100000L - 16L);
+    }
+
+    private void emit(Integer... values) {
+        for (Integer value : values) {
+            events.onNext(value);
+        }
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright (C) 2017, Andrew Chen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package rx.wifi.android;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+/**
+ * BSSIDs packed into the low 48 bits of a long.
+ */
+public final class Bssids {
+    public static final long INVALID = -1L;
+    /**
+     * {@link android.net.wifi.WifiConfiguration#BSSID} of a network not restricted to one access point
+     */
+    public static final String ANY = "any";
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private Bssids() {
+    }
+
+    /**
+     * @param bssid "xx:xx:xx:xx:xx:xx", case-insensitive, ':' or '-' separated
+     * @return the packed BSSID, or {@link #INVALID}
+     */
+    public static long parse(@Nullable final String bssid) {
+        if (bssid == null || bssid.length() != 17) return INVALID;
+
+        long value = 0;
+        for (int i = 0; i < 17; i++) {
+            final char c = bssid.charAt(i);
+            if (i % 3 == 2) {
+                if (c != ':' && c != '-') return INVALID;
+                continue;
+            }
+            final int digit = Character.digit(c, 16);
+            if (digit < 0) return INVALID;
+            value = (value << 4) | digit;
+        }
+        return value;
+    }
+
+    /**
+     * @param bssid packed BSSID
+     * @return "xx:xx:xx:xx:xx:xx"
+     */
+    @NonNull
+    public static String toString(final long bssid) {
+        final char[] chars = new char[17];
+        for (int i = 0; i < 6; i++) {
+            final int octet = (int) (bssid >>> (8 * (5 - i))) & 0xff;
+            chars[i * 3] = HEX[octet >>> 4];
+            chars[i * 3 + 1] = HEX[octet & 0xf];
+            if (i < 5) chars[i * 3 + 2] = ':';
+        }
+        return new String(chars);
+    }
+
+    static int hash(final long bssid) {
+        // The low octets are the most random part of a MAC address, mix them all the same
+        final long h = bssid * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
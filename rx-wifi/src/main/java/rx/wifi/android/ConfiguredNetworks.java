@@ -0,0 +1,153 @@
+/*
+ * Copyright (C) 2017, Andrew Chen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package rx.wifi.android;
+
+import android.net.wifi.ScanResult;
+import android.net.wifi.WifiConfiguration;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * {@link android.net.wifi.WifiManager#getConfiguredNetworks()} indexed by SSID and authentication,
+ * so a connect can reuse the network already configured instead of adding a duplicate.
+ *
+ * Both sides are keyed on {@link ScanIndex#authenticationOf(int)}.
+ */
+public class ConfiguredNetworks {
+    public static final ConfiguredNetworks EMPTY = new ConfiguredNetworks(Collections.<WifiConfiguration>emptyList());
+
+    @NonNull
+    private final List<WifiConfiguration> configurations;
+    @NonNull
+    private final Map<Key, WifiConfiguration> index;
+
+    private static final class Key {
+        @NonNull
+        final Ssid ssid;
+        final int security;
+
+        Key(@NonNull final Ssid ssid, final int security) {
+            this.ssid = ssid;
+            this.security = security;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+
+            final Key that = (Key) o;
+            return security == that.security && ssid.equals(that.ssid);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * ssid.hashCode() + security;
+        }
+    }
+
+    ConfiguredNetworks(@NonNull final List<WifiConfiguration> configurations) {
+        this.configurations = configurations;
+        this.index = new HashMap<Key, WifiConfiguration>(configurations.size() * 2);
+        for (WifiConfiguration configuration : configurations) {
+            if (configuration.allowedKeyManagement == null) continue;
+
+            final Key key = new Key(Ssid.ofConfiguration(configuration.SSID), authenticationOf(configuration));
+            final WifiConfiguration previous = index.get(key);
+            // Of duplicates, the latest added one wins
+            if (previous == null || previous.networkId < configuration.networkId) {
+                index.put(key, configuration);
+            }
+        }
+    }
+
+    /**
+     * @param configurations null when wifi is off
+     * @return
+     */
+    @NonNull
+    public static ConfiguredNetworks of(@Nullable final List<WifiConfiguration> configurations) {
+        if (configurations == null || configurations.isEmpty()) return EMPTY;
+        return new ConfiguredNetworks(configurations);
+    }
+
+    /**
+     * @param ssid
+     * @param authentication {@link ScanIndex#authenticationOf(int)}
+     * @return the configured network, null if none
+     */
+    @Nullable
+    public WifiConfiguration get(@NonNull final Ssid ssid, final int authentication) {
+        return index.get(new Key(ssid, authentication));
+    }
+
+    /**
+     * @param scanResult
+     * @return the configured network of the scan result, null if none
+     */
+    @Nullable
+    public WifiConfiguration get(@NonNull final ScanResult scanResult) {
+        return get(Ssid.of(scanResult.SSID), authenticationOf(scanResult));
+    }
+
+    /**
+     * @return ids of the networks not disabled, in configuration order
+     */
+    @NonNull
+    public List<Integer> enabledNetworkIds() {
+        final List<Integer> networkIds = new ArrayList<Integer>();
+        for (WifiConfiguration configuration : configurations) {
+            if (configuration.status != WifiConfiguration.Status.DISABLED) {
+                networkIds.add(configuration.networkId);
+            }
+        }
+        return networkIds;
+    }
+
+    public int size() {
+        return configurations.size();
+    }
+
+    /**
+     * @param scanResult
+     * @return {@link ScanIndex#authenticationOf(int)} of its capabilities
+     */
+    public static int authenticationOf(@NonNull final ScanResult scanResult) {
+        return ScanIndex.authenticationOf(ScanIndex.securityOf(scanResult.capabilities));
+    }
+
+    /**
+     * @param configuration with key management
+     * @return one of the {@link ScanIndex#authenticationOf(int)} values
+     */
+    public static int authenticationOf(@NonNull final WifiConfiguration configuration) {
+        final BitSet keyManagement = configuration.allowedKeyManagement;
+        if (keyManagement.get(WifiConfiguration.KeyMgmt.WPA_EAP)
+                || keyManagement.get(WifiConfiguration.KeyMgmt.IEEE8021X)) {
+            return ScanIndex.SECURITY_EAP;
+        }
+        if (keyManagement.get(WifiConfiguration.KeyMgmt.WPA_PSK)) return ScanIndex.SECURITY_PSK;
+        if (configuration.wepKeys != null && configuration.wepKeys[0] != null) return ScanIndex.SECURITY_WEP;
+        return ScanIndex.SECURITY_NONE;
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright (C) 2017, Andrew Chen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package rx.wifi.android;
+
+import android.support.annotation.NonNull;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * When {@link RxWifi#connectBest} leaves the BSSID it is on for a better one.
+ */
+public class RoamingPolicy {
+    /**
+     * 10 points better for 30 seconds
+     */
+    public static final RoamingPolicy DEFAULT = of(10, 30, TimeUnit.SECONDS);
+
+    /**
+     * How many points another BSSID must score above the current one
+     */
+    public final int margin;
+    /**
+     * How long it must stay that much better, also the least time between two connects
+     */
+    public final long sustainMillis;
+
+    RoamingPolicy(final int margin, final long sustainMillis) {
+        this.margin = margin;
+        this.sustainMillis = sustainMillis;
+    }
+
+    /**
+     * @param margin points, see {@link WifiScorer}
+     * @param sustain
+     * @param unit
+     * @return
+     */
+    @NonNull
+    public static RoamingPolicy of(final int margin, final long sustain, @NonNull final TimeUnit unit) {
+        if (margin < 0) throw new IllegalArgumentException("margin must be >= 0");
+        return new RoamingPolicy(margin, unit.toMillis(sustain));
+    }
+
+    @Override
+    public String toString() {
+        return "RoamingPolicy{margin=" + margin + ", sustain=" + sustainMillis + "ms}";
+    }
+}
@@ -18,7 +18,6 @@ package rx.wifi.android;
 import android.annotation.SuppressLint;
 import android.content.Context;
 import android.content.Intent;
-import android.content.IntentFilter;
 import android.net.wifi.ScanResult;
 import android.net.wifi.SupplicantState;
 import android.net.wifi.WifiConfiguration;
@@ -28,17 +27,25 @@ import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.support.annotation.RequiresPermission;
 
+import java.util.Collections;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
 
+import io.reactivex.Flowable;
 import io.reactivex.Maybe;
 import io.reactivex.MaybeSource;
 import io.reactivex.Observable;
 import io.reactivex.ObservableSource;
+import io.reactivex.Scheduler;
+import io.reactivex.Single;
+import io.reactivex.SingleSource;
 import io.reactivex.annotations.CheckReturnValue;
-import io.reactivex.functions.Consumer;
 import io.reactivex.functions.Function;
 import io.reactivex.functions.Predicate;
-import rx2.receiver.android.RxReceiver;
+import io.reactivex.schedulers.Schedulers;
+import rx.overflow.Overflow;
 
 import static android.Manifest.permission.ACCESS_COARSE_LOCATION;
 import static android.Manifest.permission.ACCESS_FINE_LOCATION;
@@ -46,6 +53,30 @@ import static android.Manifest.permission.ACCESS_WIFI_STATE;
 import static android.Manifest.permission.CHANGE_WIFI_STATE;
 
 public class RxWifi {
+    @NonNull
+    private static volatile Scheduler sBinderScheduler = Schedulers.trampoline();
+
+    /**
+     * Sets the scheduler binder calls ({@link WifiManager#getScanResults()},
+     * {@link WifiManager#getConnectionInfo()}, {@link WifiManager#getConfiguredNetworks()}...) are
+     * made on, e.g. {@code Schedulers.io()} to keep them off the main thread.
+     *
+     * Defaults to {@link Schedulers#trampoline()}, i.e. the thread the event arrived on.
+     *
+     * @param scheduler null to restore the default
+     */
+    public static void setBinderScheduler(@Nullable final Scheduler scheduler) {
+        sBinderScheduler = scheduler != null ? scheduler : Schedulers.trampoline();
+    }
+
+    /**
+     * @return the scheduler binder calls are made on
+     */
+    @NonNull
+    public static Scheduler binderScheduler() {
+        return sBinderScheduler;
+    }
+
     /**
      *
      * @param context
@@ -57,11 +88,24 @@ public class RxWifi {
     @SuppressLint("MissingPermission")
     @CheckReturnValue
     public static Observable<List<ScanResult>> scan(@NonNull final Context context) {
-        // Move into obs.<IntentFilter>fromCallable()?
-        final WifiManager wifiManager = (WifiManager) context.getSystemService(Context.WIFI_SERVICE);
-        final IntentFilter intentFilter = new IntentFilter();
-        intentFilter.addAction(WifiManager.RSSI_CHANGED_ACTION);
-        intentFilter.addAction(WifiManager.SCAN_RESULTS_AVAILABLE_ACTION);
+        return Observable.defer(new Callable<ObservableSource<List<ScanResult>>>() {
+            @Override
+            public ObservableSource<List<ScanResult>> call() throws Exception {
+                return scan(context, (WifiManager) context.getSystemService(Context.WIFI_SERVICE));
+            }
+        });
+    }
+
+    @NonNull
+    @SuppressLint("MissingPermission")
+    private static Observable<List<ScanResult>> scan(@NonNull final Context context,
+                                                     @NonNull final WifiManager wifiManager) {
+        final Callable<List<ScanResult>> scanResults = new Callable<List<ScanResult>>() {
+            @Override
+            public List<ScanResult> call() throws Exception {
+                return wifiManager.getScanResults();
+            }
+        };
 
         // The WifiManager.startScan() usage is limited to:
         //
@@ -78,21 +122,99 @@ public class RxWifi {
         //   .subscribe();
         //
         // ref. https://stackoverflow.com/questions/49178307/startscan-in-wifimanager-deprecated-in-android-p
-        return RxReceiver.receives(context, intentFilter)
-                .filter(new Predicate<Intent>() {
-                    @Override
-                    public boolean test(@NonNull final Intent intent) throws Exception {
-                        return intent.getBooleanExtra(
-                                WifiManager.EXTRA_RESULTS_UPDATED, false);
-                    }
-                })
+        //
+        // Use requestScan(context, maxAge, unit) to trigger scans within that budget.
+        return WifiEventBus.get(context).scanResultsUpdated()
+                .observeOn(binderScheduler())
                 .map(new Function<Intent, List<ScanResult>>() {
                     @Override
                     public List<ScanResult> apply(@NonNull final Intent intent) throws Exception {
-                        return wifiManager.getScanResults();
+                        return scanResults.call();
                     }
                 })
-                .startWith(wifiManager.getScanResults());
+                .startWith(Observable.fromCallable(scanResults).subscribeOn(binderScheduler()));
+    }
+
+    /**
+     * @param context
+     * @param overflow what to do with scan rounds the subscriber is not ready for
+     * @return
+     * @see #scan(Context)
+     */
+    @NonNull
+    @RequiresPermission(anyOf = {ACCESS_FINE_LOCATION, ACCESS_COARSE_LOCATION})
+    @CheckReturnValue
+    public static Flowable<List<ScanResult>> scan(@NonNull final Context context, @NonNull final Overflow overflow) {
+        return overflow.apply(scan(context));
+    }
+
+    /**
+     * Use this instead of calling {@link WifiManager#startScan()} on an interval, scans are
+     * coalesced and budgeted process-wide by {@link ScanScheduler}. Subscribe to
+     * {@link ScanScheduler#watch()} to have the scans of other apps served too.
+     *
+     * @param context
+     * @param maxAge
+     * @param unit
+     * @return results no older than maxAge, or the latest ones marked {@link ScanSnapshot#stale}
+     */
+    @NonNull
+    @RequiresPermission(anyOf = {ACCESS_FINE_LOCATION, ACCESS_COARSE_LOCATION})
+    //@RequiresPermission(CHANGE_WIFI_STATE)
+    @CheckReturnValue
+    public static Single<ScanSnapshot> requestScan(@NonNull final Context context,
+                                                   final long maxAge,
+                                                   @NonNull final TimeUnit unit) {
+        return Single.defer(new Callable<SingleSource<ScanSnapshot>>() {
+            @Override
+            public SingleSource<ScanSnapshot> call() throws Exception {
+                return ScanScheduler.get(context).request(maxAge, unit);
+            }
+        });
+    }
+
+    /**
+     * @param context
+     * @return added, removed and changed scan results, keyed by BSSID
+     * @see #scanDiffs(Context, int)
+     */
+    @NonNull
+    @RequiresPermission(anyOf = {ACCESS_FINE_LOCATION, ACCESS_COARSE_LOCATION})
+    @CheckReturnValue
+    public static Observable<ScanDiff> scanDiffs(@NonNull final Context context) {
+        return scanDiffs(context, ScanDiffer.DEFAULT_RSSI_THRESHOLD);
+    }
+
+    /**
+     * Only emits when a scan round actually differs from the last one reported.
+     *
+     * @param context
+     * @param rssiThreshold minimum RSSI delta in dBm for a result to be reported as changed
+     * @return added, removed and changed scan results, keyed by BSSID
+     */
+    @NonNull
+    @RequiresPermission(anyOf = {ACCESS_FINE_LOCATION, ACCESS_COARSE_LOCATION})
+    @CheckReturnValue
+    public static Observable<ScanDiff> scanDiffs(@NonNull final Context context, final int rssiThreshold) {
+        return Observable.defer(new Callable<ObservableSource<ScanDiff>>() {
+            @Override
+            public ObservableSource<ScanDiff> call() throws Exception {
+                final ScanDiffer differ = new ScanDiffer(rssiThreshold);
+                return scan(context)
+                        .map(new Function<List<ScanResult>, ScanDiff>() {
+                            @Override
+                            public ScanDiff apply(@NonNull final List<ScanResult> scanResults) throws Exception {
+                                return differ.diff(scanResults);
+                            }
+                        })
+                        .filter(new Predicate<ScanDiff>() {
+                            @Override
+                            public boolean test(@NonNull final ScanDiff scanDiff) throws Exception {
+                                return !scanDiff.isEmpty();
+                            }
+                        });
+            }
+        });
     }
 
     /**
@@ -103,19 +225,19 @@ public class RxWifi {
     @CheckReturnValue
     @RequiresPermission(ACCESS_WIFI_STATE)
     public static Observable<Integer> states(@NonNull final Context context) {
-        final IntentFilter intentFilter = new IntentFilter();
-        intentFilter.addAction(WifiManager.WIFI_STATE_CHANGED_ACTION);
+        return WifiEventBus.get(context).states();
+    }
 
-        return RxReceiver.receives(context, intentFilter)
-                .map(new Function<Intent, Integer>() {
-                    @Override
-                    @WifiState
-                    public Integer apply(Intent intent) throws Exception {
-                        @WifiState
-                        int state = intent.getIntExtra(WifiManager.EXTRA_WIFI_STATE, WifiManager.WIFI_STATE_UNKNOWN);
-                        return state;
-                    }
-                });
+    /**
+     * @param context
+     * @param overflow what to do with states the subscriber is not ready for
+     * @return Flowable<@WifiState Integer>
+     */
+    @NonNull
+    @CheckReturnValue
+    @RequiresPermission(ACCESS_WIFI_STATE)
+    public static Flowable<Integer> states(@NonNull final Context context, @NonNull final Overflow overflow) {
+        return overflow.apply(states(context));
     }
 
     /**
@@ -126,21 +248,20 @@ public class RxWifi {
     @CheckReturnValue
     @RequiresPermission(ACCESS_WIFI_STATE)
     public static Observable<SupplicantState> supplicantStates(@NonNull final Context context) {
-        final IntentFilter intentFilter = new IntentFilter();
-        intentFilter.addAction(WifiManager.SUPPLICANT_STATE_CHANGED_ACTION);
+        return WifiEventBus.get(context).supplicantStates();
+    }
 
-        return RxReceiver.receives(context, intentFilter)
-                .map(new Function<Intent, SupplicantState>() {
-                    @Override
-                    public SupplicantState apply(Intent intent) throws Exception {
-                        // necessary validation?
-                        //.flatMap {
-                        //  return ((supplicantState != null) && SupplicantState.isValidState(supplicantState)) ?
-                        //      Observable.just(supplicantState) : Observable.empty();
-                        //}
-                        return intent.getParcelableExtra(WifiManager.EXTRA_NEW_STATE);
-                    }
-                });
+    /**
+     * @param context
+     * @param overflow what to do with states the subscriber is not ready for
+     * @return
+     */
+    @NonNull
+    @CheckReturnValue
+    @RequiresPermission(ACCESS_WIFI_STATE)
+    public static Flowable<SupplicantState> supplicantStates(@NonNull final Context context,
+                                                             @NonNull final Overflow overflow) {
+        return overflow.apply(supplicantStates(context));
     }
 
     /**
@@ -190,17 +311,110 @@ public class RxWifi {
         connect(wifimanager, scanResult, null);
     }
 
+    /**
+     * Reuses the network already configured for the SSID and security type, only updating its key
+     * when a password is given, and adds one otherwise. Does nothing if already associated with
+     * the BSSID of the scan result, and only disables the other networks that are enabled.
+     *
+     * @param wifiManager
+     * @param scanResult
+     * @param password
+     * @throws IllegalArgumentException for an EAP network not configured yet
+     */
     @RequiresPermission(CHANGE_WIFI_STATE)
     public static void connect(@NonNull final WifiManager wifiManager,
                                @NonNull final ScanResult scanResult,
                                @Nullable final String password) {
+        connect(wifiManager, scanResult, password, false);
+    }
+
+    /**
+     * @param wifiManager
+     * @param scanResult
+     * @param password
+     * @param pinBssid restricts the network to the BSSID of the scan result, so the supplicant
+     *                 does not pick another access point of the SSID, see {@link #unpinBssid}
+     */
+    @RequiresPermission(CHANGE_WIFI_STATE)
+    static void connect(@NonNull final WifiManager wifiManager,
+                        @NonNull final ScanResult scanResult,
+                        @Nullable final String password,
+                        final boolean pinBssid) {
+        final String bssid = pinBssid ? scanResult.BSSID : null;
+        final Ssid ssid = Ssid.of(scanResult.SSID);
+        final int authentication = ConfiguredNetworks.authenticationOf(scanResult);
+        final ConfiguredNetworks configuredNetworks = ConfiguredNetworks.of(wifiManager.getConfiguredNetworks());
+        final WifiConfiguration configured = configuredNetworks.get(ssid, authentication);
+        if (configured == null && authentication == ScanIndex.SECURITY_EAP) {
+            throw new IllegalArgumentException("EAP network " + ssid + " must be configured with its enterprise credentials first");
+        }
+
+        int networkId = -1;
+        // EAP credentials are not a password, an EAP network is always reused as configured
+        final boolean update = configured != null && password != null && authentication != ScanIndex.SECURITY_EAP;
+        if (update) {
+            final WifiConfiguration newConfig = configuration(ssid, authentication, password, configured.networkId);
+            newConfig.BSSID = bssid;
+            networkId = wifiManager.updateNetwork(newConfig);
+        } else if (configured != null) {
+            networkId = configured.networkId;
+            if (bssid != null && !bssid.equalsIgnoreCase(configured.BSSID)) {
+                configured.BSSID = bssid;
+                wifiManager.updateNetwork(configured);
+            }
+        }
+        if (networkId == -1) {
+            final WifiConfiguration newConfig = configuration(ssid, authentication, password, -1);
+            newConfig.BSSID = bssid;
+            networkId = wifiManager.addNetwork(newConfig);
+        }
+
+        final WifiInfo wifiInfo = wifiManager.getConnectionInfo();
+        if (configured != null && networkId == configured.networkId && !update
+                && wifiInfo != null
+                && wifiInfo.getSupplicantState() == SupplicantState.COMPLETED
+                && ssid.equals(Ssid.ofWifiInfo(wifiInfo.getSSID()))
+                && scanResult.BSSID != null && scanResult.BSSID.equalsIgnoreCase(wifiInfo.getBSSID())) {
+            return;
+        }
+
+        wifiManager.disconnect();
+        wifiManager.enableNetwork(networkId, true);
+        for (final Integer enabled : configuredNetworks.enabledNetworkIds()) {
+            if (enabled != networkId) {
+                wifiManager.disableNetwork(enabled); // Force connect even if no-internet wifi
+            }
+        }
+        wifiManager.reconnect();
+    }
+
+    /**
+     * Lets the supplicant pick any access point of the network of the scan result again.
+     *
+     * @param wifiManager
+     * @param scanResult
+     */
+    @RequiresPermission(CHANGE_WIFI_STATE)
+    static void unpinBssid(@NonNull final WifiManager wifiManager, @NonNull final ScanResult scanResult) {
+        final WifiConfiguration configured = ConfiguredNetworks.of(wifiManager.getConfiguredNetworks()).get(scanResult);
+        if (configured == null || configured.BSSID == null || Bssids.ANY.equals(configured.BSSID)) return;
+
+        configured.BSSID = Bssids.ANY;
+        wifiManager.updateNetwork(configured);
+    }
+
+    @NonNull
+    private static WifiConfiguration configuration(@NonNull final Ssid ssid,
+                                                   final int authentication,
+                                                   @Nullable final String password,
+                                                   final int networkId) {
         final WifiConfiguration newConfig = new WifiConfiguration();
-        final String trimSsid = scanResult.SSID.replaceAll("\"$", "").replaceAll("^\"", "");
-        newConfig.SSID = "\""+ trimSsid + "\"";
+        newConfig.networkId = networkId;
+        newConfig.SSID = ssid.toConfiguration();
         newConfig.status = WifiConfiguration.Status.ENABLED;
         newConfig.priority = 100;
 
-        if (scanResult.capabilities.toUpperCase().contains("WEP")) {
+        if (authentication == ScanIndex.SECURITY_WEP) {
             newConfig.allowedKeyManagement.set(WifiConfiguration.KeyMgmt.NONE);
             newConfig.allowedProtocols.set(WifiConfiguration.Protocol.RSN);
             newConfig.allowedProtocols.set(WifiConfiguration.Protocol.WPA);
@@ -217,7 +431,7 @@ public class RxWifi {
 
             newConfig.wepTxKeyIndex = 0;
 
-        } else if (scanResult.capabilities.toUpperCase().contains("WPA")) {
+        } else if (authentication == ScanIndex.SECURITY_PSK) {
             newConfig.allowedProtocols.set(WifiConfiguration.Protocol.RSN);
             newConfig.allowedProtocols.set(WifiConfiguration.Protocol.WPA);
             newConfig.allowedKeyManagement.set(WifiConfiguration.KeyMgmt.WPA_PSK);
@@ -243,19 +457,7 @@ public class RxWifi {
             newConfig.allowedGroupCiphers.set(WifiConfiguration.GroupCipher.CCMP);
             newConfig.allowedGroupCiphers.set(WifiConfiguration.GroupCipher.TKIP);
         }
-
-        wifiManager.addNetwork(newConfig); // networkId
-
-        wifiManager.disconnect();
-        for (final WifiConfiguration config : wifiManager.getConfiguredNetworks()) {
-            final String trimConfigSsid = config.SSID.replaceAll("\"$", "").replaceAll("^\"", "");
-            if (trimConfigSsid.equals(trimSsid)) {
-                wifiManager.enableNetwork(config.networkId, true);
-            } else {
-                wifiManager.disableNetwork(config.networkId); // Force connect even if no-internet wifi
-            }
-        }
-        wifiManager.reconnect();
+        return newConfig;
     }
 
     /**
@@ -266,11 +468,34 @@ public class RxWifi {
      */
     @RequiresPermission(ACCESS_WIFI_STATE)
     public static boolean isConnected(@NonNull final Context context, @NonNull final String ssid) {
-        final WifiManager wifiManager = (WifiManager) context.getSystemService(Context.WIFI_SERVICE);
+        return isConnected(context, Ssid.of(ssid));
+    }
+
+    /**
+     *
+     * @param context
+     * @param ssid
+     * @return
+     */
+    @RequiresPermission(ACCESS_WIFI_STATE)
+    public static boolean isConnected(@NonNull final Context context, @NonNull final Ssid ssid) {
+        return WifiConnectionTracker.get(context).isConnected(ssid);
+    }
+
+    /**
+     * Always asks {@link WifiManager#getConnectionInfo()}, prefer {@link #isConnected(Context, Ssid)}.
+     *
+     * @param wifiManager
+     * @param ssid
+     * @return
+     */
+    @RequiresPermission(ACCESS_WIFI_STATE)
+    public static boolean isConnected(@NonNull final WifiManager wifiManager, @NonNull final Ssid ssid) {
         final WifiInfo wifiInfo = wifiManager.getConnectionInfo();
-        String trimSsid = wifiInfo.getSSID().replaceAll("\"$", "").replaceAll("^\"", "");
 
-        return trimSsid.equals(ssid) && wifiInfo.getSupplicantState() == SupplicantState.COMPLETED;
+        return wifiInfo != null
+                && ssid.equals(Ssid.ofWifiInfo(wifiInfo.getSSID()))
+                && wifiInfo.getSupplicantState() == SupplicantState.COMPLETED;
     }
 
     /**
@@ -299,25 +524,12 @@ public class RxWifi {
     //@RequiresPermission(CHANGE_WIFI_STATE)
     @CheckReturnValue
     public static Maybe<String> connects(@NonNull final Context context, @NonNull final String ssid, @Nullable final String password) {
-        if (isConnected(context, ssid)) return Maybe.just(ssid);
-
-        return scanFor(context, ssid)
-            .doOnSuccess(new Consumer<ScanResult>() {
-                @Override
-                public void accept(ScanResult scanResult) throws Exception {
-                    connect(context, scanResult, password);
-                }
-            }).flatMap(new Function<ScanResult, MaybeSource<SupplicantState>>() {
-                @Override
-                public MaybeSource<SupplicantState> apply(ScanResult scanResult) throws Exception {
-                    return connectedFor(context, ssid);
-                }
-            }).map(new Function<SupplicantState, String>() {
-                @Override
-                public String apply(SupplicantState supplicantState) throws Exception {
-                    return ssid;
-                }
-            });
+        return connects(context, Ssid.of(ssid), password).map(new Function<Ssid, String>() {
+            @Override
+            public String apply(Ssid connected) throws Exception {
+                return ssid;
+            }
+        });
     }
 
     /**
@@ -326,22 +538,144 @@ public class RxWifi {
      * @param ssid
      * @return
      */
+    @NonNull
+    @RequiresPermission(anyOf = {ACCESS_FINE_LOCATION, ACCESS_COARSE_LOCATION})
+    //@RequiresPermission(CHANGE_WIFI_STATE)
     @CheckReturnValue
+    public static Maybe<Ssid> connects(@NonNull final Context context, @NonNull final Ssid ssid) {
+        return connects(context, ssid, null);
+    }
+
+    /**
+     *
+     * @param context
+     * @param ssid
+     * @param password
+     * @return
+     */
+    @NonNull
     @RequiresPermission(anyOf = {ACCESS_FINE_LOCATION, ACCESS_COARSE_LOCATION})
+    //@RequiresPermission(CHANGE_WIFI_STATE)
+    @CheckReturnValue
+    public static Maybe<Ssid> connects(@NonNull final Context context, @NonNull final Ssid ssid, @Nullable final String password) {
+        return connectPhases(context, ssid, password, WifiConnectDeadlines.DEFAULT)
+                .lastElement()
+                .map(new Function<WifiConnectProgress, Ssid>() {
+                    @Override
+                    public Ssid apply(WifiConnectProgress progress) throws Exception {
+                        return ssid;
+                    }
+                });
+    }
+
+    /**
+     * Connects with a deadline for each phase, see {@link WifiConnector}.
+     *
+     * @param context
+     * @param ssid
+     * @param password
+     * @param deadlines
+     * @return every phase entered with how long the previous ones took, or a {@link WifiConnectException}
+     */
     @NonNull
-    public static Maybe<ScanResult> scanFor(@NonNull final Context context, @NonNull final String ssid) {
-        return scan(context).flatMap(new Function<List<ScanResult>, ObservableSource<ScanResult>>() {
+    @RequiresPermission(anyOf = {ACCESS_FINE_LOCATION, ACCESS_COARSE_LOCATION})
+    //@RequiresPermission(CHANGE_WIFI_STATE)
+    @CheckReturnValue
+    public static Observable<WifiConnectProgress> connectPhases(@NonNull final Context context,
+                                                                @NonNull final Ssid ssid,
+                                                                @Nullable final String password,
+                                                                @NonNull final WifiConnectDeadlines deadlines) {
+        return Observable.defer(new Callable<ObservableSource<WifiConnectProgress>>() {
             @Override
-            public ObservableSource<ScanResult> apply(List<ScanResult> scanResults) throws Exception {
-                return Observable.fromIterable(scanResults);
+            public ObservableSource<WifiConnectProgress> call() throws Exception {
+                return WifiConnector.get(context).connect(ssid, password, deadlines);
             }
-        }).filter(new Predicate<ScanResult>() {
+        }).subscribeOn(binderScheduler());
+    }
+
+    /**
+     * @param context
+     * @param candidates
+     * @return every BSSID connected to
+     * @see #connectBest(Context, List, RoamingPolicy)
+     */
+    @NonNull
+    @RequiresPermission(anyOf = {ACCESS_FINE_LOCATION, ACCESS_COARSE_LOCATION})
+    //@RequiresPermission(CHANGE_WIFI_STATE)
+    @CheckReturnValue
+    public static Observable<WifiScore> connectBest(@NonNull final Context context,
+                                                    @NonNull final List<WifiCandidate> candidates) {
+        return connectBest(context, candidates, RoamingPolicy.DEFAULT);
+    }
+
+    /**
+     * Connects to the best visible BSSID of the candidates and keeps watching the scans, only
+     * roaming to another one that stays better by the margin of the policy, see {@link WifiRoamer}.
+     *
+     * @param context
+     * @param candidates
+     * @param policy
+     * @return every BSSID connected to, never completes
+     */
+    @NonNull
+    @RequiresPermission(anyOf = {ACCESS_FINE_LOCATION, ACCESS_COARSE_LOCATION})
+    //@RequiresPermission(CHANGE_WIFI_STATE)
+    @CheckReturnValue
+    public static Observable<WifiScore> connectBest(@NonNull final Context context,
+                                                    @NonNull final List<WifiCandidate> candidates,
+                                                    @NonNull final RoamingPolicy policy) {
+        return Observable.defer(new Callable<ObservableSource<WifiScore>>() {
             @Override
-            public boolean test(ScanResult scanResult) throws Exception {
-                String trimSsid = scanResult.SSID.replaceAll("\"$","").replaceAll("^\"","");
-                return trimSsid.equals(ssid);
+            public ObservableSource<WifiScore> call() throws Exception {
+                return WifiRoamer.get(context).connectBest(candidates, policy);
             }
-        }).firstElement();
+        });
+    }
+
+    /**
+     *
+     * @param context
+     * @param ssid
+     * @return
+     */
+    @CheckReturnValue
+    @RequiresPermission(anyOf = {ACCESS_FINE_LOCATION, ACCESS_COARSE_LOCATION})
+    @NonNull
+    public static Maybe<ScanResult> scanFor(@NonNull final Context context, @NonNull final String ssid) {
+        return scanFor(context, Ssid.of(ssid));
+    }
+
+    /**
+     *
+     * @param context
+     * @param ssid
+     * @return
+     */
+    @CheckReturnValue
+    @RequiresPermission(anyOf = {ACCESS_FINE_LOCATION, ACCESS_COARSE_LOCATION})
+    @NonNull
+    public static Maybe<ScanResult> scanFor(@NonNull final Context context, @NonNull final Ssid ssid) {
+        return scanForAny(context, Collections.singleton(ssid));
+    }
+
+    /**
+     * Lookups share one scan subscription, and each scan round is matched once against all of
+     * them, see {@link ScanQueryRegistry}.
+     *
+     * @param context
+     * @param ssids
+     * @return first scan result of any of the SSIDs
+     */
+    @CheckReturnValue
+    @RequiresPermission(anyOf = {ACCESS_FINE_LOCATION, ACCESS_COARSE_LOCATION})
+    @NonNull
+    public static Maybe<ScanResult> scanForAny(@NonNull final Context context, @NonNull final Set<Ssid> ssids) {
+        return Maybe.defer(new Callable<MaybeSource<ScanResult>>() {
+            @Override
+            public MaybeSource<ScanResult> call() throws Exception {
+                return ScanQueryRegistry.get(context).scanForAny(ssids);
+            }
+        });
     }
 
     /**
@@ -354,11 +688,34 @@ public class RxWifi {
     @CheckReturnValue
     @NonNull
     public static Maybe<SupplicantState> connectedFor(@NonNull final Context context, @NonNull final String ssid) {
-        return supplicantStates(context).filter(new Predicate<SupplicantState>() {
+        return connectedFor(context, Ssid.of(ssid));
+    }
+
+    /**
+     *
+     * @param context
+     * @param ssid
+     * @return
+     */
+    @RequiresPermission(ACCESS_WIFI_STATE)
+    @CheckReturnValue
+    @NonNull
+    public static Maybe<SupplicantState> connectedFor(@NonNull final Context context, @NonNull final Ssid ssid) {
+        return Maybe.defer(new Callable<MaybeSource<SupplicantState>>() {
             @Override
-            public boolean test(SupplicantState state) throws Exception {
-                return isConnected(context, ssid);
+            public MaybeSource<SupplicantState> call() throws Exception {
+                return WifiConnectionTracker.get(context).connections().filter(new Predicate<WifiConnection>() {
+                    @Override
+                    public boolean test(WifiConnection connection) throws Exception {
+                        return connection.isConnectedTo(ssid);
+                    }
+                }).firstElement().map(new Function<WifiConnection, SupplicantState>() {
+                    @Override
+                    public SupplicantState apply(WifiConnection connection) throws Exception {
+                        return connection.supplicantState;
+                    }
+                });
             }
-        }).firstElement();
+        });
     }
 }
@@ -0,0 +1,61 @@
+/*
+ * Copyright (C) 2017, Andrew Chen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package rx.wifi.android;
+
+import android.net.wifi.ScanResult;
+import android.support.annotation.NonNull;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Difference between two consecutive scan rounds, keyed by BSSID.
+ */
+public class ScanDiff {
+    static final ScanDiff EMPTY = new ScanDiff(
+            Collections.<ScanResult>emptyList(),
+            Collections.<ScanResult>emptyList(),
+            Collections.<ScanResult>emptyList());
+
+    @NonNull
+    public final List<ScanResult> added;
+    @NonNull
+    public final List<ScanResult> removed;
+    /**
+     * Results whose RSSI moved past the threshold, or whose SSID changed.
+     */
+    @NonNull
+    public final List<ScanResult> changed;
+
+    ScanDiff(@NonNull final List<ScanResult> added,
+             @NonNull final List<ScanResult> removed,
+             @NonNull final List<ScanResult> changed) {
+        this.added = Collections.unmodifiableList(added);
+        this.removed = Collections.unmodifiableList(removed);
+        this.changed = Collections.unmodifiableList(changed);
+    }
+
+    public boolean isEmpty() {
+        return added.isEmpty() && removed.isEmpty() && changed.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return "ScanDiff{added=" + added.size()
+                + ", removed=" + removed.size()
+                + ", changed=" + changed.size() + "}";
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright (C) 2017, Andrew Chen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package rx.wifi.android;
+
+import android.net.wifi.ScanResult;
+import android.support.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Keeps the last reported scan round indexed by BSSID and turns each new round into a {@link ScanDiff}.
+ *
+ * The two {@link ScanIndex}es are swapped and reused between rounds, so joining rounds does not
+ * allocate, and the diff lists are only allocated when something actually changed.
+ * Not thread-safe, use one differ per subscription.
+ */
+public class ScanDiffer {
+    public static final int DEFAULT_RSSI_THRESHOLD = 5;
+
+    private final int rssiThreshold;
+    @NonNull
+    private ScanIndex previous = new ScanIndex();
+    @NonNull
+    private ScanIndex current = new ScanIndex();
+
+    public ScanDiffer() {
+        this(DEFAULT_RSSI_THRESHOLD);
+    }
+
+    /**
+     * @param rssiThreshold minimum RSSI delta in dBm for a result to be reported as changed
+     */
+    public ScanDiffer(int rssiThreshold) {
+        this.rssiThreshold = rssiThreshold;
+    }
+
+    /**
+     * @param scanResults
+     * @return the difference against the previous round, empty when nothing changed
+     */
+    @NonNull
+    public ScanDiff diff(@NonNull final List<ScanResult> scanResults) {
+        List<ScanResult> added = null;
+        List<ScanResult> changed = null;
+        List<ScanResult> removed = null;
+
+        current.reset(scanResults);
+
+        for (int slot = 0, size = current.size(); slot < size; slot++) {
+            final int last = previous.indexOf(current.bssid(slot));
+            if (last < 0) {
+                if (added == null) added = new ArrayList<ScanResult>();
+                added.add(current.result(slot));
+            } else if (Math.abs(current.rssi(slot) - previous.rssi(last)) > rssiThreshold
+                    || !equals(current.result(slot).SSID, previous.result(last).SSID)) {
+                if (changed == null) changed = new ArrayList<ScanResult>();
+                changed.add(current.result(slot));
+            } else {
+                // Keep the last reported result so slow drifts still cross the threshold
+                current.set(slot, previous.result(last));
+            }
+        }
+
+        for (int slot = 0, size = previous.size(); slot < size; slot++) {
+            if (!current.contains(previous.bssid(slot))) {
+                if (removed == null) removed = new ArrayList<ScanResult>();
+                removed.add(previous.result(slot));
+            }
+        }
+
+        final ScanIndex swap = previous;
+        previous = current;
+        current = swap;
+
+        if (added == null && removed == null && changed == null) return ScanDiff.EMPTY;
+
+        return new ScanDiff(
+                added != null ? added : Collections.<ScanResult>emptyList(),
+                removed != null ? removed : Collections.<ScanResult>emptyList(),
+                changed != null ? changed : Collections.<ScanResult>emptyList());
+    }
+
+    private static boolean equals(String a, String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+}
@@ -0,0 +1,241 @@
+/*
+ * Copyright (C) 2017, Andrew Chen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package rx.wifi.android;
+
+import android.net.wifi.ScanResult;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Scan results indexed by packed BSSID.
+ *
+ * Results live in dense slots {@code 0 until size()} with RSSI, frequency and security flags kept in
+ * parallel int arrays, and an open-addressing table maps each BSSID to its slot. Once the arrays have
+ * grown to the size of a scan round, {@link #clear()}, {@link #put(ScanResult)} and
+ * {@link #indexOf(long)} do not allocate. Not thread-safe.
+ */
+public class ScanIndex {
+    public static final int SECURITY_NONE = 0;
+    public static final int SECURITY_WEP = 1;
+    public static final int SECURITY_WPA = 1 << 1;
+    public static final int SECURITY_WPA2 = 1 << 2;
+    public static final int SECURITY_PSK = 1 << 3;
+    public static final int SECURITY_EAP = 1 << 4;
+
+    private static final int DEFAULT_CAPACITY = 64;
+
+    /** slot + 1 for every used bucket, 0 for empty ones */
+    private int[] table;
+    private long[] bssids;
+    private int[] rssis;
+    private int[] frequencies;
+    private int[] securities;
+    private ScanResult[] results;
+    private int size;
+
+    public ScanIndex() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity expected number of results per round
+     */
+    public ScanIndex(int capacity) {
+        allocate(Math.max(capacity, 4));
+    }
+
+    /**
+     * @param scanResults
+     * @return this index holding only the given results
+     */
+    @NonNull
+    public ScanIndex reset(@NonNull final List<ScanResult> scanResults) {
+        clear();
+        for (int i = 0, n = scanResults.size(); i < n; i++) {
+            put(scanResults.get(i));
+        }
+        return this;
+    }
+
+    /**
+     * Adds or replaces the result with the same BSSID.
+     *
+     * @param scanResult
+     * @return slot of the result, or -1 if its BSSID is malformed
+     */
+    public int put(@NonNull final ScanResult scanResult) {
+        final long bssid = Bssids.parse(scanResult.BSSID);
+        if (bssid == Bssids.INVALID) return -1;
+
+        int slot = indexOf(bssid);
+        if (slot < 0) {
+            if ((size + 1) * 2 > table.length) grow();
+            slot = size++;
+            bssids[slot] = bssid;
+            insert(bssid, slot);
+        }
+        set(slot, scanResult);
+        return slot;
+    }
+
+    /**
+     * Replaces the result held in a slot, keeping its BSSID.
+     *
+     * @param slot
+     * @param scanResult
+     */
+    public void set(final int slot, @NonNull final ScanResult scanResult) {
+        results[slot] = scanResult;
+        rssis[slot] = scanResult.level;
+        frequencies[slot] = scanResult.frequency;
+        securities[slot] = securityOf(scanResult.capabilities);
+    }
+
+    /**
+     * @param bssid packed BSSID
+     * @return slot of the BSSID, or -1
+     */
+    public int indexOf(final long bssid) {
+        final int mask = table.length - 1;
+        for (int i = Bssids.hash(bssid) & mask; ; i = (i + 1) & mask) {
+            final int entry = table[i];
+            if (entry == 0) return -1;
+            if (bssids[entry - 1] == bssid) return entry - 1;
+        }
+    }
+
+    /**
+     * @param bssid "xx:xx:xx:xx:xx:xx"
+     * @return slot of the BSSID, or -1
+     */
+    public int indexOf(@Nullable final String bssid) {
+        final long packed = Bssids.parse(bssid);
+        return packed == Bssids.INVALID ? -1 : indexOf(packed);
+    }
+
+    public boolean contains(final long bssid) {
+        return indexOf(bssid) >= 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        Arrays.fill(table, 0);
+        Arrays.fill(results, 0, size, null);
+        size = 0;
+    }
+
+    public long bssid(final int slot) {
+        return bssids[slot];
+    }
+
+    public int rssi(final int slot) {
+        return rssis[slot];
+    }
+
+    public int frequency(final int slot) {
+        return frequencies[slot];
+    }
+
+    public int security(final int slot) {
+        return securities[slot];
+    }
+
+    @NonNull
+    public ScanResult result(final int slot) {
+        return results[slot];
+    }
+
+    /**
+     * @param capabilities {@link ScanResult#capabilities}, e.g. "[WPA2-PSK-CCMP][ESS]"
+     * @return SECURITY_* flags
+     */
+    public static int securityOf(@Nullable final String capabilities) {
+        if (capabilities == null || capabilities.isEmpty()) return SECURITY_NONE;
+
+        int flags = SECURITY_NONE;
+        if (containsIgnoreCase(capabilities, "WEP")) flags |= SECURITY_WEP;
+        if (containsIgnoreCase(capabilities, "WPA2") || containsIgnoreCase(capabilities, "RSN")) {
+            flags |= SECURITY_WPA2;
+        }
+        if (containsIgnoreCase(capabilities, "WPA-")
+                || ((flags & SECURITY_WPA2) == 0 && containsIgnoreCase(capabilities, "WPA"))) {
+            flags |= SECURITY_WPA;
+        }
+        if (containsIgnoreCase(capabilities, "PSK")) flags |= SECURITY_PSK;
+        if (containsIgnoreCase(capabilities, "EAP")) flags |= SECURITY_EAP;
+        return flags;
+    }
+
+    /**
+     * How a network of the flags authenticates, any WPA network without EAP counts as PSK.
+     *
+     * @param security SECURITY_* flags
+     * @return one of SECURITY_NONE, SECURITY_WEP, SECURITY_PSK or SECURITY_EAP
+     */
+    public static int authenticationOf(final int security) {
+        if ((security & SECURITY_EAP) != 0) return SECURITY_EAP;
+        if ((security & (SECURITY_PSK | SECURITY_WPA | SECURITY_WPA2)) != 0) return SECURITY_PSK;
+        if ((security & SECURITY_WEP) != 0) return SECURITY_WEP;
+        return SECURITY_NONE;
+    }
+
+    private static boolean containsIgnoreCase(@NonNull final String s, @NonNull final String token) {
+        for (int i = 0, n = s.length() - token.length(); i <= n; i++) {
+            if (s.regionMatches(true, i, token, 0, token.length())) return true;
+        }
+        return false;
+    }
+
+    private void insert(final long bssid, final int slot) {
+        final int mask = table.length - 1;
+        int i = Bssids.hash(bssid) & mask;
+        while (table[i] != 0) {
+            i = (i + 1) & mask;
+        }
+        table[i] = slot + 1;
+    }
+
+    private void allocate(final int capacity) {
+        int buckets = 8;
+        while (buckets < capacity * 2) buckets <<= 1;
+        table = new int[buckets];
+        bssids = new long[buckets / 2];
+        rssis = new int[buckets / 2];
+        frequencies = new int[buckets / 2];
+        securities = new int[buckets / 2];
+        results = new ScanResult[buckets / 2];
+    }
+
+    private void grow() {
+        // Keep the load factor at or below 1/2, slots are sized to half of the buckets
+        final int capacity = table.length;
+        table = new int[table.length * 2];
+        bssids = Arrays.copyOf(bssids, capacity);
+        rssis = Arrays.copyOf(rssis, capacity);
+        frequencies = Arrays.copyOf(frequencies, capacity);
+        securities = Arrays.copyOf(securities, capacity);
+        results = Arrays.copyOf(results, capacity);
+        for (int slot = 0; slot < size; slot++) {
+            insert(bssids[slot], slot);
+        }
+    }
+}
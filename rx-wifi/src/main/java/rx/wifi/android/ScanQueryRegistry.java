@@ -0,0 +1,296 @@
+/*
+ * Copyright (C) 2017, Andrew Chen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package rx.wifi.android;
+
+import android.content.Context;
+import android.net.wifi.ScanResult;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.RequiresPermission;
+import android.support.annotation.VisibleForTesting;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import io.reactivex.Maybe;
+import io.reactivex.MaybeEmitter;
+import io.reactivex.MaybeOnSubscribe;
+import io.reactivex.Observable;
+import io.reactivex.annotations.CheckReturnValue;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.functions.Action;
+import io.reactivex.functions.Cancellable;
+import io.reactivex.functions.Consumer;
+
+import static android.Manifest.permission.ACCESS_COARSE_LOCATION;
+import static android.Manifest.permission.ACCESS_FINE_LOCATION;
+
+/**
+ * Outstanding SSID lookups sharing one scan subscription.
+ *
+ * Queries are indexed by SSID, so each scan round is walked once whatever the number of queries,
+ * with one hash lookup per result. Registering and unregistering a query is a hash insert and
+ * remove per SSID it looks for. The scans are only subscribed to while a query is outstanding,
+ * and a new query is first matched against the latest round.
+ */
+public class ScanQueryRegistry {
+    private static volatile ScanQueryRegistry sInstance;
+
+    @Nullable
+    private final WifiEventBus bus;
+    @NonNull
+    private final Observable<List<ScanResult>> scans;
+    @NonNull
+    private final Map<Ssid, Set<Query>> queries = new HashMap<Ssid, Set<Query>>();
+    private int size;
+    @Nullable
+    private List<ScanResult> latest;
+    @Nullable
+    private Disposable subscription;
+    /** Bumped whenever the scans are released */
+    private long generation;
+
+    /**
+     * @param bus
+     * @param scans scan rounds
+     */
+    @VisibleForTesting
+    ScanQueryRegistry(@Nullable final WifiEventBus bus, @NonNull final Observable<List<ScanResult>> scans) {
+        this.bus = bus;
+        this.scans = scans;
+    }
+
+    /**
+     * @param context
+     * @return the registry bound to the application context
+     */
+    @NonNull
+    public static ScanQueryRegistry get(@NonNull final Context context) {
+        final WifiEventBus bus = WifiEventBus.get(context);
+        ScanQueryRegistry registry = sInstance;
+        if (registry == null || registry.bus != bus) {
+            synchronized (ScanQueryRegistry.class) {
+                registry = sInstance;
+                if (registry == null || registry.bus != bus) {
+                    final Context applicationContext = context.getApplicationContext() != null
+                            ? context.getApplicationContext() : context;
+                    registry = new ScanQueryRegistry(bus, RxWifi.scan(applicationContext));
+                    sInstance = registry;
+                }
+            }
+        }
+        return registry;
+    }
+
+    /**
+     * @param ssids
+     * @return first scan result of any of the SSIDs, completes at once without SSIDs
+     */
+    @NonNull
+    @CheckReturnValue
+    @RequiresPermission(anyOf = {ACCESS_FINE_LOCATION, ACCESS_COARSE_LOCATION})
+    public Maybe<ScanResult> scanForAny(@NonNull final Collection<Ssid> ssids) {
+        if (ssids.isEmpty()) return Maybe.empty();
+
+        final Set<Ssid> copy = new HashSet<Ssid>(ssids);
+        return Maybe.create(new MaybeOnSubscribe<ScanResult>() {
+            @Override
+            public void subscribe(final MaybeEmitter<ScanResult> emitter) throws Exception {
+                final Query query = new Query(copy, emitter);
+                emitter.setCancellable(new Cancellable() {
+                    @Override
+                    public void cancel() throws Exception {
+                        unregister(query);
+                    }
+                });
+                register(query);
+            }
+        });
+    }
+
+    /**
+     * @return number of outstanding queries
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    private void register(@NonNull final Query query) {
+        final ScanResult match;
+        long subscribe = -1L;
+        synchronized (this) {
+            match = latest != null ? query.first(latest) : null;
+            if (match == null && !query.emitter.isDisposed()) {
+                for (Ssid ssid : query.ssids) {
+                    Set<Query> matching = queries.get(ssid);
+                    if (matching == null) {
+                        matching = new LinkedHashSet<Query>();
+                        queries.put(ssid, matching);
+                    }
+                    matching.add(query);
+                }
+                query.registered = true;
+                if (size++ == 0) subscribe = generation;
+            }
+        }
+        if (match != null) {
+            query.emitter.onSuccess(match);
+        } else if (subscribe >= 0) {
+            subscribe(subscribe);
+        }
+    }
+
+    private void unregister(@NonNull final Query query) {
+        final Disposable disposable;
+        synchronized (this) {
+            if (!query.registered) return;
+            query.registered = false;
+
+            for (Ssid ssid : query.ssids) {
+                final Set<Query> matching = queries.get(ssid);
+                if (matching != null && matching.remove(query) && matching.isEmpty()) {
+                    queries.remove(ssid);
+                }
+            }
+            if (--size > 0) return;
+            disposable = release();
+        }
+        if (disposable != null) disposable.dispose();
+    }
+
+    /**
+     * Subscribes outside of the lock, as the scans emit the current results on subscribe and
+     * matched queries run their downstream right away.
+     *
+     * @param generation of the registry when the first query was registered
+     */
+    private void subscribe(final long generation) {
+        final Disposable disposable = scans.subscribe(new Consumer<List<ScanResult>>() {
+            @Override
+            public void accept(List<ScanResult> scanResults) throws Exception {
+                onScanResults(scanResults);
+            }
+        }, new Consumer<Throwable>() {
+            @Override
+            public void accept(Throwable e) throws Exception {
+                for (Query query : drain()) {
+                    query.emitter.onError(e);
+                }
+            }
+        }, new Action() {
+            @Override
+            public void run() throws Exception {
+                for (Query query : drain()) {
+                    query.emitter.onComplete();
+                }
+            }
+        });
+        synchronized (this) {
+            // Unless every query was answered or drained meanwhile
+            if (generation == this.generation) {
+                subscription = disposable;
+                return;
+            }
+        }
+        disposable.dispose();
+    }
+
+    /**
+     * Forgets the scans once no query is left, guarded by the registry.
+     *
+     * @return subscription to dispose, null if not subscribed yet
+     */
+    @Nullable
+    private Disposable release() {
+        final Disposable disposable = subscription;
+        subscription = null;
+        latest = null;
+        generation++;
+        return disposable;
+    }
+
+    private void onScanResults(@NonNull final List<ScanResult> scanResults) {
+        final List<Query> matched = new ArrayList<Query>();
+        synchronized (this) {
+            latest = scanResults;
+            if (queries.isEmpty()) return;
+
+            for (int i = 0, n = scanResults.size(); i < n; i++) {
+                final ScanResult scanResult = scanResults.get(i);
+                final Set<Query> matching = queries.get(Ssid.of(scanResult.SSID));
+                if (matching == null) continue;
+
+                for (Query query : matching) {
+                    if (query.match == null) {
+                        query.match = scanResult;
+                        matched.add(query);
+                    }
+                }
+            }
+        }
+        // Outside of the lock, a success unregisters the query
+        for (int i = 0, n = matched.size(); i < n; i++) {
+            final Query query = matched.get(i);
+            query.emitter.onSuccess(query.match);
+        }
+    }
+
+    @NonNull
+    private synchronized List<Query> drain() {
+        final Set<Query> all = new LinkedHashSet<Query>();
+        for (Set<Query> matching : queries.values()) {
+            all.addAll(matching);
+        }
+        for (Query query : all) {
+            query.registered = false;
+        }
+        queries.clear();
+        size = 0;
+        release();
+        return new ArrayList<Query>(all);
+    }
+
+    private static class Query {
+        @NonNull
+        final Set<Ssid> ssids;
+        @NonNull
+        final MaybeEmitter<ScanResult> emitter;
+        /** Guarded by the registry */
+        boolean registered;
+        /** Guarded by the registry */
+        @Nullable
+        ScanResult match;
+
+        Query(@NonNull final Set<Ssid> ssids, @NonNull final MaybeEmitter<ScanResult> emitter) {
+            this.ssids = ssids;
+            this.emitter = emitter;
+        }
+
+        @Nullable
+        ScanResult first(@NonNull final List<ScanResult> scanResults) {
+            for (int i = 0, n = scanResults.size(); i < n; i++) {
+                if (ssids.contains(Ssid.of(scanResults.get(i).SSID))) return scanResults.get(i);
+            }
+            return null;
+        }
+    }
+}
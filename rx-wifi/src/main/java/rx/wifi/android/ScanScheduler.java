@@ -0,0 +1,346 @@
+/*
+ * Copyright (C) 2017, Andrew Chen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package rx.wifi.android;
+
+import android.annotation.SuppressLint;
+import android.content.Context;
+import android.content.Intent;
+import android.net.wifi.ScanResult;
+import android.net.wifi.WifiManager;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.RequiresPermission;
+import android.support.annotation.VisibleForTesting;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.Observable;
+import io.reactivex.ObservableSource;
+import io.reactivex.Scheduler;
+import io.reactivex.Single;
+import io.reactivex.SingleSource;
+import io.reactivex.annotations.CheckReturnValue;
+import io.reactivex.functions.Action;
+import io.reactivex.functions.Function;
+import io.reactivex.functions.Predicate;
+import io.reactivex.schedulers.Schedulers;
+
+import static android.Manifest.permission.ACCESS_COARSE_LOCATION;
+import static android.Manifest.permission.ACCESS_FINE_LOCATION;
+
+/**
+ * Owns the process' {@link WifiManager#startScan()} budget.
+ *
+ * Foreground apps may scan 4 times every 2 minutes. The scheduler keeps those scans in a token
+ * bucket whose tokens come back one period after they were spent, so it never exceeds the
+ * platform window. Concurrent requests are coalesced into one scan, requests that can be served
+ * from the latest results do not scan at all, and once the budget is spent, or scans keep
+ * failing, the latest results are served marked as {@link ScanSnapshot#stale}.
+ *
+ * While {@link #watch()} is subscribed, the latest results are also refreshed by the scans of
+ * other apps and of the system, which cost this process nothing.
+ */
+public class ScanScheduler {
+    public static final int DEFAULT_SCANS = 4;
+    public static final long DEFAULT_PERIOD_MILLIS = TimeUnit.MINUTES.toMillis(2);
+    public static final long DEFAULT_SCAN_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(10);
+    private static final long MIN_BACKOFF_MILLIS = TimeUnit.SECONDS.toMillis(5);
+
+    private static volatile ScanScheduler sInstance;
+
+    @NonNull
+    private final WifiManager wifiManager;
+    @NonNull
+    private final Observable<Intent> scanResultsAvailable;
+    @NonNull
+    private final Scheduler scheduler;
+    private final long periodMillis;
+    private final long scanTimeoutMillis;
+    /** Times the last scans were started at, oldest first, as a ring */
+    @NonNull
+    private final long[] spent;
+    private int spentHead;
+
+    @Nullable
+    private List<ScanResult> latestResults;
+    private long latestTimestamp = ScanSnapshot.UNKNOWN;
+    @Nullable
+    private Single<List<ScanResult>> pending;
+    private long backoffMillis;
+    private long backoffUntil;
+
+    @VisibleForTesting
+    ScanScheduler(@NonNull final WifiManager wifiManager,
+                  @NonNull final Observable<Intent> scanResultsAvailable,
+                  @NonNull final Scheduler scheduler,
+                  final int scans,
+                  final long periodMillis,
+                  final long scanTimeoutMillis) {
+        this.wifiManager = wifiManager;
+        this.scanResultsAvailable = scanResultsAvailable;
+        this.scheduler = scheduler;
+        this.periodMillis = periodMillis;
+        this.scanTimeoutMillis = scanTimeoutMillis;
+        this.spent = new long[scans];
+        for (int i = 0; i < scans; i++) {
+            spent[i] = Long.MIN_VALUE / 2;
+        }
+    }
+
+    /**
+     * @param context
+     * @return the scheduler shared by the whole process
+     */
+    @NonNull
+    public static ScanScheduler get(@NonNull final Context context) {
+        final Context applicationContext = context.getApplicationContext() != null
+                ? context.getApplicationContext() : context;
+        ScanScheduler scanScheduler = sInstance;
+        if (scanScheduler == null) {
+            synchronized (ScanScheduler.class) {
+                scanScheduler = sInstance;
+                if (scanScheduler == null) {
+                    scanScheduler = new ScanScheduler(
+                            (WifiManager) applicationContext.getSystemService(Context.WIFI_SERVICE),
+                            WifiEventBus.get(applicationContext).intents(WifiManager.SCAN_RESULTS_AVAILABLE_ACTION),
+                            Schedulers.computation(),
+                            DEFAULT_SCANS,
+                            DEFAULT_PERIOD_MILLIS,
+                            DEFAULT_SCAN_TIMEOUT_MILLIS);
+                    sInstance = scanScheduler;
+                }
+            }
+        }
+        return scanScheduler;
+    }
+
+    /**
+     * Scans only if the latest results are older than {@code maxAge}, a scan is not already running
+     * and the budget allows it.
+     *
+     * @param maxAge
+     * @param unit
+     * @return results no older than maxAge, or the latest ones marked {@link ScanSnapshot#stale}
+     */
+    @NonNull
+    @CheckReturnValue
+    @RequiresPermission(anyOf = {ACCESS_FINE_LOCATION, ACCESS_COARSE_LOCATION})
+    //@RequiresPermission(CHANGE_WIFI_STATE)
+    public Single<ScanSnapshot> request(final long maxAge, @NonNull final TimeUnit unit) {
+        final long maxAgeMillis = unit.toMillis(maxAge);
+        return Single.defer(new Callable<SingleSource<ScanSnapshot>>() {
+            @Override
+            public SingleSource<ScanSnapshot> call() throws Exception {
+                final Single<List<ScanResult>> scan;
+                synchronized (ScanScheduler.this) {
+                    final long now = now();
+                    if (latestResults != null && latestTimestamp != ScanSnapshot.UNKNOWN
+                            && now - latestTimestamp <= maxAgeMillis) {
+                        return Single.just(snapshot(maxAgeMillis));
+                    }
+                    if (pending == null) {
+                        if (now < backoffUntil || !tryAcquire(now)) {
+                            return cached(maxAgeMillis);
+                        }
+                        pending = scan();
+                    }
+                    scan = pending;
+                }
+                return scan.map(new Function<List<ScanResult>, ScanSnapshot>() {
+                    @Override
+                    public ScanSnapshot apply(@NonNull final List<ScanResult> scanResults) throws Exception {
+                        synchronized (ScanScheduler.this) {
+                            return snapshot(maxAgeMillis);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Refreshes the latest results on every {@link WifiManager#SCAN_RESULTS_AVAILABLE_ACTION}
+     * broadcast that updated them, whoever started the scan.
+     *
+     * @return the results of every such broadcast
+     */
+    @NonNull
+    @CheckReturnValue
+    @RequiresPermission(anyOf = {ACCESS_FINE_LOCATION, ACCESS_COARSE_LOCATION})
+    public Observable<List<ScanResult>> watch() {
+        return scanResultsAvailable
+                .filter(new Predicate<Intent>() {
+                    @Override
+                    public boolean test(@NonNull final Intent intent) throws Exception {
+                        return intent.getBooleanExtra(WifiManager.EXTRA_RESULTS_UPDATED, true);
+                    }
+                })
+                .observeOn(RxWifi.binderScheduler())
+                .map(new Function<Intent, List<ScanResult>>() {
+                    @Override
+                    public List<ScanResult> apply(@NonNull final Intent intent) throws Exception {
+                        final List<ScanResult> scanResults = results();
+                        synchronized (ScanScheduler.this) {
+                            latestResults = scanResults;
+                            latestTimestamp = now();
+                        }
+                        return scanResults;
+                    }
+                });
+    }
+
+    /**
+     * @return scans left in the current window
+     */
+    public synchronized int availableScans() {
+        final long now = now();
+        int available = 0;
+        for (long time : spent) {
+            if (now - time >= periodMillis) available++;
+        }
+        return available;
+    }
+
+    /**
+     * @return milliseconds until scans are allowed again after failures, 0 if not backing off
+     */
+    public synchronized long backoff() {
+        return Math.max(0L, backoffUntil - now());
+    }
+
+    @NonNull
+    @SuppressLint("MissingPermission")
+    private Single<List<ScanResult>> scan() {
+        final Observable<Intent> start = Observable.defer(new Callable<ObservableSource<Intent>>() {
+            @Override
+            public ObservableSource<Intent> call() throws Exception {
+                if (!wifiManager.startScan()) {
+                    return Observable.error(new IllegalStateException("startScan() failed"));
+                }
+                return Observable.empty();
+            }
+        });
+
+        // Register for the results before starting the scan
+        return scanResultsAvailable.mergeWith(start)
+                .firstOrError()
+                .timeout(scanTimeoutMillis, TimeUnit.MILLISECONDS, scheduler)
+                .observeOn(RxWifi.binderScheduler())
+                .map(new Function<Intent, List<ScanResult>>() {
+                    @Override
+                    @SuppressLint("MissingPermission")
+                    public List<ScanResult> apply(@NonNull final Intent intent) throws Exception {
+                        final List<ScanResult> scanResults = results();
+                        synchronized (ScanScheduler.this) {
+                            if (intent.getBooleanExtra(WifiManager.EXTRA_RESULTS_UPDATED, true)) {
+                                onSuccess(scanResults);
+                            } else {
+                                onFailure(scanResults);
+                            }
+                        }
+                        return scanResults;
+                    }
+                })
+                .onErrorResumeNext(new Function<Throwable, SingleSource<List<ScanResult>>>() {
+                    @Override
+                    public SingleSource<List<ScanResult>> apply(@NonNull final Throwable e) throws Exception {
+                        return Single.fromCallable(new Callable<List<ScanResult>>() {
+                            @Override
+                            public List<ScanResult> call() throws Exception {
+                                final List<ScanResult> scanResults = results();
+                                synchronized (ScanScheduler.this) {
+                                    onFailure(scanResults);
+                                }
+                                return scanResults;
+                            }
+                        }).subscribeOn(RxWifi.binderScheduler());
+                    }
+                })
+                .doAfterTerminate(new Action() {
+                    @Override
+                    public void run() throws Exception {
+                        synchronized (ScanScheduler.this) {
+                            pending = null;
+                        }
+                    }
+                })
+                .cache();
+    }
+
+    private boolean tryAcquire(final long now) {
+        if (now - spent[spentHead] < periodMillis) return false;
+
+        spent[spentHead] = now;
+        spentHead = (spentHead + 1) % spent.length;
+        return true;
+    }
+
+    private void onSuccess(@NonNull final List<ScanResult> scanResults) {
+        latestResults = scanResults;
+        latestTimestamp = now();
+        backoffMillis = 0;
+        backoffUntil = 0;
+    }
+
+    private void onFailure(@NonNull final List<ScanResult> scanResults) {
+        if (latestResults == null) {
+            latestResults = scanResults;
+            latestTimestamp = ScanSnapshot.UNKNOWN;
+        }
+        backoffMillis = backoffMillis == 0 ? MIN_BACKOFF_MILLIS : Math.min(backoffMillis * 2, periodMillis);
+        backoffUntil = now() + backoffMillis;
+    }
+
+    @NonNull
+    private Single<ScanSnapshot> cached(final long maxAgeMillis) {
+        if (latestResults != null) return Single.just(snapshot(maxAgeMillis));
+
+        return Single.fromCallable(new Callable<ScanSnapshot>() {
+            @Override
+            public ScanSnapshot call() throws Exception {
+                final List<ScanResult> scanResults = results();
+                synchronized (ScanScheduler.this) {
+                    if (latestResults == null) {
+                        latestResults = scanResults;
+                        latestTimestamp = ScanSnapshot.UNKNOWN;
+                    }
+                    return snapshot(maxAgeMillis);
+                }
+            }
+        }).subscribeOn(RxWifi.binderScheduler());
+    }
+
+    @NonNull
+    private ScanSnapshot snapshot(final long maxAgeMillis) {
+        final List<ScanResult> scanResults = latestResults != null
+                ? latestResults : Collections.<ScanResult>emptyList();
+        return new ScanSnapshot(scanResults, latestTimestamp, now(), maxAgeMillis);
+    }
+
+    @NonNull
+    @SuppressLint("MissingPermission")
+    private List<ScanResult> results() {
+        final List<ScanResult> scanResults = wifiManager.getScanResults();
+        return scanResults != null ? scanResults : Collections.<ScanResult>emptyList();
+    }
+
+    private long now() {
+        return scheduler.now(TimeUnit.MILLISECONDS);
+    }
+}
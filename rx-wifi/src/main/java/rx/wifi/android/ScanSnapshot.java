@@ -0,0 +1,60 @@
+/*
+ * Copyright (C) 2017, Andrew Chen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package rx.wifi.android;
+
+import android.net.wifi.ScanResult;
+import android.support.annotation.NonNull;
+
+import java.util.List;
+
+/**
+ * Scan results along with how old they were when emitted.
+ */
+public class ScanSnapshot {
+    /**
+     * {@link #timestamp} of results that were already there when nobody was watching.
+     */
+    public static final long UNKNOWN = -1L;
+
+    @NonNull
+    public final List<ScanResult> results;
+    /**
+     * Scheduler time in milliseconds when the results became available, or {@link #UNKNOWN}.
+     */
+    public final long timestamp;
+    /**
+     * Age of the results in milliseconds at emission, {@link Long#MAX_VALUE} if unknown.
+     */
+    public final long age;
+    /**
+     * True if the results are older than requested, i.e. the scan budget was spent or the scan failed.
+     */
+    public final boolean stale;
+
+    ScanSnapshot(@NonNull final List<ScanResult> results, final long timestamp, final long now, final long maxAge) {
+        this.results = results;
+        this.timestamp = timestamp;
+        this.age = timestamp == UNKNOWN ? Long.MAX_VALUE : Math.max(0L, now - timestamp);
+        this.stale = age > maxAge;
+    }
+
+    @Override
+    public String toString() {
+        return "ScanSnapshot{results=" + results.size()
+                + ", age=" + (timestamp == UNKNOWN ? "unknown" : age + "ms")
+                + ", stale=" + stale + "}";
+    }
+}
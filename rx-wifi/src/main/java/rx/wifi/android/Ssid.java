@@ -0,0 +1,231 @@
+/*
+ * Copyright (C) 2017, Andrew Chen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package rx.wifi.android;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CodingErrorAction;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Normalized SSID.
+ *
+ * Accepts the forms the framework hands out: unquoted text from {@code ScanResult.SSID} with
+ * {@link #of}, quoted text or {@code 0x} hex from {@code WifiInfo.getSSID()} with {@link #ofWifiInfo}
+ * and quoted text or bare hex digits from {@code WifiConfiguration.SSID} with
+ * {@link #ofConfiguration}. Hex SSIDs that are valid UTF-8 normalize to their text.
+ *
+ * Instances are interned in a small LRU cache keyed by the raw string, so matching the same
+ * scan results over and over neither strips quotes nor allocates.
+ */
+public final class Ssid {
+    /**
+     * {@code WifiSsid.NONE}, returned by {@code WifiInfo.getSSID()} when the SSID is unknown or hidden.
+     */
+    public static final String UNKNOWN_SSID = "<unknown ssid>";
+
+    public static final Ssid EMPTY = new Ssid("", false);
+
+    private static final int CACHE_SIZE = 256;
+    /** Text only, e.g. a network named "0xCAFE" */
+    private static final int TEXT = 0;
+    /** {@code 0x} hex for names that are not valid UTF-8 */
+    private static final int PREFIXED_HEX = 1;
+    /** Bare hex digits for names that are not quoted */
+    private static final int BARE_HEX = 2;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final Map<String, Ssid> sCache = new LinkedHashMap<String, Ssid>(CACHE_SIZE, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Ssid> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+    private static final Map<String, Ssid> sWifiInfoCache = new LinkedHashMap<String, Ssid>(CACHE_SIZE, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Ssid> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+    private static final Map<String, Ssid> sConfigurationCache = new LinkedHashMap<String, Ssid>(CACHE_SIZE, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Ssid> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+
+    /** Unquoted text, or lowercase hex digits if {@link #hex} */
+    @NonNull
+    private final String value;
+    private final boolean hex;
+    private final int hash;
+
+    private Ssid(@NonNull final String value, final boolean hex) {
+        this.value = value;
+        this.hex = hex;
+        this.hash = 31 * value.hashCode() + (hex ? 1 : 0);
+    }
+
+    /**
+     * @param ssid SSID from a ScanResult or typed by the user, quoted or not, never decoded as hex
+     * @return
+     */
+    @NonNull
+    public static Ssid of(@Nullable final String ssid) {
+        return intern(sCache, ssid, TEXT);
+    }
+
+    /**
+     * @param ssid {@code WifiInfo.getSSID()}, quoted text or {@code 0x} hex
+     * @return
+     */
+    @NonNull
+    public static Ssid ofWifiInfo(@Nullable final String ssid) {
+        return intern(sWifiInfoCache, ssid, PREFIXED_HEX);
+    }
+
+    /**
+     * @param ssid {@code WifiConfiguration.SSID}, quoted text or bare hex digits
+     * @return
+     */
+    @NonNull
+    public static Ssid ofConfiguration(@Nullable final String ssid) {
+        return intern(sConfigurationCache, ssid, BARE_HEX);
+    }
+
+    @NonNull
+    private static Ssid intern(@NonNull final Map<String, Ssid> cache, @Nullable final String ssid, final int form) {
+        if (ssid == null || ssid.isEmpty()) return EMPTY;
+
+        synchronized (cache) {
+            Ssid cached = cache.get(ssid);
+            if (cached == null) {
+                cached = parse(ssid, form);
+                cache.put(ssid, cached);
+            }
+            return cached;
+        }
+    }
+
+    @NonNull
+    private static Ssid parse(@NonNull final String ssid, final int form) {
+        final boolean quoted = ssid.startsWith("\"") || ssid.endsWith("\"");
+        if (quoted) {
+            final int start = ssid.startsWith("\"") ? 1 : 0;
+            final int end = ssid.length() > start && ssid.endsWith("\"") ? ssid.length() - 1 : ssid.length();
+            return text(ssid.substring(start, end));
+        }
+        if (form == PREFIXED_HEX && (ssid.startsWith("0x") || ssid.startsWith("0X"))) {
+            return hex(ssid.substring(2), ssid);
+        }
+        if (form == BARE_HEX) {
+            return hex(ssid, ssid);
+        }
+        return text(ssid);
+    }
+
+    @NonNull
+    private static Ssid text(@NonNull final String text) {
+        return text.isEmpty() ? EMPTY : new Ssid(text, false);
+    }
+
+    @NonNull
+    private static Ssid hex(@NonNull final String digits, @NonNull final String fallback) {
+        final byte[] bytes = decodeHex(digits);
+        if (bytes == null) return text(fallback);
+        if (bytes.length == 0) return EMPTY;
+
+        try {
+            return text(UTF_8.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPORT)
+                    .onUnmappableCharacter(CodingErrorAction.REPORT)
+                    .decode(ByteBuffer.wrap(bytes))
+                    .toString());
+        } catch (CharacterCodingException e) {
+            return new Ssid(digits.toLowerCase(), true);
+        }
+    }
+
+    @Nullable
+    private static byte[] decodeHex(@NonNull final String digits) {
+        if (digits.length() % 2 != 0) return null;
+
+        final byte[] bytes = new byte[digits.length() / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            final int hi = Character.digit(digits.charAt(i * 2), 16);
+            final int lo = Character.digit(digits.charAt(i * 2 + 1), 16);
+            if (hi < 0 || lo < 0) return null;
+            bytes[i] = (byte) ((hi << 4) | lo);
+        }
+        return bytes;
+    }
+
+    /**
+     * @return true for empty SSIDs and {@link #UNKNOWN_SSID}
+     */
+    public boolean isHidden() {
+        return value.isEmpty() || (!hex && UNKNOWN_SSID.equals(value));
+    }
+
+    /**
+     * @return true if the SSID is not valid UTF-8 and is kept as raw bytes
+     */
+    public boolean isHex() {
+        return hex;
+    }
+
+    /**
+     * @return the SSID in the form {@code WifiConfiguration.SSID} expects
+     */
+    @NonNull
+    public String toConfiguration() {
+        return hex ? value : "\"" + value + "\"";
+    }
+
+    /**
+     * @param ssid SSID from a ScanResult
+     * @return
+     */
+    public boolean matches(@Nullable final String ssid) {
+        return equals(of(ssid));
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof Ssid)) return false;
+
+        final Ssid ssid = (Ssid) o;
+        return hash == ssid.hash && hex == ssid.hex && value.equals(ssid.value);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    /**
+     * @return the unquoted SSID, or its hex digits if {@link #isHex()}
+     */
+    @Override
+    public String toString() {
+        return value;
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright (C) 2017, Andrew Chen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package rx.wifi.android;
+
+import android.content.Intent;
+import android.net.wifi.SupplicantState;
+import android.net.wifi.WifiManager;
+import android.support.annotation.NonNull;
+
+/**
+ * One {@link WifiManager#SUPPLICANT_STATE_CHANGED_ACTION} broadcast, with its error if any.
+ */
+public class SupplicantEvent {
+    public static final int NO_ERROR = 0;
+
+    @NonNull
+    public final SupplicantState state;
+    /**
+     * {@link WifiManager#ERROR_AUTHENTICATING} or {@link #NO_ERROR}
+     */
+    public final int error;
+
+    SupplicantEvent(@NonNull final SupplicantState state, final int error) {
+        this.state = state;
+        this.error = error;
+    }
+
+    /**
+     * @param intent {@link WifiManager#SUPPLICANT_STATE_CHANGED_ACTION} carrying {@link WifiManager#EXTRA_NEW_STATE}
+     * @return
+     */
+    @NonNull
+    static SupplicantEvent of(@NonNull final Intent intent) {
+        final SupplicantState state = intent.getParcelableExtra(WifiManager.EXTRA_NEW_STATE);
+        return new SupplicantEvent(state, intent.getIntExtra(WifiManager.EXTRA_SUPPLICANT_ERROR, NO_ERROR));
+    }
+
+    public boolean isAuthenticationError() {
+        return error == WifiManager.ERROR_AUTHENTICATING;
+    }
+
+    @Override
+    public String toString() {
+        return "SupplicantEvent{" + state + (error != NO_ERROR ? ", error=" + error : "") + "}";
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright (C) 2017, Andrew Chen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package rx.wifi.android;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+/**
+ * An SSID {@link RxWifi#connectBest} may connect to.
+ */
+public class WifiCandidate {
+    @NonNull
+    public final Ssid ssid;
+    @Nullable
+    public final String password;
+    /**
+     * Higher is preferred, see {@link WifiScorer}
+     */
+    public final int priority;
+
+    WifiCandidate(@NonNull final Ssid ssid, @Nullable final String password, final int priority) {
+        this.ssid = ssid;
+        this.password = password;
+        this.priority = priority;
+    }
+
+    /**
+     * @param ssid
+     * @param password null for open or already configured networks
+     * @param priority higher is preferred
+     * @return
+     */
+    @NonNull
+    public static WifiCandidate of(@NonNull final Ssid ssid, @Nullable final String password, final int priority) {
+        return new WifiCandidate(ssid, password, priority);
+    }
+
+    @NonNull
+    public static WifiCandidate of(@NonNull final String ssid, @Nullable final String password, final int priority) {
+        return of(Ssid.of(ssid), password, priority);
+    }
+
+    @Override
+    public String toString() {
+        return "WifiCandidate{" + ssid + ", priority=" + priority + "}";
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright (C) 2017, Andrew Chen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package rx.wifi.android;
+
+import android.support.annotation.NonNull;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * How long each phase of {@link WifiConnector#connect} may take.
+ */
+public class WifiConnectDeadlines {
+    /**
+     * No internet check
+     */
+    public static final WifiConnectDeadlines DEFAULT = of(15, 10, 15, 15, 0, TimeUnit.SECONDS);
+    /**
+     * Same as {@link #DEFAULT}, with 10 seconds to pass the internet check
+     */
+    public static final WifiConnectDeadlines VERIFIED = of(15, 10, 15, 15, 10, TimeUnit.SECONDS);
+
+    public final long scanMillis;
+    public final long associateMillis;
+    public final long authenticateMillis;
+    public final long obtainIpMillis;
+    /**
+     * 0 to skip the internet check
+     */
+    public final long verifyMillis;
+
+    WifiConnectDeadlines(final long scanMillis,
+                         final long associateMillis,
+                         final long authenticateMillis,
+                         final long obtainIpMillis,
+                         final long verifyMillis) {
+        this.scanMillis = scanMillis;
+        this.associateMillis = associateMillis;
+        this.authenticateMillis = authenticateMillis;
+        this.obtainIpMillis = obtainIpMillis;
+        this.verifyMillis = verifyMillis;
+    }
+
+    /**
+     * @param scan
+     * @param associate
+     * @param authenticate
+     * @param obtainIp
+     * @param verify 0 to skip the internet check
+     * @param unit
+     * @return
+     */
+    @NonNull
+    public static WifiConnectDeadlines of(final long scan,
+                                          final long associate,
+                                          final long authenticate,
+                                          final long obtainIp,
+                                          final long verify,
+                                          @NonNull final TimeUnit unit) {
+        return new WifiConnectDeadlines(unit.toMillis(scan), unit.toMillis(associate),
+                unit.toMillis(authenticate), unit.toMillis(obtainIp), unit.toMillis(verify));
+    }
+
+    long of(@WifiConnectPhase final int phase) {
+        switch (phase) {
+            case WifiConnectProgress.SCANNING: return scanMillis;
+            case WifiConnectProgress.ASSOCIATING: return associateMillis;
+            case WifiConnectProgress.AUTHENTICATING: return authenticateMillis;
+            case WifiConnectProgress.OBTAINING_IP: return obtainIpMillis;
+            case WifiConnectProgress.VERIFYING: return verifyMillis;
+            default: return 0L;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "WifiConnectDeadlines{scan=" + scanMillis + "ms, associate=" + associateMillis
+                + "ms, authenticate=" + authenticateMillis + "ms, obtainIp=" + obtainIpMillis
+                + "ms, verify=" + verifyMillis + "ms}";
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright (C) 2017, Andrew Chen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package rx.wifi.android;
+
+import android.support.annotation.NonNull;
+
+/**
+ * Why {@link WifiConnector#connect} gave up, and in which phase.
+ */
+public class WifiConnectException extends Exception {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * No scan result of the SSID before the scanning deadline
+     */
+    public static final int SSID_NOT_FOUND = 0;
+    /**
+     * The supplicant did not start authenticating before the associating deadline
+     */
+    public static final int ASSOCIATION_TIMEOUT = 1;
+    /**
+     * Wrong password, or the handshake did not complete before the authenticating deadline
+     */
+    public static final int AUTHENTICATION_FAILED = 2;
+    /**
+     * No IP address before the deadline
+     */
+    public static final int DHCP_TIMEOUT = 3;
+    /**
+     * Connected, but the internet check failed or timed out
+     */
+    public static final int NO_INTERNET = 4;
+
+    @WifiConnectFailure
+    public final int reason;
+    @WifiConnectPhase
+    public final int phase;
+    public final long elapsedMillis;
+
+    WifiConnectException(@WifiConnectFailure final int reason,
+                         @WifiConnectPhase final int phase,
+                         final long elapsedMillis) {
+        super(name(reason) + " while " + WifiConnectProgress.name(phase) + " after " + elapsedMillis + "ms");
+        this.reason = reason;
+        this.phase = phase;
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    @NonNull
+    private static String name(@WifiConnectFailure final int reason) {
+        switch (reason) {
+            case SSID_NOT_FOUND: return "SSID not found";
+            case ASSOCIATION_TIMEOUT: return "Association timeout";
+            case AUTHENTICATION_FAILED: return "Authentication failed";
+            case DHCP_TIMEOUT: return "DHCP timeout";
+            case NO_INTERNET: return "No internet";
+            default: return "Failure " + reason;
+        }
+    }
+}
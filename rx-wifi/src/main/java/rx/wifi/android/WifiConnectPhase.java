@@ -0,0 +1,33 @@
+/*
+ * Copyright (C) 2017, Andrew Chen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package rx.wifi.android;
+
+import android.support.annotation.IntDef;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+
+@IntDef(value = {
+        WifiConnectProgress.SCANNING,
+        WifiConnectProgress.ASSOCIATING,
+        WifiConnectProgress.AUTHENTICATING,
+        WifiConnectProgress.OBTAINING_IP,
+        WifiConnectProgress.VERIFYING,
+        WifiConnectProgress.CONNECTED,
+})
+@Retention(RetentionPolicy.SOURCE)
+public @interface WifiConnectPhase {
+}
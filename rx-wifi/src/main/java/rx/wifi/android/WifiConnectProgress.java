@@ -0,0 +1,77 @@
+/*
+ * Copyright (C) 2017, Andrew Chen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package rx.wifi.android;
+
+import android.support.annotation.NonNull;
+
+import java.util.Arrays;
+
+/**
+ * A phase of {@link WifiConnector#connect} was entered.
+ */
+public class WifiConnectProgress {
+    public static final int SCANNING = 0;
+    public static final int ASSOCIATING = 1;
+    public static final int AUTHENTICATING = 2;
+    public static final int OBTAINING_IP = 3;
+    public static final int VERIFYING = 4;
+    public static final int CONNECTED = 5;
+    static final int PHASES = 6;
+
+    @WifiConnectPhase
+    public final int phase;
+    /**
+     * Since the connect started
+     */
+    public final long elapsedMillis;
+    @NonNull
+    private final long[] phaseMillis;
+
+    WifiConnectProgress(@WifiConnectPhase final int phase,
+                        final long elapsedMillis,
+                        @NonNull final long[] phaseMillis) {
+        this.phase = phase;
+        this.elapsedMillis = elapsedMillis;
+        this.phaseMillis = phaseMillis.clone();
+    }
+
+    /**
+     * @param phase
+     * @return how long the phase took, 0 if skipped or not over yet
+     */
+    public long millisIn(@WifiConnectPhase final int phase) {
+        return phaseMillis[phase];
+    }
+
+    @NonNull
+    static String name(@WifiConnectPhase final int phase) {
+        switch (phase) {
+            case SCANNING: return "SCANNING";
+            case ASSOCIATING: return "ASSOCIATING";
+            case AUTHENTICATING: return "AUTHENTICATING";
+            case OBTAINING_IP: return "OBTAINING_IP";
+            case VERIFYING: return "VERIFYING";
+            case CONNECTED: return "CONNECTED";
+            default: return String.valueOf(phase);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "WifiConnectProgress{" + name(phase) + ", " + elapsedMillis + "ms, phases="
+                + Arrays.toString(phaseMillis) + "}";
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright (C) 2017, Andrew Chen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package rx.wifi.android;
+
+import android.content.Intent;
+import android.net.NetworkInfo;
+import android.net.wifi.SupplicantState;
+import android.net.wifi.WifiInfo;
+import android.net.wifi.WifiManager;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+/**
+ * Immutable snapshot of the wifi connection, built from broadcast extras only.
+ */
+public class WifiConnection {
+    public static final WifiConnection UNKNOWN = new WifiConnection(
+            NetworkInfo.DetailedState.IDLE, Ssid.EMPTY, null, SupplicantState.UNINITIALIZED, null);
+
+    @NonNull
+    public final NetworkInfo.DetailedState detailedState;
+    @NonNull
+    public final Ssid ssid;
+    @Nullable
+    public final String bssid;
+    @NonNull
+    public final SupplicantState supplicantState;
+    /**
+     * Only available once connected.
+     */
+    @Nullable
+    public final WifiInfo wifiInfo;
+
+    WifiConnection(@NonNull final NetworkInfo.DetailedState detailedState,
+                   @NonNull final Ssid ssid,
+                   @Nullable final String bssid,
+                   @NonNull final SupplicantState supplicantState,
+                   @Nullable final WifiInfo wifiInfo) {
+        this.detailedState = detailedState;
+        this.ssid = ssid;
+        this.bssid = bssid;
+        this.supplicantState = supplicantState;
+        this.wifiInfo = wifiInfo;
+    }
+
+    /**
+     * @param ssid
+     * @return true if associated with the SSID and the supplicant completed
+     */
+    public boolean isConnectedTo(@NonNull final Ssid ssid) {
+        return supplicantState == SupplicantState.COMPLETED && this.ssid.equals(ssid);
+    }
+
+    /**
+     * @param intent {@link WifiManager#NETWORK_STATE_CHANGED_ACTION} or {@link WifiManager#SUPPLICANT_STATE_CHANGED_ACTION}
+     * @return the snapshot updated with the broadcast extras
+     */
+    @NonNull
+    public WifiConnection update(@NonNull final Intent intent) {
+        if (WifiManager.NETWORK_STATE_CHANGED_ACTION.equals(intent.getAction())) {
+            final NetworkInfo networkInfo = intent.getParcelableExtra(WifiManager.EXTRA_NETWORK_INFO);
+            if (networkInfo == null) return this;
+
+            final WifiInfo wifiInfo = intent.getParcelableExtra(WifiManager.EXTRA_WIFI_INFO);
+            final String bssid = intent.getStringExtra(WifiManager.EXTRA_BSSID);
+            final NetworkInfo.DetailedState detailedState = networkInfo.getDetailedState();
+
+            if (detailedState == NetworkInfo.DetailedState.DISCONNECTED) {
+                return new WifiConnection(detailedState, Ssid.EMPTY, null, supplicantState, null);
+            }
+
+            // NetworkInfo carries the SSID as extra info while connecting, WifiInfo once connected
+            Ssid ssid = wifiInfo != null ? Ssid.ofWifiInfo(wifiInfo.getSSID()) : Ssid.of(networkInfo.getExtraInfo());
+            if (ssid.isHidden()) ssid = this.ssid;
+
+            SupplicantState supplicantState = this.supplicantState;
+            if (wifiInfo != null && wifiInfo.getSupplicantState() != null) {
+                supplicantState = wifiInfo.getSupplicantState();
+            } else if (networkInfo.isConnected()) {
+                supplicantState = SupplicantState.COMPLETED;
+            }
+
+            return new WifiConnection(detailedState, ssid,
+                    bssid != null ? bssid : (wifiInfo != null ? wifiInfo.getBSSID() : this.bssid),
+                    supplicantState,
+                    wifiInfo);
+        }
+
+        if (WifiManager.SUPPLICANT_STATE_CHANGED_ACTION.equals(intent.getAction())) {
+            final SupplicantState supplicantState = intent.getParcelableExtra(WifiManager.EXTRA_NEW_STATE);
+            if (supplicantState == null || supplicantState == this.supplicantState) return this;
+
+            if (supplicantState == SupplicantState.DISCONNECTED) {
+                return new WifiConnection(detailedState, Ssid.EMPTY, null, supplicantState, null);
+            }
+            return new WifiConnection(detailedState, ssid, bssid, supplicantState, wifiInfo);
+        }
+
+        return this;
+    }
+
+    /**
+     * Compares the connection state only, a {@link #wifiInfo} refresh alone is not a change.
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof WifiConnection)) return false;
+
+        final WifiConnection connection = (WifiConnection) o;
+        return detailedState == connection.detailedState
+                && supplicantState == connection.supplicantState
+                && ssid.equals(connection.ssid)
+                && (bssid != null ? bssid.equals(connection.bssid) : connection.bssid == null);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = detailedState.hashCode();
+        result = 31 * result + ssid.hashCode();
+        result = 31 * result + (bssid != null ? bssid.hashCode() : 0);
+        result = 31 * result + supplicantState.hashCode();
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "WifiConnection{" + detailedState
+                + ", ssid=" + ssid
+                + ", bssid=" + bssid
+                + ", " + supplicantState + "}";
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright (C) 2017, Andrew Chen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package rx.wifi.android;
+
+import android.content.Context;
+import android.content.Intent;
+import android.net.wifi.WifiManager;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.RequiresPermission;
+import android.support.annotation.VisibleForTesting;
+
+import io.reactivex.Observable;
+import io.reactivex.annotations.CheckReturnValue;
+import io.reactivex.functions.Action;
+import io.reactivex.functions.BiFunction;
+import io.reactivex.functions.Consumer;
+import io.reactivex.functions.Predicate;
+
+import static android.Manifest.permission.ACCESS_WIFI_STATE;
+
+/**
+ * Tracks the wifi connection from {@link WifiManager#NETWORK_STATE_CHANGED_ACTION} and
+ * {@link WifiManager#SUPPLICANT_STATE_CHANGED_ACTION} extras, so checking the connection does not
+ * need a {@link WifiManager#getConnectionInfo()} round-trip.
+ *
+ * The snapshot is only kept while someone subscribes to {@link #connections()}, as the broadcasts
+ * are not received otherwise.
+ */
+public class WifiConnectionTracker {
+    private static volatile WifiConnectionTracker sInstance;
+
+    @NonNull
+    private final WifiEventBus bus;
+    @NonNull
+    private final WifiManager wifiManager;
+    @NonNull
+    private final Observable<WifiConnection> connections;
+    @Nullable
+    private volatile WifiConnection snapshot;
+
+    @VisibleForTesting
+    WifiConnectionTracker(@NonNull final WifiEventBus bus, @NonNull final WifiManager wifiManager) {
+        this.bus = bus;
+        this.wifiManager = wifiManager;
+        this.connections = bus.intents()
+                .filter(new Predicate<Intent>() {
+                    @Override
+                    public boolean test(@NonNull final Intent intent) throws Exception {
+                        return WifiManager.NETWORK_STATE_CHANGED_ACTION.equals(intent.getAction())
+                                || WifiManager.SUPPLICANT_STATE_CHANGED_ACTION.equals(intent.getAction());
+                    }
+                })
+                .scan(WifiConnection.UNKNOWN, new BiFunction<WifiConnection, Intent, WifiConnection>() {
+                    @Override
+                    public WifiConnection apply(@NonNull final WifiConnection connection,
+                                                @NonNull final Intent intent) throws Exception {
+                        return connection.update(intent);
+                    }
+                })
+                .skip(1)
+                .distinctUntilChanged()
+                .doOnNext(new Consumer<WifiConnection>() {
+                    @Override
+                    public void accept(WifiConnection connection) throws Exception {
+                        snapshot = connection;
+                    }
+                })
+                .doFinally(new Action() {
+                    @Override
+                    public void run() throws Exception {
+                        snapshot = null;
+                    }
+                })
+                .replay(1)
+                .refCount();
+    }
+
+    /**
+     * @param context
+     * @return the tracker bound to the application context
+     */
+    @NonNull
+    public static WifiConnectionTracker get(@NonNull final Context context) {
+        final WifiEventBus bus = WifiEventBus.get(context);
+        WifiConnectionTracker tracker = sInstance;
+        if (tracker == null || tracker.bus != bus) {
+            synchronized (WifiConnectionTracker.class) {
+                tracker = sInstance;
+                if (tracker == null || tracker.bus != bus) {
+                    final Context applicationContext = context.getApplicationContext() != null
+                            ? context.getApplicationContext() : context;
+                    tracker = new WifiConnectionTracker(bus,
+                            (WifiManager) applicationContext.getSystemService(Context.WIFI_SERVICE));
+                    sInstance = tracker;
+                }
+            }
+        }
+        return tracker;
+    }
+
+    /**
+     * @return connection snapshots, replaying the latest one
+     */
+    @NonNull
+    @CheckReturnValue
+    @RequiresPermission(ACCESS_WIFI_STATE)
+    public Observable<WifiConnection> connections() {
+        return connections;
+    }
+
+    /**
+     * @return the latest snapshot, null if nobody is subscribed to {@link #connections()} or
+     * nothing was received yet
+     */
+    @Nullable
+    public WifiConnection snapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Answers from the snapshot, and only asks {@link WifiManager#getConnectionInfo()} without one.
+     *
+     * @param ssid
+     * @return
+     */
+    @RequiresPermission(ACCESS_WIFI_STATE)
+    public boolean isConnected(@NonNull final Ssid ssid) {
+        final WifiConnection connection = snapshot;
+        if (connection != null) return connection.isConnectedTo(ssid);
+
+        return RxWifi.isConnected(wifiManager, ssid);
+    }
+}
@@ -0,0 +1,478 @@
+/*
+ * Copyright (C) 2017, Andrew Chen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package rx.wifi.android;
+
+import android.annotation.SuppressLint;
+import android.annotation.TargetApi;
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.net.Network;
+import android.net.NetworkInfo;
+import android.net.wifi.ScanResult;
+import android.net.wifi.SupplicantState;
+import android.net.wifi.WifiManager;
+import android.os.Build;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.RequiresPermission;
+import android.support.annotation.VisibleForTesting;
+
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.Maybe;
+import io.reactivex.Observable;
+import io.reactivex.ObservableEmitter;
+import io.reactivex.ObservableOnSubscribe;
+import io.reactivex.Scheduler;
+import io.reactivex.Single;
+import io.reactivex.annotations.CheckReturnValue;
+import io.reactivex.disposables.CompositeDisposable;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.functions.Action;
+import io.reactivex.functions.BiConsumer;
+import io.reactivex.functions.Consumer;
+import io.reactivex.functions.Function;
+import io.reactivex.schedulers.Schedulers;
+
+import static android.Manifest.permission.ACCESS_COARSE_LOCATION;
+import static android.Manifest.permission.ACCESS_FINE_LOCATION;
+
+/**
+ * Connects to an SSID as a state machine: scanning, associating, authenticating, obtaining an IP
+ * address, then optionally verifying internet access.
+ *
+ * Each phase has its own deadline from {@link WifiConnectDeadlines}, and the connect fails fast
+ * with a {@link WifiConnectException} telling why, e.g. as soon as the supplicant reports
+ * {@link WifiManager#ERROR_AUTHENTICATING}.
+ */
+public class WifiConnector {
+    static final String INTERNET_CHECK_URL = "http://connectivitycheck.gstatic.com/generate_204";
+
+    private static volatile WifiConnector sInstance;
+
+    @Nullable
+    private final WifiEventBus bus;
+    @NonNull
+    private final Function<Ssid, Maybe<ScanResult>> scanFor;
+    @NonNull
+    private final BiConsumer<ScanResult, String> connect;
+    @NonNull
+    private final Function<Ssid, Boolean> isConnected;
+    @NonNull
+    private final Observable<SupplicantEvent> supplicantEvents;
+    @NonNull
+    private final Observable<WifiConnection> connections;
+    @NonNull
+    private final Single<Boolean> internet;
+    @NonNull
+    private final Scheduler scheduler;
+
+    /**
+     * @param bus
+     * @param scanFor first scan result of the SSID
+     * @param connect configures and enables the network of the scan result, with the password
+     * @param isConnected
+     * @param supplicantEvents
+     * @param connections
+     * @param internet true if the internet is reachable over wifi
+     * @param scheduler clock and timer of the deadlines
+     */
+    @VisibleForTesting
+    WifiConnector(@Nullable final WifiEventBus bus,
+                  @NonNull final Function<Ssid, Maybe<ScanResult>> scanFor,
+                  @NonNull final BiConsumer<ScanResult, String> connect,
+                  @NonNull final Function<Ssid, Boolean> isConnected,
+                  @NonNull final Observable<SupplicantEvent> supplicantEvents,
+                  @NonNull final Observable<WifiConnection> connections,
+                  @NonNull final Single<Boolean> internet,
+                  @NonNull final Scheduler scheduler) {
+        this.bus = bus;
+        this.scanFor = scanFor;
+        this.connect = connect;
+        this.isConnected = isConnected;
+        this.supplicantEvents = supplicantEvents;
+        this.connections = connections;
+        this.internet = internet;
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * @param context
+     * @return the connector bound to the application context
+     */
+    @NonNull
+    public static WifiConnector get(@NonNull final Context context) {
+        final WifiEventBus bus = WifiEventBus.get(context);
+        WifiConnector connector = sInstance;
+        if (connector == null || connector.bus != bus) {
+            synchronized (WifiConnector.class) {
+                connector = sInstance;
+                if (connector == null || connector.bus != bus) {
+                    connector = create(context, bus);
+                    sInstance = connector;
+                }
+            }
+        }
+        return connector;
+    }
+
+    @NonNull
+    @SuppressLint("MissingPermission")
+    private static WifiConnector create(@NonNull final Context context, @NonNull final WifiEventBus bus) {
+        final Context applicationContext = context.getApplicationContext() != null
+                ? context.getApplicationContext() : context;
+        final WifiManager wifiManager = (WifiManager) applicationContext.getSystemService(Context.WIFI_SERVICE);
+        final ConnectivityManager connectivityManager = (ConnectivityManager)
+                applicationContext.getSystemService(Context.CONNECTIVITY_SERVICE);
+        return new WifiConnector(bus,
+                new Function<Ssid, Maybe<ScanResult>>() {
+                    @Override
+                    public Maybe<ScanResult> apply(@NonNull Ssid ssid) throws Exception {
+                        return RxWifi.scanFor(applicationContext, ssid).observeOn(RxWifi.binderScheduler());
+                    }
+                },
+                new BiConsumer<ScanResult, String>() {
+                    @Override
+                    public void accept(@NonNull ScanResult scanResult, @Nullable String password) throws Exception {
+                        RxWifi.connect(wifiManager, scanResult, password);
+                    }
+                },
+                new Function<Ssid, Boolean>() {
+                    @Override
+                    public Boolean apply(@NonNull Ssid ssid) throws Exception {
+                        return RxWifi.isConnected(applicationContext, ssid);
+                    }
+                },
+                bus.supplicantEvents(),
+                WifiConnectionTracker.get(applicationContext).connections(),
+                internetCheck(connectivityManager),
+                Schedulers.computation());
+    }
+
+    /**
+     * @param ssid
+     * @param password
+     * @param deadlines
+     * @return every phase entered, completing once {@link WifiConnectProgress#CONNECTED}, or a
+     * {@link WifiConnectException}. Starts with {@link WifiConnectProgress#CONNECTED} right away
+     * if already connected and no internet check is asked.
+     */
+    @NonNull
+    @CheckReturnValue
+    @RequiresPermission(anyOf = {ACCESS_FINE_LOCATION, ACCESS_COARSE_LOCATION})
+    //@RequiresPermission(CHANGE_WIFI_STATE)
+    public Observable<WifiConnectProgress> connect(@NonNull final Ssid ssid,
+                                                   @Nullable final String password,
+                                                   @NonNull final WifiConnectDeadlines deadlines) {
+        return Observable.create(new ObservableOnSubscribe<WifiConnectProgress>() {
+            @Override
+            public void subscribe(ObservableEmitter<WifiConnectProgress> emitter) throws Exception {
+                final Machine machine = new Machine(ssid, password, deadlines, emitter.serialize());
+                emitter.setDisposable(machine);
+                machine.start();
+            }
+        });
+    }
+
+    /**
+     * GETs {@link #INTERNET_CHECK_URL} through the wifi network on Lollipop+, through the default
+     * network before.
+     */
+    @NonNull
+    static Single<Boolean> internetCheck(@NonNull final ConnectivityManager connectivityManager) {
+        return Single.fromCallable(new Callable<Boolean>() {
+                    @Override
+                    public Boolean call() throws Exception {
+                        final URL url = new URL(INTERNET_CHECK_URL);
+                        final HttpURLConnection connection = (HttpURLConnection)
+                                (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP
+                                        ? openOverWifi(connectivityManager, url) : url.openConnection());
+                        try {
+                            connection.setInstanceFollowRedirects(false);
+                            connection.setUseCaches(false);
+                            connection.setConnectTimeout((int) TimeUnit.SECONDS.toMillis(5));
+                            connection.setReadTimeout((int) TimeUnit.SECONDS.toMillis(5));
+                            // Captive portals answer anything but 204
+                            return connection.getResponseCode() == HttpURLConnection.HTTP_NO_CONTENT;
+                        } finally {
+                            connection.disconnect();
+                        }
+                    }
+                })
+                .subscribeOn(Schedulers.io())
+                .onErrorReturnItem(false);
+    }
+
+    @NonNull
+    @SuppressLint("MissingPermission")
+    @TargetApi(Build.VERSION_CODES.LOLLIPOP)
+    private static URLConnection openOverWifi(@NonNull final ConnectivityManager connectivityManager,
+                                              @NonNull final URL url) throws Exception {
+        for (Network network : connectivityManager.getAllNetworks()) {
+            final NetworkInfo networkInfo = connectivityManager.getNetworkInfo(network);
+            if (networkInfo != null && networkInfo.getType() == ConnectivityManager.TYPE_WIFI) {
+                return network.openConnection(url);
+            }
+        }
+        return url.openConnection();
+    }
+
+    /**
+     * One connect, all state guarded by itself.
+     */
+    private class Machine implements Disposable {
+        @NonNull
+        final Ssid ssid;
+        @Nullable
+        final String password;
+        @NonNull
+        final WifiConnectDeadlines deadlines;
+        @NonNull
+        final ObservableEmitter<WifiConnectProgress> emitter;
+        @NonNull
+        final CompositeDisposable disposables = new CompositeDisposable();
+        @NonNull
+        final long[] phaseMillis = new long[WifiConnectProgress.PHASES];
+        @Nullable
+        Disposable deadline;
+        @Nullable
+        SupplicantState supplicantState;
+        int phase = -1;
+        long start;
+        long phaseStart;
+        boolean done;
+
+        Machine(@NonNull final Ssid ssid,
+                @Nullable final String password,
+                @NonNull final WifiConnectDeadlines deadlines,
+                @NonNull final ObservableEmitter<WifiConnectProgress> emitter) {
+            this.ssid = ssid;
+            this.password = password;
+            this.deadlines = deadlines;
+            this.emitter = emitter;
+        }
+
+        synchronized void start() throws Exception {
+            start = now();
+            phaseStart = start;
+            if (isConnected.apply(ssid)) {
+                enter(verifies() ? WifiConnectProgress.VERIFYING : WifiConnectProgress.CONNECTED);
+                return;
+            }
+
+            // Listen before connecting, not to miss the first events
+            disposables.add(supplicantEvents.subscribe(new Consumer<SupplicantEvent>() {
+                @Override
+                public void accept(SupplicantEvent event) throws Exception {
+                    onSupplicantEvent(event);
+                }
+            }));
+            disposables.add(connections.subscribe(new Consumer<WifiConnection>() {
+                @Override
+                public void accept(WifiConnection connection) throws Exception {
+                    onConnection(connection);
+                }
+            }));
+            enter(WifiConnectProgress.SCANNING);
+            disposables.add(scanFor.apply(ssid).subscribe(new Consumer<ScanResult>() {
+                @Override
+                public void accept(ScanResult scanResult) throws Exception {
+                    try {
+                        onScanResult(scanResult);
+                    } catch (Exception e) {
+                        onError(e);
+                    }
+                }
+            }, new Consumer<Throwable>() {
+                @Override
+                public void accept(Throwable e) throws Exception {
+                    onError(e);
+                }
+            }, new Action() {
+                @Override
+                public void run() throws Exception {
+                    onScanComplete();
+                }
+            }));
+        }
+
+        void onScanResult(@NonNull final ScanResult scanResult) throws Exception {
+            synchronized (this) {
+                if (done || phase != WifiConnectProgress.SCANNING) return;
+            }
+            connect.accept(scanResult, password);
+            synchronized (this) {
+                if (!done) advance(WifiConnectProgress.ASSOCIATING);
+            }
+        }
+
+        synchronized void onScanComplete() {
+            if (phase == WifiConnectProgress.SCANNING) fail(WifiConnectException.SSID_NOT_FOUND);
+        }
+
+        synchronized void onSupplicantEvent(@NonNull final SupplicantEvent event) {
+            final SupplicantState previous = supplicantState;
+            supplicantState = event.state;
+            if (done || phase < WifiConnectProgress.ASSOCIATING) return;
+
+            if (event.isAuthenticationError()) {
+                fail(WifiConnectException.AUTHENTICATION_FAILED);
+                return;
+            }
+            switch (event.state) {
+                case AUTHENTICATING:
+                case FOUR_WAY_HANDSHAKE:
+                case GROUP_HANDSHAKE:
+                    advance(WifiConnectProgress.AUTHENTICATING);
+                    break;
+                case COMPLETED:
+                    advance(WifiConnectProgress.OBTAINING_IP);
+                    break;
+                case DISCONNECTED:
+                    // Some devices drop a wrong PSK right in the handshake without the error extra
+                    if (phase == WifiConnectProgress.AUTHENTICATING
+                            && (previous == SupplicantState.FOUR_WAY_HANDSHAKE
+                            || previous == SupplicantState.GROUP_HANDSHAKE)) {
+                        fail(WifiConnectException.AUTHENTICATION_FAILED);
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        synchronized void onConnection(@NonNull final WifiConnection connection) {
+            // Still on, or leaving, the previous network
+            if (done || phase < WifiConnectProgress.ASSOCIATING || !connection.ssid.equals(ssid)) return;
+
+            if (connection.detailedState == NetworkInfo.DetailedState.OBTAINING_IPADDR) {
+                advance(WifiConnectProgress.OBTAINING_IP);
+            } else if (connection.detailedState == NetworkInfo.DetailedState.CONNECTED) {
+                advance(verifies() ? WifiConnectProgress.VERIFYING : WifiConnectProgress.CONNECTED);
+            }
+        }
+
+        synchronized void onInternet(final boolean reachable) {
+            if (done || phase != WifiConnectProgress.VERIFYING) return;
+
+            if (reachable) {
+                enter(WifiConnectProgress.CONNECTED);
+            } else {
+                fail(WifiConnectException.NO_INTERNET);
+            }
+        }
+
+        synchronized void onDeadline(@WifiConnectPhase final int expired) {
+            if (done || phase != expired) return;
+
+            switch (expired) {
+                case WifiConnectProgress.SCANNING:
+                    fail(WifiConnectException.SSID_NOT_FOUND);
+                    break;
+                case WifiConnectProgress.ASSOCIATING:
+                    fail(WifiConnectException.ASSOCIATION_TIMEOUT);
+                    break;
+                case WifiConnectProgress.AUTHENTICATING:
+                    fail(WifiConnectException.AUTHENTICATION_FAILED);
+                    break;
+                case WifiConnectProgress.OBTAINING_IP:
+                    fail(WifiConnectException.DHCP_TIMEOUT);
+                    break;
+                default:
+                    fail(WifiConnectException.NO_INTERNET);
+                    break;
+            }
+        }
+
+        /**
+         * Phases only move forward, events of earlier phases may arrive late.
+         */
+        synchronized void advance(@WifiConnectPhase final int next) {
+            if (next > phase) enter(next);
+        }
+
+        synchronized void enter(@WifiConnectPhase final int next) {
+            final long now = now();
+            if (phase >= 0) phaseMillis[phase] = now - phaseStart;
+            phase = next;
+            phaseStart = now;
+            if (deadline != null) deadline.dispose();
+            emitter.onNext(new WifiConnectProgress(next, now - start, phaseMillis));
+
+            if (next == WifiConnectProgress.CONNECTED) {
+                done = true;
+                disposables.dispose();
+                emitter.onComplete();
+                return;
+            }
+            deadline = scheduler.scheduleDirect(new Runnable() {
+                @Override
+                public void run() {
+                    onDeadline(next);
+                }
+            }, deadlines.of(next), TimeUnit.MILLISECONDS);
+            if (next == WifiConnectProgress.VERIFYING) {
+                disposables.add(internet.subscribe(new Consumer<Boolean>() {
+                    @Override
+                    public void accept(Boolean reachable) throws Exception {
+                        onInternet(reachable);
+                    }
+                }));
+            }
+        }
+
+        synchronized void fail(@WifiConnectFailure final int reason) {
+            if (done) return;
+            done = true;
+            final long elapsed = now() - start;
+            dispose();
+            emitter.onError(new WifiConnectException(reason, phase, elapsed));
+        }
+
+        synchronized void onError(@NonNull final Throwable e) {
+            if (done) return;
+            done = true;
+            dispose();
+            emitter.onError(e);
+        }
+
+        boolean verifies() {
+            return deadlines.verifyMillis > 0;
+        }
+
+        long now() {
+            return scheduler.now(TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public void dispose() {
+            synchronized (this) {
+                done = true;
+                if (deadline != null) deadline.dispose();
+            }
+            disposables.dispose();
+        }
+
+        @Override
+        public boolean isDisposed() {
+            return disposables.isDisposed();
+        }
+    }
+}
@@ -0,0 +1,349 @@
+/*
+ * Copyright (C) 2017, Andrew Chen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package rx.wifi.android;
+
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.net.NetworkInfo;
+import android.net.wifi.SupplicantState;
+import android.net.wifi.WifiManager;
+import android.support.annotation.NonNull;
+import android.support.annotation.RequiresPermission;
+import android.support.annotation.VisibleForTesting;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.reactivex.Observable;
+import io.reactivex.ObservableSource;
+import io.reactivex.annotations.CheckReturnValue;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.functions.Action;
+import io.reactivex.functions.Consumer;
+import io.reactivex.functions.Function;
+import io.reactivex.functions.Predicate;
+import rx2.receiver.android.RxReceiver;
+
+import static android.Manifest.permission.ACCESS_WIFI_STATE;
+
+/**
+ * Process-wide {@link WifiManager} broadcast receiver.
+ *
+ * One BroadcastReceiver covering every wifi action is registered while anyone is subscribed
+ * to any of the typed streams, and each broadcast is split by action from there.
+ * The latest wifi state, network state and supplicant state broadcasts are kept while registered, and
+ * every new subscriber starts with them, as a newly registered receiver would.
+ */
+public class WifiEventBus {
+    private static volatile WifiEventBus sInstance;
+
+    @NonNull
+    private final Context context;
+    @NonNull
+    private final Observable<Intent> intents;
+    @NonNull
+    private final Observable<Intent> scanResultsUpdated;
+    @NonNull
+    private final Observable<Integer> rssi;
+    @NonNull
+    private final Observable<Integer> states;
+    @NonNull
+    private final Observable<SupplicantEvent> supplicantEvents;
+    @NonNull
+    private final Observable<SupplicantState> supplicantStates;
+    @NonNull
+    private final Observable<NetworkInfo> networkStates;
+    /**
+     * Latest sticky broadcast per action, in the order they were received, guarded by itself
+     */
+    @NonNull
+    private final Map<String, Intent> sticky = new LinkedHashMap<String, Intent>();
+    private final AtomicInteger registrations = new AtomicInteger();
+    private final AtomicInteger registered = new AtomicInteger();
+
+    WifiEventBus(@NonNull final Context context) {
+        this(context, RxReceiver.receives(context, intentFilter()));
+    }
+
+    /**
+     * @param context
+     * @param receives broadcasts of {@link #intentFilter()}, received while subscribed
+     */
+    @VisibleForTesting
+    WifiEventBus(@NonNull final Context context, @NonNull final Observable<Intent> receives) {
+        this.context = context;
+
+        final Observable<Intent> shared = receives
+                .doOnSubscribe(new Consumer<Disposable>() {
+                    @Override
+                    public void accept(Disposable disposable) throws Exception {
+                        registrations.incrementAndGet();
+                        registered.incrementAndGet();
+                    }
+                })
+                .doOnNext(new Consumer<Intent>() {
+                    @Override
+                    public void accept(Intent intent) throws Exception {
+                        keepSticky(intent);
+                    }
+                })
+                .doOnDispose(new Action() {
+                    @Override
+                    public void run() throws Exception {
+                        registered.decrementAndGet();
+                        synchronized (sticky) {
+                            sticky.clear();
+                        }
+                    }
+                })
+                .share();
+
+        // The system only delivers sticky broadcasts when the receiver registers, so a subscriber
+        // joining the shared receiver later starts with the latest ones kept here, in order, as the
+        // connection tracker folds them one after another
+        this.intents = Observable.defer(new Callable<ObservableSource<Intent>>() {
+            @Override
+            public ObservableSource<Intent> call() throws Exception {
+                final List<Intent> latest;
+                synchronized (sticky) {
+                    latest = new ArrayList<Intent>(sticky.values());
+                }
+                return shared.startWith(latest);
+            }
+        });
+
+        this.scanResultsUpdated = intents
+                .filter(new Predicate<Intent>() {
+                    @Override
+                    public boolean test(@NonNull final Intent intent) throws Exception {
+                        final String action = intent.getAction();
+                        return (WifiManager.SCAN_RESULTS_AVAILABLE_ACTION.equals(action)
+                                || WifiManager.RSSI_CHANGED_ACTION.equals(action))
+                                && intent.getBooleanExtra(WifiManager.EXTRA_RESULTS_UPDATED, false);
+                    }
+                });
+
+        this.rssi = intents(WifiManager.RSSI_CHANGED_ACTION)
+                .map(new Function<Intent, Integer>() {
+                    @Override
+                    public Integer apply(@NonNull final Intent intent) throws Exception {
+                        return intent.getIntExtra(WifiManager.EXTRA_NEW_RSSI, Integer.MIN_VALUE);
+                    }
+                });
+
+        this.states = intents(WifiManager.WIFI_STATE_CHANGED_ACTION)
+                .map(new Function<Intent, Integer>() {
+                    @Override
+                    @WifiState
+                    public Integer apply(@NonNull final Intent intent) throws Exception {
+                        @WifiState
+                        int state = intent.getIntExtra(WifiManager.EXTRA_WIFI_STATE, WifiManager.WIFI_STATE_UNKNOWN);
+                        return state;
+                    }
+                });
+
+        this.supplicantEvents = intents(WifiManager.SUPPLICANT_STATE_CHANGED_ACTION)
+                .filter(new Predicate<Intent>() {
+                    @Override
+                    public boolean test(@NonNull final Intent intent) throws Exception {
+                        return intent.hasExtra(WifiManager.EXTRA_NEW_STATE);
+                    }
+                })
+                .map(new Function<Intent, SupplicantEvent>() {
+                    @Override
+                    public SupplicantEvent apply(@NonNull final Intent intent) throws Exception {
+                        return SupplicantEvent.of(intent);
+                    }
+                });
+
+        this.supplicantStates = supplicantEvents
+                .map(new Function<SupplicantEvent, SupplicantState>() {
+                    @Override
+                    public SupplicantState apply(@NonNull final SupplicantEvent event) throws Exception {
+                        return event.state;
+                    }
+                });
+
+        this.networkStates = intents(WifiManager.NETWORK_STATE_CHANGED_ACTION)
+                .filter(new Predicate<Intent>() {
+                    @Override
+                    public boolean test(@NonNull final Intent intent) throws Exception {
+                        return intent.hasExtra(WifiManager.EXTRA_NETWORK_INFO);
+                    }
+                })
+                .map(new Function<Intent, NetworkInfo>() {
+                    @Override
+                    public NetworkInfo apply(@NonNull final Intent intent) throws Exception {
+                        return intent.getParcelableExtra(WifiManager.EXTRA_NETWORK_INFO);
+                    }
+                });
+    }
+
+    @NonNull
+    static IntentFilter intentFilter() {
+        final IntentFilter intentFilter = new IntentFilter();
+        intentFilter.addAction(WifiManager.SCAN_RESULTS_AVAILABLE_ACTION);
+        intentFilter.addAction(WifiManager.RSSI_CHANGED_ACTION);
+        intentFilter.addAction(WifiManager.WIFI_STATE_CHANGED_ACTION);
+        intentFilter.addAction(WifiManager.SUPPLICANT_STATE_CHANGED_ACTION);
+        intentFilter.addAction(WifiManager.NETWORK_STATE_CHANGED_ACTION);
+        return intentFilter;
+    }
+
+    private void keepSticky(@NonNull final Intent intent) {
+        final String action = intent.getAction();
+        if (WifiManager.WIFI_STATE_CHANGED_ACTION.equals(action)
+                || WifiManager.NETWORK_STATE_CHANGED_ACTION.equals(action)) {
+            putSticky(action, intent);
+        } else if (WifiManager.SUPPLICANT_STATE_CHANGED_ACTION.equals(action)
+                && intent.hasExtra(WifiManager.EXTRA_NEW_STATE)) {
+            // An error is only news once, a replayed one would fail the next connect at once
+            final Intent state = new Intent(intent);
+            state.removeExtra(WifiManager.EXTRA_SUPPLICANT_ERROR);
+            putSticky(action, state);
+        }
+    }
+
+    private void putSticky(@NonNull final String action, @NonNull final Intent intent) {
+        synchronized (sticky) {
+            // Moves the action last, a plain put would keep its first position
+            sticky.remove(action);
+            sticky.put(action, intent);
+        }
+    }
+
+    /**
+     * @param context
+     * @return the bus bound to the application context
+     */
+    @NonNull
+    public static WifiEventBus get(@NonNull final Context context) {
+        final Context applicationContext = context.getApplicationContext() != null
+                ? context.getApplicationContext() : context;
+        WifiEventBus bus = sInstance;
+        if (bus == null || bus.context != applicationContext) {
+            synchronized (WifiEventBus.class) {
+                bus = sInstance;
+                if (bus == null || bus.context != applicationContext) {
+                    bus = new WifiEventBus(applicationContext);
+                    sInstance = bus;
+                }
+            }
+        }
+        return bus;
+    }
+
+    /**
+     * @return every wifi broadcast
+     */
+    @NonNull
+    @CheckReturnValue
+    public Observable<Intent> intents() {
+        return intents;
+    }
+
+    /**
+     * @param action one of the WifiManager actions the bus listens to
+     * @return wifi broadcasts of the given action
+     */
+    @NonNull
+    @CheckReturnValue
+    public Observable<Intent> intents(@NonNull final String action) {
+        return intents.filter(new Predicate<Intent>() {
+            @Override
+            public boolean test(@NonNull final Intent intent) throws Exception {
+                return action.equals(intent.getAction());
+            }
+        });
+    }
+
+    /**
+     * @return scan or rssi broadcasts that carry {@link WifiManager#EXTRA_RESULTS_UPDATED}
+     */
+    @NonNull
+    @CheckReturnValue
+    public Observable<Intent> scanResultsUpdated() {
+        return scanResultsUpdated;
+    }
+
+    /**
+     * @return Observable&lt;dBm&gt;
+     */
+    @NonNull
+    @CheckReturnValue
+    public Observable<Integer> rssi() {
+        return rssi;
+    }
+
+    /**
+     * @return Observable&lt;@WifiState Integer&gt;
+     */
+    @NonNull
+    @CheckReturnValue
+    @RequiresPermission(ACCESS_WIFI_STATE)
+    public Observable<Integer> states() {
+        return states;
+    }
+
+    /**
+     * @return supplicant states with their {@link WifiManager#EXTRA_SUPPLICANT_ERROR}
+     */
+    @NonNull
+    @CheckReturnValue
+    @RequiresPermission(ACCESS_WIFI_STATE)
+    public Observable<SupplicantEvent> supplicantEvents() {
+        return supplicantEvents;
+    }
+
+    /**
+     * @return
+     */
+    @NonNull
+    @CheckReturnValue
+    @RequiresPermission(ACCESS_WIFI_STATE)
+    public Observable<SupplicantState> supplicantStates() {
+        return supplicantStates;
+    }
+
+    /**
+     * @return
+     */
+    @NonNull
+    @CheckReturnValue
+    @RequiresPermission(ACCESS_WIFI_STATE)
+    public Observable<NetworkInfo> networkStates() {
+        return networkStates;
+    }
+
+    /**
+     * @return number of receivers currently registered, either 0 or 1
+     */
+    public int registeredCount() {
+        return registered.get();
+    }
+
+    /**
+     * @return total number of receiver registrations since the bus was created
+     */
+    public int registrationCount() {
+        return registrations.get();
+    }
+}
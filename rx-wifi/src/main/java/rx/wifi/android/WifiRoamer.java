@@ -0,0 +1,248 @@
+/*
+ * Copyright (C) 2017, Andrew Chen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package rx.wifi.android;
+
+import android.annotation.SuppressLint;
+import android.content.Context;
+import android.net.wifi.ScanResult;
+import android.net.wifi.SupplicantState;
+import android.net.wifi.WifiManager;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.RequiresPermission;
+import android.support.annotation.VisibleForTesting;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.Observable;
+import io.reactivex.ObservableSource;
+import io.reactivex.Scheduler;
+import io.reactivex.annotations.CheckReturnValue;
+import io.reactivex.functions.Action;
+import io.reactivex.functions.BiConsumer;
+import io.reactivex.functions.Consumer;
+import io.reactivex.functions.Function;
+import io.reactivex.schedulers.Schedulers;
+
+import static android.Manifest.permission.ACCESS_COARSE_LOCATION;
+import static android.Manifest.permission.ACCESS_FINE_LOCATION;
+
+/**
+ * Keeps the device on the best BSSID of a list of candidate SSIDs, scored by {@link WifiScorer}
+ * on every scan round.
+ *
+ * Connects to the best one right away when not on a candidate. Once on one, only roams when
+ * another one has scored better by the {@link RoamingPolicy#margin} for
+ * {@link RoamingPolicy#sustainMillis}, so a few noisy scans do not bounce the connection.
+ *
+ * The network is pinned to the BSSID connected to, otherwise the supplicant could pick any access
+ * point of the SSID again, often the one just left, and unpinned once unsubscribed.
+ */
+public class WifiRoamer {
+    private static volatile WifiRoamer sInstance;
+
+    @NonNull
+    private final Observable<List<ScanResult>> scans;
+    @NonNull
+    private final Observable<WifiConnection> connections;
+    @NonNull
+    private final BiConsumer<ScanResult, String> connect;
+    @NonNull
+    private final Consumer<ScanResult> unpin;
+    @NonNull
+    private final Scheduler scheduler;
+
+    /**
+     * @param scans scan rounds
+     * @param connections the current connection, see {@link WifiConnectionTracker}
+     * @param connect configures, pins and enables the network of the scan result, with the password
+     * @param unpin lets the network of the scan result use any BSSID again
+     * @param scheduler clock of the roaming policy
+     */
+    @VisibleForTesting
+    WifiRoamer(@NonNull final Observable<List<ScanResult>> scans,
+               @NonNull final Observable<WifiConnection> connections,
+               @NonNull final BiConsumer<ScanResult, String> connect,
+               @NonNull final Consumer<ScanResult> unpin,
+               @NonNull final Scheduler scheduler) {
+        this.scans = scans;
+        this.connections = connections;
+        this.connect = connect;
+        this.unpin = unpin;
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * @param context
+     * @return the roamer bound to the application context
+     */
+    @NonNull
+    public static WifiRoamer get(@NonNull final Context context) {
+        WifiRoamer roamer = sInstance;
+        if (roamer == null) {
+            synchronized (WifiRoamer.class) {
+                roamer = sInstance;
+                if (roamer == null) {
+                    roamer = create(context);
+                    sInstance = roamer;
+                }
+            }
+        }
+        return roamer;
+    }
+
+    @NonNull
+    @SuppressLint("MissingPermission")
+    private static WifiRoamer create(@NonNull final Context context) {
+        final Context applicationContext = context.getApplicationContext() != null
+                ? context.getApplicationContext() : context;
+        final WifiManager wifiManager = (WifiManager) applicationContext.getSystemService(Context.WIFI_SERVICE);
+        return new WifiRoamer(RxWifi.scan(applicationContext),
+                WifiConnectionTracker.get(applicationContext).connections(),
+                new BiConsumer<ScanResult, String>() {
+                    @Override
+                    public void accept(@NonNull ScanResult scanResult, @Nullable String password) throws Exception {
+                        RxWifi.connect(wifiManager, scanResult, password, true);
+                    }
+                },
+                new Consumer<ScanResult>() {
+                    @Override
+                    public void accept(@NonNull ScanResult scanResult) throws Exception {
+                        RxWifi.unpinBssid(wifiManager, scanResult);
+                    }
+                },
+                Schedulers.computation());
+    }
+
+    /**
+     * @param candidates
+     * @param policy
+     * @return every BSSID connected to, never completes
+     */
+    @NonNull
+    @CheckReturnValue
+    @RequiresPermission(anyOf = {ACCESS_FINE_LOCATION, ACCESS_COARSE_LOCATION})
+    //@RequiresPermission(CHANGE_WIFI_STATE)
+    public Observable<WifiScore> connectBest(@NonNull final List<WifiCandidate> candidates,
+                                             @NonNull final RoamingPolicy policy) {
+        final List<WifiCandidate> copy = new ArrayList<WifiCandidate>(candidates);
+        return Observable.defer(new Callable<ObservableSource<WifiScore>>() {
+            @Override
+            public ObservableSource<WifiScore> call() throws Exception {
+                final Roaming roaming = new Roaming(new WifiScorer(copy), policy);
+                // Tracks the connection first, so the first scan round knows where the device is
+                return Observable.merge(connections
+                                .doOnNext(new Consumer<WifiConnection>() {
+                                    @Override
+                                    public void accept(WifiConnection connection) throws Exception {
+                                        roaming.connection = connection;
+                                    }
+                                })
+                                .ignoreElements()
+                                .<WifiScore>toObservable(),
+                        scans.concatMap(roaming))
+                        .doFinally(new Action() {
+                            @Override
+                            public void run() throws Exception {
+                                final ScanResult pinned = roaming.pinned;
+                                if (pinned != null) unpin.accept(pinned);
+                            }
+                        });
+            }
+        });
+    }
+
+    /**
+     * State of one subscription, scan rounds come one at a time.
+     */
+    private class Roaming implements Function<List<ScanResult>, ObservableSource<WifiScore>> {
+        @NonNull
+        final WifiScorer scorer;
+        @NonNull
+        final RoamingPolicy policy;
+        @Nullable
+        volatile WifiConnection connection;
+        /** Last BSSID connected to, pinned */
+        @Nullable
+        volatile ScanResult pinned;
+        /** Since when another BSSID has scored better by the margin, -1 if none */
+        long betterSince = -1L;
+        /** When the last connect was asked, -1 if none */
+        long connectedAt = -1L;
+
+        Roaming(@NonNull final WifiScorer scorer, @NonNull final RoamingPolicy policy) {
+            this.scorer = scorer;
+            this.policy = policy;
+        }
+
+        @Override
+        public ObservableSource<WifiScore> apply(@NonNull List<ScanResult> scanResults) throws Exception {
+            final List<WifiScore> scores = scorer.score(scanResults);
+            if (scores.isEmpty()) {
+                betterSince = -1L;
+                return Observable.empty();
+            }
+
+            final WifiScore best = scores.get(0);
+            final WifiScore current = find(scores, currentBssid());
+            if (current == best || (current != null && best.score < current.score + policy.margin)) {
+                betterSince = -1L;
+                return Observable.empty();
+            }
+
+            final long now = scheduler.now(TimeUnit.MILLISECONDS);
+            if (current != null) {
+                if (betterSince < 0) betterSince = now;
+                if (now - betterSince < policy.sustainMillis) return Observable.empty();
+            }
+            // Give the last connect time to associate before asking for another one
+            if (connectedAt >= 0 && now - connectedAt < policy.sustainMillis) return Observable.empty();
+
+            betterSince = -1L;
+            connectedAt = now;
+            final ScanResult previous = pinned;
+            connect.accept(best.scanResult, best.candidate.password);
+            pinned = best.scanResult;
+            // Leaving another SSID, do not keep it tied to the BSSID left
+            if (previous != null && !Ssid.of(previous.SSID).equals(best.candidate.ssid)) {
+                unpin.accept(previous);
+            }
+            return Observable.just(best);
+        }
+
+        /**
+         * @return BSSID the supplicant completed the association with, null if none
+         */
+        @Nullable
+        private String currentBssid() {
+            final WifiConnection connection = this.connection;
+            return connection != null && connection.supplicantState == SupplicantState.COMPLETED
+                    ? connection.bssid : null;
+        }
+
+        @Nullable
+        private WifiScore find(@NonNull final List<WifiScore> scores, @Nullable final String bssid) {
+            if (bssid == null) return null;
+            for (int i = 0, n = scores.size(); i < n; i++) {
+                if (scores.get(i).is(bssid)) return scores.get(i);
+            }
+            return null;
+        }
+    }
+}
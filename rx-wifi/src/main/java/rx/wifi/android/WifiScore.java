@@ -0,0 +1,61 @@
+/*
+ * Copyright (C) 2017, Andrew Chen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package rx.wifi.android;
+
+import android.net.wifi.ScanResult;
+import android.support.annotation.NonNull;
+
+/**
+ * A visible BSSID of a candidate, scored by {@link WifiScorer}.
+ */
+public class WifiScore {
+    @NonNull
+    public final ScanResult scanResult;
+    @NonNull
+    public final WifiCandidate candidate;
+    /**
+     * Higher is better
+     */
+    public final int score;
+    /**
+     * Other BSSIDs of the scan on an overlapping channel
+     */
+    public final int congestion;
+
+    WifiScore(@NonNull final ScanResult scanResult,
+              @NonNull final WifiCandidate candidate,
+              final int score,
+              final int congestion) {
+        this.scanResult = scanResult;
+        this.candidate = candidate;
+        this.score = score;
+        this.congestion = congestion;
+    }
+
+    /**
+     * @param bssid
+     * @return true if this is the score of the BSSID
+     */
+    public boolean is(@NonNull final String bssid) {
+        return bssid.equalsIgnoreCase(scanResult.BSSID);
+    }
+
+    @Override
+    public String toString() {
+        return "WifiScore{" + candidate.ssid + " " + scanResult.BSSID + ", " + scanResult.level + "dBm, "
+                + scanResult.frequency + "MHz, congestion=" + congestion + ", score=" + score + "}";
+    }
+}
@@ -0,0 +1,198 @@
+/*
+ * Copyright (C) 2017, Andrew Chen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package rx.wifi.android;
+
+import android.net.wifi.ScanResult;
+import android.support.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Scores every visible BSSID of the candidates from one scan round, in points:
+ *
+ * <ul>
+ * <li>RSSI: 1 per dBm above {@link #MIN_RSSI}, up to {@link #MAX_RSSI}</li>
+ * <li>band: {@link #BAND_5GHZ_POINTS} or {@link #BAND_6GHZ_POINTS}, none for 2.4 GHz</li>
+ * <li>security: {@link #WPA2_POINTS}, {@link #WPA_POINTS} or {@link #WEP_POINTS}</li>
+ * <li>congestion: minus {@link #CONGESTION_POINTS} for each other BSSID of the scan on an
+ * overlapping channel, at most {@link #MAX_CONGESTION_PENALTY}</li>
+ * <li>priority: {@link #PRIORITY_POINTS} for each level of the candidate</li>
+ * </ul>
+ *
+ * Not thread-safe.
+ */
+public class WifiScorer {
+    static final int MIN_RSSI = -90;
+    static final int MAX_RSSI = -40;
+    static final int BAND_5GHZ_POINTS = 10;
+    static final int BAND_6GHZ_POINTS = 15;
+    static final int WPA2_POINTS = 6;
+    static final int WPA_POINTS = 4;
+    static final int WEP_POINTS = 1;
+    static final int CONGESTION_POINTS = 2;
+    static final int MAX_CONGESTION_PENALTY = 20;
+    static final int PRIORITY_POINTS = 5;
+    /**
+     * Highest frequency counted per MHz, 6 GHz channel 233
+     */
+    static final int MAX_FREQUENCY = 7125;
+
+    private static final Comparator<WifiScore> BEST_FIRST = new Comparator<WifiScore>() {
+        @Override
+        public int compare(WifiScore a, WifiScore b) {
+            return a.score > b.score ? -1 : (a.score == b.score ? 0 : 1);
+        }
+    };
+
+    @NonNull
+    private final Map<Ssid, WifiCandidate> candidates;
+    @NonNull
+    private final ScanIndex index = new ScanIndex();
+    /**
+     * BSSIDs of the scan round per MHz, all zero between rounds
+     */
+    @NonNull
+    private final int[] perFrequency = new int[MAX_FREQUENCY + 1];
+    /**
+     * BSSIDs of the scan round below each MHz of 2.4 GHz, so that an overlapping window is two reads
+     */
+    @NonNull
+    private final int[] below24GHz = new int[101];
+
+    /**
+     * @param candidates the first one wins for a repeated SSID
+     */
+    public WifiScorer(@NonNull final List<WifiCandidate> candidates) {
+        this.candidates = new HashMap<Ssid, WifiCandidate>(candidates.size() * 2);
+        for (WifiCandidate candidate : candidates) {
+            if (!this.candidates.containsKey(candidate.ssid)) {
+                this.candidates.put(candidate.ssid, candidate);
+            }
+        }
+    }
+
+    /**
+     * @param scanResults one scan round
+     * @return scores of the candidates' BSSIDs, best first
+     */
+    @NonNull
+    public List<WifiScore> score(@NonNull final List<ScanResult> scanResults) {
+        index.reset(scanResults);
+        final int n = index.size();
+        for (int slot = 0; slot < n; slot++) {
+            final int frequency = index.frequency(slot);
+            if (frequency >= 0 && frequency <= MAX_FREQUENCY) perFrequency[frequency]++;
+        }
+        for (int i = 0; i < 100; i++) {
+            below24GHz[i + 1] = below24GHz[i] + perFrequency[2400 + i];
+        }
+
+        final List<WifiScore> scores = new ArrayList<WifiScore>();
+        for (int slot = 0; slot < n; slot++) {
+            final ScanResult scanResult = index.result(slot);
+            final WifiCandidate candidate = candidates.get(Ssid.of(scanResult.SSID));
+            if (candidate == null) continue;
+
+            final int frequency = index.frequency(slot);
+            final int congestion = congestion(slot, frequency);
+            scores.add(new WifiScore(scanResult, candidate, score(index.rssi(slot), frequency,
+                    index.security(slot), congestion, candidate.priority), congestion));
+        }
+
+        for (int slot = 0; slot < n; slot++) {
+            final int frequency = index.frequency(slot);
+            if (frequency >= 0 && frequency <= MAX_FREQUENCY) perFrequency[frequency] = 0;
+        }
+        Collections.sort(scores, BEST_FIRST);
+        return scores;
+    }
+
+    /**
+     * @param slot
+     * @param frequency of the slot
+     * @return other BSSIDs of the round on a channel {@link #overlaps overlapping} the slot's
+     */
+    private int congestion(final int slot, final int frequency) {
+        if (is24GHz(frequency)) {
+            final int from = Math.max(2400, frequency - 24) - 2400;
+            final int to = Math.min(2499, frequency + 24) - 2400;
+            return below24GHz[to + 1] - below24GHz[from] - 1;
+        }
+        if (frequency >= 0 && frequency <= MAX_FREQUENCY) return perFrequency[frequency] - 1;
+
+        int congestion = 0;
+        for (int other = 0, n = index.size(); other < n; other++) {
+            if (other != slot && overlaps(frequency, index.frequency(other))) congestion++;
+        }
+        return congestion;
+    }
+
+    /**
+     * @param rssi dBm
+     * @param frequency MHz
+     * @param security {@link ScanIndex} SECURITY_* flags
+     * @param congestion other BSSIDs on an overlapping channel
+     * @param priority of the candidate
+     * @return
+     */
+    static int score(final int rssi,
+                     final int frequency,
+                     final int security,
+                     final int congestion,
+                     final int priority) {
+        int score = Math.max(MIN_RSSI, Math.min(MAX_RSSI, rssi)) - MIN_RSSI;
+        if (is6GHz(frequency)) {
+            score += BAND_6GHZ_POINTS;
+        } else if (is5GHz(frequency)) {
+            score += BAND_5GHZ_POINTS;
+        }
+        if ((security & ScanIndex.SECURITY_WPA2) != 0) {
+            score += WPA2_POINTS;
+        } else if ((security & (ScanIndex.SECURITY_WPA | ScanIndex.SECURITY_PSK | ScanIndex.SECURITY_EAP)) != 0) {
+            score += WPA_POINTS;
+        } else if ((security & ScanIndex.SECURITY_WEP) != 0) {
+            score += WEP_POINTS;
+        }
+        score -= Math.min(MAX_CONGESTION_PENALTY, congestion * CONGESTION_POINTS);
+        return score + priority * PRIORITY_POINTS;
+    }
+
+    /**
+     * 2.4 GHz channels are 5 MHz apart and 20 MHz wide, so 1, 6 and 11 do not overlap. Only the
+     * same channel counts on 5 and 6 GHz.
+     */
+    static boolean overlaps(final int frequency, final int other) {
+        if (is24GHz(frequency) && is24GHz(other)) return Math.abs(frequency - other) < 25;
+        return frequency == other;
+    }
+
+    static boolean is24GHz(final int frequency) {
+        return frequency >= 2400 && frequency < 2500;
+    }
+
+    static boolean is5GHz(final int frequency) {
+        return frequency >= 4900 && frequency < 5925;
+    }
+
+    static boolean is6GHz(final int frequency) {
+        return frequency >= 5925 && frequency <= 7125;
+    }
+}
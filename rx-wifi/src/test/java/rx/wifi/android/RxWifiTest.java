@@ -18,9 +18,11 @@ package rx.wifi.android;
 import android.content.Context;
 import android.content.Intent;
 import android.content.IntentFilter;
+import android.net.NetworkInfo;
 import android.net.wifi.ScanResult;
 import android.net.wifi.SupplicantState;
 import android.net.wifi.WifiConfiguration;
+import android.net.wifi.WifiInfo;
 import android.net.wifi.WifiManager;
 import android.os.Parcelable;
 
@@ -35,7 +37,10 @@ import org.robolectric.shadow.api.Shadow;
 import java.util.Arrays;
 import java.util.List;
 
+import io.reactivex.Observable;
+import io.reactivex.functions.Predicate;
 import io.reactivex.observers.TestObserver;
+import io.reactivex.subjects.PublishSubject;
 import rx.wifi.BuildConfig;
 
 import static android.net.wifi.WifiManager.ERROR_AUTHENTICATING;
@@ -45,8 +50,13 @@ import static android.net.wifi.WifiManager.EXTRA_WIFI_STATE;
 import static android.net.wifi.WifiManager.WIFI_STATE_CHANGED_ACTION;
 import static android.net.wifi.WifiManager.WIFI_STATE_DISABLED;
 import static android.net.wifi.WifiManager.WIFI_STATE_UNKNOWN;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.mockingDetails;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.robolectric.Shadows.shadowOf;
@@ -78,6 +88,51 @@ public class RxWifiTest {
         tester.assertValues(scanResults);
     }
 
+    @SuppressWarnings("MissingPermission")
+    @Test
+    public void scanIsLazy() throws Exception {
+        Context context = mock(Context.class);
+        WifiManager wifiManager = mock(WifiManager.class);
+        when(context.getSystemService(Context.WIFI_SERVICE)).thenReturn(wifiManager);
+
+        Observable<List<ScanResult>> scan = RxWifi.scan(context);
+        verify(wifiManager, never()).getScanResults();
+
+        scan.test();
+        verify(wifiManager).getScanResults();
+    }
+
+    @Test
+    public void scanDiffs() throws Exception {
+        ScanResult foo = scanResult("foo", "02:00:00:00:00:00", -60);
+        ScanResult bar = scanResult("bar", "02:00:00:00:00:01", -70);
+        ScanDiffer differ = new ScanDiffer(5);
+
+        ScanDiff diff = differ.diff(Arrays.asList(foo, bar));
+        assertThat(diff.added).containsExactly(foo, bar);
+        assertThat(diff.removed).isEmpty();
+        assertThat(diff.changed).isEmpty();
+
+        ScanResult fooDrift = scanResult("foo", "02:00:00:00:00:00", -63);
+        assertThat(differ.diff(Arrays.asList(fooDrift, bar)).isEmpty()).isTrue();
+
+        ScanResult fooMoved = scanResult("foo", "02:00:00:00:00:00", -66);
+        ScanResult baz = scanResult("baz", "02:00:00:00:00:02", -80);
+        diff = differ.diff(Arrays.asList(fooMoved, baz));
+        assertThat(diff.added).containsExactly(baz);
+        assertThat(diff.removed).containsExactly(bar);
+        assertThat(diff.changed).containsExactly(fooMoved);
+    }
+
+    private static ScanResult scanResult(String ssid, String bssid, int level) {
+        ScanResult scanResult = Shadow.newInstanceOf(ScanResult.class);
+        scanResult.SSID = ssid;
+        scanResult.BSSID = bssid;
+        scanResult.level = level;
+        scanResult.capabilities = "";
+        return scanResult;
+    }
+
     @Test
     public void states() throws Exception {
         // TODO
@@ -163,6 +218,250 @@ public class RxWifiTest {
         verify(wifiManager).reconnect();
     }
 
+    @Test
+    public void reconnectReusesConfiguration() throws Exception {
+        ScanResult scanResultFoo = Shadow.newInstanceOf(ScanResult.class);
+        scanResultFoo.SSID = "\"foo\"";
+        scanResultFoo.BSSID = "02:00:00:00:00:00";
+        scanResultFoo.capabilities = "[WPA2-PSK-CCMP][ESS]";
+
+        WifiConfiguration foo = configuration("\"foo\"", 3, WifiConfiguration.Status.ENABLED);
+        foo.allowedKeyManagement.set(WifiConfiguration.KeyMgmt.WPA_PSK);
+        WifiConfiguration bar = configuration("\"bar\"", 4, WifiConfiguration.Status.ENABLED);
+        List<WifiConfiguration> configurations = Arrays.asList(foo, bar,
+                configuration("\"baz\"", 5, WifiConfiguration.Status.DISABLED),
+                configuration("\"qux\"", 6, WifiConfiguration.Status.DISABLED));
+
+        // Not configured yet: add it and disable every other enabled network
+        WifiManager first = mock(WifiManager.class);
+        when(first.getConfiguredNetworks()).thenReturn(Arrays.asList(bar,
+                configuration("\"baz\"", 5, WifiConfiguration.Status.DISABLED),
+                configuration("\"qux\"", 6, WifiConfiguration.Status.DISABLED)));
+        when(first.addNetwork(any(WifiConfiguration.class))).thenReturn(3);
+        RxWifi.connect(first, scanResultFoo, "password");
+        verify(first).addNetwork(any(WifiConfiguration.class));
+        verify(first).enableNetwork(3, true);
+        verify(first).disableNetwork(4);
+        verify(first, never()).disableNetwork(5);
+        final int firstCalls = mockingDetails(first).getInvocations().size();
+
+        // Configured: reuse the networkId, no add nor update
+        WifiManager reconnect = mock(WifiManager.class);
+        when(reconnect.getConfiguredNetworks()).thenReturn(configurations);
+        RxWifi.connect(reconnect, scanResultFoo);
+        verify(reconnect, never()).addNetwork(any(WifiConfiguration.class));
+        verify(reconnect, never()).updateNetwork(any(WifiConfiguration.class));
+        verify(reconnect).enableNetwork(3, true);
+        verify(reconnect).disableNetwork(4);
+        verify(reconnect, never()).disableNetwork(3);
+        verify(reconnect, never()).disableNetwork(5);
+        verify(reconnect, never()).disableNetwork(6);
+        assertThat(mockingDetails(reconnect).getInvocations().size()).isLessThan(firstCalls);
+
+        // Already associated with the BSSID: nothing to do
+        WifiManager associated = mock(WifiManager.class);
+        when(associated.getConfiguredNetworks()).thenReturn(configurations);
+        WifiInfo wifiInfo = mock(WifiInfo.class);
+        when(wifiInfo.getSSID()).thenReturn("\"foo\"");
+        when(wifiInfo.getBSSID()).thenReturn("02:00:00:00:00:00");
+        when(wifiInfo.getSupplicantState()).thenReturn(SupplicantState.COMPLETED);
+        when(associated.getConnectionInfo()).thenReturn(wifiInfo);
+        RxWifi.connect(associated, scanResultFoo);
+        verify(associated, never()).disconnect();
+        verify(associated, never()).enableNetwork(3, true);
+        verify(associated, never()).reconnect();
+        assertThat(mockingDetails(associated).getInvocations().size()).isEqualTo(2);
+    }
+
+    @Test
+    public void connectEAP() throws Exception {
+        final ScanResult scanResultFoo = Shadow.newInstanceOf(ScanResult.class);
+        scanResultFoo.SSID = "\"foo\"";
+        scanResultFoo.BSSID = "02:00:00:00:00:00";
+        scanResultFoo.capabilities = "[WPA2-EAP-CCMP][ESS]";
+
+        // Never added as a PSK network
+        final WifiManager unconfigured = mock(WifiManager.class);
+        assertThatThrownBy(new ThrowableAssert.ThrowingCallable() {
+            @Override
+            public void call() throws Throwable {
+                RxWifi.connect(unconfigured, scanResultFoo, "password");
+            }
+        }).isInstanceOf(IllegalArgumentException.class);
+        verify(unconfigured, never()).addNetwork(any(WifiConfiguration.class));
+
+        // Reused as configured, without touching its credentials
+        WifiConfiguration foo = configuration("\"foo\"", 3, WifiConfiguration.Status.ENABLED);
+        foo.allowedKeyManagement.set(WifiConfiguration.KeyMgmt.WPA_EAP);
+        foo.allowedKeyManagement.set(WifiConfiguration.KeyMgmt.IEEE8021X);
+        assertThat(ConfiguredNetworks.authenticationOf(foo)).isEqualTo(ConfiguredNetworks.authenticationOf(scanResultFoo));
+
+        WifiManager configured = mock(WifiManager.class);
+        when(configured.getConfiguredNetworks()).thenReturn(Arrays.asList(foo));
+        RxWifi.connect(configured, scanResultFoo, "password");
+        verify(configured, never()).addNetwork(any(WifiConfiguration.class));
+        verify(configured, never()).updateNetwork(any(WifiConfiguration.class));
+        verify(configured).enableNetwork(3, true);
+    }
+
+    @Test
+    public void connectPinned() throws Exception {
+        final ScanResult scanResultFoo = Shadow.newInstanceOf(ScanResult.class);
+        scanResultFoo.SSID = "\"foo\"";
+        scanResultFoo.BSSID = "02:00:00:00:00:0a";
+        scanResultFoo.capabilities = "[ESS]";
+
+        WifiConfiguration foo = configuration("\"foo\"", 3, WifiConfiguration.Status.ENABLED);
+        foo.allowedKeyManagement.set(WifiConfiguration.KeyMgmt.NONE);
+        WifiManager wifiManager = mock(WifiManager.class);
+        when(wifiManager.getConfiguredNetworks()).thenReturn(Arrays.asList(foo));
+
+        RxWifi.connect(wifiManager, scanResultFoo, null, true);
+        assertThat(foo.BSSID).isEqualTo("02:00:00:00:00:0a");
+        verify(wifiManager).updateNetwork(foo);
+        verify(wifiManager).enableNetwork(3, true);
+
+        // Already pinned to it
+        RxWifi.connect(wifiManager, scanResultFoo, null, true);
+        verify(wifiManager, times(1)).updateNetwork(any(WifiConfiguration.class));
+
+        RxWifi.unpinBssid(wifiManager, scanResultFoo);
+        assertThat(foo.BSSID).isEqualTo(Bssids.ANY);
+        verify(wifiManager, times(2)).updateNetwork(foo);
+    }
+
+    private static WifiConfiguration configuration(String ssid, int networkId, int status) {
+        WifiConfiguration configuration = new WifiConfiguration();
+        configuration.SSID = ssid;
+        configuration.networkId = networkId;
+        configuration.status = status;
+        return configuration;
+    }
+
+    @Test
+    public void ssid() throws Exception {
+        assertThat(Ssid.of("\"foo\"")).isEqualTo(Ssid.of("foo"));
+        assertThat(Ssid.of("\"foo\"").toString()).isEqualTo("foo");
+        assertThat(Ssid.of("foo").toConfiguration()).isEqualTo("\"foo\"");
+        assertThat(Ssid.of("foo")).isSameAs(Ssid.of("foo"));
+        assertThat(Ssid.ofWifiInfo("0x666f6f")).isEqualTo(Ssid.of("foo"));
+        assertThat(Ssid.ofWifiInfo("\"foo\"")).isEqualTo(Ssid.of("foo"));
+        assertThat(Ssid.ofConfiguration("666f6f")).isEqualTo(Ssid.of("foo"));
+        assertThat(Ssid.ofConfiguration("\"foo\"")).isEqualTo(Ssid.of("foo"));
+
+        // A network actually named so, as ScanResult.SSID hands it out
+        Ssid literal = Ssid.of("0xCAFE");
+        assertThat(literal.isHex()).isFalse();
+        assertThat(literal.toString()).isEqualTo("0xCAFE");
+        assertThat(literal.toConfiguration()).isEqualTo("\"0xCAFE\"");
+        assertThat(Ssid.ofWifiInfo("\"0xCAFE\"")).isEqualTo(literal);
+
+        Ssid binary = Ssid.ofWifiInfo("0xC3FF");
+        assertThat(binary.isHex()).isTrue();
+        assertThat(binary.toConfiguration()).isEqualTo("c3ff");
+        assertThat(Ssid.ofConfiguration("c3ff")).isEqualTo(binary);
+
+        assertThat(Ssid.of(null).isHidden()).isTrue();
+        assertThat(Ssid.of("\"\"").isHidden()).isTrue();
+        assertThat(Ssid.of(Ssid.UNKNOWN_SSID).isHidden()).isTrue();
+        assertThat(Ssid.of("foo").isHidden()).isFalse();
+    }
+
+    @Test
+    public void connectionTracker() throws Exception {
+        final Context context = RuntimeEnvironment.application.getApplicationContext();
+        WifiManager wifiManager = mock(WifiManager.class);
+        WifiConnectionTracker tracker = new WifiConnectionTracker(new WifiEventBus(context), wifiManager);
+        Ssid foo = Ssid.of("foo");
+
+        // No snapshot yet, ask the WifiManager
+        assertThat(tracker.isConnected(foo)).isFalse();
+        verify(wifiManager).getConnectionInfo();
+
+        TestObserver<WifiConnection> tester = tracker.connections().test();
+
+        NetworkInfo networkInfo = mock(NetworkInfo.class);
+        when(networkInfo.getDetailedState()).thenReturn(NetworkInfo.DetailedState.CONNECTED);
+        when(networkInfo.isConnected()).thenReturn(true);
+        WifiInfo wifiInfo = mock(WifiInfo.class);
+        when(wifiInfo.getSSID()).thenReturn("\"foo\"");
+        when(wifiInfo.getBSSID()).thenReturn("02:00:00:00:00:00");
+        when(wifiInfo.getSupplicantState()).thenReturn(SupplicantState.COMPLETED);
+        context.sendBroadcast(new Intent(WifiManager.NETWORK_STATE_CHANGED_ACTION)
+                .putExtra(WifiManager.EXTRA_NETWORK_INFO, networkInfo)
+                .putExtra(WifiManager.EXTRA_WIFI_INFO, wifiInfo)
+                .putExtra(WifiManager.EXTRA_BSSID, "02:00:00:00:00:00"));
+
+        tester.assertValueCount(1);
+        assertThat(tracker.snapshot().bssid).isEqualTo("02:00:00:00:00:00");
+        assertThat(tracker.isConnected(foo)).isTrue();
+        assertThat(tracker.isConnected(Ssid.of("bar"))).isFalse();
+
+        context.sendBroadcast(new Intent(WifiManager.SUPPLICANT_STATE_CHANGED_ACTION)
+                .putExtra(EXTRA_NEW_STATE, (Parcelable) SupplicantState.DISCONNECTED));
+        assertThat(tracker.isConnected(foo)).isFalse();
+        verify(wifiManager).getConnectionInfo();
+
+        tester.dispose();
+        assertThat(tracker.snapshot()).isNull();
+    }
+
+    @Test
+    public void connectionTrackerDistinct() throws Exception {
+        final PublishSubject<Intent> receives = PublishSubject.create();
+        final WifiEventBus bus = new WifiEventBus(mock(Context.class), receives);
+        WifiConnectionTracker tracker = new WifiConnectionTracker(bus, mock(WifiManager.class));
+
+        NetworkInfo networkInfo = mock(NetworkInfo.class);
+        when(networkInfo.getDetailedState()).thenReturn(NetworkInfo.DetailedState.CONNECTED);
+        when(networkInfo.isConnected()).thenReturn(true);
+        WifiInfo wifiInfo = mock(WifiInfo.class);
+        when(wifiInfo.getSSID()).thenReturn("\"foo\"");
+        when(wifiInfo.getBSSID()).thenReturn("02:00:00:00:00:00");
+        when(wifiInfo.getSupplicantState()).thenReturn(SupplicantState.COMPLETED);
+        Intent connected = new Intent(WifiManager.NETWORK_STATE_CHANGED_ACTION)
+                .putExtra(WifiManager.EXTRA_NETWORK_INFO, networkInfo)
+                .putExtra(WifiManager.EXTRA_WIFI_INFO, wifiInfo);
+
+        // The bus is already registered when the tracker subscribes
+        TestObserver<Integer> states = bus.states().test();
+        receives.onNext(connected);
+        TestObserver<WifiConnection> tester = tracker.connections().test();
+        tester.assertValueCount(1);
+
+        // Same state again
+        receives.onNext(connected);
+        receives.onNext(new Intent(WifiManager.SUPPLICANT_STATE_CHANGED_ACTION)
+                .putExtra(EXTRA_NEW_STATE, (Parcelable) SupplicantState.COMPLETED));
+        tester.assertValueCount(1);
+
+        // connectedFor() does not wait for another broadcast
+        final Ssid foo = Ssid.of("foo");
+        TestObserver<WifiConnection> connectedFor = tracker.connections().filter(new Predicate<WifiConnection>() {
+            @Override
+            public boolean test(WifiConnection connection) throws Exception {
+                return connection.isConnectedTo(foo);
+            }
+        }).firstElement().test();
+        connectedFor.assertValueCount(1);
+
+        tester.dispose();
+        states.dispose();
+    }
+
+    @Test
+    public void wifiConnectionEquals() throws Exception {
+        WifiConnection a = new WifiConnection(NetworkInfo.DetailedState.CONNECTED, Ssid.of("foo"),
+                "02:00:00:00:00:00", SupplicantState.COMPLETED, null);
+        WifiConnection b = new WifiConnection(NetworkInfo.DetailedState.CONNECTED, Ssid.of("\"foo\""),
+                "02:00:00:00:00:00", SupplicantState.COMPLETED, mock(WifiInfo.class));
+        assertThat(a).isEqualTo(b);
+        assertThat(a.hashCode()).isEqualTo(b.hashCode());
+        assertThat(a).isNotEqualTo(new WifiConnection(NetworkInfo.DetailedState.CONNECTED, Ssid.of("foo"),
+                "02:00:00:00:00:01", SupplicantState.COMPLETED, null));
+        assertThat(a).isNotEqualTo(WifiConnection.UNKNOWN);
+    }
+
     @Test
     public void isConnected() throws Exception {
         // TODO
@@ -209,6 +508,87 @@ public class RxWifiTest {
         tester.assertValues(WIFI_STATE_DISABLED, WIFI_STATE_UNKNOWN);
     }
 
+    @Test
+    public void wifiEventBus() {
+        final Context context = RuntimeEnvironment.application.getApplicationContext();
+        final WifiEventBus bus = new WifiEventBus(context);
+
+        TestObserver<Integer> states = bus.states().test();
+        TestObserver<SupplicantState> supplicantStates = bus.supplicantStates().test();
+        TestObserver<Integer> rssi = bus.rssi().test();
+        assertThat(bus.registeredCount()).isEqualTo(1);
+
+        context.sendBroadcast(new Intent(WIFI_STATE_CHANGED_ACTION)
+                .putExtra(EXTRA_WIFI_STATE, WIFI_STATE_DISABLED));
+        context.sendBroadcast(new Intent(WifiManager.SUPPLICANT_STATE_CHANGED_ACTION)
+                .putExtra(EXTRA_NEW_STATE, (Parcelable) SupplicantState.SCANNING));
+        context.sendBroadcast(new Intent(WifiManager.RSSI_CHANGED_ACTION)
+                .putExtra(WifiManager.EXTRA_NEW_RSSI, -50));
+
+        states.assertValues(WIFI_STATE_DISABLED);
+        supplicantStates.assertValues(SupplicantState.SCANNING);
+        rssi.assertValues(-50);
+
+        // sticky state is replayed to late subscribers
+        TestObserver<Integer> late = bus.states().test();
+        late.assertValues(WIFI_STATE_DISABLED);
+
+        late.dispose();
+        states.dispose();
+        supplicantStates.dispose();
+        rssi.dispose();
+        assertThat(bus.registeredCount()).isEqualTo(0);
+        assertThat(bus.registrationCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void wifiEventBusSticky() {
+        final PublishSubject<Intent> receives = PublishSubject.create();
+        final WifiEventBus bus = new WifiEventBus(mock(Context.class), receives);
+
+        TestObserver<Integer> rssi = bus.rssi().test();
+        receives.onNext(new Intent(WIFI_STATE_CHANGED_ACTION).putExtra(EXTRA_WIFI_STATE, WIFI_STATE_DISABLED));
+        receives.onNext(new Intent(WifiManager.SUPPLICANT_STATE_CHANGED_ACTION)
+                .putExtra(EXTRA_NEW_STATE, (Parcelable) SupplicantState.DISCONNECTED)
+                .putExtra(EXTRA_SUPPLICANT_ERROR, ERROR_AUTHENTICATING));
+
+        // The receiver is already registered, the sticky broadcasts come from the bus
+        TestObserver<Integer> states = bus.states().test();
+        states.assertValues(WIFI_STATE_DISABLED);
+        TestObserver<SupplicantState> supplicantStates = bus.supplicantStates().test();
+        supplicantStates.assertValues(SupplicantState.DISCONNECTED);
+        TestObserver<SupplicantEvent> supplicantEvents = bus.supplicantEvents().test();
+        supplicantEvents.assertValueCount(1);
+        assertThat(supplicantEvents.values().get(0).isAuthenticationError()).isFalse();
+        assertThat(bus.registrationCount()).isEqualTo(1);
+
+        // Forgotten once unregistered
+        rssi.dispose();
+        states.dispose();
+        supplicantStates.dispose();
+        supplicantEvents.dispose();
+        assertThat(bus.registeredCount()).isEqualTo(0);
+        bus.states().test().assertNoValues();
+    }
+
+    @Test
+    public void wifiEventBusStickyOrder() {
+        final PublishSubject<Intent> receives = PublishSubject.create();
+        final WifiEventBus bus = new WifiEventBus(mock(Context.class), receives);
+
+        TestObserver<Integer> rssi = bus.rssi().test();
+        final Intent connecting = new Intent(WifiManager.NETWORK_STATE_CHANGED_ACTION);
+        final Intent enabled = new Intent(WIFI_STATE_CHANGED_ACTION);
+        final Intent connected = new Intent(WifiManager.NETWORK_STATE_CHANGED_ACTION);
+        receives.onNext(connecting);
+        receives.onNext(enabled);
+        receives.onNext(connected);
+
+        // Replayed in the order received, the latest network state last
+        bus.intents().test().assertValues(enabled, connected);
+        rssi.dispose();
+    }
+
     @Test
     public void testSupplicantStates() {
         final Context context = RuntimeEnvironment.application.getApplicationContext();
@@ -222,4 +602,23 @@ public class RxWifiTest {
 
         tester.assertValues(SupplicantState.INACTIVE);
     }
+
+    @Test
+    public void supplicantEvents() {
+        final Context context = RuntimeEnvironment.application.getApplicationContext();
+        final WifiEventBus bus = new WifiEventBus(context);
+
+        TestObserver<SupplicantEvent> tester = bus.supplicantEvents().test();
+
+        context.sendBroadcast(new Intent(WifiManager.SUPPLICANT_STATE_CHANGED_ACTION)
+                .putExtra(EXTRA_NEW_STATE, (Parcelable) SupplicantState.ASSOCIATING));
+        context.sendBroadcast(new Intent(WifiManager.SUPPLICANT_STATE_CHANGED_ACTION)
+                .putExtra(EXTRA_NEW_STATE, (Parcelable) SupplicantState.DISCONNECTED)
+                .putExtra(EXTRA_SUPPLICANT_ERROR, ERROR_AUTHENTICATING));
+
+        tester.assertValueCount(2);
+        assertThat(tester.values().get(0).isAuthenticationError()).isFalse();
+        assertThat(tester.values().get(1).state).isEqualTo(SupplicantState.DISCONNECTED);
+        assertThat(tester.values().get(1).isAuthenticationError()).isTrue();
+    }
 }
@@ -0,0 +1,140 @@
+/*
+ * Copyright (C) 2017, Andrew Chen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package rx.wifi.android;
+
+import android.net.wifi.ScanResult;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadow.api.Shadow;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import rx.wifi.BuildConfig;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class)
+public class ScanIndexTest {
+    private static final int COUNT = 5000;
+
+    @Test
+    public void parseBssid() {
+        assertThat(Bssids.parse("02:00:00:00:00:01")).isEqualTo(0x020000000001L);
+        assertThat(Bssids.parse("AA-BB-CC-DD-EE-FF")).isEqualTo(0xaabbccddeeffL);
+        assertThat(Bssids.parse("aa:bb:cc:dd:ee")).isEqualTo(Bssids.INVALID);
+        assertThat(Bssids.parse("aa:bb:cc:dd:ee:fg")).isEqualTo(Bssids.INVALID);
+        assertThat(Bssids.parse(null)).isEqualTo(Bssids.INVALID);
+        assertThat(Bssids.toString(0xaabbccddeeffL)).isEqualTo("aa:bb:cc:dd:ee:ff");
+    }
+
+    @Test
+    public void securityOf() {
+        assertThat(ScanIndex.securityOf("")).isEqualTo(ScanIndex.SECURITY_NONE);
+        assertThat(ScanIndex.securityOf("[ESS]")).isEqualTo(ScanIndex.SECURITY_NONE);
+        assertThat(ScanIndex.securityOf("[WEP][ESS]")).isEqualTo(ScanIndex.SECURITY_WEP);
+        assertThat(ScanIndex.securityOf("[WPA-PSK-CCMP][WPA2-PSK-CCMP][ESS]"))
+                .isEqualTo(ScanIndex.SECURITY_WPA | ScanIndex.SECURITY_WPA2 | ScanIndex.SECURITY_PSK);
+        assertThat(ScanIndex.securityOf("[WPA2-EAP-CCMP][ESS]"))
+                .isEqualTo(ScanIndex.SECURITY_WPA2 | ScanIndex.SECURITY_EAP);
+        assertThat(ScanIndex.securityOf("WPA")).isEqualTo(ScanIndex.SECURITY_WPA);
+    }
+
+    @Test
+    public void authenticationOf() {
+        assertThat(ScanIndex.authenticationOf(ScanIndex.securityOf("[ESS]"))).isEqualTo(ScanIndex.SECURITY_NONE);
+        assertThat(ScanIndex.authenticationOf(ScanIndex.securityOf("[WEP]"))).isEqualTo(ScanIndex.SECURITY_WEP);
+        assertThat(ScanIndex.authenticationOf(ScanIndex.securityOf("WPA"))).isEqualTo(ScanIndex.SECURITY_PSK);
+        assertThat(ScanIndex.authenticationOf(ScanIndex.securityOf("[RSN-PSK-CCMP]"))).isEqualTo(ScanIndex.SECURITY_PSK);
+        assertThat(ScanIndex.authenticationOf(ScanIndex.securityOf("[WPA2-EAP-CCMP][ESS]")))
+                .isEqualTo(ScanIndex.SECURITY_EAP);
+    }
+
+    @Test
+    public void index() {
+        final List<ScanResult> scanResults = scanResults(0, COUNT);
+        final ScanIndex index = new ScanIndex(16).reset(scanResults);
+
+        assertThat(index.size()).isEqualTo(COUNT);
+        for (int i = 0; i < COUNT; i++) {
+            final ScanResult scanResult = scanResults.get(i);
+            final int slot = index.indexOf(scanResult.BSSID);
+            assertThat(slot).isEqualTo(i);
+            assertThat(index.result(slot)).isSameAs(scanResult);
+            assertThat(index.rssi(slot)).isEqualTo(scanResult.level);
+            assertThat(index.frequency(slot)).isEqualTo(scanResult.frequency);
+            assertThat(Bssids.toString(index.bssid(slot))).isEqualTo(scanResult.BSSID);
+        }
+        assertThat(index.indexOf(bssid(COUNT))).isEqualTo(-1);
+    }
+
+    @Test
+    public void dedup() {
+        final List<ScanResult> scanResults = scanResults(0, COUNT);
+        scanResults.addAll(scanResults(0, COUNT));
+        final ScanIndex index = new ScanIndex().reset(scanResults);
+
+        assertThat(index.size()).isEqualTo(COUNT);
+        assertThat(index.result(index.indexOf(bssid(0)))).isSameAs(scanResults.get(COUNT));
+    }
+
+    @Test
+    public void reuse() {
+        final ScanIndex index = new ScanIndex().reset(scanResults(0, COUNT));
+        index.reset(scanResults(COUNT / 2, COUNT));
+
+        assertThat(index.size()).isEqualTo(COUNT / 2);
+        assertThat(index.indexOf(bssid(0))).isEqualTo(-1);
+        assertThat(index.indexOf(bssid(COUNT / 2))).isEqualTo(0);
+    }
+
+    @Test
+    public void join() {
+        final ScanDiffer differ = new ScanDiffer(5);
+        differ.diff(scanResults(0, COUNT));
+
+        final List<ScanResult> next = scanResults(COUNT / 2, COUNT + COUNT / 2);
+        next.get(0).level -= 10;
+        final ScanDiff diff = differ.diff(next);
+
+        assertThat(diff.added).hasSize(COUNT / 2);
+        assertThat(diff.removed).hasSize(COUNT / 2);
+        assertThat(diff.changed).containsExactly(next.get(0));
+        assertThat(differ.diff(next).isEmpty()).isTrue();
+    }
+
+    private static List<ScanResult> scanResults(int from, int to) {
+        final List<ScanResult> scanResults = new ArrayList<ScanResult>(to - from);
+        for (int i = from; i < to; i++) {
+            final ScanResult scanResult = Shadow.newInstanceOf(ScanResult.class);
+            scanResult.SSID = "ssid" + (i % 50);
+            scanResult.BSSID = bssid(i);
+            scanResult.level = -30 - (i % 60);
+            scanResult.frequency = i % 2 == 0 ? 2412 : 5180;
+            scanResult.capabilities = i % 3 == 0 ? "[ESS]" : "[WPA2-PSK-CCMP][ESS]";
+            scanResults.add(scanResult);
+        }
+        return scanResults;
+    }
+
+    private static String bssid(int i) {
+        return Bssids.toString(0x020000000000L | i);
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright (C) 2017, Andrew Chen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package rx.wifi.android;
+
+import android.net.wifi.ScanResult;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadow.api.Shadow;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.reactivex.Observable;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.functions.Action;
+import io.reactivex.functions.Consumer;
+import io.reactivex.observers.TestObserver;
+import io.reactivex.subjects.PublishSubject;
+import rx.wifi.BuildConfig;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class)
+public class ScanQueryRegistryTest {
+    private final PublishSubject<List<ScanResult>> scans = PublishSubject.create();
+    private final AtomicInteger subscribed = new AtomicInteger();
+    private final AtomicInteger disposed = new AtomicInteger();
+    private final ScanQueryRegistry registry = new ScanQueryRegistry(null, scans
+            .doOnSubscribe(new Consumer<Disposable>() {
+                @Override
+                public void accept(Disposable disposable) throws Exception {
+                    subscribed.incrementAndGet();
+                }
+            })
+            .doOnDispose(new Action() {
+                @Override
+                public void run() throws Exception {
+                    disposed.incrementAndGet();
+                }
+            }));
+
+    @Test
+    public void sharedScans() throws Exception {
+        final List<TestObserver<ScanResult>> lookups = new ArrayList<TestObserver<ScanResult>>();
+        for (int i = 0; i < 20; i++) {
+            lookups.add(registry.scanForAny(Collections.singleton(Ssid.of("ssid" + i))).test());
+        }
+        assertThat(subscribed.get()).isEqualTo(1);
+        assertThat(registry.size()).isEqualTo(20);
+
+        final ScanResult ssid3 = scanResult("ssid3");
+        final ScanResult ssid7 = scanResult("ssid7");
+        scans.onNext(Arrays.asList(scanResult("other"), ssid3, ssid7));
+
+        lookups.get(3).assertResult(ssid3);
+        lookups.get(7).assertResult(ssid7);
+        lookups.get(0).assertEmpty();
+        assertThat(registry.size()).isEqualTo(18);
+
+        for (TestObserver<ScanResult> lookup : lookups) {
+            lookup.dispose();
+        }
+        assertThat(registry.size()).isEqualTo(0);
+        assertThat(disposed.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void scanForAny() throws Exception {
+        final TestObserver<ScanResult> any = registry.scanForAny(Arrays.asList(Ssid.of("foo"), Ssid.of("bar"))).test();
+
+        final ScanResult bar = scanResult("bar");
+        scans.onNext(Arrays.asList(bar, scanResult("foo")));
+        any.assertResult(bar);
+        assertThat(registry.size()).isEqualTo(0);
+        assertThat(disposed.get()).isEqualTo(1);
+
+        registry.scanForAny(Collections.<Ssid>emptyList()).test().assertResult();
+    }
+
+    @Test
+    public void latestRound() throws Exception {
+        final TestObserver<ScanResult> first = registry.scanForAny(Collections.singleton(Ssid.of("foo"))).test();
+        final ScanResult bar = scanResult("bar");
+        scans.onNext(Arrays.asList(bar));
+
+        // Answered from the round already received, without waiting for the next one
+        registry.scanForAny(Collections.singleton(Ssid.of("bar"))).test().assertResult(bar);
+        assertThat(subscribed.get()).isEqualTo(1);
+        first.assertEmpty();
+        first.dispose();
+        assertThat(disposed.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void error() throws Exception {
+        final TestObserver<ScanResult> foo = registry.scanForAny(Collections.singleton(Ssid.of("foo"))).test();
+        final TestObserver<ScanResult> bar = registry.scanForAny(Arrays.asList(Ssid.of("foo"), Ssid.of("bar"))).test();
+        scans.onError(new IOException());
+
+        foo.assertError(IOException.class);
+        bar.assertError(IOException.class);
+        assertThat(registry.size()).isEqualTo(0);
+    }
+
+    @Test
+    public void synchronousScans() throws Exception {
+        final ScanResult foo = scanResult("foo");
+        final ScanQueryRegistry sync = new ScanQueryRegistry(null, Observable.just(Arrays.asList(foo))
+                .concatWith(Observable.<List<ScanResult>>never())
+                .doOnDispose(new Action() {
+                    @Override
+                    public void run() throws Exception {
+                        disposed.incrementAndGet();
+                    }
+                }));
+
+        final AtomicBoolean locked = new AtomicBoolean(true);
+        sync.scanForAny(Collections.singleton(Ssid.of("foo")))
+                .doOnSuccess(new Consumer<ScanResult>() {
+                    @Override
+                    public void accept(ScanResult scanResult) throws Exception {
+                        locked.set(Thread.holdsLock(sync));
+                    }
+                })
+                .test()
+                .assertResult(foo);
+        // Downstream, e.g. a connect, does not run under the registry lock
+        assertThat(locked.get()).isFalse();
+        assertThat(sync.size()).isEqualTo(0);
+        assertThat(disposed.get()).isEqualTo(1);
+    }
+
+    private static ScanResult scanResult(String ssid) {
+        final ScanResult scanResult = Shadow.newInstanceOf(ScanResult.class);
+        scanResult.SSID = ssid;
+        return scanResult;
+    }
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright (C) 2017, Andrew Chen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package rx.wifi.android;
+
+import android.content.Intent;
+import android.net.wifi.ScanResult;
+import android.net.wifi.WifiManager;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadow.api.Shadow;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.observers.TestObserver;
+import io.reactivex.schedulers.TestScheduler;
+import io.reactivex.subjects.PublishSubject;
+import rx.wifi.BuildConfig;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class)
+public class ScanSchedulerTest {
+    private WifiManager wifiManager;
+    private PublishSubject<Intent> scanResultsAvailable;
+    private TestScheduler scheduler;
+    private ScanScheduler scanScheduler;
+    private List<ScanResult> scanResults;
+
+    @Before
+    public void setUp() {
+        wifiManager = mock(WifiManager.class);
+        scanResultsAvailable = PublishSubject.create();
+        scheduler = new TestScheduler();
+        scheduler.advanceTimeBy(1, TimeUnit.HOURS);
+        scanScheduler = new ScanScheduler(wifiManager, scanResultsAvailable, scheduler,
+                4, TimeUnit.MINUTES.toMillis(2), TimeUnit.SECONDS.toMillis(10));
+
+        ScanResult scanResult = Shadow.newInstanceOf(ScanResult.class);
+        scanResult.SSID = "foo";
+        scanResult.BSSID = "02:00:00:00:00:00";
+        scanResults = Collections.singletonList(scanResult);
+        when(wifiManager.getScanResults()).thenReturn(scanResults);
+        when(wifiManager.startScan()).thenReturn(true);
+    }
+
+    @Test
+    public void coalesce() {
+        TestObserver<ScanSnapshot> foo = scanScheduler.request(10, TimeUnit.SECONDS).test();
+        TestObserver<ScanSnapshot> bar = scanScheduler.request(30, TimeUnit.SECONDS).test();
+        verify(wifiManager, times(1)).startScan();
+        foo.assertNoValues();
+
+        scheduler.advanceTimeBy(2, TimeUnit.SECONDS);
+        scanResultsAvailable.onNext(new Intent(WifiManager.SCAN_RESULTS_AVAILABLE_ACTION));
+
+        foo.assertValueCount(1);
+        bar.assertValueCount(1);
+        assertThat(foo.values().get(0).results).isEqualTo(scanResults);
+        assertThat(foo.values().get(0).stale).isFalse();
+        assertThat(scanScheduler.availableScans()).isEqualTo(3);
+
+        // Fresh enough, served without scanning
+        scheduler.advanceTimeBy(5, TimeUnit.SECONDS);
+        TestObserver<ScanSnapshot> baz = scanScheduler.request(10, TimeUnit.SECONDS).test();
+        baz.assertValueCount(1);
+        assertThat(baz.values().get(0).age).isEqualTo(TimeUnit.SECONDS.toMillis(5));
+        verify(wifiManager, times(1)).startScan();
+    }
+
+    @Test
+    public void budget() {
+        for (int i = 0; i < 4; i++) {
+            TestObserver<ScanSnapshot> tester = scanScheduler.request(0, TimeUnit.SECONDS).test();
+            scanResultsAvailable.onNext(new Intent(WifiManager.SCAN_RESULTS_AVAILABLE_ACTION));
+            tester.assertValueCount(1);
+            scheduler.advanceTimeBy(1, TimeUnit.SECONDS);
+        }
+        verify(wifiManager, times(4)).startScan();
+        assertThat(scanScheduler.availableScans()).isEqualTo(0);
+
+        TestObserver<ScanSnapshot> spent = scanScheduler.request(0, TimeUnit.SECONDS).test();
+        spent.assertValueCount(1);
+        assertThat(spent.values().get(0).stale).isTrue();
+        assertThat(spent.values().get(0).age).isEqualTo(TimeUnit.SECONDS.toMillis(1));
+        verify(wifiManager, times(4)).startScan();
+
+        // The first token comes back 2 minutes after it was spent
+        scheduler.advanceTimeBy(2, TimeUnit.MINUTES);
+        assertThat(scanScheduler.availableScans()).isEqualTo(4);
+        scanScheduler.request(0, TimeUnit.SECONDS).test();
+        verify(wifiManager, times(5)).startScan();
+    }
+
+    @Test
+    public void backoff() {
+        when(wifiManager.startScan()).thenReturn(false);
+
+        TestObserver<ScanSnapshot> failed = scanScheduler.request(0, TimeUnit.SECONDS).test();
+        failed.assertValueCount(1);
+        assertThat(failed.values().get(0).stale).isTrue();
+        assertThat(failed.values().get(0).results).isEqualTo(scanResults);
+        assertThat(scanScheduler.backoff()).isEqualTo(TimeUnit.SECONDS.toMillis(5));
+
+        scanScheduler.request(0, TimeUnit.SECONDS).test().assertValueCount(1);
+        verify(wifiManager, times(1)).startScan();
+
+        scheduler.advanceTimeBy(5, TimeUnit.SECONDS);
+        scanScheduler.request(0, TimeUnit.SECONDS).test().assertValueCount(1);
+        verify(wifiManager, times(2)).startScan();
+        assertThat(scanScheduler.backoff()).isEqualTo(TimeUnit.SECONDS.toMillis(10));
+    }
+
+    @Test
+    public void timeout() {
+        TestObserver<ScanSnapshot> tester = scanScheduler.request(0, TimeUnit.SECONDS).test();
+        tester.assertNoValues();
+
+        scheduler.advanceTimeBy(10, TimeUnit.SECONDS);
+        tester.assertValueCount(1);
+        assertThat(tester.values().get(0).stale).isTrue();
+        assertThat(scanScheduler.backoff()).isEqualTo(TimeUnit.SECONDS.toMillis(5));
+    }
+
+    @Test
+    public void watch() {
+        TestObserver<List<ScanResult>> watching = scanScheduler.watch().test();
+
+        // Scanned by another app
+        scanResultsAvailable.onNext(new Intent(WifiManager.SCAN_RESULTS_AVAILABLE_ACTION));
+        watching.assertValue(scanResults);
+
+        scheduler.advanceTimeBy(5, TimeUnit.SECONDS);
+        TestObserver<ScanSnapshot> tester = scanScheduler.request(10, TimeUnit.SECONDS).test();
+        tester.assertValueCount(1);
+        assertThat(tester.values().get(0).stale).isFalse();
+        assertThat(tester.values().get(0).age).isEqualTo(TimeUnit.SECONDS.toMillis(5));
+        verify(wifiManager, never()).startScan();
+        assertThat(scanScheduler.availableScans()).isEqualTo(4);
+
+        watching.dispose();
+        assertThat(scanResultsAvailable.hasObservers()).isFalse();
+    }
+}
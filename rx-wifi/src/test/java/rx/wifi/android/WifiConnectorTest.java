@@ -0,0 +1,214 @@
+/*
+ * Copyright (C) 2017, Andrew Chen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package rx.wifi.android;
+
+import android.net.NetworkInfo;
+import android.net.wifi.ScanResult;
+import android.net.wifi.SupplicantState;
+import android.net.wifi.WifiManager;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.Maybe;
+import io.reactivex.Single;
+import io.reactivex.functions.BiConsumer;
+import io.reactivex.functions.Function;
+import io.reactivex.observers.TestObserver;
+import io.reactivex.schedulers.TestScheduler;
+import io.reactivex.subjects.PublishSubject;
+import rx.wifi.BuildConfig;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class)
+public class WifiConnectorTest {
+    private static final WifiConnectDeadlines DEADLINES = WifiConnectDeadlines.of(15, 10, 15, 15, 10, TimeUnit.SECONDS);
+
+    private final Ssid foo = Ssid.of("foo");
+    private final ScanResult scanResult = mock(ScanResult.class);
+    private final PublishSubject<ScanResult> scans = PublishSubject.create();
+    private final PublishSubject<SupplicantEvent> supplicantEvents = PublishSubject.create();
+    private final PublishSubject<WifiConnection> connections = PublishSubject.create();
+    private final TestScheduler scheduler = new TestScheduler();
+    private final List<ScanResult> connected = new ArrayList<ScanResult>();
+    private boolean alreadyConnected;
+    private Single<Boolean> internet = Single.just(true);
+
+    @Test
+    public void phases() throws Exception {
+        final TestObserver<WifiConnectProgress> progress = connector().connect(foo, "password", DEADLINES).test();
+        progress.assertValueCount(1);
+
+        step(100L);
+        scans.onNext(scanResult);
+        assertThat(connected).containsExactly(scanResult);
+        step(200L);
+        supplicantEvents.onNext(new SupplicantEvent(SupplicantState.AUTHENTICATING, SupplicantEvent.NO_ERROR));
+        step(300L);
+        supplicantEvents.onNext(new SupplicantEvent(SupplicantState.FOUR_WAY_HANDSHAKE, SupplicantEvent.NO_ERROR));
+        supplicantEvents.onNext(new SupplicantEvent(SupplicantState.COMPLETED, SupplicantEvent.NO_ERROR));
+        step(400L);
+        connections.onNext(connection(NetworkInfo.DetailedState.OBTAINING_IPADDR));
+        connections.onNext(connection(NetworkInfo.DetailedState.CONNECTED));
+
+        progress.assertComplete();
+        final List<Integer> phases = new ArrayList<Integer>();
+        for (WifiConnectProgress value : progress.values()) {
+            phases.add(value.phase);
+        }
+        assertThat(phases).containsExactly(WifiConnectProgress.SCANNING,
+                WifiConnectProgress.ASSOCIATING,
+                WifiConnectProgress.AUTHENTICATING,
+                WifiConnectProgress.OBTAINING_IP,
+                WifiConnectProgress.VERIFYING,
+                WifiConnectProgress.CONNECTED);
+
+        final WifiConnectProgress last = progress.values().get(phases.size() - 1);
+        assertThat(last.elapsedMillis).isEqualTo(1000L);
+        assertThat(last.millisIn(WifiConnectProgress.SCANNING)).isEqualTo(100L);
+        assertThat(last.millisIn(WifiConnectProgress.ASSOCIATING)).isEqualTo(200L);
+        assertThat(last.millisIn(WifiConnectProgress.AUTHENTICATING)).isEqualTo(300L);
+        assertThat(last.millisIn(WifiConnectProgress.OBTAINING_IP)).isEqualTo(400L);
+    }
+
+    @Test
+    public void authenticationError() throws Exception {
+        final TestObserver<WifiConnectProgress> progress = connector().connect(foo, "wrong", DEADLINES).test();
+        scans.onNext(scanResult);
+        supplicantEvents.onNext(new SupplicantEvent(SupplicantState.AUTHENTICATING, SupplicantEvent.NO_ERROR));
+        step(500L);
+        supplicantEvents.onNext(new SupplicantEvent(SupplicantState.DISCONNECTED, WifiManager.ERROR_AUTHENTICATING));
+
+        assertFailure(progress, WifiConnectException.AUTHENTICATION_FAILED, WifiConnectProgress.AUTHENTICATING);
+        assertThat(((WifiConnectException) progress.errors().get(0)).elapsedMillis).isEqualTo(500L);
+    }
+
+    @Test
+    public void handshakeDropped() throws Exception {
+        final TestObserver<WifiConnectProgress> progress = connector().connect(foo, "wrong", DEADLINES).test();
+        scans.onNext(scanResult);
+        supplicantEvents.onNext(new SupplicantEvent(SupplicantState.FOUR_WAY_HANDSHAKE, SupplicantEvent.NO_ERROR));
+        supplicantEvents.onNext(new SupplicantEvent(SupplicantState.DISCONNECTED, SupplicantEvent.NO_ERROR));
+
+        assertFailure(progress, WifiConnectException.AUTHENTICATION_FAILED, WifiConnectProgress.AUTHENTICATING);
+    }
+
+    @Test
+    public void deadlines() throws Exception {
+        TestObserver<WifiConnectProgress> progress = connector().connect(foo, null, DEADLINES).test();
+        step(TimeUnit.SECONDS.toMillis(15));
+        assertFailure(progress, WifiConnectException.SSID_NOT_FOUND, WifiConnectProgress.SCANNING);
+        assertThat(connected).isEmpty();
+
+        progress = connector().connect(foo, null, DEADLINES).test();
+        scans.onNext(scanResult);
+        step(TimeUnit.SECONDS.toMillis(10));
+        assertFailure(progress, WifiConnectException.ASSOCIATION_TIMEOUT, WifiConnectProgress.ASSOCIATING);
+
+        progress = connector().connect(foo, null, DEADLINES).test();
+        scans.onNext(scanResult);
+        supplicantEvents.onNext(new SupplicantEvent(SupplicantState.COMPLETED, SupplicantEvent.NO_ERROR));
+        step(TimeUnit.SECONDS.toMillis(15));
+        assertFailure(progress, WifiConnectException.DHCP_TIMEOUT, WifiConnectProgress.OBTAINING_IP);
+    }
+
+    @Test
+    public void otherNetwork() throws Exception {
+        final TestObserver<WifiConnectProgress> progress = connector().connect(foo, null, DEADLINES).test();
+        scans.onNext(scanResult);
+        connections.onNext(new WifiConnection(NetworkInfo.DetailedState.OBTAINING_IPADDR, Ssid.of("bar"),
+                "02:00:00:00:00:01", SupplicantState.COMPLETED, null));
+        connections.onNext(new WifiConnection(NetworkInfo.DetailedState.CONNECTED, Ssid.of("bar"),
+                "02:00:00:00:00:01", SupplicantState.COMPLETED, null));
+
+        assertThat(progress.values().get(progress.valueCount() - 1).phase).isEqualTo(WifiConnectProgress.ASSOCIATING);
+        progress.assertNotTerminated();
+    }
+
+    @Test
+    public void noInternet() throws Exception {
+        internet = Single.just(false);
+        final TestObserver<WifiConnectProgress> progress = connector().connect(foo, null, DEADLINES).test();
+        scans.onNext(scanResult);
+        connections.onNext(connection(NetworkInfo.DetailedState.CONNECTED));
+
+        assertFailure(progress, WifiConnectException.NO_INTERNET, WifiConnectProgress.VERIFYING);
+    }
+
+    @Test
+    public void alreadyConnected() throws Exception {
+        alreadyConnected = true;
+        final TestObserver<WifiConnectProgress> progress =
+                connector().connect(foo, null, WifiConnectDeadlines.DEFAULT).test();
+
+        progress.assertValueCount(1);
+        progress.assertComplete();
+        assertThat(progress.values().get(0).phase).isEqualTo(WifiConnectProgress.CONNECTED);
+        assertThat(scans.hasObservers()).isFalse();
+        assertThat(connected).isEmpty();
+    }
+
+    private void assertFailure(final TestObserver<WifiConnectProgress> progress, final int reason, final int phase) {
+        progress.assertError(WifiConnectException.class);
+        final WifiConnectException e = (WifiConnectException) progress.errors().get(0);
+        assertThat(e.reason).isEqualTo(reason);
+        assertThat(e.phase).isEqualTo(phase);
+        assertThat(supplicantEvents.hasObservers()).isFalse();
+    }
+
+    private void step(final long millis) {
+        scheduler.advanceTimeBy(millis, TimeUnit.MILLISECONDS);
+    }
+
+    private WifiConnection connection(final NetworkInfo.DetailedState detailedState) {
+        return new WifiConnection(detailedState, foo, "02:00:00:00:00:00", SupplicantState.COMPLETED, null);
+    }
+
+    private WifiConnector connector() {
+        return new WifiConnector(null,
+                new Function<Ssid, Maybe<ScanResult>>() {
+                    @Override
+                    public Maybe<ScanResult> apply(Ssid ssid) throws Exception {
+                        return scans.firstElement();
+                    }
+                },
+                new BiConsumer<ScanResult, String>() {
+                    @Override
+                    public void accept(ScanResult scanResult, String password) throws Exception {
+                        connected.add(scanResult);
+                    }
+                },
+                new Function<Ssid, Boolean>() {
+                    @Override
+                    public Boolean apply(Ssid ssid) throws Exception {
+                        return alreadyConnected;
+                    }
+                },
+                supplicantEvents,
+                connections,
+                internet,
+                scheduler);
+    }
+}
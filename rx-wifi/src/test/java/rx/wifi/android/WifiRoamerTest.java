@@ -0,0 +1,258 @@
+/*
+ * Copyright (C) 2017, Andrew Chen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package rx.wifi.android;
+
+import android.net.NetworkInfo;
+import android.net.wifi.ScanResult;
+import android.net.wifi.SupplicantState;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadow.api.Shadow;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.functions.BiConsumer;
+import io.reactivex.functions.Consumer;
+import io.reactivex.observers.TestObserver;
+import io.reactivex.schedulers.TestScheduler;
+import io.reactivex.subjects.PublishSubject;
+import rx.wifi.BuildConfig;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class)
+public class WifiRoamerTest {
+    private static final String A = "02:00:00:00:00:0a";
+    private static final String B = "02:00:00:00:00:0b";
+    private static final String C = "02:00:00:00:00:0c";
+
+    private final PublishSubject<List<ScanResult>> scans = PublishSubject.create();
+    private final TestScheduler scheduler = new TestScheduler();
+    private final PublishSubject<WifiConnection> connections = PublishSubject.create();
+    private final List<String> connected = new ArrayList<String>();
+    private final List<String> unpinned = new ArrayList<String>();
+
+    @Test
+    public void score() throws Exception {
+        final WifiScorer scorer = new WifiScorer(Arrays.asList(
+                WifiCandidate.of("site", "password", 1),
+                WifiCandidate.of("backup", "password", 0)));
+
+        final List<WifiScore> scores = scorer.score(Arrays.asList(
+                scanResult("site", A, -60, 2412, "[WPA2-PSK-CCMP][ESS]"),
+                scanResult("site", B, -65, 5180, "[WPA2-PSK-CCMP][ESS]"),
+                scanResult("backup", C, -58, 2437, "[WPA2-PSK-CCMP][ESS]"),
+                scanResult("neighbour", "02:00:00:00:00:01", -70, 2417, "[ESS]"),
+                scanResult("neighbour", "02:00:00:00:00:02", -70, 2462, "[ESS]")));
+
+        assertThat(scores).hasSize(3);
+        // 5 GHz beats 5 dB on a shared 2.4 GHz channel
+        assertThat(scores.get(0).scanResult.BSSID).isEqualTo(B);
+        assertThat(scores.get(0).congestion).isEqualTo(0);
+        assertThat(scores.get(1).scanResult.BSSID).isEqualTo(A);
+        assertThat(scores.get(1).congestion).isEqualTo(1);
+        // 2 dB stronger, yet behind for its lower priority
+        assertThat(scores.get(2).scanResult.BSSID).isEqualTo(C);
+
+        assertThat(WifiScorer.score(-40, 2412, 0, 0, 0)).isGreaterThan(WifiScorer.score(-50, 2412, 0, 0, 0));
+        assertThat(WifiScorer.score(-20, 2412, 0, 0, 0)).isEqualTo(WifiScorer.score(-40, 2412, 0, 0, 0));
+        assertThat(WifiScorer.score(-60, 5955, 0, 0, 0)).isGreaterThan(WifiScorer.score(-60, 5180, 0, 0, 0));
+        assertThat(WifiScorer.score(-60, 2412, ScanIndex.SECURITY_WPA2, 0, 0))
+                .isGreaterThan(WifiScorer.score(-60, 2412, ScanIndex.SECURITY_WEP, 0, 0));
+        assertThat(WifiScorer.score(-60, 2412, 0, 100, 0))
+                .isEqualTo(WifiScorer.score(-60, 2412, 0, 0, 0) - WifiScorer.MAX_CONGESTION_PENALTY);
+        assertThat(WifiScorer.overlaps(2412, 2437)).isFalse();
+        assertThat(WifiScorer.overlaps(2412, 2422)).isTrue();
+        assertThat(WifiScorer.overlaps(5180, 5200)).isFalse();
+    }
+
+    @Test
+    public void congestion() throws Exception {
+        final WifiScorer scorer = new WifiScorer(Arrays.asList(WifiCandidate.of("site", "password", 0)));
+        final List<ScanResult> round = Arrays.asList(
+                scanResult("site", A, -60, 2412, "[ESS]"),
+                scanResult("site", B, -60, 5180, "[ESS]"),
+                scanResult("neighbour", "02:00:00:00:00:01", -70, 2436, "[ESS]"),
+                scanResult("neighbour", "02:00:00:00:00:02", -70, 2437, "[ESS]"),
+                scanResult("neighbour", "02:00:00:00:00:03", -70, 5180, "[ESS]"),
+                scanResult("neighbour", "02:00:00:00:00:04", -70, 5200, "[ESS]"));
+
+        // Counted afresh every round
+        for (int i = 0; i < 2; i++) {
+            final List<WifiScore> scores = scorer.score(round);
+            assertThat(scores).hasSize(2);
+            for (WifiScore score : scores) {
+                assertThat(score.congestion).isEqualTo(1);
+            }
+        }
+    }
+
+    @Test
+    public void connectBest() throws Exception {
+        final TestObserver<WifiScore> roaming = roamer().connectBest(Arrays.asList(
+                WifiCandidate.of("site", "password", 0)), RoamingPolicy.DEFAULT).test();
+
+        scans.onNext(Arrays.asList(
+                scanResult("site", A, -70, 2412, "[WPA2-PSK-CCMP][ESS]"),
+                scanResult("site", B, -55, 2437, "[WPA2-PSK-CCMP][ESS]"),
+                scanResult("other", C, -30, 5180, "[ESS]")));
+
+        assertThat(connected).containsExactly(B);
+        roaming.assertValueCount(1);
+        assertThat(roaming.values().get(0).candidate.password).isEqualTo("password");
+        roaming.assertNotComplete();
+    }
+
+    @Test
+    public void roamOnlyWhenSustained() throws Exception {
+        final TestObserver<WifiScore> roaming = roamer().connectBest(Arrays.asList(
+                WifiCandidate.of("site", null, 0)), RoamingPolicy.of(10, 30, TimeUnit.SECONDS)).test();
+        connections.onNext(connection("site", A));
+
+        // Better, but within the margin
+        scans.onNext(round(-60, -55));
+        scheduler.advanceTimeBy(60, TimeUnit.SECONDS);
+        scans.onNext(round(-60, -55));
+        assertThat(connected).isEmpty();
+
+        // Better by the margin, not for long enough
+        scans.onNext(round(-70, -50));
+        scheduler.advanceTimeBy(20, TimeUnit.SECONDS);
+        scans.onNext(round(-70, -50));
+        assertThat(connected).isEmpty();
+
+        // A round back within the margin restarts the period
+        scans.onNext(round(-60, -55));
+        scheduler.advanceTimeBy(20, TimeUnit.SECONDS);
+        scans.onNext(round(-70, -50));
+        scheduler.advanceTimeBy(20, TimeUnit.SECONDS);
+        scans.onNext(round(-70, -50));
+        assertThat(connected).isEmpty();
+
+        scheduler.advanceTimeBy(10, TimeUnit.SECONDS);
+        scans.onNext(round(-70, -50));
+        assertThat(connected).containsExactly(B);
+        roaming.assertValueCount(1);
+
+        // Settled on B, A is no longer better
+        connections.onNext(connection("site", B));
+        scheduler.advanceTimeBy(60, TimeUnit.SECONDS);
+        scans.onNext(round(-58, -50));
+        assertThat(connected).containsExactly(B);
+    }
+
+    @Test
+    public void waitForConnect() throws Exception {
+        roamer().connectBest(Arrays.asList(WifiCandidate.of("site", null, 0)), RoamingPolicy.DEFAULT).test();
+
+        scans.onNext(round(-70, -50));
+        scans.onNext(round(-70, -50));
+        assertThat(connected).containsExactly(B);
+
+        // Still not associated once the last connect had time to
+        scheduler.advanceTimeBy(30, TimeUnit.SECONDS);
+        scans.onNext(round(-70, -50));
+        assertThat(connected).containsExactly(B, B);
+    }
+
+    @Test
+    public void trackConnection() throws Exception {
+        roamer().connectBest(Arrays.asList(WifiCandidate.of("site", null, 0)), RoamingPolicy.DEFAULT).test();
+
+        // Still associating with A, not on it yet
+        connections.onNext(new WifiConnection(NetworkInfo.DetailedState.AUTHENTICATING, Ssid.of("site"), A,
+                SupplicantState.ASSOCIATING, null));
+        scans.onNext(round(-50, -70));
+        assertThat(connected).containsExactly(A);
+
+        connections.onNext(connection("site", A));
+        scheduler.advanceTimeBy(60, TimeUnit.SECONDS);
+        scans.onNext(round(-50, -70));
+        assertThat(connected).containsExactly(A);
+    }
+
+    @Test
+    public void unpin() throws Exception {
+        final TestObserver<WifiScore> roaming = roamer().connectBest(Arrays.asList(
+                WifiCandidate.of("site", null, 1),
+                WifiCandidate.of("backup", null, 0)), RoamingPolicy.of(10, 30, TimeUnit.SECONDS)).test();
+
+        scans.onNext(Arrays.asList(scanResult("backup", C, -50, 2437, "[WPA2-PSK-CCMP][ESS]")));
+        assertThat(connected).containsExactly(C);
+        connections.onNext(connection("backup", C));
+
+        // Leaving the backup SSID lets it use any BSSID again
+        scheduler.advanceTimeBy(30, TimeUnit.SECONDS);
+        scans.onNext(Arrays.asList(
+                scanResult("backup", C, -70, 2437, "[WPA2-PSK-CCMP][ESS]"),
+                scanResult("site", A, -40, 5180, "[WPA2-PSK-CCMP][ESS]")));
+        scheduler.advanceTimeBy(30, TimeUnit.SECONDS);
+        scans.onNext(Arrays.asList(
+                scanResult("backup", C, -70, 2437, "[WPA2-PSK-CCMP][ESS]"),
+                scanResult("site", A, -40, 5180, "[WPA2-PSK-CCMP][ESS]")));
+        assertThat(connected).containsExactly(C, A);
+        assertThat(unpinned).containsExactly(C);
+
+        roaming.dispose();
+        assertThat(unpinned).containsExactly(C, A);
+        assertThat(connections.hasObservers()).isFalse();
+    }
+
+    private static WifiConnection connection(String ssid, String bssid) {
+        return new WifiConnection(NetworkInfo.DetailedState.CONNECTED, Ssid.of(ssid), bssid,
+                SupplicantState.COMPLETED, null);
+    }
+
+    private List<ScanResult> round(int rssiA, int rssiB) {
+        return Arrays.asList(
+                scanResult("site", A, rssiA, 2412, "[WPA2-PSK-CCMP][ESS]"),
+                scanResult("site", B, rssiB, 2462, "[WPA2-PSK-CCMP][ESS]"));
+    }
+
+    private WifiRoamer roamer() {
+        return new WifiRoamer(scans, connections,
+                new BiConsumer<ScanResult, String>() {
+                    @Override
+                    public void accept(ScanResult scanResult, String password) throws Exception {
+                        connected.add(scanResult.BSSID);
+                    }
+                },
+                new Consumer<ScanResult>() {
+                    @Override
+                    public void accept(ScanResult scanResult) throws Exception {
+                        unpinned.add(scanResult.BSSID);
+                    }
+                },
+                scheduler);
+    }
+
+    private static ScanResult scanResult(String ssid, String bssid, int level, int frequency, String capabilities) {
+        final ScanResult scanResult = Shadow.newInstanceOf(ScanResult.class);
+        scanResult.SSID = ssid;
+        scanResult.BSSID = bssid;
+        scanResult.level = level;
+        scanResult.frequency = frequency;
+        scanResult.capabilities = capabilities;
+        return scanResult;
+    }
+}